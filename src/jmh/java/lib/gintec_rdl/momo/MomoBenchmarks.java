@@ -0,0 +1,38 @@
+package lib.gintec_rdl.momo;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>
+ * Entry point for the benchmark profile. Accepts the usual JMH command line
+ * and fills in the defaults used for release-to-release tracking: every
+ * benchmark in this project, the GC profiler for bytes allocated per
+ * operation and a JSON result file under target/.</p>
+ *
+ * @author CK
+ */
+public final class MomoBenchmarks {
+
+    public static void main(String[] args) throws Exception {
+        final CommandLineOptions cli = new CommandLineOptions(args);
+        final ChainedOptionsBuilder builder = new OptionsBuilder().parent(cli);
+        if (cli.getIncludes().isEmpty()) {
+            builder.include("lib\\.gintec_rdl\\.momo\\..*Benchmark");
+        }
+        if (cli.getProfilers().isEmpty()) {
+            builder.addProfiler(GCProfiler.class);
+        }
+        if (!cli.getResult().hasValue()) {
+            builder.result("target/jmh-result.json").resultFormat(ResultFormatType.JSON);
+        }
+        new Runner(builder.build()).run();
+    }
+
+    private MomoBenchmarks() {
+    }
+}
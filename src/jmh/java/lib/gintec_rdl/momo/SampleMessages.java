@@ -0,0 +1,53 @@
+package lib.gintec_rdl.momo;
+
+/**
+ * Representative messages for each supported format, shared by the
+ * benchmarks.
+ *
+ * @author CK
+ */
+public final class SampleMessages {
+
+    public static final String MPAMBA = "MPAMBA";
+
+    public static final String MPAMBA_CASH_IN = "Cash In from 123456-JOHN DOE INVESTMENT OUTLET on 06/05/2019 14:00:50.\n"
+        + "Amt: 2,000.00MWK\n"
+        + "Fee: 0.00MWK\n"
+        + "Ref: 1A2B8C4D7E\n"
+        + "Bal: 2,000.00MWK";
+
+    public static final String MPAMBA_LEGACY_CASH_IN = "Trans ID: CI190506.1400.A12345: you have received MK2000.00 from 123456, "
+        + "JOHN DOE INVESTMENT OUTLET. your new balance is MK2000.00";
+
+    public static final String MPAMBA_DEBIT = "Money Received from 265888555555   on 10/05/2019 23:06:26. \n"
+        + "Amount: 100.00MWK \n"
+        + "Ref: E5D4C3B2A1 \n"
+        + "Bal: 290.00MWK";
+
+    public static final String MPAMBA_CREDIT = "Money Sent to 0881555555   on 02/04/2019 17:09:19. \n"
+        + "Amount: 10,000.00MWK \n"
+        + "Fee: 100.00MWK \n"
+        + "Ref: 1A2B3C4D5E \n"
+        + "Bal: 204.00MWK";
+
+    public static final String MPAMBA_DEPOSIT = "Deposit from National Bank on 11/05/2019 04:55:07. Amount: 201.00MWK "
+        + "Fee: 0.00MWK Ref: 1B1B1B1BJZ Available Balance: 491.00MWK.";
+
+    public static final String MPAMBA_CASH_OUT = "Cash Out to AGENT SMITH - 1234567 on 12/05/2019 12:12:07.\n"
+        + "Amt: 7,200.00MWK \n"
+        + "Fee: 380.00MWK. \n"
+        + "Ref: 8GHABCGDTF \n"
+        + "Bal: 1,581.00MWK";
+
+    /**
+     * One message of every MPAMBA format, used to drive mixed traffic.
+     */
+    public static final String[] MPAMBA_MIX = {
+        MPAMBA_CASH_IN, MPAMBA_LEGACY_CASH_IN, MPAMBA_DEBIT, MPAMBA_CREDIT, MPAMBA_DEPOSIT, MPAMBA_CASH_OUT
+    };
+
+    public static final String AIRTEL_MONEY = "AirtelMoney";
+
+    private SampleMessages() {
+    }
+}
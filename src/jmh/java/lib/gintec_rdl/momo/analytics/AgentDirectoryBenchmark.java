@@ -0,0 +1,116 @@
+package lib.gintec_rdl.momo.analytics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import lib.gintec_rdl.momo.model.MobileMoneyAgent;
+import lib.gintec_rdl.momo.model.MpambaCashOutTransaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>
+ * Cash outs spread over a few thousand agents, each with its own agent as
+ * extractors create them, against the same transactions after recording
+ * them in an {@link AgentDirectory}. The heap taken by the agents of each is
+ * printed during setup; the benchmarks time recording a transaction and
+ * picking out the transactions of one agent by code or by identity.</p>
+ *
+ * @author CK
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AgentDirectoryBenchmark {
+
+    private static final int TRANSACTIONS = 200_000;
+    private static final int AGENTS = 4_000;
+    private static final String SENDER = "MPAMBA";
+
+    private List<MpambaCashOutTransaction> fresh, interned;
+    private AgentDirectory directory;
+    private MobileMoneyAgent target;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        fresh = transactions();
+        final long before = usedHeap();
+        interned = transactions();
+        final long freshBytes = usedHeap() - before;
+        directory = new AgentDirectory();
+        interned.forEach(transaction -> directory.record(SENDER, transaction));
+        final long internedBytes = usedHeap() - before;
+        target = directory.get(SENDER, code(42));
+        System.out.println();
+        System.out.println("with fresh agents: ~" + freshBytes / 1024 + " KiB, with interned agents: ~" + internedBytes / 1024
+            + " KiB for " + TRANSACTIONS + " transactions of " + directory.size() + " agents");
+    }
+
+    @Benchmark
+    public MobileMoneyAgent record() {
+        final MpambaCashOutTransaction transaction = fresh.get(next);
+        next = next + 1 == TRANSACTIONS ? 0 : next + 1;
+        transaction.setAgent(new MobileMoneyAgent(new String(transaction.getAgent().getAgentCode()), transaction.getAgent().getAgentName()));
+        return directory.record(SENDER, transaction);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int countByCode() {
+        final String code = target.getAgentCode();
+        int count = 0;
+        for (MpambaCashOutTransaction transaction : fresh) {
+            count += code.equals(transaction.getAgent().getAgentCode()) ? 1 : 0;
+        }
+        return count;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int countByIdentity() {
+        int count = 0;
+        for (MpambaCashOutTransaction transaction : interned) {
+            count += transaction.getAgent() == target ? 1 : 0;
+        }
+        return count;
+    }
+
+    private static List<MpambaCashOutTransaction> transactions() {
+        final List<MpambaCashOutTransaction> transactions = new ArrayList<>(TRANSACTIONS);
+        final Random random = new Random(42);
+        for (int i = 0; i < TRANSACTIONS; i++) {
+            final int agent = random.nextInt(AGENTS);
+            final MpambaCashOutTransaction transaction = new MpambaCashOutTransaction();
+            transaction.setAgent(new MobileMoneyAgent(code(agent), "AGENT OUTLET " + agent));
+            transaction.setAmountMinor(random.nextInt(1_000_000));
+            transactions.add(transaction);
+        }
+        return transactions;
+    }
+
+    private static String code(int agent) {
+        return Integer.toString(100_000 + agent);
+    }
+
+    private static long usedHeap() {
+        final Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,152 @@
+package lib.gintec_rdl.momo.analytics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import lib.gintec_rdl.momo.model.MpambaCashOutTransaction;
+import lib.gintec_rdl.momo.model.MpambaDebitTransaction;
+import lib.gintec_rdl.momo.model.Transaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>
+ * Reconciles a day of traffic for 100 accounts, with a share of messages
+ * delayed by up to two minutes, once with the streaming
+ * {@link BalanceReconciler} and once the offline way: group by account, sort
+ * by date and scan.</p>
+ *
+ * @author CK
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BalanceReconcilerBenchmark {
+
+    private static final int MESSAGES = 20_000;
+    private static final int ACCOUNTS = 100;
+    private static final long WINDOW = TimeUnit.MINUTES.toMillis(5);
+
+    /**
+     * Percentage of messages that arrive late.
+     */
+    @Param({"0", "5"})
+    public int delayed;
+
+    private final String[] accounts = new String[MESSAGES];
+    private final Transaction[] transactions = new Transaction[MESSAGES];
+
+    @Setup
+    public void setUp() {
+        final Random random = new Random(42);
+        final long[] balances = new long[ACCOUNTS];
+        final long[] arrival = new long[MESSAGES];
+        final Integer[] order = new Integer[MESSAGES];
+        final String[] owners = new String[MESSAGES];
+        final Transaction[] created = new Transaction[MESSAGES];
+        long time = 1_557_000_000_000L;
+        for (int i = 0; i < MESSAGES; i++) {
+            time += random.nextInt(8000);
+            final int account = random.nextInt(ACCOUNTS);
+            final long amount = 100 + random.nextInt(100_000);
+            final Transaction transaction;
+            if (random.nextBoolean() || balances[account] < amount + 1000) {
+                balances[account] += amount;
+                final MpambaDebitTransaction debit = new MpambaDebitTransaction();
+                debit.setAmountMinor(amount);
+                debit.setBalanceMinor(balances[account]);
+                transaction = debit;
+            } else {
+                balances[account] -= amount + 1000;
+                final MpambaCashOutTransaction cashOut = new MpambaCashOutTransaction();
+                cashOut.setAmountMinor(amount);
+                cashOut.setFeeMinor(1000);
+                cashOut.setBalanceMinor(balances[account]);
+                transaction = cashOut;
+            }
+            transaction.setTransactionId("T" + i);
+            transaction.setDate(new Date(time));
+            owners[i] = "0888" + (100_000 + account);
+            created[i] = transaction;
+            arrival[i] = time + (random.nextInt(100) < delayed ? random.nextInt(120_000) : 0);
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> arrival[i]));
+        for (int i = 0; i < MESSAGES; i++) {
+            accounts[i] = owners[order[i]];
+            transactions[i] = created[order[i]];
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public long streaming() {
+        final long[] gaps = new long[1];
+        final BalanceReconciler reconciler = new BalanceReconciler(WINDOW, finding -> gaps[0]++);
+        for (int i = 0; i < MESSAGES; i++) {
+            reconciler.offer(accounts[i], transactions[i]);
+        }
+        reconciler.flush();
+        return gaps[0] + reconciler.getCount(BalanceReconciler.Kind.GAP);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public long sortAndScan() {
+        final Map<String, List<Transaction>> byAccount = new HashMap<>();
+        for (int i = 0; i < MESSAGES; i++) {
+            byAccount.computeIfAbsent(accounts[i], account -> new ArrayList<>()).add(transactions[i]);
+        }
+        long gaps = 0;
+        for (List<Transaction> account : byAccount.values()) {
+            account.sort(Comparator.comparing(Transaction::getDate));
+            final Set<String> seen = new HashSet<>();
+            long balance = 0;
+            boolean first = true;
+            for (Transaction transaction : account) {
+                if (!seen.add(transaction.getTransactionId())) {
+                    gaps++;
+                    continue;
+                }
+                final long reported, expected;
+                if (transaction instanceof MpambaDebitTransaction) {
+                    final MpambaDebitTransaction debit = (MpambaDebitTransaction) transaction;
+                    reported = debit.getBalanceMinor();
+                    expected = balance + debit.getAmountMinor();
+                } else {
+                    final MpambaCashOutTransaction cashOut = (MpambaCashOutTransaction) transaction;
+                    reported = cashOut.getBalanceMinor();
+                    expected = balance - cashOut.getAmountMinor() - cashOut.getFeeMinor();
+                }
+                if (!first && reported != expected) {
+                    gaps++;
+                }
+                balance = reported;
+                first = false;
+            }
+        }
+        return gaps;
+    }
+}
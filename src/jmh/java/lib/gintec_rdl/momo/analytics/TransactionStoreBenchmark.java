@@ -0,0 +1,149 @@
+package lib.gintec_rdl.momo.analytics;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import lib.gintec_rdl.momo.analytics.TransactionStore.Column;
+import lib.gintec_rdl.momo.model.MobileMoneyAgent;
+import lib.gintec_rdl.momo.model.MpambaCashOutTransaction;
+import lib.gintec_rdl.momo.model.MpambaCreditTransaction;
+import lib.gintec_rdl.momo.model.Transaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>
+ * Aggregates a year of synthetic transactions, half cash outs spread over
+ * 500 agents and half credits, once from the list of transaction objects
+ * and once from a {@link TransactionStore}. The heap taken by each is printed
+ * during setup.</p>
+ *
+ * @author CK
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransactionStoreBenchmark {
+
+    private static final int TRANSACTIONS = 200_000;
+    private static final ZoneId ZONE = ZoneId.of("Africa/Blantyre");
+
+    private List<Transaction> objects;
+    private TransactionStore store;
+
+    @Setup
+    public void setUp() {
+        final long before = usedHeap();
+        objects = new ArrayList<>(TRANSACTIONS);
+        final Random random = new Random(42);
+        final long start = 1_546_300_800_000L;
+        for (int i = 0; i < TRANSACTIONS; i++) {
+            final long date = start + (long) (random.nextDouble() * 365 * 86_400_000L);
+            if (i % 2 == 0) {
+                final MpambaCashOutTransaction cashOut = new MpambaCashOutTransaction();
+                final int agent = random.nextInt(500);
+                cashOut.setAgent(new MobileMoneyAgent(String.valueOf(100_000 + agent), "AGENT " + agent));
+                cashOut.setAmountMinor(random.nextInt(1_000_000));
+                cashOut.setFeeMinor(random.nextInt(10_000));
+                cashOut.setBalanceMinor(random.nextInt(10_000_000));
+                cashOut.setTransactionId(Long.toString(random.nextLong() & Long.MAX_VALUE, 36).toUpperCase());
+                cashOut.setDate(new Date(date));
+                objects.add(cashOut);
+            } else {
+                final MpambaCreditTransaction credit = new MpambaCreditTransaction();
+                credit.setRecipientPhone("0881" + (100_000 + random.nextInt(20_000)));
+                credit.setAmountMinor(random.nextInt(1_000_000));
+                credit.setFeeMinor(random.nextInt(10_000));
+                credit.setBalanceMinor(random.nextInt(10_000_000));
+                credit.setTransactionId(Long.toString(random.nextLong() & Long.MAX_VALUE, 36).toUpperCase());
+                credit.setDate(new Date(date));
+                objects.add(credit);
+            }
+        }
+        final long objectBytes = usedHeap() - before;
+        store = new TransactionStore(TRANSACTIONS).addAll(objects);
+        System.out.println();
+        System.out.println("objects: ~" + objectBytes / 1024 + " KiB, store: ~" + store.getMemoryUsage() / 1024
+            + " KiB for " + TRANSACTIONS + " transactions");
+    }
+
+    @Benchmark
+    public long objectsTotalFees() {
+        long total = 0;
+        for (Transaction transaction : objects) {
+            if (transaction instanceof MpambaCashOutTransaction) {
+                total += ((MpambaCashOutTransaction) transaction).getFeeMinor();
+            } else if (transaction instanceof MpambaCreditTransaction) {
+                total += ((MpambaCreditTransaction) transaction).getFeeMinor();
+            }
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long storeTotalFees() {
+        return store.sum(Column.FEE);
+    }
+
+    @Benchmark
+    public Map<String, Long> objectsAmountByAgent() {
+        final Map<String, Long> totals = new HashMap<>();
+        for (Transaction transaction : objects) {
+            if (transaction instanceof MpambaCashOutTransaction) {
+                final MpambaCashOutTransaction cashOut = (MpambaCashOutTransaction) transaction;
+                totals.merge(cashOut.getAgent().getAgentCode(), cashOut.getAmountMinor(), Long::sum);
+            }
+        }
+        return totals;
+    }
+
+    @Benchmark
+    public Map<String, Long> storeAmountByAgent() {
+        return store.sumByAgent(Column.AMOUNT);
+    }
+
+    @Benchmark
+    public SortedMap<LocalDate, Long> objectsAmountByDay() {
+        final SortedMap<LocalDate, Long> totals = new TreeMap<>();
+        for (Transaction transaction : objects) {
+            final long amount = transaction instanceof MpambaCashOutTransaction
+                ? ((MpambaCashOutTransaction) transaction).getAmountMinor()
+                : ((MpambaCreditTransaction) transaction).getAmountMinor();
+            totals.merge(transaction.getDate().toInstant().atZone(ZONE).toLocalDate(), amount, Long::sum);
+        }
+        return totals;
+    }
+
+    @Benchmark
+    public SortedMap<LocalDate, Long> storeAmountByDay() {
+        return store.sumByDay(Column.AMOUNT, ZONE);
+    }
+
+    private static long usedHeap() {
+        final Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
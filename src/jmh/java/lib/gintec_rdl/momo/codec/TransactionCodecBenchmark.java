@@ -0,0 +1,118 @@
+package lib.gintec_rdl.momo.codec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import lib.gintec_rdl.momo.SampleMessages;
+import lib.gintec_rdl.momo.extractors.MpambaTransactionExtractor;
+import lib.gintec_rdl.momo.model.Transaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * <p>
+ * Writes and reads a batch of transactions of every model class with the
+ * binary codec and with Java serialization. Each transaction of the batch is
+ * extracted separately, so Java serialization gets no back references to
+ * shared strings; the binary codec shares them through its dictionary. The
+ * size of each encoding is printed during setup.</p>
+ *
+ * @author CK
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransactionCodecBenchmark {
+
+    private static final int BATCH = 1000;
+
+    private final List<Transaction> batch = new ArrayList<>(BATCH);
+    private final TransactionEncoder encoder = new TransactionEncoder();
+    private final TransactionDecoder decoder = new TransactionDecoder();
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 20);
+    private byte[] serialized;
+
+    @Setup
+    public void setUp() throws Exception {
+        final MpambaTransactionExtractor mpamba = new MpambaTransactionExtractor();
+        for (int i = 0; batch.size() < BATCH; i++) {
+            final Transaction transaction = mpamba.extract(SampleMessages.MPAMBA,
+                SampleMessages.MPAMBA_MIX[i % SampleMessages.MPAMBA_MIX.length], null);
+            if (transaction != null) {
+                batch.add(transaction);
+            }
+        }
+        binaryEncode();
+        javaSerialize();
+        serialized = bytes.toByteArray();
+        System.out.println();
+        System.out.println("binary: " + buffer.position() + " bytes, java serialization: " + serialized.length
+            + " bytes for " + BATCH + " transactions");
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int binaryEncode() {
+        encoder.reset();
+        buffer.clear();
+        for (Transaction transaction : batch) {
+            encoder.encode(transaction, buffer);
+        }
+        return buffer.position();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void binaryDecode(Blackhole blackhole) {
+        final ByteBuffer in = buffer.duplicate();
+        in.flip();
+        decoder.reset();
+        Transaction transaction;
+        while ((transaction = decoder.decode(in)) != null) {
+            blackhole.consume(transaction);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int javaSerialize() throws IOException {
+        bytes.reset();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            for (Transaction transaction : batch) {
+                out.writeObject(transaction);
+            }
+        }
+        return bytes.size();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void javaDeserialize(Blackhole blackhole) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serialized))) {
+            for (int i = 0; i < BATCH; i++) {
+                blackhole.consume(in.readObject());
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package lib.gintec_rdl.momo.extraction;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import lib.gintec_rdl.momo.SampleMessages;
+import lib.gintec_rdl.momo.extractors.MpambaTransactionExtractor;
+import lib.gintec_rdl.momo.model.Transaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>
+ * Platform against virtual threads at high concurrency. Every operation
+ * submits {@link #CONCURRENCY} messages at once, one task each, as a server
+ * handling that many requests would, and waits for all of them. The
+ * extractor optionally blocks after parsing, standing in for a lookup such
+ * as account enrichment: platform threads come from a fixed pool of
+ * {@link #PLATFORM_THREADS}, the usual request pool size, while virtual
+ * threads are created per task.</p>
+ * <p>
+ * The virtual runs need Java 21:</p>
+ * <pre>
+ *     PATH=$JDK21/bin:$PATH mvn -P benchmark test-compile exec:exec -Djmh.args="ExtractionExecutorBenchmark"
+ * </pre>
+ *
+ * @author CK
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExtractionExecutorBenchmark {
+
+    public static final int CONCURRENCY = 10_000;
+
+    public static final int PLATFORM_THREADS = 200;
+
+    private static final String SENDER = "BLOCKING";
+
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    @Param({"0", "1000"})
+    public long blockMicros;
+
+    private ExecutorService executor;
+    private SmsMessage[] messages;
+
+    /**
+     * Parses like the M-Pamba extractor, then blocks for the configured time.
+     */
+    public static final class BlockingTransactionExtractor extends TransactionExtractor {
+
+        private final MpambaTransactionExtractor delegate = new MpambaTransactionExtractor();
+        private final long blockNanos;
+
+        BlockingTransactionExtractor(long blockNanos) {
+            this.blockNanos = blockNanos;
+        }
+
+        @Override
+        public Transaction extract(String serviceNumber, String input, Map<String, String> extras) throws Exception {
+            final Transaction transaction = delegate.extract(SampleMessages.MPAMBA, input, extras);
+            if (blockNanos > 0) {
+                LockSupport.parkNanos(blockNanos);
+            }
+            return transaction;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        ExtractionService.getInstance().replaceExtractor(SENDER, new BlockingTransactionExtractor(TimeUnit.MICROSECONDS.toNanos(blockMicros)));
+        messages = new SmsMessage[CONCURRENCY];
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = new SmsMessage(SENDER, SampleMessages.MPAMBA_MIX[i % SampleMessages.MPAMBA_MIX.length]);
+        }
+        if ("virtual".equals(threads)) {
+            try {
+                // Compiled for Java 8: look the factory up at run time
+                executor = (ExecutorService) MethodHandles.publicLookup()
+                    .findStatic(Executors.class, "newVirtualThreadPerTaskExecutor", MethodType.methodType(ExecutorService.class))
+                    .invoke();
+            } catch (NoSuchMethodException e) {
+                throw new UnsupportedOperationException("Virtual threads need Java 21", e);
+            }
+        } else {
+            executor = Executors.newFixedThreadPool(PLATFORM_THREADS);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+    }
+
+    @Benchmark
+    public Object extractConcurrently() {
+        final ExtractionService service = ExtractionService.getInstance();
+        final CompletableFuture<?>[] futures = new CompletableFuture<?>[messages.length];
+        for (int i = 0; i < messages.length; i++) {
+            futures[i] = service.extractAsync(messages[i], executor);
+        }
+        return CompletableFuture.allOf(futures).join();
+    }
+}
@@ -0,0 +1,121 @@
+package lib.gintec_rdl.momo.extraction;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import lib.gintec_rdl.momo.SampleMessages;
+import lib.gintec_rdl.momo.extractors.MpambaTransactionExtractor;
+
+/**
+ * <p>
+ * Overloads an {@link ExtractionPipeline}: producer threads offer messages
+ * as fast as they can and wait for {@link ExtractionPipeline#whenWritable()}
+ * whenever it is full. Every second it prints the delivered and refused
+ * messages, the pending count and the heap left after the last collection,
+ * which should stay flat while throughput holds steady.</p>
+ * <pre>
+ *     mvn -P benchmark test-compile exec:exec \
+ *         -Djmh.main=lib.gintec_rdl.momo.extraction.ExtractionPipelineLoadTest -Djmh.args="30 2 1024"
+ * </pre>
+ * <p>
+ * Arguments: seconds to run, producer threads and pipeline capacity.</p>
+ *
+ * @author CK
+ */
+public final class ExtractionPipelineLoadTest {
+
+    public static void main(String[] args) throws Exception {
+        final int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 30;
+        final int producers = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        final int capacity = args.length > 2 ? Integer.parseInt(args[2]) : ExtractionPipeline.DEFAULT_CAPACITY;
+        final int parallelism = Runtime.getRuntime().availableProcessors();
+
+        final ExtractionService service = ExtractionService.getInstance()
+            .registerExtractor(SampleMessages.MPAMBA, MpambaTransactionExtractor.class);
+        final ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        final LongAdder extracted = new LongAdder();
+        final ExtractionPipeline pipeline = new ExtractionPipeline(service, executor, parallelism, capacity,
+            SmsMessage::getSender, result -> {
+                if (result.getTransaction() != null) {
+                    extracted.increment();
+                }
+            });
+
+        final SmsMessage[] messages = new SmsMessage[SampleMessages.MPAMBA_MIX.length];
+        for (int i = 0; i < SampleMessages.MPAMBA_MIX.length; i++) {
+            messages[i] = new SmsMessage(SampleMessages.MPAMBA, SampleMessages.MPAMBA_MIX[i]);
+        }
+
+        final Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            final int offset = p;
+            threads[p] = new Thread(() -> {
+                try {
+                    for (long i = offset; ; i++) {
+                        final SmsMessage message = messages[(int) (i % messages.length)];
+                        while (!pipeline.offer(message)) {
+                            pipeline.whenWritable().join();
+                        }
+                    }
+                } catch (IllegalStateException shutDown) {
+                    // Done
+                }
+            }, "producer-" + p);
+            threads[p].setDaemon(true);
+            threads[p].start();
+        }
+
+        System.out.printf("%d producers, parallelism %d, capacity %d%n", producers, parallelism, capacity);
+        System.out.printf("%6s %12s %12s %8s %14s%n", "second", "delivered/s", "refused/s", "pending", "heap after GC");
+        long lastDelivered = 0, lastRejected = 0;
+        long minRate = Long.MAX_VALUE, maxRate = 0, firstHeap = 0, maxHeap = 0;
+        for (int second = 1; second <= seconds; second++) {
+            TimeUnit.SECONDS.sleep(1);
+            final long delivered = pipeline.getDeliveredCount();
+            final long rejected = pipeline.getRejectedCount();
+            final long heap = heapAfterGc();
+            final long rate = delivered - lastDelivered;
+            System.out.printf("%6d %12d %12d %8d %11d KiB%n", second, rate, rejected - lastRejected,
+                pipeline.getPendingCount(), heap / 1024);
+            lastDelivered = delivered;
+            lastRejected = rejected;
+            // Leave out the warm-up
+            if (second > Math.min(5, seconds / 2)) {
+                minRate = Math.min(minRate, rate);
+                maxRate = Math.max(maxRate, rate);
+                firstHeap = firstHeap == 0 ? heap : firstHeap;
+                maxHeap = Math.max(maxHeap, heap);
+            }
+        }
+        pipeline.shutdown().get(10, TimeUnit.SECONDS);
+        executor.shutdown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        System.out.printf("steady state: %d-%d delivered/s, heap after GC %d-%d KiB, %d extracted in total%n",
+            minRate, maxRate, firstHeap / 1024, maxHeap / 1024, extracted.sum());
+    }
+
+    /**
+     * @return Heap in use right after the last collection of each pool
+     */
+    private static long heapAfterGc() {
+        long used = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            final MemoryUsage usage = pool.getCollectionUsage();
+            if (pool.getType() == MemoryType.HEAP && usage != null) {
+                used += usage.getUsed();
+            }
+        }
+        return used;
+    }
+
+    private ExtractionPipelineLoadTest() {
+    }
+}
@@ -0,0 +1,72 @@
+package lib.gintec_rdl.momo.extraction;
+
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import lib.gintec_rdl.momo.SampleMessages;
+import lib.gintec_rdl.momo.extractors.MpambaTransactionExtractor;
+import lib.gintec_rdl.momo.utils.LocaleUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>
+ * Cost of structured results for valid and malformed messages, and of
+ * reporting a bad timestamp with a sentinel instead of an exception.</p>
+ *
+ * @author CK
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExtractionResultBenchmark {
+
+    private static final String BAD_DATE = "12/13/2019 12:12:07";
+
+    private final SmsMessage valid = new SmsMessage(SampleMessages.MPAMBA, SampleMessages.MPAMBA_CASH_OUT, null);
+    private final SmsMessage invalid = new SmsMessage(SampleMessages.MPAMBA,
+        SampleMessages.MPAMBA_CASH_OUT.replace("12/05/2019", BAD_DATE.substring(0, 10)), null);
+    private ExtractionService service;
+
+    @Setup
+    public void setUp() {
+        service = ExtractionService.getInstance()
+            .registerExtractor(SampleMessages.MPAMBA, MpambaTransactionExtractor.class);
+    }
+
+    @Benchmark
+    public ExtractionResult validMessage() {
+        return service.extract(valid);
+    }
+
+    @Benchmark
+    public ExtractionResult invalidMessage() {
+        return service.extract(invalid);
+    }
+
+    @Benchmark
+    public Date badDateSentinel() {
+        return LocaleUtils.tryParseDate(BAD_DATE, 0, BAD_DATE.length());
+    }
+
+    @Benchmark
+    public Date badDateException() {
+        try {
+            return LocaleUtils.parseDate(BAD_DATE);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
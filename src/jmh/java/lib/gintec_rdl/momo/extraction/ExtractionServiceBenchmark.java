@@ -0,0 +1,71 @@
+package lib.gintec_rdl.momo.extraction;
+
+import java.util.concurrent.TimeUnit;
+
+import lib.gintec_rdl.momo.SampleMessages;
+import lib.gintec_rdl.momo.extractors.MpambaTransactionExtractor;
+import lib.gintec_rdl.momo.model.Transaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>
+ * Throughput and latency of {@link ExtractionService#extract} on the shared
+ * singleton, fed with a mix of every MPAMBA format. The same workload runs on
+ * one thread and on as many threads as there are cores.</p>
+ *
+ * @author CK
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExtractionServiceBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Service {
+
+        ExtractionService service;
+
+        @Setup
+        public void setUp() {
+            service = ExtractionService.getInstance()
+                .registerExtractor(SampleMessages.MPAMBA, MpambaTransactionExtractor.class);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        int index;
+
+        String next() {
+            final String[] mix = SampleMessages.MPAMBA_MIX;
+            final String input = mix[index];
+            index = index + 1 == mix.length ? 0 : index + 1;
+            return input;
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Transaction singleThread(Service service, Cursor cursor) {
+        return service.service.extract(SampleMessages.MPAMBA, cursor.next(), null, Transaction.class);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Transaction allCores(Service service, Cursor cursor) {
+        return service.service.extract(SampleMessages.MPAMBA, cursor.next(), null, Transaction.class);
+    }
+}
@@ -0,0 +1,94 @@
+package lib.gintec_rdl.momo.extraction;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import lib.gintec_rdl.momo.SampleMessages;
+import lib.gintec_rdl.momo.extractors.MpambaTransactionExtractor;
+import lib.gintec_rdl.momo.model.Transaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>
+ * Registry contention in {@link ExtractionService}. The lookup benchmarks
+ * isolate {@link ExtractionService#getInstance()} and
+ * {@link ExtractionService#getExtractor(java.lang.String)}; the extract
+ * benchmarks add the cheapest possible extractor so the registry dominates.
+ * Total throughput should grow with the thread count up to the number of
+ * cores.</p>
+ *
+ * @author CK
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExtractionServiceContentionBenchmark {
+
+    private static final String NOOP = "NOOP";
+
+    private static final Transaction TRANSACTION = new Transaction();
+
+    public static final class NoopTransactionExtractor extends TransactionExtractor {
+
+        @Override
+        public Transaction extract(String serviceNumber, String input, Map<String, String> extras) {
+            return TRANSACTION;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        ExtractionService.getInstance()
+            .registerExtractor(SampleMessages.MPAMBA, MpambaTransactionExtractor.class)
+            .registerExtractor(NOOP, NoopTransactionExtractor.class);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public TransactionExtractor lookup1() {
+        return ExtractionService.getInstance().getExtractor(SampleMessages.MPAMBA);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public TransactionExtractor lookup4() {
+        return ExtractionService.getInstance().getExtractor(SampleMessages.MPAMBA);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public TransactionExtractor lookupMax() {
+        return ExtractionService.getInstance().getExtractor(SampleMessages.MPAMBA);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Transaction extract1() {
+        return ExtractionService.getInstance().extract(NOOP, SampleMessages.MPAMBA_CASH_IN, null, Transaction.class);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Transaction extract4() {
+        return ExtractionService.getInstance().extract(NOOP, SampleMessages.MPAMBA_CASH_IN, null, Transaction.class);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Transaction extractMax() {
+        return ExtractionService.getInstance().extract(NOOP, SampleMessages.MPAMBA_CASH_IN, null, Transaction.class);
+    }
+}
@@ -0,0 +1,95 @@
+package lib.gintec_rdl.momo.extraction;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import lib.gintec_rdl.momo.SampleMessages;
+import lib.gintec_rdl.momo.extractors.MpambaTransactionExtractor;
+import lib.gintec_rdl.momo.model.MpambaCashOutTransaction;
+import lib.gintec_rdl.momo.model.Transaction;
+import lib.gintec_rdl.momo.template.TemplateTransactionExtractor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>
+ * Cost of a {@link FallbackTransactionExtractor} on legacy, revised and mixed
+ * cash out traffic, against trying every candidate in fixed order.</p>
+ *
+ * @author CK
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FallbackTransactionExtractorBenchmark {
+
+    private static final String REVISED = "Cash Out to AGENT SMITH - 1234567 on 12/05/2019 12:12:07.\n"
+        + "Amount: 7,200.00MWK Charge: 380.00MWK\n"
+        + "TxnID: 8GHABCGDTF Balance: 1,581.00MWK";
+
+    @Param({"LEGACY", "REVISED", "MIXED"})
+    public String traffic;
+
+    private final TransactionExtractor[] candidates = {
+        new MpambaTransactionExtractor(),
+        new TemplateTransactionExtractor(SampleMessages.MPAMBA).register("CASH_OUT", MpambaCashOutTransaction.class,
+            "Cash Out to {agent.agentName} - {agent.agentCode} on {date}.\n"
+            + "Amount: {amount}MWK Charge: {fee}MWK\nTxnID: {transactionId} Balance: {balance}MWK")
+    };
+    private final FallbackTransactionExtractor chain = new FallbackTransactionExtractor(candidates);
+    private String[] messages;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        switch (traffic) {
+            case "LEGACY":
+                messages = new String[]{SampleMessages.MPAMBA_CASH_OUT};
+                break;
+            case "REVISED":
+                messages = new String[]{REVISED};
+                break;
+            default:
+                // One legacy message in sixteen
+                messages = new String[16];
+                Arrays.fill(messages, REVISED);
+                messages[0] = SampleMessages.MPAMBA_CASH_OUT;
+                break;
+        }
+    }
+
+    @Benchmark
+    public Transaction chain() throws Exception {
+        return chain.extract(SampleMessages.MPAMBA, message(), null);
+    }
+
+    @Benchmark
+    public Transaction fixedOrder() throws Exception {
+        final String message = message();
+        for (TransactionExtractor candidate : candidates) {
+            final Transaction transaction = candidate.extract(SampleMessages.MPAMBA, message, null);
+            if (transaction != null && transaction.getTransactionId() != null) {
+                return transaction;
+            }
+        }
+        return null;
+    }
+
+    private String message() {
+        final String message = messages[next];
+        next = (next + 1) % messages.length;
+        return message;
+    }
+}
@@ -0,0 +1,103 @@
+package lib.gintec_rdl.momo.extraction;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import lib.gintec_rdl.momo.SampleMessages;
+import lib.gintec_rdl.momo.extractors.MpambaMessageType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>
+ * Message classification with {@link PrefixClassifier} against a chain of
+ * {@link String#startsWith(java.lang.String)} calls.</p>
+ * <p>
+ * Traffic is a realistic inbox mix: every MPAMBA format plus promotional,
+ * OTP and other non-transaction messages, some of which share the first
+ * words of a real format. The {@code formats} parameter pads the registry
+ * with additional synthetic formats to show how each approach scales.</p>
+ *
+ * @author CK
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrefixClassifierBenchmark {
+
+    private static final String[] NON_MATCHING = {
+        "Your OTP is 123456. Do not share it with anyone.",
+        "Dear customer, enjoy 50% bonus on all bundles this weekend.",
+        "Money Sent successfully? Reply YES to confirm.",
+        "Cash In promotion: win up to MK100,000 every week!",
+        "Hello, are we still meeting tomorrow?",
+        "Deposit reminder: your loan repayment is due on 12/05/2019."
+    };
+
+    @Param({"6", "64", "512"})
+    public int formats;
+
+    private final PrefixClassifier<Object> classifier = new PrefixClassifier<>();
+    private String[] prefixes;
+    private String[] traffic;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        final List<String> all = new ArrayList<>();
+        for (MpambaMessageType type : MpambaMessageType.values()) {
+            all.add(type.getPrefix());
+        }
+        for (int i = all.size(); i < formats; i++) {
+            all.add("Format " + i + " notice from ");
+        }
+        prefixes = all.toArray(new String[0]);
+        for (String prefix : prefixes) {
+            classifier.register(prefix, prefix);
+        }
+
+        final List<String> mix = new ArrayList<>();
+        for (String message : SampleMessages.MPAMBA_MIX) {
+            mix.add(message);
+        }
+        for (String message : NON_MATCHING) {
+            mix.add(message);
+        }
+        traffic = mix.toArray(new String[0]);
+    }
+
+    private String next() {
+        final String input = traffic[index];
+        index = index + 1 == traffic.length ? 0 : index + 1;
+        return input;
+    }
+
+    @Benchmark
+    public Object trie() {
+        return classifier.classify(next());
+    }
+
+    @Benchmark
+    public Object startsWithChain() {
+        final String input = next();
+        for (String prefix : prefixes) {
+            if (input.startsWith(prefix)) {
+                return prefix;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,116 @@
+package lib.gintec_rdl.momo.extraction;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import lib.gintec_rdl.momo.SampleMessages;
+import lib.gintec_rdl.momo.extractors.AirtelMoneyTransactionExtractor;
+import lib.gintec_rdl.momo.extractors.MpambaTransactionExtractor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>
+ * Sender routing over the spellings phones actually deliver. Senders are
+ * drawn from a fixed mix: mostly the canonical "MPAMBA", then case and
+ * spacing variants, a provider phone number in two forms and personal
+ * numbers that match nothing. {@link #routed()} resolves through
+ * {@link ExtractionService#getExtractor(java.lang.String)}, which tries the
+ * exact sender first; {@link #normalizeThenLookup()} is the usual workaround
+ * of normalizing every sender with string operations before the lookup.</p>
+ *
+ * @author CK
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SenderRouterBenchmark {
+
+    private static final String PROVIDER_NUMBER = "+265 999 000 123";
+
+    private final String[] senders = new String[1024];
+    private final Map<String, String> normalized = new HashMap<>();
+    private final SenderRouter router = new SenderRouter();
+    private ExtractionService service;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        service = ExtractionService.getInstance()
+            .registerExtractor(SampleMessages.MPAMBA, MpambaTransactionExtractor.class)
+            .registerExtractor(SampleMessages.AIRTEL_MONEY, AirtelMoneyTransactionExtractor.class)
+            .registerAlias(PROVIDER_NUMBER, SampleMessages.MPAMBA);
+        router.register(SampleMessages.MPAMBA, SampleMessages.MPAMBA)
+            .register(SampleMessages.AIRTEL_MONEY, SampleMessages.AIRTEL_MONEY)
+            .register(PROVIDER_NUMBER, SampleMessages.MPAMBA);
+        for (String alias : new String[]{SampleMessages.MPAMBA, SampleMessages.AIRTEL_MONEY}) {
+            normalized.put(normalize(alias), alias);
+        }
+        normalized.put(normalize(PROVIDER_NUMBER), SampleMessages.MPAMBA);
+
+        final Random random = new Random(42);
+        for (int i = 0; i < senders.length; i++) {
+            final int draw = random.nextInt(100);
+            final String sender;
+            if (draw < 50) {
+                sender = "MPAMBA";
+            } else if (draw < 65) {
+                sender = "Mpamba";
+            } else if (draw < 75) {
+                sender = SampleMessages.AIRTEL_MONEY;
+            } else if (draw < 80) {
+                sender = "AIRTEL MONEY";
+            } else if (draw < 85) {
+                sender = "+265999000123";
+            } else if (draw < 90) {
+                sender = "00265 999 000 123";
+            } else {
+                sender = "+26588" + (1000000 + random.nextInt(9000000));
+            }
+            // Fresh instances, as decoded from each incoming message
+            senders[i] = new String(sender.toCharArray());
+        }
+    }
+
+    private String sender() {
+        return senders[next++ & (senders.length - 1)];
+    }
+
+    private static String normalize(String sender) {
+        String text = sender.trim().toUpperCase(Locale.ROOT).replaceAll("[\\s_.()-]", "");
+        if (text.startsWith("00")) {
+            text = "+" + text.substring(2);
+        }
+        return text;
+    }
+
+    @Benchmark
+    public TransactionExtractor routed() {
+        return service.getExtractor(sender());
+    }
+
+    @Benchmark
+    public String resolve() {
+        return router.resolve(sender());
+    }
+
+    @Benchmark
+    public TransactionExtractor normalizeThenLookup() {
+        final String sender = normalized.get(normalize(sender()));
+        return sender != null ? service.getExtractor(sender) : null;
+    }
+}
@@ -0,0 +1,154 @@
+package lib.gintec_rdl.momo.extraction;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import lib.gintec_rdl.momo.SampleMessages;
+import lib.gintec_rdl.momo.extractors.MpambaTransactionExtractor;
+
+/**
+ * <p>
+ * Runs the same workload on 1, 2, 4... worker processes on this machine and
+ * prints the combined throughput of each run, which should grow almost
+ * linearly up to the number of cores.</p>
+ * <p>
+ * Every process generates the same stream of messages spread over many
+ * accounts and, like a consumer of a partitioned queue, keeps only the
+ * messages that {@link MessagePartitioner#partitionOf(java.lang.CharSequence, int)}
+ * assigns to it. It warms up, then extracts its share on a
+ * {@link ShardedExtractionWorker} whose lanes are picked by
+ * {@link MessagePartitioner#byKey(java.util.function.Function, int)}, checks
+ * that the messages of every account were delivered in order and reports its
+ * time. Throughput is the whole stream divided by the time of the slowest
+ * process.</p>
+ * <pre>
+ *     mvn -P benchmark test-compile exec:exec \
+ *         -Djmh.main=lib.gintec_rdl.momo.extraction.ShardedWorkerScalingTest -Djmh.args="1,2,4 400000 2"
+ * </pre>
+ * <p>
+ * Arguments: process counts to run, messages in the stream and lanes per
+ * process.</p>
+ *
+ * @author CK
+ */
+public final class ShardedWorkerScalingTest {
+
+    private static final int ACCOUNTS = 10_000;
+    private static final String ACCOUNT = "account";
+    private static final String SEQUENCE = "sequence";
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("node")) {
+            node(Integer.parseInt(args[1]), Integer.parseInt(args[2]), Integer.parseInt(args[3]), Integer.parseInt(args[4]));
+            return;
+        }
+        final String[] counts = (args.length > 0 ? args[0] : "1,2,4").split(",");
+        final int messages = args.length > 1 ? Integer.parseInt(args[1]) : 400_000;
+        final int lanes = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+        final String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+
+        System.out.printf("%d messages, %d lanes per process, %d cores%n", messages, lanes, Runtime.getRuntime().availableProcessors());
+        System.out.printf("%9s %14s %8s %11s%n", "processes", "messages/s", "speedup", "efficiency");
+        double base = 0;
+        for (String count : counts) {
+            final int nodes = Integer.parseInt(count.trim());
+            final List<Process> processes = new ArrayList<>();
+            for (int node = 0; node < nodes; node++) {
+                processes.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                    ShardedWorkerScalingTest.class.getName(), "node", String.valueOf(node), String.valueOf(nodes),
+                    String.valueOf(messages), String.valueOf(lanes)).redirectErrorStream(true).start());
+            }
+            long slowest = 0, extracted = 0, disordered = 0;
+            for (Process process : processes) {
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (line.startsWith("DONE ")) {
+                            final String[] fields = line.split(" ");
+                            extracted += Long.parseLong(fields[1]);
+                            slowest = Math.max(slowest, Long.parseLong(fields[2]));
+                            disordered += Long.parseLong(fields[3]);
+                        } else {
+                            System.out.println(line);
+                        }
+                    }
+                }
+                if (process.waitFor() != 0) {
+                    throw new IllegalStateException("worker process failed");
+                }
+            }
+            if (extracted != messages || disordered != 0) {
+                throw new IllegalStateException(extracted + " of " + messages + " extracted, " + disordered + " out of order");
+            }
+            final double throughput = messages * 1e9 / slowest;
+            base = base == 0 ? throughput : base;
+            System.out.printf("%9d %14.0f %8.2f %10.0f%%%n", nodes, throughput, throughput / base, 100 * throughput / base / nodes);
+        }
+    }
+
+    /**
+     * Extracts the share of one process and prints
+     * {@code DONE <messages> <nanos> <out of order>}.
+     */
+    private static void node(int node, int nodes, int total, int lanes) throws Exception {
+        final ExtractionService service = ExtractionService.getInstance()
+            .registerExtractor(SampleMessages.MPAMBA, MpambaTransactionExtractor.class);
+        final List<SmsMessage> share = new ArrayList<>();
+        for (int i = 0; i < total; i++) {
+            final String account = "0881" + (100_000 + i % ACCOUNTS);
+            if (MessagePartitioner.partitionOf(account, nodes) == node) {
+                share.add(message(i, account));
+            }
+        }
+
+        final List<SmsMessage> warmUp = new ArrayList<>();
+        for (int i = 0; i < 200_000; i++) {
+            warmUp.add(message(i, "WARMUP" + i % 100));
+        }
+        run(service, warmUp, nodes, lanes);
+        System.gc();
+
+        final long start = System.nanoTime();
+        final long disordered = run(service, share, nodes, lanes);
+        final long elapsed = System.nanoTime() - start;
+        System.out.println("DONE " + share.size() + " " + elapsed + " " + disordered);
+    }
+
+    private static long run(ExtractionService service, List<SmsMessage> messages, int nodes, int lanes) throws InterruptedException {
+        final Map<String, Integer> last = new ConcurrentHashMap<>();
+        final LongAdder disordered = new LongAdder();
+        try (ShardedExtractionWorker worker = new ShardedExtractionWorker(service, lanes, ShardedExtractionWorker.DEFAULT_CAPACITY,
+            MessagePartitioner.byKey(message -> message.getExtras().get(ACCOUNT), nodes), result -> {
+                final Map<String, String> extras = result.getMessage().getExtras();
+                final int sequence = Integer.parseInt(extras.get(SEQUENCE));
+                final Integer previous = last.put(extras.get(ACCOUNT), sequence);
+                if (previous != null && previous >= sequence) {
+                    disordered.increment();
+                }
+            })) {
+            for (SmsMessage message : messages) {
+                worker.put(message);
+            }
+        }
+        return disordered.sum();
+    }
+
+    private static SmsMessage message(int i, String account) {
+        final String[] mix = SampleMessages.MPAMBA_MIX;
+        final Map<String, String> extras = new HashMap<>(4);
+        extras.put(ACCOUNT, account);
+        extras.put(SEQUENCE, String.valueOf(i));
+        return new SmsMessage(SampleMessages.MPAMBA, mix[i % mix.length], Collections.unmodifiableMap(extras));
+    }
+
+    private ShardedWorkerScalingTest() {
+    }
+}
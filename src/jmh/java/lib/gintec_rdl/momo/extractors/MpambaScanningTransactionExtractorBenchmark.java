@@ -0,0 +1,89 @@
+package lib.gintec_rdl.momo.extractors;
+
+import java.util.concurrent.TimeUnit;
+
+import lib.gintec_rdl.momo.SampleMessages;
+import lib.gintec_rdl.momo.extraction.ExtractionReport;
+import lib.gintec_rdl.momo.extraction.TransactionHolder;
+import lib.gintec_rdl.momo.model.Transaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>
+ * The scanning extractor against the regular expression extractor on the same
+ * message. Run with the GC profiler to compare allocation per message;
+ * {@link #scannerIntoHolder(Holder)} reuses a {@link TransactionHolder}, so
+ * only the transaction id should be allocated.</p>
+ *
+ * @author CK
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MpambaScanningTransactionExtractorBenchmark {
+
+    @Param({"CASH_IN", "LEGACY_CASH_IN", "CASH_OUT", "CREDIT", "DEBIT", "DEPOSIT"})
+    public MpambaMessageType type;
+
+    private final MpambaTransactionExtractor regex = new MpambaTransactionExtractor();
+    private final MpambaScanningTransactionExtractor scanner = new MpambaScanningTransactionExtractor();
+    private String message;
+
+    @Setup
+    public void setUp() {
+        switch (type) {
+            case CASH_IN:
+                message = SampleMessages.MPAMBA_CASH_IN;
+                break;
+            case LEGACY_CASH_IN:
+                message = SampleMessages.MPAMBA_LEGACY_CASH_IN;
+                break;
+            case CASH_OUT:
+                message = SampleMessages.MPAMBA_CASH_OUT;
+                break;
+            case CREDIT:
+                message = SampleMessages.MPAMBA_CREDIT;
+                break;
+            case DEBIT:
+                message = SampleMessages.MPAMBA_DEBIT;
+                break;
+            default:
+                message = SampleMessages.MPAMBA_DEPOSIT;
+                break;
+        }
+    }
+
+    @Benchmark
+    public Transaction regex() throws Exception {
+        return regex.extract(SampleMessages.MPAMBA, message, null);
+    }
+
+    @Benchmark
+    public Transaction scanner() throws Exception {
+        return scanner.extract(SampleMessages.MPAMBA, message, null);
+    }
+
+    @State(Scope.Thread)
+    public static class Holder {
+
+        final TransactionHolder holder = new TransactionHolder();
+    }
+
+    @Benchmark
+    public Transaction scannerIntoHolder(Holder holder) throws Exception {
+        return scanner.extract(SampleMessages.MPAMBA, message, null, holder.holder, ExtractionReport.ignoring());
+    }
+}
@@ -0,0 +1,102 @@
+package lib.gintec_rdl.momo.extractors;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import lib.gintec_rdl.momo.SampleMessages;
+import lib.gintec_rdl.momo.model.MobileMoneyAgent;
+import lib.gintec_rdl.momo.model.MpambaCashOutTransaction;
+import lib.gintec_rdl.momo.model.Transaction;
+import lib.gintec_rdl.momo.utils.TextUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>
+ * Per-message cost of each {@link MpambaTransactionExtractor} branch.</p>
+ * <p>
+ * {@link #compiledPerMessage()} keeps the previous implementation, which
+ * compiled its pattern and built a {@link SimpleDateFormat} on every call, as
+ * a baseline for {@link #cashOut()}.</p>
+ *
+ * @author CK
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MpambaTransactionExtractorBenchmark {
+
+    private final MpambaTransactionExtractor extractor = new MpambaTransactionExtractor();
+
+    @Benchmark
+    public Transaction cashIn() throws Exception {
+        return extractor.extract(SampleMessages.MPAMBA, SampleMessages.MPAMBA_CASH_IN, null);
+    }
+
+    @Benchmark
+    public Transaction legacyCashIn() throws Exception {
+        return extractor.extract(SampleMessages.MPAMBA, SampleMessages.MPAMBA_LEGACY_CASH_IN, null);
+    }
+
+    @Benchmark
+    public Transaction cashOut() throws Exception {
+        return extractor.extract(SampleMessages.MPAMBA, SampleMessages.MPAMBA_CASH_OUT, null);
+    }
+
+    @Benchmark
+    public Transaction credit() throws Exception {
+        return extractor.extract(SampleMessages.MPAMBA, SampleMessages.MPAMBA_CREDIT, null);
+    }
+
+    @Benchmark
+    public Transaction debit() throws Exception {
+        return extractor.extract(SampleMessages.MPAMBA, SampleMessages.MPAMBA_DEBIT, null);
+    }
+
+    @Benchmark
+    public Transaction deposit() throws Exception {
+        return extractor.extract(SampleMessages.MPAMBA, SampleMessages.MPAMBA_DEPOSIT, null);
+    }
+
+    @Benchmark
+    public Transaction compiledPerMessage() throws Exception {
+        final Pattern pattern = Pattern.compile(
+                "^Cash Out to (.+) - (.+) on ([0-9]{2}/[0-9]{2}/[0-9]{4} [0-9]{2}:[0-9]{2}:[0-9]{2}).$|^Amt: ([,0-9]+\\.00)MWK.*$|^Fee: ([,0-9]+\\.00)MWK.*$|^Ref: ([A-Z0-9]+)\\s*$|^Bal: ([,0-9]+\\.00)MWK\\s*$",
+                Pattern.MULTILINE
+        );
+        final DateFormat dateFormat = new SimpleDateFormat("dd/MM/yyyy HH:mm:ss", Locale.US);
+        final MpambaCashOutTransaction transaction = new MpambaCashOutTransaction();
+        final Matcher matcher = pattern.matcher(SampleMessages.MPAMBA_CASH_OUT);
+        if (matcher.find()) {
+            transaction.setAgent(new MobileMoneyAgent(matcher.group(2), matcher.group(1)));
+            transaction.setDate(dateFormat.parse(matcher.group(3)));
+        }
+        if (matcher.find()) {
+            transaction.setAmount(TextUtils.currency(matcher.group(4)));
+        }
+        if (matcher.find()) {
+            transaction.setFee(TextUtils.currency(matcher.group(5)));
+        }
+        if (matcher.find()) {
+            transaction.setTransactionId(matcher.group(6));
+        }
+        if (matcher.find()) {
+            transaction.setBalance(TextUtils.currency(matcher.group(7)));
+        }
+        return transaction;
+    }
+}
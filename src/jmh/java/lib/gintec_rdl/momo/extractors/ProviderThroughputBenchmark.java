@@ -0,0 +1,43 @@
+package lib.gintec_rdl.momo.extractors;
+
+import java.util.concurrent.TimeUnit;
+
+import lib.gintec_rdl.momo.SampleMessages;
+import lib.gintec_rdl.momo.model.Transaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>
+ * Throughput of the regular expression extractors of each provider over a
+ * rotating mix of all their formats, on the shared
+ * {@link lib.gintec_rdl.momo.extraction.PatternTransactionExtractor} core.</p>
+ *
+ * @author CK
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProviderThroughputBenchmark {
+
+    private final MpambaTransactionExtractor mpamba = new MpambaTransactionExtractor();
+    private int mpambaNext;
+
+    @Benchmark
+    public Transaction mpamba() throws Exception {
+        final String[] mix = SampleMessages.MPAMBA_MIX;
+        final String message = mix[mpambaNext];
+        mpambaNext = (mpambaNext + 1) % mix.length;
+        return mpamba.extract(SampleMessages.MPAMBA, message, null);
+    }
+}
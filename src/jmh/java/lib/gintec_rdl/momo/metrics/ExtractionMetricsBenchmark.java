@@ -0,0 +1,75 @@
+package lib.gintec_rdl.momo.metrics;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import lib.gintec_rdl.momo.extraction.ExtractionService;
+import lib.gintec_rdl.momo.extraction.TransactionExtractor;
+import lib.gintec_rdl.momo.model.Transaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>
+ * Overhead of {@link ExtractionMetrics} on {@link ExtractionService#extract}
+ * with an extractor that does no work, with monitoring off and on.</p>
+ *
+ * @author CK
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExtractionMetricsBenchmark {
+
+    private static final String SENDER = "METRICS";
+
+    private static final Transaction TRANSACTION = new Transaction();
+
+    public static final class NoopTransactionExtractor extends TransactionExtractor {
+
+        @Override
+        public Transaction extract(String serviceNumber, String input, Map<String, String> extras) {
+            return TRANSACTION;
+        }
+    }
+
+    @Param({"false", "true"})
+    public boolean monitored;
+
+    @Setup
+    public void setUp() {
+        ExtractionService.getInstance()
+            .registerExtractor(SENDER, NoopTransactionExtractor.class)
+            .setMonitor(monitored ? new ExtractionMetrics() : null);
+    }
+
+    @TearDown
+    public void tearDown() {
+        ExtractionService.getInstance().setMonitor(null);
+    }
+
+    @Benchmark
+    public Transaction extract() {
+        return ExtractionService.getInstance().extract(SENDER, "message", null, Transaction.class);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Transaction extractAllCores() {
+        return ExtractionService.getInstance().extract(SENDER, "message", null, Transaction.class);
+    }
+}
@@ -0,0 +1,50 @@
+package lib.gintec_rdl.momo.template;
+
+import java.util.concurrent.TimeUnit;
+
+import lib.gintec_rdl.momo.SampleMessages;
+import lib.gintec_rdl.momo.extractors.MpambaTransactionExtractor;
+import lib.gintec_rdl.momo.model.MpambaCashOutTransaction;
+import lib.gintec_rdl.momo.model.Transaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>
+ * Cost of a compiled {@link MessageTemplate} against the hand-written
+ * extractor for the same cash out format.</p>
+ *
+ * @author CK
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageTemplateBenchmark {
+
+    private final MpambaTransactionExtractor mpamba = new MpambaTransactionExtractor();
+
+    private final TemplateTransactionExtractor mpambaTemplate = new TemplateTransactionExtractor(SampleMessages.MPAMBA)
+        .register("CASH_OUT", MpambaCashOutTransaction.class,
+            "Cash Out to {agent.agentName} - {agent.agentCode} on {date}.\n"
+            + "Amt: {amount}MWK\nFee: {fee}MWK.\nRef: {transactionId}\nBal: {balance}MWK");
+
+    @Benchmark
+    public Transaction mpambaHandWritten() throws Exception {
+        return mpamba.extract(SampleMessages.MPAMBA, SampleMessages.MPAMBA_CASH_OUT, null);
+    }
+
+    @Benchmark
+    public Transaction mpambaTemplate() throws Exception {
+        return mpambaTemplate.extract(SampleMessages.MPAMBA, SampleMessages.MPAMBA_CASH_OUT, null);
+    }
+}
@@ -0,0 +1,74 @@
+package lib.gintec_rdl.momo.utils;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>
+ * Parsing and formatting a message timestamp with a {@link SimpleDateFormat}
+ * created per call, with {@link LocaleUtils#DATE_FORMATTER} and with a
+ * {@link TimestampCodec}. Run with the GC profiler to compare allocation;
+ * the codec should allocate nothing.</p>
+ *
+ * @author CK
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimestampCodecBenchmark {
+
+    private static final String TIMESTAMP = "Cash In from 123456-JOHN DOE on 06/05/2019 14:00:50.";
+    private static final int START = 32;
+
+    private final TimestampCodec codec = new TimestampCodec(LocaleUtils.MALAWI);
+    private final StringBuilder out = new StringBuilder(TimestampCodec.LENGTH);
+    private final long time = codec.parse(TIMESTAMP, START, START + TimestampCodec.LENGTH);
+
+    @Benchmark
+    public Date parseSimpleDateFormat() throws ParseException {
+        final SimpleDateFormat format = new SimpleDateFormat("dd/MM/yyyy HH:mm:ss", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone(LocaleUtils.MALAWI));
+        return format.parse(TIMESTAMP.substring(START, START + TimestampCodec.LENGTH));
+    }
+
+    @Benchmark
+    public long parseDateTimeFormatter() {
+        return LocalDateTime.parse(TIMESTAMP.subSequence(START, START + TimestampCodec.LENGTH), LocaleUtils.DATE_FORMATTER)
+            .atZone(LocaleUtils.MALAWI).toInstant().toEpochMilli();
+    }
+
+    @Benchmark
+    public long parseCodec() {
+        return codec.tryParse(TIMESTAMP, START, START + TimestampCodec.LENGTH);
+    }
+
+    @Benchmark
+    public String formatDateTimeFormatter() {
+        return LocaleUtils.DATE_FORMATTER.format(LocalDateTime.ofInstant(new Date(time).toInstant(), ZoneId.of("Africa/Blantyre")));
+    }
+
+    @Benchmark
+    public int formatCodec() {
+        out.setLength(0);
+        return codec.format(time, out).length();
+    }
+}
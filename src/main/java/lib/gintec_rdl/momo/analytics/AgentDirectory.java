@@ -0,0 +1,358 @@
+package lib.gintec_rdl.momo.analytics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import lib.gintec_rdl.momo.model.MobileMoneyAgent;
+import lib.gintec_rdl.momo.model.Transaction;
+
+/**
+ * <p>
+ * A shared directory of agents, interned by sender and agent code, with
+ * running totals per agent.</p>
+ * <p>
+ * Extractors create a new {@link MobileMoneyAgent} for every cash-in and
+ * cash-out message although the same few thousand agents come back again and
+ * again. {@link #record(java.lang.String, lib.gintec_rdl.momo.model.Transaction)}
+ * replaces the agent of a transaction with the one instance the directory
+ * keeps for its code, so transactions of one agent share it and can be
+ * compared with {@code ==}, and adds the transaction to the agent's count,
+ * volume and last seen date. Providers number their agents independently, so
+ * agents are kept per sender: the same code from two senders is two
+ * agents.</p>
+ * <pre>
+ *     AgentDirectory agents = new AgentDirectory();
+ *     ExtractionService.getInstance().setAgentDirectory(agents);
+ *     ...
+ *     AgentDirectory.Stats stats = agents.getStats("MPAMBA", "12345");
+ * </pre>
+ * <p>
+ * Lookups do not lock and the counters of different agents do not contend,
+ * so the directory may be shared by all extraction threads. When an agent
+ * comes with a new name for a known code, the directory keeps its counters
+ * and hands out an agent with the new name from then on.</p>
+ * <p>
+ * The directory holds at most its maximum size of agents. Once it is full,
+ * the agents used least recently are dropped with their counters; an agent
+ * that comes back afterwards starts again from zero with a new instance.
+ * Interned agents are shared and must not be modified.</p>
+ *
+ * @author CK
+ */
+public final class AgentDirectory {
+
+    public static final int DEFAULT_MAXIMUM_SIZE = 65536;
+
+    /**
+     * Agents by code, per sender. There are only a few senders, so their maps
+     * are kept once created.
+     */
+    private final ConcurrentMap<String, ConcurrentMap<String, Counters>> mSenders = new ConcurrentHashMap<>();
+    private final ReentrantLock mEvictionLock = new ReentrantLock();
+    private final LongAdder mEvictions = new LongAdder();
+    private final int mMaximumSize;
+
+    /**
+     * Incremented when an agent is added, so entries used since the last
+     * addition share a value and using a known agent writes nothing shared.
+     */
+    private final AtomicLong mClock = new AtomicLong();
+
+    public AgentDirectory() {
+        this(DEFAULT_MAXIMUM_SIZE);
+    }
+
+    /**
+     * @param maximumSize Number of agents to keep
+     */
+    public AgentDirectory(int maximumSize) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("maximumSize must be positive");
+        }
+        mMaximumSize = maximumSize;
+    }
+
+    /**
+     * @param sender Service short code
+     * @param code Agent code
+     * @return The agent kept for the code or null
+     */
+    public MobileMoneyAgent get(String sender, String code) {
+        final Counters entry = find(sender, code);
+        return entry != null ? entry.agent : null;
+    }
+
+    /**
+     * @param sender Service short code
+     * @param code Agent code
+     * @param name Agent name
+     * @return The agent kept for the code, added now if it is new or renamed
+     */
+    public MobileMoneyAgent intern(String sender, String code, String name) {
+        if (sender == null || code == null) {
+            throw new IllegalArgumentException("sender and code are required");
+        }
+        final Counters entry = find(sender, code);
+        if (entry != null && same(entry.agent.getAgentName(), name)) {
+            entry.touch(mClock.get());
+            return entry.agent;
+        }
+        return entry(sender, code, name, null).agent;
+    }
+
+    /**
+     * @param sender Service short code
+     * @param agent An agent
+     * @return The agent kept for its code, which is the given one if the code
+     * or name is new, or the given one unchanged if it has no code
+     */
+    public MobileMoneyAgent intern(String sender, MobileMoneyAgent agent) {
+        if (sender == null) {
+            throw new IllegalArgumentException("sender is required");
+        }
+        if (agent == null || agent.getAgentCode() == null) {
+            return agent;
+        }
+        return entry(sender, agent.getAgentCode(), agent.getAgentName(), agent).agent;
+    }
+
+    /**
+     * Interns the agent of a transaction, replacing it in the transaction,
+     * and adds the transaction to the agent's totals. Transactions without an
+     * agent are left alone.
+     *
+     * @param sender Service short code the transaction came from
+     * @param transaction The transaction
+     * @return The agent of the transaction after interning, or null
+     */
+    public MobileMoneyAgent record(String sender, Transaction transaction) {
+        if (sender == null) {
+            throw new IllegalArgumentException("sender is required");
+        }
+        final TransactionAccessors accessors = TransactionAccessors.of(transaction.getClass());
+        final MobileMoneyAgent agent = accessors.agent(transaction);
+        if (agent == null || agent.getAgentCode() == null) {
+            return agent;
+        }
+        final Counters entry = entry(sender, agent.getAgentCode(), agent.getAgentName(), agent);
+        if (entry.agent != agent) {
+            accessors.setAgent(transaction, entry.agent);
+        }
+        final Date date = transaction.getDate();
+        entry.count.increment();
+        entry.volume.add(accessors.amount(transaction));
+        entry.lastSeen.accumulate(date != null ? date.getTime() : System.currentTimeMillis());
+        return entry.agent;
+    }
+
+    /**
+     * @param sender Service short code
+     * @param code Agent code
+     * @return The totals of the agent or null if it is not in the directory
+     */
+    public Stats getStats(String sender, String code) {
+        final Counters entry = find(sender, code);
+        return entry != null ? entry.stats() : null;
+    }
+
+    /**
+     * @return The totals of every agent in the directory, in no particular
+     * order
+     */
+    public List<Stats> getStats() {
+        final List<Stats> stats = new ArrayList<>(size());
+        for (ConcurrentMap<String, Counters> entries : mSenders.values()) {
+            for (Counters entry : entries.values()) {
+                stats.add(entry.stats());
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * @return Number of agents in the directory
+     */
+    public int size() {
+        int size = 0;
+        for (ConcurrentMap<String, Counters> entries : mSenders.values()) {
+            size += entries.size();
+        }
+        return size;
+    }
+
+    /**
+     * @return Number of agents dropped because the directory was full
+     */
+    public long getEvictions() {
+        return mEvictions.sum();
+    }
+
+    private Counters find(String sender, String code) {
+        final ConcurrentMap<String, Counters> entries = sender != null && code != null ? mSenders.get(sender) : null;
+        return entries != null ? entries.get(code) : null;
+    }
+
+    private Counters entry(String sender, String code, String name, MobileMoneyAgent agent) {
+        final long now = mClock.get();
+        ConcurrentMap<String, Counters> entries = mSenders.get(sender);
+        if (entries == null) {
+            entries = mSenders.computeIfAbsent(sender, key -> new ConcurrentHashMap<>());
+        }
+        Counters entry = entries.get(code);
+        if (entry == null) {
+            final Counters created = new Counters(sender, agent != null ? agent : new MobileMoneyAgent(code, name), mClock.incrementAndGet());
+            entry = entries.putIfAbsent(code, created);
+            if (entry == null) {
+                if (size() > mMaximumSize) {
+                    evict();
+                }
+                return created;
+            }
+        }
+        if (entry.agent != agent && !same(entry.agent.getAgentName(), name)) {
+            // renamed agents keep their totals
+            entry.agent = agent != null ? agent : new MobileMoneyAgent(code, name);
+        }
+        entry.touch(now);
+        return entry;
+    }
+
+    /**
+     * Drops the least recently used eighth of the directory. Only one thread
+     * evicts at a time; the others carry on, the directory being over its
+     * size for a moment.
+     */
+    private void evict() {
+        if (!mEvictionLock.tryLock()) {
+            return;
+        }
+        try {
+            final int excess = size() - (mMaximumSize - mMaximumSize / 8);
+            if (excess <= 0) {
+                return;
+            }
+            // entries are touched while this runs, so sort a copy of the times
+            long[] times = new long[excess + mMaximumSize];
+            int count = 0;
+            for (ConcurrentMap<String, Counters> entries : mSenders.values()) {
+                for (Counters entry : entries.values()) {
+                    if (count == times.length) {
+                        times = Arrays.copyOf(times, count * 2);
+                    }
+                    times[count++] = entry.touched;
+                }
+            }
+            Arrays.sort(times, 0, count);
+            final long oldest = times[Math.min(excess, count) - 1];
+            int removed = 0;
+            for (ConcurrentMap<String, Counters> entries : mSenders.values()) {
+                for (Iterator<Map.Entry<String, Counters>> it = entries.entrySet().iterator(); it.hasNext() && removed < excess;) {
+                    if (it.next().getValue().touched <= oldest) {
+                        it.remove();
+                        removed++;
+                    }
+                }
+            }
+            mEvictions.add(removed);
+        } finally {
+            mEvictionLock.unlock();
+        }
+    }
+
+    private static boolean same(String a, String b) {
+        return a == b || a != null && a.equals(b);
+    }
+
+    /**
+     * Totals of one agent at the time they were read.
+     */
+    public static final class Stats {
+
+        private final String sender;
+        private final MobileMoneyAgent agent;
+        private final long count, volumeMinor, lastSeen;
+
+        Stats(String sender, MobileMoneyAgent agent, long count, long volumeMinor, long lastSeen) {
+            this.sender = sender;
+            this.agent = agent;
+            this.count = count;
+            this.volumeMinor = volumeMinor;
+            this.lastSeen = lastSeen;
+        }
+
+        /**
+         * @return Service short code the agent belongs to
+         */
+        public String getSender() {
+            return sender;
+        }
+
+        public MobileMoneyAgent getAgent() {
+            return agent;
+        }
+
+        /**
+         * @return Number of transactions recorded
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return Sum of the amounts recorded, in minor units
+         */
+        public long getVolumeMinor() {
+            return volumeMinor;
+        }
+
+        /**
+         * @return Latest transaction date recorded, in milliseconds since the
+         * epoch, or 0 if nothing was recorded. Transactions without a date
+         * count as seen when they were recorded.
+         */
+        public long getLastSeen() {
+            return lastSeen;
+        }
+
+        @Override
+        public String toString() {
+            return sender + " " + agent + " " + count + " " + volumeMinor;
+        }
+    }
+
+    private static final class Counters {
+
+        final String sender;
+        volatile MobileMoneyAgent agent;
+        volatile long touched;
+        final LongAdder count = new LongAdder();
+        final LongAdder volume = new LongAdder();
+        final LongAccumulator lastSeen = new LongAccumulator(Math::max, 0L);
+
+        Counters(String sender, MobileMoneyAgent agent, long touched) {
+            this.sender = sender;
+            this.agent = agent;
+            this.touched = touched;
+        }
+
+        void touch(long now) {
+            if (touched < now) {
+                touched = now;
+            }
+        }
+
+        Stats stats() {
+            return new Stats(sender, agent, count.sum(), volume.sum(), lastSeen.get());
+        }
+    }
+}
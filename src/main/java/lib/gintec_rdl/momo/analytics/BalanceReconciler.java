@@ -0,0 +1,439 @@
+package lib.gintec_rdl.momo.analytics;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import lib.gintec_rdl.momo.model.*;
+
+/**
+ * <p>
+ * Checks the running balances of a stream of transactions, account by
+ * account, as they arrive.</p>
+ * <p>
+ * Each account keeps its last reconciled balance. A transaction with a
+ * balance moves it by its amount, in or out depending on its class, less its
+ * fee; when the balance it reports differs from the expected one, a
+ * {@link Kind#GAP} is reported, typically because messages are missing, and
+ * reconciliation carries on from the reported balance.</p>
+ * <p>
+ * Messages may arrive out of order. Transactions are held in a per-account
+ * buffer ordered by date and reconciled once they are older than the newest
+ * date seen by more than the window, so anything displaced by less than the
+ * window is put back in place and reported as {@link Kind#OUT_OF_ORDER}.
+ * Transactions dated before the last reconciled one cannot be placed
+ * anymore; they are reported as {@link Kind#LATE} and skipped. Transaction
+ * ids seen within the window are remembered to report and drop
+ * {@link Kind#DUPLICATE}s. In-order messages cost constant time and every
+ * account holds at most the messages of one window, capped at a fixed
+ * number.</p>
+ * <pre>
+ *     BalanceReconciler reconciler = new BalanceReconciler(TimeUnit.MINUTES.toMillis(10), log::warn);
+ *     reconciler.offer(phoneNumber, transaction);
+ *     ...
+ *     reconciler.flush();
+ * </pre>
+ * <p>
+ * Accounts are reconciled independently and may be fed from several
+ * threads; the listener is called by the thread that fed the account.</p>
+ *
+ * @author CK
+ */
+public final class BalanceReconciler {
+
+    /**
+     * What a finding is about.
+     */
+    public enum Kind {
+        /**
+         * The reported balance differs from the expected one.
+         */
+        GAP,
+        /**
+         * The transaction id was already seen within the window. The
+         * transaction is dropped.
+         */
+        DUPLICATE,
+        /**
+         * The transaction arrived after a newer one and was put back in
+         * place.
+         */
+        OUT_OF_ORDER,
+        /**
+         * The transaction is older than the last reconciled one and was
+         * skipped.
+         */
+        LATE
+    }
+
+    /**
+     * Which way a transaction class moves the balance.
+     */
+    public enum Direction {
+        IN, OUT
+    }
+
+    /**
+     * An inconsistency found in an account.
+     */
+    public static final class Finding {
+
+        private final String account;
+        private final Kind kind;
+        private final Transaction transaction;
+        private final long expectedBalance;
+
+        Finding(String account, Kind kind, Transaction transaction, long expectedBalance) {
+            this.account = account;
+            this.kind = kind;
+            this.transaction = transaction;
+            this.expectedBalance = expectedBalance;
+        }
+
+        public String getAccount() {
+            return account;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public Transaction getTransaction() {
+            return transaction;
+        }
+
+        /**
+         * @return For a {@link Kind#GAP}, the balance expected from the
+         * previous one, in minor units
+         */
+        public long getExpectedBalance() {
+            return expectedBalance;
+        }
+
+        /**
+         * @return For a {@link Kind#GAP}, the reported balance less the
+         * expected one
+         */
+        public long getDifference() {
+            return TransactionAccessors.of(transaction.getClass()).balance(transaction) - expectedBalance;
+        }
+
+        @Override
+        public String toString() {
+            return kind + " " + account + " " + transaction
+                + (kind == Kind.GAP ? " difference " + getDifference() : "");
+        }
+    }
+
+    public static final int DEFAULT_MAX_BUFFERED = 1024;
+
+    private final long window;
+    private final int maxBuffered;
+    private final Consumer<Finding> listener;
+    private final ConcurrentMap<String, Account> accounts = new ConcurrentHashMap<>();
+    private final Map<Class<? extends Transaction>, Direction> directions = new ConcurrentHashMap<>();
+    private final LongAdder[] counts = new LongAdder[Kind.values().length];
+    private final LongAdder reconciled = new LongAdder();
+
+    /**
+     * @param window How long, in milliseconds of transaction time, a
+     * transaction may arrive after newer ones and still be put in place
+     * @param listener Receives every finding
+     */
+    public BalanceReconciler(long window, Consumer<Finding> listener) {
+        this(window, DEFAULT_MAX_BUFFERED, listener);
+    }
+
+    /**
+     * @param window How long, in milliseconds of transaction time, a
+     * transaction may arrive after newer ones and still be put in place
+     * @param maxBuffered Most transactions held per account; the oldest is
+     * reconciled early when the buffer is full
+     * @param listener Receives every finding
+     */
+    public BalanceReconciler(long window, int maxBuffered, Consumer<Finding> listener) {
+        if (window < 0 || maxBuffered < 1 || listener == null) {
+            throw new IllegalArgumentException("a non-negative window, a positive buffer and a listener are required");
+        }
+        this.window = window;
+        this.maxBuffered = maxBuffered;
+        this.listener = listener;
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new LongAdder();
+        }
+        for (Class<? extends Transaction> type : Arrays.asList(MpambaDebitTransaction.class, MpambaCashInTransaction.class,
+            MpambaDepositTransaction.class, AirtelMoneyDebitTransaction.class, AirtelMoneyCashInTransaction.class)) {
+            directions.put(type, Direction.IN);
+        }
+        for (Class<? extends Transaction> type : Arrays.asList(MpambaCreditTransaction.class, MpambaCashOutTransaction.class,
+            AirtelMoneyCreditTransaction.class, AirtelMoneyCashOutTransaction.class)) {
+            directions.put(type, Direction.OUT);
+        }
+    }
+
+    /**
+     * Declares how a transaction class moves the balance. Classes without a
+     * direction or without {@code getBalanceMinor} are checked for
+     * duplicates and order only.
+     *
+     * @param type The transaction class
+     * @param direction Which way its amount moves the balance
+     * @return the same instance for chained calls.
+     */
+    public BalanceReconciler direction(Class<? extends Transaction> type, Direction direction) {
+        if (type == null || direction == null) {
+            throw new IllegalArgumentException("type and direction are required");
+        }
+        directions.put(type, direction);
+        return this;
+    }
+
+    /**
+     * Feeds the next transaction of an account, in arrival order.
+     *
+     * @param account The account the messages were sent to
+     * @param transaction The extracted transaction
+     */
+    public void offer(String account, Transaction transaction) {
+        if (account == null || transaction == null) {
+            throw new IllegalArgumentException("account and transaction are required");
+        }
+        Account state = accounts.get(account);
+        if (state == null) {
+            state = accounts.computeIfAbsent(account, Account::new);
+        }
+        state.lock.lock();
+        try {
+            state.offer(transaction);
+        } finally {
+            state.lock.unlock();
+        }
+    }
+
+    /**
+     * Reconciles everything still buffered for every account, for the end of
+     * a stream.
+     */
+    public void flush() {
+        for (Account state : accounts.values()) {
+            state.lock.lock();
+            try {
+                state.release(Long.MAX_VALUE);
+            } finally {
+                state.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Flushes and forgets an account.
+     *
+     * @param account The account
+     */
+    public void remove(String account) {
+        final Account state = accounts.remove(account);
+        if (state != null) {
+            state.lock.lock();
+            try {
+                state.release(Long.MAX_VALUE);
+            } finally {
+                state.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * @param account The account
+     * @return The last reconciled balance in minor units, or null if none
+     */
+    public Long getBalance(String account) {
+        final Account state = accounts.get(account);
+        if (state == null) {
+            return null;
+        }
+        state.lock.lock();
+        try {
+            return state.hasBalance ? state.balance : null;
+        } finally {
+            state.lock.unlock();
+        }
+    }
+
+    /**
+     * @param kind The kind of finding
+     * @return Number of findings of that kind so far
+     */
+    public long getCount(Kind kind) {
+        return counts[kind.ordinal()].sum();
+    }
+
+    /**
+     * @return Number of transactions reconciled so far
+     */
+    public long getReconciledCount() {
+        return reconciled.sum();
+    }
+
+    private void report(String account, Kind kind, Transaction transaction, long expected) {
+        counts[kind.ordinal()].increment();
+        listener.accept(new Finding(account, kind, transaction, expected));
+    }
+
+    /**
+     * Reconciliation state of one account. Guarded by its own lock rather
+     * than a monitor, since the listener is called while holding it and may
+     * block a virtual thread.
+     */
+    private final class Account {
+
+        final ReentrantLock lock = new ReentrantLock();
+        private final String name;
+        // Buffered transactions ordered by date, as a ring
+        private Transaction[] buffer = new Transaction[8];
+        private long[] dates = new long[8];
+        private int head, count;
+        // Ids seen within the window, and a ring of them in arrival order
+        private final Set<String> seen = new HashSet<>();
+        private String[] seenIds = new String[8];
+        private long[] seenTimes = new long[8];
+        private int seenHead, seenCount;
+        private long newest = Long.MIN_VALUE, released = Long.MIN_VALUE;
+        private long balance;
+        private boolean hasBalance;
+
+        Account(String name) {
+            this.name = name;
+        }
+
+        void offer(Transaction transaction) {
+            final Date date = transaction.getDate();
+            final long time = date != null ? date.getTime() : Math.max(newest, released);
+            final String id = transaction.getTransactionId();
+            if (id != null) {
+                if (!seen.add(id)) {
+                    report(name, Kind.DUPLICATE, transaction, 0);
+                    return;
+                }
+                remember(id, time);
+            }
+            if (time < released) {
+                report(name, Kind.LATE, transaction, 0);
+            } else {
+                if (time < newest) {
+                    report(name, Kind.OUT_OF_ORDER, transaction, 0);
+                }
+                insert(transaction, time);
+                newest = Math.max(newest, time);
+                release(horizon());
+            }
+            forget(horizon());
+        }
+
+        /**
+         * The newest date less the window. Saturates while only undated
+         * transactions were seen, so they neither flush the buffer nor
+         * forget the ids remembered for duplicates.
+         */
+        private long horizon() {
+            return newest < Long.MIN_VALUE + window ? Long.MIN_VALUE : newest - window;
+        }
+
+        /**
+         * Reconciles buffered transactions dated up to the limit, and the
+         * oldest ones beyond the buffer capacity.
+         */
+        void release(long limit) {
+            while (count > 0 && (dates[head] <= limit || count > maxBuffered)) {
+                final Transaction transaction = buffer[head];
+                released = dates[head];
+                buffer[head] = null;
+                head = (head + 1) % buffer.length;
+                count--;
+                reconcile(transaction);
+            }
+        }
+
+        private void reconcile(Transaction transaction) {
+            reconciled.increment();
+            final TransactionAccessors accessors = TransactionAccessors.of(transaction.getClass());
+            if (!accessors.hasBalance()) {
+                return;
+            }
+            final long reported = accessors.balance(transaction);
+            final Direction direction = directions.get(transaction.getClass());
+            if (hasBalance && direction != null) {
+                final long amount = accessors.amount(transaction);
+                final long expected = balance + (direction == Direction.IN ? amount : -amount) - accessors.fee(transaction);
+                if (expected != reported) {
+                    report(name, Kind.GAP, transaction, expected);
+                }
+            }
+            balance = reported;
+            hasBalance = true;
+        }
+
+        /**
+         * Inserts by date, scanning from the newest end, so in-order
+         * transactions are appended in constant time.
+         */
+        private void insert(Transaction transaction, long time) {
+            if (count == buffer.length) {
+                final Transaction[] grown = new Transaction[count * 2];
+                final long[] grownDates = new long[count * 2];
+                for (int i = 0; i < count; i++) {
+                    grown[i] = buffer[(head + i) % buffer.length];
+                    grownDates[i] = dates[(head + i) % buffer.length];
+                }
+                buffer = grown;
+                dates = grownDates;
+                head = 0;
+            }
+            int i = count;
+            while (i > 0 && dates[(head + i - 1) % buffer.length] > time) {
+                buffer[(head + i) % buffer.length] = buffer[(head + i - 1) % buffer.length];
+                dates[(head + i) % buffer.length] = dates[(head + i - 1) % buffer.length];
+                i--;
+            }
+            buffer[(head + i) % buffer.length] = transaction;
+            dates[(head + i) % buffer.length] = time;
+            count++;
+        }
+
+        private void remember(String id, long time) {
+            if (seenCount == seenIds.length) {
+                final String[] ids = new String[seenCount * 2];
+                final long[] times = new long[seenCount * 2];
+                for (int i = 0; i < seenCount; i++) {
+                    ids[i] = seenIds[(seenHead + i) % seenIds.length];
+                    times[i] = seenTimes[(seenHead + i) % seenIds.length];
+                }
+                seenIds = ids;
+                seenTimes = times;
+                seenHead = 0;
+            }
+            final int tail = (seenHead + seenCount++) % seenIds.length;
+            seenIds[tail] = id;
+            seenTimes[tail] = time;
+        }
+
+        /**
+         * Drops remembered ids that arrived before one older than the limit,
+         * and the oldest beyond twice the buffer capacity.
+         */
+        private void forget(long limit) {
+            while (seenCount > 0 && (seenTimes[seenHead] < limit || seenCount > maxBuffered * 2)) {
+                seen.remove(seenIds[seenHead]);
+                seenIds[seenHead] = null;
+                seenHead = (seenHead + 1) % seenIds.length;
+                seenCount--;
+            }
+        }
+    }
+}
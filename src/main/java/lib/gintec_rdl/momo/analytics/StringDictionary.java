@@ -0,0 +1,59 @@
+package lib.gintec_rdl.momo.analytics;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>
+ * Assigns dense ids to distinct strings, in order of first appearance, so
+ * columns can hold an {@code int} instead of a reference. Null has the id
+ * -1. Not thread safe.</p>
+ *
+ * @author CK
+ */
+final class StringDictionary {
+
+    static final int NULL_ID = -1;
+
+    private final Map<String, Integer> ids = new HashMap<>();
+    private String[] values = new String[16];
+
+    /**
+     * @param value A string or null
+     * @return The id of the string, assigned now if it is new
+     */
+    int idOf(String value) {
+        if (value == null) {
+            return NULL_ID;
+        }
+        final Integer id = ids.get(value);
+        if (id != null) {
+            return id;
+        }
+        final int next = ids.size();
+        if (next == values.length) {
+            values = Arrays.copyOf(values, next * 2);
+        }
+        values[next] = value;
+        ids.put(value, next);
+        return next;
+    }
+
+    /**
+     * @param value A string or null
+     * @return The id of the string, or -1 if it is null or unknown
+     */
+    int find(String value) {
+        final Integer id = value != null ? ids.get(value) : null;
+        return id != null ? id : NULL_ID;
+    }
+
+    String get(int id) {
+        return id == NULL_ID ? null : values[id];
+    }
+
+    int size() {
+        return ids.size();
+    }
+}
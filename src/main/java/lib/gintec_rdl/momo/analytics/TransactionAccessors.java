@@ -0,0 +1,132 @@
+package lib.gintec_rdl.momo.analytics;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+import lib.gintec_rdl.momo.model.MobileMoneyAgent;
+import lib.gintec_rdl.momo.model.Transaction;
+
+/**
+ * <p>
+ * The getters analytics read from a transaction class, resolved once per
+ * class and adapted to take a {@link Transaction}: {@code getAmountMinor},
+ * {@code getFeeMinor}, {@code getBalanceMinor}, {@code getAgent} and the
+ * counterparty, which is the recipient phone, the sender phone or the
+ * source, whichever the class has. Values a class does not have read as 0
+ * or null. {@code setAgent} is resolved too, to replace the agent.</p>
+ *
+ * @author CK
+ */
+final class TransactionAccessors {
+
+    private static final String[] COUNTERPARTY_GETTERS = {"getRecipientPhone", "getSenderPhone", "getSource"};
+
+    private static final ClassValue<TransactionAccessors> ACCESSORS = new ClassValue<TransactionAccessors>() {
+        @Override
+        protected TransactionAccessors computeValue(Class<?> type) {
+            return new TransactionAccessors(type);
+        }
+    };
+
+    private final MethodHandle amount, fee, balance, agent, setAgent, counterparty;
+
+    private TransactionAccessors(Class<?> type) {
+        amount = getter(type, "getAmountMinor", long.class);
+        fee = getter(type, "getFeeMinor", long.class);
+        balance = getter(type, "getBalanceMinor", long.class);
+        agent = getter(type, "getAgent", MobileMoneyAgent.class);
+        setAgent = setter(type, "setAgent", MobileMoneyAgent.class);
+        MethodHandle found = null;
+        for (int i = 0; i < COUNTERPARTY_GETTERS.length && found == null; i++) {
+            found = getter(type, COUNTERPARTY_GETTERS[i], String.class);
+        }
+        counterparty = found;
+    }
+
+    static TransactionAccessors of(Class<? extends Transaction> type) {
+        return ACCESSORS.get(type);
+    }
+
+    boolean hasBalance() {
+        return balance != null;
+    }
+
+    long amount(Transaction transaction) {
+        try {
+            return amount != null ? (long) amount.invokeExact(transaction) : 0;
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    long fee(Transaction transaction) {
+        try {
+            return fee != null ? (long) fee.invokeExact(transaction) : 0;
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    long balance(Transaction transaction) {
+        try {
+            return balance != null ? (long) balance.invokeExact(transaction) : 0;
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    MobileMoneyAgent agent(Transaction transaction) {
+        try {
+            return agent != null ? (MobileMoneyAgent) agent.invokeExact(transaction) : null;
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    void setAgent(Transaction transaction, MobileMoneyAgent value) {
+        try {
+            if (setAgent != null) {
+                setAgent.invokeExact(transaction, value);
+            }
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    String counterparty(Transaction transaction) {
+        try {
+            return counterparty != null ? (String) counterparty.invokeExact(transaction) : null;
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable e) {
+        if (e instanceof RuntimeException) {
+            throw (RuntimeException) e;
+        }
+        if (e instanceof Error) {
+            throw (Error) e;
+        }
+        throw new IllegalStateException(e);
+    }
+
+    private static MethodHandle getter(Class<?> type, String name, Class<?> returnType) {
+        try {
+            return MethodHandles.publicLookup().findVirtual(type, name, MethodType.methodType(returnType))
+                .asType(MethodType.methodType(returnType, Transaction.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    private static MethodHandle setter(Class<?> type, String name, Class<?> valueType) {
+        try {
+            return MethodHandles.publicLookup().findVirtual(type, name, MethodType.methodType(void.class, valueType))
+                .asType(MethodType.methodType(void.class, Transaction.class, valueType));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,496 @@
+package lib.gintec_rdl.momo.analytics;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import lib.gintec_rdl.momo.model.MobileMoneyAgent;
+import lib.gintec_rdl.momo.model.Transaction;
+
+/**
+ * <p>
+ * Holds extracted transactions column by column for analytics.</p>
+ * <p>
+ * Each transaction becomes one row spread over primitive arrays: the date as
+ * epoch milliseconds, amount, fee and balance in minor units, and
+ * dictionary ids for the transaction class, the agent code and the
+ * counterparty. The counterparty is the recipient phone of a credit, the
+ * sender phone of a debit and the source of a deposit. Transaction ids are
+ * packed as UTF-8 into a single byte array. A row costs about 50 bytes plus
+ * the bytes of its transaction id, against a couple of hundred for the
+ * transaction object with its {@link Date}, agent and strings.</p>
+ * <p>
+ * Values are read from any transaction class through its
+ * {@code getAmountMinor}, {@code getFeeMinor}, {@code getBalanceMinor},
+ * {@code getAgent} and counterparty getters, when it has them; absent values
+ * are stored as 0 or null. Aggregations run as plain loops over the arrays,
+ * which the JIT can unroll and, for the totals, vectorise.</p>
+ * <pre>
+ *     TransactionStore store = new TransactionStore();
+ *     reader.extract(service, store::add);
+ *     Map&lt;String, Long&gt; fees = store.sumByAgent(TransactionStore.Column.FEE);
+ * </pre>
+ * <p>
+ * Stores are not thread safe.</p>
+ *
+ * @author CK
+ */
+public final class TransactionStore {
+
+    /**
+     * The money columns.
+     */
+    public enum Column {
+        AMOUNT, FEE, BALANCE
+    }
+
+    /**
+     * Date stored for transactions without a date.
+     */
+    public static final long NO_DATE = Long.MIN_VALUE;
+
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+    private static final int MAX_DAY_BUCKETS = 1 << 16;
+
+    private final StringDictionary agents = new StringDictionary();
+    private final StringDictionary counterparties = new StringDictionary();
+    private final List<Class<? extends Transaction>> types = new ArrayList<>();
+    private byte[] idBytes = new byte[4096];
+    private int[] idEnds;
+    private final BitSet nullIds = new BitSet();
+    private long[] dates, amounts, fees, balances;
+    private byte[] typeIds;
+    private int[] agentIds, counterpartyIds;
+    private int size;
+
+    public TransactionStore() {
+        this(1024);
+    }
+
+    /**
+     * @param capacity Number of rows to allocate up front
+     */
+    public TransactionStore(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        idEnds = new int[capacity];
+        dates = new long[capacity];
+        amounts = new long[capacity];
+        fees = new long[capacity];
+        balances = new long[capacity];
+        typeIds = new byte[capacity];
+        agentIds = new int[capacity];
+        counterpartyIds = new int[capacity];
+    }
+
+    /**
+     * Appends a transaction. The transaction is not kept.
+     *
+     * @param transaction The transaction to add
+     * @return The row of the transaction
+     */
+    public int add(Transaction transaction) {
+        if (transaction == null) {
+            throw new IllegalArgumentException("transaction is required");
+        }
+        final TransactionAccessors accessors = TransactionAccessors.of(transaction.getClass());
+        if (size == dates.length) {
+            grow();
+        }
+        final int row = size;
+        final Date date = transaction.getDate();
+        putTransactionId(row, transaction.getTransactionId());
+        dates[row] = date != null ? date.getTime() : NO_DATE;
+        typeIds[row] = typeId(transaction.getClass());
+        amounts[row] = accessors.amount(transaction);
+        fees[row] = accessors.fee(transaction);
+        balances[row] = accessors.balance(transaction);
+        final MobileMoneyAgent agent = accessors.agent(transaction);
+        agentIds[row] = agents.idOf(agent != null ? agent.getAgentCode() : null);
+        counterpartyIds[row] = counterparties.idOf(accessors.counterparty(transaction));
+        size++;
+        return row;
+    }
+
+    /**
+     * Appends transactions, skipping nulls.
+     *
+     * @param transactions The transactions to add
+     * @return the same instance for chained calls.
+     */
+    public TransactionStore addAll(Iterable<? extends Transaction> transactions) {
+        for (Transaction transaction : transactions) {
+            if (transaction != null) {
+                add(transaction);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * @return Number of rows
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Releases unused capacity.
+     */
+    public void trimToSize() {
+        resize(Math.max(size, 1));
+        idBytes = Arrays.copyOf(idBytes, Math.max(size == 0 ? 0 : idEnds[size - 1], 1));
+    }
+
+    /**
+     * @param row The row
+     * @return The transaction id, decoded on every call, or null
+     */
+    public String getTransactionId(int row) {
+        if (nullIds.get(check(row))) {
+            return null;
+        }
+        final int start = row == 0 ? 0 : idEnds[row - 1];
+        return new String(idBytes, start, idEnds[row] - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param row The row
+     * @return The date in epoch milliseconds or {@link #NO_DATE}
+     */
+    public long getDate(int row) {
+        return dates[check(row)];
+    }
+
+    /**
+     * @param row The row
+     * @param column The money column
+     * @return The value in minor units
+     */
+    public long get(int row, Column column) {
+        return values(column)[check(row)];
+    }
+
+    public Class<? extends Transaction> getType(int row) {
+        return types.get(typeIds[check(row)]);
+    }
+
+    /**
+     * @param row The row
+     * @return The agent code or null
+     */
+    public String getAgent(int row) {
+        return agents.get(agentIds[check(row)]);
+    }
+
+    /**
+     * @param row The row
+     * @return The counterparty or null
+     */
+    public String getCounterparty(int row) {
+        return counterparties.get(counterpartyIds[check(row)]);
+    }
+
+    /**
+     * @param column The money column
+     * @return Total of the column over all rows
+     */
+    public long sum(Column column) {
+        final long[] values = values(column);
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+            total += values[i];
+        }
+        return total;
+    }
+
+    /**
+     * @param column The money column
+     * @param from First epoch millisecond included
+     * @param to First epoch millisecond excluded
+     * @return Total of the column over the rows dated in the range
+     */
+    public long sum(Column column, long from, long to) {
+        final long[] values = values(column);
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+            final long date = dates[i];
+            total += date >= from && date < to ? values[i] : 0;
+        }
+        return total;
+    }
+
+    /**
+     * @param column The money column
+     * @param type The transaction class
+     * @return Total of the column over the rows of exactly that class
+     */
+    public long sum(Column column, Class<? extends Transaction> type) {
+        final int id = types.indexOf(type);
+        if (id < 0) {
+            return 0;
+        }
+        final long[] values = values(column);
+        final byte typeId = (byte) id;
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+            total += typeIds[i] == typeId ? values[i] : 0;
+        }
+        return total;
+    }
+
+    /**
+     * @param column The money column
+     * @return Total of the column per agent code, in order of first
+     * appearance. Rows without an agent are left out.
+     */
+    public Map<String, Long> sumByAgent(Column column) {
+        return byDictionary(agents, agentIds, values(column));
+    }
+
+    /**
+     * @param column The money column
+     * @return Total of the column per counterparty, in order of first
+     * appearance. Rows without a counterparty are left out.
+     */
+    public Map<String, Long> sumByCounterparty(Column column) {
+        return byDictionary(counterparties, counterpartyIds, values(column));
+    }
+
+    /**
+     * @param column The money column
+     * @return Total of the column per transaction class, in order of first
+     * appearance
+     */
+    public Map<Class<? extends Transaction>, Long> sumByType(Column column) {
+        final long[] values = values(column);
+        final long[] totals = new long[types.size()];
+        for (int i = 0; i < size; i++) {
+            totals[typeIds[i]] += values[i];
+        }
+        final Map<Class<? extends Transaction>, Long> result = new LinkedHashMap<>();
+        for (int i = 0; i < totals.length; i++) {
+            result.put(types.get(i), totals[i]);
+        }
+        return result;
+    }
+
+    /**
+     * @param column The money column
+     * @param zone The zone that decides where days start
+     * @return Total of the column per day, in date order. Rows without a date
+     * are left out.
+     */
+    public SortedMap<LocalDate, Long> sumByDay(Column column, ZoneId zone) {
+        final long[] values = values(column);
+        final SortedMap<LocalDate, Long> result = new TreeMap<>();
+        final Days days = new Days(zone);
+        long first = Long.MAX_VALUE, last = Long.MIN_VALUE;
+        for (int i = 0; i < size; i++) {
+            if (dates[i] != NO_DATE) {
+                final long day = days.of(dates[i]);
+                first = Math.min(first, day);
+                last = Math.max(last, day);
+            }
+        }
+        if (first > last) {
+            return result;
+        }
+        if (last - first >= MAX_DAY_BUCKETS) {
+            // Too sparse for an array of days
+            for (int i = 0; i < size; i++) {
+                if (dates[i] != NO_DATE) {
+                    result.merge(LocalDate.ofEpochDay(days.of(dates[i])), values[i], Long::sum);
+                }
+            }
+            return result;
+        }
+        final long[] totals = new long[(int) (last - first + 1)];
+        final boolean[] seen = new boolean[totals.length];
+        for (int i = 0; i < size; i++) {
+            if (dates[i] != NO_DATE) {
+                final int day = (int) (days.of(dates[i]) - first);
+                totals[day] += values[i];
+                seen[day] = true;
+            }
+        }
+        for (int i = 0; i < totals.length; i++) {
+            if (seen[i]) {
+                result.put(LocalDate.ofEpochDay(first + i), totals[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param column The money column
+     * @return Total of the column per UTC day
+     */
+    public SortedMap<LocalDate, Long> sumByDay(Column column) {
+        return sumByDay(column, ZoneOffset.UTC);
+    }
+
+    /**
+     * @param agentCode The agent code
+     * @return Number of rows with the agent
+     */
+    public int countByAgent(String agentCode) {
+        final int id = agents.find(agentCode);
+        if (id == StringDictionary.NULL_ID) {
+            return 0;
+        }
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            count += agentIds[i] == id ? 1 : 0;
+        }
+        return count;
+    }
+
+    /**
+     * @return Transaction classes seen so far, in order of first appearance
+     */
+    public List<Class<? extends Transaction>> getTypes() {
+        return Collections.unmodifiableList(types);
+    }
+
+    /**
+     * @return Approximate heap taken by the columns, the transaction ids and
+     * the dictionaries, in bytes
+     */
+    public long getMemoryUsage() {
+        long bytes = dates.length * (4L * Long.BYTES + 3L * Integer.BYTES + 1) + idBytes.length;
+        for (int i = 0; i < agents.size(); i++) {
+            bytes += textSize(agents.get(i));
+        }
+        for (int i = 0; i < counterparties.size(); i++) {
+            bytes += textSize(counterparties.get(i));
+        }
+        return bytes;
+    }
+
+    /**
+     * Estimated heap of a dictionary string with its map entry.
+     */
+    private static long textSize(String text) {
+        return 88 + 2L * text.length();
+    }
+
+    private Map<String, Long> byDictionary(StringDictionary dictionary, int[] ids, long[] values) {
+        final long[] totals = new long[dictionary.size()];
+        for (int i = 0; i < size; i++) {
+            final int id = ids[i];
+            if (id >= 0) {
+                totals[id] += values[i];
+            }
+        }
+        final Map<String, Long> result = new LinkedHashMap<>();
+        for (int i = 0; i < totals.length; i++) {
+            result.put(dictionary.get(i), totals[i]);
+        }
+        return result;
+    }
+
+    private long[] values(Column column) {
+        switch (column) {
+            case AMOUNT:
+                return amounts;
+            case FEE:
+                return fees;
+            case BALANCE:
+                return balances;
+            default:
+                throw new IllegalArgumentException("column is required");
+        }
+    }
+
+    private byte typeId(Class<? extends Transaction> type) {
+        int id = types.indexOf(type);
+        if (id < 0) {
+            if (types.size() > Byte.MAX_VALUE) {
+                throw new IllegalArgumentException("Too many transaction classes");
+            }
+            id = types.size();
+            types.add(type);
+        }
+        return (byte) id;
+    }
+
+    private int check(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+        }
+        return row;
+    }
+
+    private void putTransactionId(int row, String transactionId) {
+        final int start = row == 0 ? 0 : idEnds[row - 1];
+        if (transactionId == null) {
+            nullIds.set(row);
+            idEnds[row] = start;
+            return;
+        }
+        final byte[] bytes = transactionId.getBytes(StandardCharsets.UTF_8);
+        if (start + bytes.length > idBytes.length) {
+            idBytes = Arrays.copyOf(idBytes, Math.max(start + bytes.length, idBytes.length + (idBytes.length >> 1)));
+        }
+        System.arraycopy(bytes, 0, idBytes, start, bytes.length);
+        idEnds[row] = start + bytes.length;
+    }
+
+    private void grow() {
+        resize(dates.length + (dates.length >> 1) + 1);
+    }
+
+    private void resize(int capacity) {
+        idEnds = Arrays.copyOf(idEnds, capacity);
+        dates = Arrays.copyOf(dates, capacity);
+        amounts = Arrays.copyOf(amounts, capacity);
+        fees = Arrays.copyOf(fees, capacity);
+        balances = Arrays.copyOf(balances, capacity);
+        typeIds = Arrays.copyOf(typeIds, capacity);
+        agentIds = Arrays.copyOf(agentIds, capacity);
+        counterpartyIds = Arrays.copyOf(counterpartyIds, capacity);
+    }
+
+    /**
+     * Turns epoch milliseconds into epoch days of a zone. The offset is kept
+     * until the next transition of the zone, so rows of the same period do
+     * not allocate.
+     */
+    private static final class Days {
+
+        private final ZoneRules rules;
+        private long from = Long.MAX_VALUE, until = Long.MIN_VALUE, offset;
+
+        Days(ZoneId zone) {
+            this.rules = zone.getRules();
+        }
+
+        long of(long millis) {
+            if (millis < from || millis >= until) {
+                final Instant instant = Instant.ofEpochMilli(millis);
+                final ZoneOffsetTransition previous = rules.previousTransition(instant.plusNanos(1));
+                final ZoneOffsetTransition next = rules.nextTransition(instant);
+                offset = rules.getOffset(instant).getTotalSeconds() * 1000L;
+                from = previous != null ? previous.toEpochSecond() * 1000L : Long.MIN_VALUE;
+                until = next != null ? next.toEpochSecond() * 1000L : Long.MAX_VALUE;
+            }
+            return Math.floorDiv(millis + offset, MILLIS_PER_DAY);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package lib.gintec_rdl.momo.codec;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import lib.gintec_rdl.momo.model.Transaction;
+
+import static lib.gintec_rdl.momo.codec.TransactionLayout.*;
+
+/**
+ * <p>
+ * Reads transactions written by a {@link TransactionEncoder} directly from a
+ * {@link ByteBuffer}.</p>
+ * <p>
+ * A decoder follows one stream from its header onwards and keeps the
+ * stream's dictionary, so every record of the stream must go through the
+ * same decoder, in order. Repeated dictionary strings are decoded to the
+ * same {@link String} instance. The stream may arrive in several buffers:
+ * when the buffer ends inside a record, {@link #decode(java.nio.ByteBuffer)}
+ * returns null without consuming it, and can be called again once more
+ * bytes are available.</p>
+ * <pre>
+ *     TransactionDecoder decoder = new TransactionDecoder();
+ *     while (channel.read(buffer) &gt;= 0) {
+ *         buffer.flip();
+ *         Transaction transaction;
+ *         while ((transaction = decoder.decode(buffer)) != null) {
+ *             consumer.accept(transaction);
+ *         }
+ *         buffer.compact();
+ *     }
+ * </pre>
+ * <p>
+ * Records written by a newer encoder of the same version may carry extra
+ * fields at the end; they are skipped. Decoders are not thread safe.</p>
+ *
+ * @author CK
+ */
+public final class TransactionDecoder {
+
+    private final List<String> dictionary = new ArrayList<>();
+    private byte[] scratch = new byte[64];
+    private int version;
+
+    /**
+     * Reads the next transaction at the buffer's position.
+     *
+     * @param in The buffer to read from
+     * @return The transaction, or null if the buffer does not hold a
+     * complete record
+     * @throws IllegalArgumentException If the stream is not a transaction
+     * stream, was written in an unsupported version or is corrupt
+     */
+    public Transaction decode(ByteBuffer in) {
+        if (version == 0) {
+            if (in.remaining() < HEADER_SIZE) {
+                return null;
+            }
+            final int start = in.position();
+            final int magic = in.getInt();
+            final int streamVersion = in.get() & 0xFF;
+            if (magic != MAGIC || streamVersion == 0 || streamVersion > TransactionEncoder.VERSION) {
+                in.position(start);
+                throw new IllegalArgumentException(magic != MAGIC
+                    ? "Not a transaction stream"
+                    : "Unsupported transaction stream version " + streamVersion);
+            }
+            version = streamVersion;
+        }
+        if (in.remaining() < RECORD_HEADER_SIZE) {
+            return null;
+        }
+        final int start = in.position();
+        final TransactionLayout layout = TransactionLayout.of(in.get());
+        final int length = in.getInt();
+        if (length < 0) {
+            in.position(start);
+            throw new IllegalArgumentException("Corrupt record at " + start);
+        }
+        if (in.remaining() < length) {
+            in.position(start);
+            return null;
+        }
+        final int end = in.position() + length;
+        final Transaction transaction = layout.create();
+        transaction.setTransactionId(getText(in));
+        final long date = in.getLong();
+        transaction.setDate(date != NULL_DATE ? new Date(date) : null);
+        layout.readBody(transaction, this, in);
+        if (in.position() > end) {
+            throw new IllegalArgumentException("Corrupt record at " + start);
+        }
+        in.position(end);
+        return transaction;
+    }
+
+    /**
+     * Forgets the current stream: the next record must start with a header.
+     */
+    public void reset() {
+        dictionary.clear();
+        version = 0;
+    }
+
+    /**
+     * @return Version of the stream being read, 0 before its header
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    String getWord(ByteBuffer in) {
+        final int ref = in.getInt();
+        switch (ref) {
+            case NULL_WORD:
+                return null;
+            case NEW_WORD:
+                final String word = getText(in);
+                dictionary.add(word);
+                return word;
+            case LITERAL_WORD:
+                return getText(in);
+            default:
+                if (ref < 0 || ref >= dictionary.size()) {
+                    throw new IllegalArgumentException("Unknown dictionary reference " + ref);
+                }
+                return dictionary.get(ref);
+        }
+    }
+
+    private String getText(ByteBuffer in) {
+        final int length = in.getShort() & 0xFFFF;
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        final String text;
+        if (in.hasArray()) {
+            text = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+        } else {
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            in.get(scratch, 0, length);
+            text = new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+        return text;
+    }
+}
@@ -0,0 +1,198 @@
+package lib.gintec_rdl.momo.codec;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import lib.gintec_rdl.momo.model.Transaction;
+
+import static lib.gintec_rdl.momo.codec.TransactionLayout.*;
+
+/**
+ * <p>
+ * Writes transactions to a compact binary stream, straight into a
+ * {@link ByteBuffer}.</p>
+ * <p>
+ * Numbers are written with fixed width in the buffer's byte order, dates as
+ * epoch milliseconds and strings as UTF-8 prefixed with their length. Agent
+ * names and codes, phone numbers, names and deposit sources go through a
+ * dictionary: the first occurrence is written in full, later ones as a
+ * four-byte reference. The dictionary spans the whole stream, so a stream
+ * must be read by a single {@link TransactionDecoder} from its first
+ * record. Once the dictionary is full new strings are written in full every
+ * time.</p>
+ * <p>
+ * The first record of a stream is preceded by a header holding the format
+ * version. {@link #reset()} starts a new stream.</p>
+ * <pre>
+ *     TransactionEncoder encoder = new TransactionEncoder();
+ *     for (Transaction transaction : transactions) {
+ *         if (!encoder.encode(transaction, buffer)) {
+ *             flush(buffer);
+ *             encoder.encode(transaction, buffer);
+ *         }
+ *     }
+ * </pre>
+ * <p>
+ * Encoders are not thread safe.</p>
+ *
+ * @author CK
+ */
+public final class TransactionEncoder {
+
+    /**
+     * Version of the format written by this encoder.
+     */
+    public static final int VERSION = 1;
+
+    public static final int DEFAULT_DICTIONARY_SIZE = 4096;
+
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    private final int maxDictionarySize;
+    private String[] added = new String[8];
+    private int addedCount;
+    private boolean started;
+
+    public TransactionEncoder() {
+        this(DEFAULT_DICTIONARY_SIZE);
+    }
+
+    /**
+     * @param maxDictionarySize Number of distinct strings remembered per
+     * stream, 0 to write every string in full
+     */
+    public TransactionEncoder(int maxDictionarySize) {
+        if (maxDictionarySize < 0) {
+            throw new IllegalArgumentException("Dictionary size must not be negative");
+        }
+        this.maxDictionarySize = maxDictionarySize;
+    }
+
+    /**
+     * Writes a transaction at the buffer's position.
+     *
+     * @param transaction The transaction to write
+     * @param out The buffer to write to
+     * @return True if the transaction was written, false if the buffer is too
+     * small, in which case neither the buffer nor the encoder changed
+     * @throws IllegalArgumentException If the transaction's class has no
+     * binary layout or a string is longer than 65534 UTF-8 bytes
+     */
+    public boolean encode(Transaction transaction, ByteBuffer out) {
+        if (transaction == null) {
+            throw new IllegalArgumentException("transaction is required");
+        }
+        final TransactionLayout layout = TransactionLayout.of(transaction.getClass());
+        final int start = out.position();
+        addedCount = 0;
+        try {
+            if (!started) {
+                out.putInt(MAGIC).put((byte) VERSION);
+            }
+            out.put(layout.id);
+            final int lengthAt = out.position();
+            out.putInt(0);
+            putText(transaction.getTransactionId(), out);
+            final Date date = transaction.getDate();
+            out.putLong(date != null ? date.getTime() : NULL_DATE);
+            layout.writeBody(transaction, this, out);
+            out.putInt(lengthAt, out.position() - lengthAt - 4);
+        } catch (BufferOverflowException e) {
+            rollback(out, start);
+            return false;
+        } catch (RuntimeException e) {
+            rollback(out, start);
+            throw e;
+        }
+        started = true;
+        return true;
+    }
+
+    /**
+     * Starts a new stream: the next record is preceded by a header and the
+     * dictionary is emptied.
+     */
+    public void reset() {
+        dictionary.clear();
+        started = false;
+    }
+
+    /**
+     * @return Number of strings in the dictionary
+     */
+    public int getDictionarySize() {
+        return dictionary.size();
+    }
+
+    void putWord(String word, ByteBuffer out) {
+        if (word == null) {
+            out.putInt(NULL_WORD);
+            return;
+        }
+        final Integer ref = dictionary.get(word);
+        if (ref != null) {
+            out.putInt(ref);
+        } else if (dictionary.size() < maxDictionarySize) {
+            out.putInt(NEW_WORD);
+            putText(word, out);
+            dictionary.put(word, dictionary.size());
+            if (addedCount == added.length) {
+                added = Arrays.copyOf(added, addedCount * 2);
+            }
+            added[addedCount++] = word;
+        } else {
+            out.putInt(LITERAL_WORD);
+            putText(word, out);
+        }
+    }
+
+    /**
+     * Writes a string as UTF-8 without going through an intermediate byte
+     * array. Unpaired surrogates are written as '?', like
+     * {@link String#getBytes(java.nio.charset.Charset)}.
+     */
+    static void putText(String text, ByteBuffer out) {
+        if (text == null) {
+            out.putShort((short) NULL_LENGTH);
+            return;
+        }
+        final int lengthAt = out.position();
+        out.putShort((short) 0);
+        final int length = text.length();
+        for (int i = 0; i < length; i++) {
+            final char c = text.charAt(i);
+            if (c < 0x80) {
+                out.put((byte) c);
+            } else if (c < 0x800) {
+                out.put((byte) (0xC0 | c >> 6)).put((byte) (0x80 | c & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                    final int cp = Character.toCodePoint(c, text.charAt(++i));
+                    out.put((byte) (0xF0 | cp >> 18)).put((byte) (0x80 | cp >> 12 & 0x3F))
+                        .put((byte) (0x80 | cp >> 6 & 0x3F)).put((byte) (0x80 | cp & 0x3F));
+                } else {
+                    out.put((byte) '?');
+                }
+            } else {
+                out.put((byte) (0xE0 | c >> 12)).put((byte) (0x80 | c >> 6 & 0x3F)).put((byte) (0x80 | c & 0x3F));
+            }
+        }
+        final int bytes = out.position() - lengthAt - 2;
+        if (bytes >= NULL_LENGTH) {
+            throw new IllegalArgumentException("String too long for the binary format: " + bytes + " bytes");
+        }
+        out.putShort(lengthAt, (short) bytes);
+    }
+
+    private void rollback(ByteBuffer out, int start) {
+        for (int i = 0; i < addedCount; i++) {
+            dictionary.remove(added[i]);
+            added[i] = null;
+        }
+        addedCount = 0;
+        out.position(start);
+    }
+}
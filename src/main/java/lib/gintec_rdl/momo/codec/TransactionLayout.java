@@ -0,0 +1,346 @@
+package lib.gintec_rdl.momo.codec;
+
+import java.nio.ByteBuffer;
+
+import lib.gintec_rdl.momo.model.*;
+
+/**
+ * <p>
+ * The binary layout of each model class, shared by
+ * {@link TransactionEncoder} and {@link TransactionDecoder}.</p>
+ * <p>
+ * Every record starts with the type id and the length of its body. The body
+ * holds the transaction id and date followed by the fields of the type, in
+ * the order written here. Ids are part of the format and must never be
+ * reused; fields may only be appended, since older decoders skip whatever
+ * follows the fields they know.</p>
+ *
+ * @author CK
+ */
+enum TransactionLayout {
+
+    TRANSACTION(0, Transaction.class) {
+        @Override
+        Transaction create() {
+            return new Transaction();
+        }
+
+        @Override
+        void writeBody(Transaction transaction, TransactionEncoder encoder, ByteBuffer out) {
+        }
+
+        @Override
+        void readBody(Transaction transaction, TransactionDecoder decoder, ByteBuffer in) {
+        }
+    },
+    MPAMBA_CASH_IN(1, MpambaCashInTransaction.class) {
+        @Override
+        Transaction create() {
+            return new MpambaCashInTransaction();
+        }
+
+        @Override
+        void writeBody(Transaction transaction, TransactionEncoder encoder, ByteBuffer out) {
+            final MpambaCashInTransaction t = (MpambaCashInTransaction) transaction;
+            putAgent(t.getAgent(), encoder, out);
+            out.putLong(t.getAmountMinor()).putLong(t.getFeeMinor()).putLong(t.getBalanceMinor());
+        }
+
+        @Override
+        void readBody(Transaction transaction, TransactionDecoder decoder, ByteBuffer in) {
+            final MpambaCashInTransaction t = (MpambaCashInTransaction) transaction;
+            t.setAgent(getAgent(decoder, in));
+            t.setAmountMinor(in.getLong());
+            t.setFeeMinor(in.getLong());
+            t.setBalanceMinor(in.getLong());
+        }
+    },
+    MPAMBA_CASH_OUT(2, MpambaCashOutTransaction.class) {
+        @Override
+        Transaction create() {
+            return new MpambaCashOutTransaction();
+        }
+
+        @Override
+        void writeBody(Transaction transaction, TransactionEncoder encoder, ByteBuffer out) {
+            final MpambaCashOutTransaction t = (MpambaCashOutTransaction) transaction;
+            putAgent(t.getAgent(), encoder, out);
+            out.putLong(t.getAmountMinor()).putLong(t.getFeeMinor()).putLong(t.getBalanceMinor());
+        }
+
+        @Override
+        void readBody(Transaction transaction, TransactionDecoder decoder, ByteBuffer in) {
+            final MpambaCashOutTransaction t = (MpambaCashOutTransaction) transaction;
+            t.setAgent(getAgent(decoder, in));
+            t.setAmountMinor(in.getLong());
+            t.setFeeMinor(in.getLong());
+            t.setBalanceMinor(in.getLong());
+        }
+    },
+    MPAMBA_CREDIT(3, MpambaCreditTransaction.class) {
+        @Override
+        Transaction create() {
+            return new MpambaCreditTransaction();
+        }
+
+        @Override
+        void writeBody(Transaction transaction, TransactionEncoder encoder, ByteBuffer out) {
+            final MpambaCreditTransaction t = (MpambaCreditTransaction) transaction;
+            out.putLong(t.getAmountMinor()).putLong(t.getFeeMinor()).putLong(t.getBalanceMinor());
+            encoder.putWord(t.getRecipientPhone(), out);
+            encoder.putWord(t.getRecipientName(), out);
+        }
+
+        @Override
+        void readBody(Transaction transaction, TransactionDecoder decoder, ByteBuffer in) {
+            final MpambaCreditTransaction t = (MpambaCreditTransaction) transaction;
+            t.setAmountMinor(in.getLong());
+            t.setFeeMinor(in.getLong());
+            t.setBalanceMinor(in.getLong());
+            t.setRecipientPhone(decoder.getWord(in));
+            t.setRecipientName(decoder.getWord(in));
+        }
+    },
+    MPAMBA_DEBIT(4, MpambaDebitTransaction.class) {
+        @Override
+        Transaction create() {
+            return new MpambaDebitTransaction();
+        }
+
+        @Override
+        void writeBody(Transaction transaction, TransactionEncoder encoder, ByteBuffer out) {
+            final MpambaDebitTransaction t = (MpambaDebitTransaction) transaction;
+            out.putLong(t.getAmountMinor()).putLong(t.getBalanceMinor());
+            encoder.putWord(t.getSenderPhone(), out);
+            encoder.putWord(t.getSenderName(), out);
+        }
+
+        @Override
+        void readBody(Transaction transaction, TransactionDecoder decoder, ByteBuffer in) {
+            final MpambaDebitTransaction t = (MpambaDebitTransaction) transaction;
+            t.setAmountMinor(in.getLong());
+            t.setBalanceMinor(in.getLong());
+            t.setSenderPhone(decoder.getWord(in));
+            t.setSenderName(decoder.getWord(in));
+        }
+    },
+    MPAMBA_DEPOSIT(5, MpambaDepositTransaction.class) {
+        @Override
+        Transaction create() {
+            return new MpambaDepositTransaction();
+        }
+
+        @Override
+        void writeBody(Transaction transaction, TransactionEncoder encoder, ByteBuffer out) {
+            final MpambaDepositTransaction t = (MpambaDepositTransaction) transaction;
+            encoder.putWord(t.getSource(), out);
+            out.putLong(t.getAmountMinor()).putLong(t.getFeeMinor()).putLong(t.getBalanceMinor());
+        }
+
+        @Override
+        void readBody(Transaction transaction, TransactionDecoder decoder, ByteBuffer in) {
+            final MpambaDepositTransaction t = (MpambaDepositTransaction) transaction;
+            t.setSource(decoder.getWord(in));
+            t.setAmountMinor(in.getLong());
+            t.setFeeMinor(in.getLong());
+            t.setBalanceMinor(in.getLong());
+        }
+    },
+    AIRTEL_MONEY_CASH_IN(6, AirtelMoneyCashInTransaction.class) {
+        @Override
+        Transaction create() {
+            return new AirtelMoneyCashInTransaction();
+        }
+
+        @Override
+        void writeBody(Transaction transaction, TransactionEncoder encoder, ByteBuffer out) {
+            final AirtelMoneyCashInTransaction t = (AirtelMoneyCashInTransaction) transaction;
+            putAgent(t.getAgent(), encoder, out);
+            out.putLong(t.getAmountMinor()).putLong(t.getFeeMinor()).putLong(t.getBalanceMinor());
+        }
+
+        @Override
+        void readBody(Transaction transaction, TransactionDecoder decoder, ByteBuffer in) {
+            final AirtelMoneyCashInTransaction t = (AirtelMoneyCashInTransaction) transaction;
+            t.setAgent(getAgent(decoder, in));
+            t.setAmountMinor(in.getLong());
+            t.setFeeMinor(in.getLong());
+            t.setBalanceMinor(in.getLong());
+        }
+    },
+    AIRTEL_MONEY_CASH_OUT(7, AirtelMoneyCashOutTransaction.class) {
+        @Override
+        Transaction create() {
+            return new AirtelMoneyCashOutTransaction();
+        }
+
+        @Override
+        void writeBody(Transaction transaction, TransactionEncoder encoder, ByteBuffer out) {
+            final AirtelMoneyCashOutTransaction t = (AirtelMoneyCashOutTransaction) transaction;
+            putAgent(t.getAgent(), encoder, out);
+            out.putLong(t.getAmountMinor()).putLong(t.getFeeMinor()).putLong(t.getBalanceMinor());
+        }
+
+        @Override
+        void readBody(Transaction transaction, TransactionDecoder decoder, ByteBuffer in) {
+            final AirtelMoneyCashOutTransaction t = (AirtelMoneyCashOutTransaction) transaction;
+            t.setAgent(getAgent(decoder, in));
+            t.setAmountMinor(in.getLong());
+            t.setFeeMinor(in.getLong());
+            t.setBalanceMinor(in.getLong());
+        }
+    },
+    AIRTEL_MONEY_CREDIT(8, AirtelMoneyCreditTransaction.class) {
+        @Override
+        Transaction create() {
+            return new AirtelMoneyCreditTransaction();
+        }
+
+        @Override
+        void writeBody(Transaction transaction, TransactionEncoder encoder, ByteBuffer out) {
+            final AirtelMoneyCreditTransaction t = (AirtelMoneyCreditTransaction) transaction;
+            out.putLong(t.getAmountMinor()).putLong(t.getFeeMinor()).putLong(t.getBalanceMinor());
+            encoder.putWord(t.getRecipientPhone(), out);
+            encoder.putWord(t.getRecipientName(), out);
+        }
+
+        @Override
+        void readBody(Transaction transaction, TransactionDecoder decoder, ByteBuffer in) {
+            final AirtelMoneyCreditTransaction t = (AirtelMoneyCreditTransaction) transaction;
+            t.setAmountMinor(in.getLong());
+            t.setFeeMinor(in.getLong());
+            t.setBalanceMinor(in.getLong());
+            t.setRecipientPhone(decoder.getWord(in));
+            t.setRecipientName(decoder.getWord(in));
+        }
+    },
+    AIRTEL_MONEY_DEBIT(9, AirtelMoneyDebitTransaction.class) {
+        @Override
+        Transaction create() {
+            return new AirtelMoneyDebitTransaction();
+        }
+
+        @Override
+        void writeBody(Transaction transaction, TransactionEncoder encoder, ByteBuffer out) {
+            final AirtelMoneyDebitTransaction t = (AirtelMoneyDebitTransaction) transaction;
+            out.putLong(t.getAmountMinor()).putLong(t.getBalanceMinor());
+            encoder.putWord(t.getSenderPhone(), out);
+            encoder.putWord(t.getSenderName(), out);
+        }
+
+        @Override
+        void readBody(Transaction transaction, TransactionDecoder decoder, ByteBuffer in) {
+            final AirtelMoneyDebitTransaction t = (AirtelMoneyDebitTransaction) transaction;
+            t.setAmountMinor(in.getLong());
+            t.setBalanceMinor(in.getLong());
+            t.setSenderPhone(decoder.getWord(in));
+            t.setSenderName(decoder.getWord(in));
+        }
+    };
+
+    /**
+     * Start of every stream, "MOMO" in ASCII.
+     */
+    static final int MAGIC = 0x4D4F4D4F;
+
+    /**
+     * Bytes taken by the stream header: the magic number and the version.
+     */
+    static final int HEADER_SIZE = 5;
+
+    /**
+     * Bytes taken by the type id and the body length of a record.
+     */
+    static final int RECORD_HEADER_SIZE = 5;
+
+    /**
+     * Length written for a null string.
+     */
+    static final int NULL_LENGTH = 0xFFFF;
+
+    /**
+     * Dictionary references below zero.
+     */
+    static final int NULL_WORD = -1, NEW_WORD = -2, LITERAL_WORD = -3;
+
+    /**
+     * Date written for a null date.
+     */
+    static final long NULL_DATE = Long.MIN_VALUE;
+
+    private static final TransactionLayout[] BY_ID = new TransactionLayout[values().length];
+    private static final ClassValue<TransactionLayout> BY_CLASS = new ClassValue<TransactionLayout>() {
+        @Override
+        protected TransactionLayout computeValue(Class<?> type) {
+            for (TransactionLayout layout : values()) {
+                if (layout.type == type) {
+                    return layout;
+                }
+            }
+            return null;
+        }
+    };
+
+    static {
+        for (TransactionLayout layout : values()) {
+            BY_ID[layout.id] = layout;
+        }
+    }
+
+    final byte id;
+    final Class<? extends Transaction> type;
+
+    TransactionLayout(int id, Class<? extends Transaction> type) {
+        this.id = (byte) id;
+        this.type = type;
+    }
+
+    /**
+     * @param type Exact class of the transaction
+     * @return The layout of the class
+     * @throws IllegalArgumentException If the class has no layout
+     */
+    static TransactionLayout of(Class<? extends Transaction> type) {
+        final TransactionLayout layout = BY_CLASS.get(type);
+        if (layout == null) {
+            throw new IllegalArgumentException("No binary layout for " + type.getName());
+        }
+        return layout;
+    }
+
+    /**
+     * @param id Type id read from a record
+     * @return The layout with the id
+     * @throws IllegalArgumentException If the id is unknown
+     */
+    static TransactionLayout of(byte id) {
+        if (id < 0 || id >= BY_ID.length) {
+            throw new IllegalArgumentException("Unknown transaction type " + id);
+        }
+        return BY_ID[id];
+    }
+
+    abstract Transaction create();
+
+    abstract void writeBody(Transaction transaction, TransactionEncoder encoder, ByteBuffer out);
+
+    abstract void readBody(Transaction transaction, TransactionDecoder decoder, ByteBuffer in);
+
+    private static void putAgent(MobileMoneyAgent agent, TransactionEncoder encoder, ByteBuffer out) {
+        if (agent == null) {
+            out.put((byte) 0);
+        } else {
+            out.put((byte) 1);
+            encoder.putWord(agent.getAgentCode(), out);
+            encoder.putWord(agent.getAgentName(), out);
+        }
+    }
+
+    private static MobileMoneyAgent getAgent(TransactionDecoder decoder, ByteBuffer in) {
+        if (in.get() == 0) {
+            return null;
+        }
+        final String code = decoder.getWord(in);
+        return new MobileMoneyAgent(code, decoder.getWord(in));
+    }
+}
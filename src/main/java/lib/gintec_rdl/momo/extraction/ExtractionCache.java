@@ -0,0 +1,257 @@
+package lib.gintec_rdl.momo.extraction;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import lib.gintec_rdl.momo.model.Transaction;
+
+/**
+ * <p>
+ * A bounded cache of extraction results used by {@link ExtractionService} to
+ * avoid parsing the same message twice.</p>
+ * <p>
+ * Results are found in two ways. A message whose sender and text were seen
+ * before is served straight from the cache without parsing. A message that
+ * is parsed and yields a transaction id seen before from the same sender is
+ * replaced by the transaction first extracted for that id, ignoring case, so
+ * copies of one transaction with slightly different text resolve to the same
+ * object. Ids are only unique within a provider, so the same id from two
+ * senders stays two transactions.</p>
+ * <p>
+ * Both indexes are split into independently locked segments holding least
+ * recently used entries; the oldest entries of a segment are evicted once it
+ * is full. Cached transactions are shared between callers and must be treated
+ * as read-only.</p>
+ * <pre>
+ *     ExtractionService.getInstance().setCache(new ExtractionCache(100_000));
+ * </pre>
+ *
+ * @author CK
+ */
+public final class ExtractionCache {
+
+    private static final int SEGMENTS = 16;
+
+    private final Segment<MessageKey>[] mMessages;
+    private final Segment<MessageKey>[] mTransactions;
+    private final LongAdder mHits = new LongAdder();
+    private final LongAdder mMisses = new LongAdder();
+    private final LongAdder mDuplicates = new LongAdder();
+
+    /**
+     * @param maximumSize Number of messages, and separately of transaction
+     * ids, to remember
+     */
+    public ExtractionCache(int maximumSize) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("maximumSize must be positive");
+        }
+        final int perSegment = Math.max(1, (maximumSize + SEGMENTS - 1) / SEGMENTS);
+        mMessages = newSegments(perSegment);
+        mTransactions = newSegments(perSegment);
+    }
+
+    /**
+     * @param sender The service short code
+     * @param input The message text
+     * @return The transaction previously extracted from the same message or
+     * null
+     */
+    public Transaction get(String sender, String input) {
+        if (sender == null || input == null) {
+            return null;
+        }
+        final MessageKey key = new MessageKey(sender, input);
+        final Transaction transaction = segment(mMessages, key.hash).get(key);
+        if (transaction != null) {
+            mHits.increment();
+        } else {
+            mMisses.increment();
+        }
+        return transaction;
+    }
+
+    /**
+     * Remembers a freshly extracted transaction.
+     *
+     * @param sender The service short code, after routing aliases
+     * @param input The message text
+     * @param transaction The transaction extracted from the message
+     * @return The transaction to hand out: the one first seen from the same
+     * sender with the same transaction id, or the given one
+     */
+    public Transaction put(String sender, String input, Transaction transaction) {
+        if (sender == null || input == null || transaction == null) {
+            return transaction;
+        }
+        Transaction canonical = transaction;
+        final String id = transaction.getTransactionId();
+        if (id != null) {
+            final MessageKey idKey = new MessageKey(sender, id.toUpperCase(Locale.ROOT));
+            final Transaction existing = segment(mTransactions, idKey.hash).putIfAbsent(idKey, transaction);
+            if (existing != null) {
+                canonical = existing;
+                mDuplicates.increment();
+            }
+        }
+        final MessageKey key = new MessageKey(sender, input);
+        segment(mMessages, key.hash).putIfAbsent(key, canonical);
+        return canonical;
+    }
+
+    /**
+     * @return Lookups served from the cache
+     */
+    public long getHits() {
+        return mHits.sum();
+    }
+
+    /**
+     * @return Lookups that required parsing
+     */
+    public long getMisses() {
+        return mMisses.sum();
+    }
+
+    /**
+     * @return Parsed messages whose transaction id was already known
+     */
+    public long getDuplicates() {
+        return mDuplicates.sum();
+    }
+
+    /**
+     * @return The number of cached messages
+     */
+    public int size() {
+        int size = 0;
+        for (Segment<MessageKey> segment : mMessages) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public void clear() {
+        for (int i = 0; i < SEGMENTS; i++) {
+            mMessages[i].clear();
+            mTransactions[i].clear();
+        }
+    }
+
+    private static <K> Segment<K> segment(Segment<K>[] segments, long hash) {
+        return segments[(int) (hash >>> 60) & (SEGMENTS - 1)];
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K> Segment<K>[] newSegments(int capacity) {
+        final Segment<K>[] segments = (Segment<K>[]) new Segment<?>[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment<>(capacity);
+        }
+        return segments;
+    }
+
+    private static long spread(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+
+    /**
+     * Sender and text of a message, or sender and normalized transaction id.
+     * The hash mixes the cached string hashes of both, so building a key does
+     * not scan the text again.
+     */
+    private static final class MessageKey {
+
+        final String sender;
+        final String input;
+        final long hash;
+
+        MessageKey(String sender, String input) {
+            this.sender = sender;
+            this.input = input;
+            this.hash = spread(((long) sender.hashCode() << 32) ^ (input.hashCode() & 0xffffffffL));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof MessageKey)) {
+                return false;
+            }
+            final MessageKey other = (MessageKey) o;
+            return hash == other.hash && sender.equals(other.sender) && input.equals(other.input);
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) hash;
+        }
+    }
+
+    /**
+     * An access ordered map that drops its eldest entry when full. Guarded by
+     * a lock rather than its monitor so a virtual thread waiting for it does
+     * not pin its carrier.
+     */
+    private static final class Segment<K> {
+
+        private final LinkedHashMap<K, Transaction> mEntries;
+        private final ReentrantLock mLock = new ReentrantLock();
+
+        Segment(final int capacity) {
+            mEntries = new LinkedHashMap<K, Transaction>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<K, Transaction> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+
+        Transaction get(K key) {
+            mLock.lock();
+            try {
+                return mEntries.get(key);
+            } finally {
+                mLock.unlock();
+            }
+        }
+
+        Transaction putIfAbsent(K key, Transaction transaction) {
+            mLock.lock();
+            try {
+                final Transaction existing = mEntries.get(key);
+                if (existing != null) {
+                    return existing;
+                }
+                mEntries.put(key, transaction);
+                return null;
+            } finally {
+                mLock.unlock();
+            }
+        }
+
+        int size() {
+            mLock.lock();
+            try {
+                return mEntries.size();
+            } finally {
+                mLock.unlock();
+            }
+        }
+
+        void clear() {
+            mLock.lock();
+            try {
+                mEntries.clear();
+            } finally {
+                mLock.unlock();
+            }
+        }
+    }
+}
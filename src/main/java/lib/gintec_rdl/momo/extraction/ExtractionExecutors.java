@@ -0,0 +1,56 @@
+package lib.gintec_rdl.momo.extraction;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ * Executors for extracting messages off the caller's thread, used by the
+ * batch and asynchronous methods of {@link ExtractionService} by
+ * default.</p>
+ * <p>
+ * The library is packaged as a multi-release jar. On Java 21 and later this
+ * class is replaced by one that runs every task on its own virtual thread, so
+ * extractors that block, for instance to look up an account, do not tie up a
+ * platform thread each. On earlier versions tasks run on platform
+ * threads.</p>
+ *
+ * @author CK
+ */
+public final class ExtractionExecutors {
+
+    /**
+     * @return True if the executors of this class run tasks on virtual
+     * threads
+     */
+    public static boolean isVirtual() {
+        return false;
+    }
+
+    /**
+     * @return The executor shared by default by {@link ExtractionService}:
+     * the common fork-join pool. It must not be shut down.
+     */
+    public static Executor shared() {
+        return ForkJoinPool.commonPool();
+    }
+
+    /**
+     * @return A new executor with one daemon thread per core, to be shut down
+     * by the caller
+     */
+    public static ExecutorService newExecutor() {
+        final AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), task -> {
+            final Thread thread = new Thread(task, "extraction-" + count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private ExtractionExecutors() {
+    }
+}
@@ -0,0 +1,47 @@
+package lib.gintec_rdl.momo.extraction;
+
+/**
+ * <p>
+ * Receives one call for every message passed through
+ * {@link ExtractionService}. Install an implementation with
+ * {@link ExtractionService#setMonitor(lib.gintec_rdl.momo.extraction.ExtractionMonitor)}.</p>
+ * <p>
+ * Implementations are called on the extracting thread and must be thread
+ * safe and cheap; see {@link lib.gintec_rdl.momo.metrics.ExtractionMetrics}
+ * for a ready made one.</p>
+ *
+ * @author CK
+ */
+public interface ExtractionMonitor {
+
+    enum Outcome {
+        /**
+         * The extractor returned a transaction.
+         */
+        EXTRACTED,
+        /**
+         * The extractor returned null.
+         */
+        NOT_EXTRACTED,
+        /**
+         * The extractor threw an exception.
+         */
+        FAILED,
+        /**
+         * No extractor is registered for the sender.
+         */
+        NO_EXTRACTOR
+    }
+
+    /**
+     * @param sender The service short code the message came from
+     * @param messageType The message format as reported by
+     * {@link TransactionExtractor#getMessageType(java.lang.String, java.lang.String)},
+     * or null if it is not known
+     * @param outcome What happened to the message
+     * @param elapsedNanos Time spent in the extractor
+     * @param failure The exception thrown by the extractor when the outcome is
+     * {@link Outcome#FAILED}, otherwise null
+     */
+    void record(String sender, String messageType, Outcome outcome, long elapsedNanos, Exception failure);
+}
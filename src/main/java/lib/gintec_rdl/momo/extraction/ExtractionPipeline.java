@@ -0,0 +1,406 @@
+package lib.gintec_rdl.momo.extraction;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * <p>
+ * Extracts a continuous flow of messages asynchronously and hands every
+ * result to a consumer, for feeding the service from a message queue.</p>
+ * <p>
+ * At most {@code capacity} messages are accepted but not yet delivered.
+ * {@link #offer(SmsMessage)} never blocks: it returns false when the
+ * pipeline is full, and {@link #whenWritable()} tells when to try again, so
+ * a queue consumer can pause instead of buffering. {@link #put(SmsMessage)}
+ * blocks instead, for simple producers. Up to {@code parallelism} messages
+ * are extracted at the same time on the executor.</p>
+ * <p>
+ * With an ordering key, results of messages with the same key are delivered
+ * in the order the messages were accepted, one at a time, while extraction
+ * itself still runs in parallel. Without one, results are delivered as soon
+ * as they are ready, possibly concurrently.</p>
+ * <pre>
+ *     ExtractionPipeline pipeline = new ExtractionPipeline(service, executor, 4, 1024,
+ *         SmsMessage::getSender, result -&gt; store.add(result.getTransaction()));
+ *     if (!pipeline.offer(message)) {
+ *         consumer.pause();
+ *         pipeline.whenWritable().thenRun(consumer::resume);
+ *     }
+ * </pre>
+ * <p>
+ * Exceptions thrown by the consumer are passed to the error handler and do
+ * not stop the pipeline.</p>
+ *
+ * @author CK
+ */
+public final class ExtractionPipeline implements AutoCloseable {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * Ordering key of messages whose key is null, which are kept in order
+     * among themselves.
+     */
+    private static final Object NULL_KEY = new Object();
+
+    private final ExtractionService service;
+    private final Executor executor;
+    private final int parallelism;
+    private final int capacity;
+    private final Function<? super SmsMessage, ?> orderingKey;
+    private final Consumer<? super ExtractionResult> consumer;
+    private final Queue<Entry> queue = new ConcurrentLinkedQueue<>();
+    private final Queue<CompletableFuture<Void>> writable = new ConcurrentLinkedQueue<>();
+    private final ConcurrentMap<Object, Sequence> sequences = new ConcurrentHashMap<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicInteger workers = new AtomicInteger();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final CompletableFuture<Void> terminated = new CompletableFuture<>();
+    private volatile Consumer<Exception> errorHandler;
+    private volatile boolean closed;
+
+    /**
+     * Creates an unordered pipeline on the common fork-join pool.
+     *
+     * @param service The service to extract with
+     * @param consumer Receives every result
+     */
+    public ExtractionPipeline(ExtractionService service, Consumer<? super ExtractionResult> consumer) {
+        this(service, ForkJoinPool.commonPool(), ForkJoinPool.getCommonPoolParallelism(), DEFAULT_CAPACITY, null, consumer);
+    }
+
+    /**
+     * @param service The service to extract with
+     * @param executor Runs extraction and delivery
+     * @param parallelism Most messages extracted at the same time
+     * @param capacity Most messages accepted but not yet delivered
+     * @param orderingKey Groups messages whose results must be delivered in
+     * order, or null for no ordering; messages it maps to null form one
+     * group
+     * @param consumer Receives every result
+     */
+    public ExtractionPipeline(ExtractionService service, Executor executor, int parallelism, int capacity,
+        Function<? super SmsMessage, ?> orderingKey, Consumer<? super ExtractionResult> consumer) {
+        if (service == null || executor == null || consumer == null) {
+            throw new IllegalArgumentException("service, executor and consumer are required");
+        }
+        if (parallelism < 1 || capacity < 1) {
+            throw new IllegalArgumentException("parallelism and capacity must be positive");
+        }
+        this.service = service;
+        this.executor = executor;
+        this.parallelism = parallelism;
+        this.capacity = capacity;
+        this.orderingKey = orderingKey;
+        this.consumer = consumer;
+    }
+
+    /**
+     * @param handler Called with exceptions thrown by the consumer, or null
+     * @return the same instance for chained calls.
+     */
+    public ExtractionPipeline onError(Consumer<Exception> handler) {
+        this.errorHandler = handler;
+        return this;
+    }
+
+    /**
+     * Accepts a message if the pipeline has room for it.
+     *
+     * @param message The message to extract
+     * @return True if the message was accepted, false if the pipeline is full
+     * @throws IllegalStateException If the pipeline is shut down
+     */
+    public boolean offer(SmsMessage message) {
+        if (message == null) {
+            throw new IllegalArgumentException("message is required");
+        }
+        if (closed) {
+            throw new IllegalStateException("pipeline is shut down");
+        }
+        // Read the key before reserving a slot, so a failing key function
+        // cannot leave a slot taken
+        final Object key = orderingKey != null ? key(message) : null;
+        for (;;) {
+            final int current = pending.get();
+            if (current >= capacity) {
+                rejected.increment();
+                return false;
+            }
+            if (pending.compareAndSet(current, current + 1)) {
+                break;
+            }
+        }
+        if (closed) {
+            // Shut down while reserving: give the slot back
+            release();
+            throw new IllegalStateException("pipeline is shut down");
+        }
+        final Entry entry = new Entry(message);
+        if (key != null) {
+            sequence(entry, key);
+        }
+        queue.add(entry);
+        startWorker();
+        return true;
+    }
+
+    /**
+     * Accepts a message, waiting for room if the pipeline is full.
+     *
+     * @param message The message to extract
+     * @throws InterruptedException If interrupted while waiting
+     * @throws IllegalStateException If the pipeline is shut down
+     */
+    public void put(SmsMessage message) throws InterruptedException {
+        while (!offer(message)) {
+            try {
+                whenWritable().get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+    }
+
+    /**
+     * @return A future completed once the pipeline has room, immediately if
+     * it has now. Room may be taken by another producer before the next
+     * {@link #offer(SmsMessage)}.
+     */
+    public CompletableFuture<Void> whenWritable() {
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        writable.add(future);
+        if (pending.get() < capacity || closed) {
+            signalWritable();
+        }
+        return future;
+    }
+
+    /**
+     * Stops accepting messages.
+     *
+     * @return A future completed once every accepted message has been
+     * delivered
+     */
+    public CompletableFuture<Void> shutdown() {
+        closed = true;
+        if (pending.get() == 0) {
+            terminated.complete(null);
+        }
+        signalWritable();
+        return terminated;
+    }
+
+    /**
+     * Shuts down and waits until every accepted message has been delivered.
+     */
+    @Override
+    public void close() {
+        shutdown().join();
+    }
+
+    /**
+     * @return Number of messages accepted but not yet delivered
+     */
+    public int getPendingCount() {
+        return pending.get();
+    }
+
+    /**
+     * @return Number of results delivered so far
+     */
+    public long getDeliveredCount() {
+        return delivered.sum();
+    }
+
+    /**
+     * @return Number of messages refused by {@link #offer(SmsMessage)}
+     * because the pipeline was full
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    private void startWorker() {
+        if (acquireWorker()) {
+            try {
+                executor.execute(this::work);
+            } catch (RuntimeException e) {
+                workers.decrementAndGet();
+                throw e;
+            }
+        }
+    }
+
+    private boolean acquireWorker() {
+        for (;;) {
+            final int current = workers.get();
+            if (current >= parallelism) {
+                return false;
+            }
+            if (workers.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void work() {
+        do {
+            Entry entry;
+            while ((entry = queue.poll()) != null) {
+                entry.result = service.extract(entry.message);
+                if (entry.sequence != null) {
+                    entry.sequence.complete(entry);
+                } else {
+                    deliver(entry);
+                }
+            }
+            workers.decrementAndGet();
+            // A message queued after the last poll may have found every
+            // worker busy
+        } while (!queue.isEmpty() && acquireWorker());
+    }
+
+    private void deliver(Entry entry) {
+        try {
+            consumer.accept(entry.result);
+        } catch (Exception e) {
+            final Consumer<Exception> handler = errorHandler;
+            if (handler != null) {
+                handler.accept(e);
+            }
+        }
+        delivered.increment();
+        release();
+    }
+
+    private void release() {
+        if (pending.decrementAndGet() == 0 && closed) {
+            terminated.complete(null);
+        }
+        signalWritable();
+    }
+
+    private void signalWritable() {
+        CompletableFuture<Void> future;
+        while ((future = writable.poll()) != null) {
+            future.complete(null);
+        }
+    }
+
+    private Object key(SmsMessage message) {
+        final Object key = orderingKey.apply(message);
+        return key != null ? key : NULL_KEY;
+    }
+
+    private void sequence(Entry entry, Object key) {
+        for (;;) {
+            final Sequence sequence = sequences.computeIfAbsent(key, Sequence::new);
+            sequence.lock.lock();
+            try {
+                if (!sequence.retired) {
+                    entry.sequence = sequence;
+                    entry.number = sequence.accepted++;
+                    return;
+                }
+            } finally {
+                sequence.lock.unlock();
+            }
+        }
+    }
+
+    private static final class Entry {
+
+        final SmsMessage message;
+        Sequence sequence;
+        long number;
+        ExtractionResult result;
+
+        Entry(SmsMessage message) {
+            this.message = message;
+        }
+    }
+
+    /**
+     * Delivery order of one ordering key. Completed entries wait in a ring
+     * indexed by their number until every earlier one has been delivered;
+     * whichever thread finds the next entry ready delivers until the ring
+     * runs dry, so the consumer sees one result of a key at a time.
+     */
+    private final class Sequence {
+
+        final ReentrantLock lock = new ReentrantLock();
+        private final Object key;
+        private Entry[] ring = new Entry[16];
+        private long accepted, next;
+        private boolean draining, retired;
+
+        Sequence(Object key) {
+            this.key = key;
+        }
+
+        void complete(Entry entry) {
+            lock.lock();
+            try {
+                final long offset = entry.number - next;
+                if (offset >= ring.length) {
+                    grow(offset);
+                }
+                ring[(int) (entry.number & (ring.length - 1))] = entry;
+                if (draining) {
+                    return;
+                }
+                draining = true;
+            } finally {
+                lock.unlock();
+            }
+            for (;;) {
+                final Entry ready;
+                lock.lock();
+                try {
+                    final int slot = (int) (next & (ring.length - 1));
+                    ready = ring[slot];
+                    if (ready == null) {
+                        draining = false;
+                        if (next == accepted) {
+                            retired = true;
+                            sequences.remove(key, this);
+                        }
+                        return;
+                    }
+                    ring[slot] = null;
+                    next++;
+                } finally {
+                    lock.unlock();
+                }
+                deliver(ready);
+            }
+        }
+
+        private void grow(long offset) {
+            int length = ring.length;
+            while (length <= offset) {
+                length *= 2;
+            }
+            final Entry[] grown = new Entry[length];
+            for (Entry waiting : ring) {
+                if (waiting != null) {
+                    grown[(int) (waiting.number & (length - 1))] = waiting;
+                }
+            }
+            ring = grown;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package lib.gintec_rdl.momo.extraction;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>
+ * Collects what an extractor learned about a message besides the
+ * transaction: the format it recognised and the fields it could not find or
+ * could not read.</p>
+ * <p>
+ * Extractors fill the report passed to
+ * {@link TransactionExtractor#extract(java.lang.String, java.lang.String, java.util.Map, lib.gintec_rdl.momo.extraction.ExtractionReport)
+ * } instead of throwing, so a malformed message costs no more than a valid
+ * one. {@link ExtractionService} keeps one report per thread and turns it
+ * into an {@link ExtractionResult}. Reports are not thread safe.</p>
+ *
+ * @author CK
+ */
+public final class ExtractionReport {
+
+    private static final ExtractionReport IGNORE = new ExtractionReport(false);
+
+    private final boolean recording;
+    private String messageType;
+    private String[] missing = new String[4];
+    private String[] invalid = new String[4];
+    private int missingCount, invalidCount;
+
+    public ExtractionReport() {
+        this(true);
+    }
+
+    private ExtractionReport(boolean recording) {
+        this.recording = recording;
+    }
+
+    /**
+     * @return A shared report that discards everything, for callers that only
+     * want the transaction
+     */
+    public static ExtractionReport ignoring() {
+        return IGNORE;
+    }
+
+    /**
+     * Clears the report for the next message.
+     */
+    public void reset() {
+        messageType = null;
+        Arrays.fill(missing, 0, missingCount, null);
+        Arrays.fill(invalid, 0, invalidCount, null);
+        missingCount = invalidCount = 0;
+    }
+
+    /**
+     * @param messageType Name of the recognised message format
+     */
+    public void setMessageType(String messageType) {
+        if (recording) {
+            this.messageType = messageType;
+        }
+    }
+
+    /**
+     * @return Name of the recognised message format or null
+     */
+    public String getMessageType() {
+        return messageType;
+    }
+
+    /**
+     * Records a field the message was expected to contain but did not.
+     *
+     * @param field Name of the transaction property
+     */
+    public void missing(String field) {
+        if (recording) {
+            if (missingCount == missing.length) {
+                missing = Arrays.copyOf(missing, missingCount * 2);
+            }
+            missing[missingCount++] = field;
+        }
+    }
+
+    /**
+     * Records a field that was present but could not be read.
+     *
+     * @param field Name of the transaction property
+     */
+    public void invalid(String field) {
+        if (recording) {
+            if (invalidCount == invalid.length) {
+                invalid = Arrays.copyOf(invalid, invalidCount * 2);
+            }
+            invalid[invalidCount++] = field;
+        }
+    }
+
+    /**
+     * @return True if any field is missing or invalid
+     */
+    public boolean hasProblems() {
+        return missingCount + invalidCount > 0;
+    }
+
+    /**
+     * @return A copy of the missing field names
+     */
+    public List<String> getMissingFields() {
+        return copy(missing, missingCount);
+    }
+
+    /**
+     * @return A copy of the invalid field names
+     */
+    public List<String> getInvalidFields() {
+        return copy(invalid, invalidCount);
+    }
+
+    /**
+     * Replaces the content of another report with this one's.
+     *
+     * @param target The report to fill
+     */
+    void copyTo(ExtractionReport target) {
+        target.reset();
+        target.setMessageType(messageType);
+        for (int i = 0; i < missingCount; i++) {
+            target.missing(missing[i]);
+        }
+        for (int i = 0; i < invalidCount; i++) {
+            target.invalid(invalid[i]);
+        }
+    }
+
+    private static List<String> copy(String[] fields, int count) {
+        return count == 0 ? Collections.<String>emptyList() : Collections.unmodifiableList(Arrays.asList(Arrays.copyOf(fields, count)));
+    }
+}
@@ -0,0 +1,151 @@
+package lib.gintec_rdl.momo.extraction;
+
+import java.util.List;
+
+import lib.gintec_rdl.momo.model.Transaction;
+
+/**
+ * <p>
+ * The outcome of extracting a single message.</p>
+ * <p>
+ * Besides the transaction, a result tells why extraction did not fully
+ * succeed through an {@link ErrorCode}, the recognised message type and the
+ * names of missing or invalid fields. Extractors that report through an
+ * {@link ExtractionReport} produce these details without throwing, so
+ * failures can be counted and triaged in bulk at the cost of a successful
+ * extraction. {@link #getFailure()} is only set when an extractor threw.</p>
+ * <p>
+ * A transaction may be present even if the result is not a success: it then
+ * holds the fields that could be read.</p>
+ *
+ * @author CK
+ */
+public final class ExtractionResult {
+
+    /**
+     * Why a message was not fully extracted.
+     */
+    public enum ErrorCode {
+        /**
+         * Every field was read.
+         */
+        NONE,
+        /**
+         * No extractor is registered for the sender.
+         */
+        NO_EXTRACTOR,
+        /**
+         * The extractor does not know the message format.
+         */
+        UNRECOGNIZED,
+        /**
+         * The format was recognised but the message does not match it.
+         */
+        MALFORMED,
+        /**
+         * Some fields of the format were not found.
+         */
+        MISSING_FIELDS,
+        /**
+         * Some fields were found but could not be read.
+         */
+        INVALID_FIELDS,
+        /**
+         * The extractor threw an exception.
+         */
+        FAILED
+    }
+
+    private final SmsMessage message;
+    private final Transaction transaction;
+    private final Exception failure;
+    private final ErrorCode errorCode;
+    private final String messageType;
+    private final List<String> missingFields;
+    private final List<String> invalidFields;
+
+    ExtractionResult(SmsMessage message, Transaction transaction, Exception failure, ErrorCode errorCode,
+        String messageType, List<String> missingFields, List<String> invalidFields) {
+        this.message = message;
+        this.transaction = transaction;
+        this.failure = failure;
+        this.errorCode = errorCode;
+        this.messageType = messageType;
+        this.missingFields = missingFields;
+        this.invalidFields = invalidFields;
+    }
+
+    /**
+     * @return The message this result was produced from
+     */
+    public SmsMessage getMessage() {
+        return message;
+    }
+
+    /**
+     * @return The extracted transaction, possibly incomplete, or null
+     */
+    public Transaction getTransaction() {
+        return transaction;
+    }
+
+    /**
+     * @param <T> The expected transaction type
+     * @param klazz The expected transaction type
+     * @return The extracted transaction, possibly incomplete, or null
+     */
+    public <T extends Transaction> T getTransaction(Class<T> klazz) {
+        return klazz.cast(transaction);
+    }
+
+    /**
+     * @return The exception thrown by the extractor or null
+     */
+    public Exception getFailure() {
+        return failure;
+    }
+
+    /**
+     * @return Why extraction did not fully succeed, or
+     * {@link ErrorCode#NONE}
+     */
+    public ErrorCode getErrorCode() {
+        return errorCode;
+    }
+
+    /**
+     * @return The recognised message format or null if it is not known
+     */
+    public String getMessageType() {
+        return messageType;
+    }
+
+    /**
+     * @return Names of the fields that were not found
+     */
+    public List<String> getMissingFields() {
+        return missingFields;
+    }
+
+    /**
+     * @return Names of the fields that could not be read
+     */
+    public List<String> getInvalidFields() {
+        return invalidFields;
+    }
+
+    /**
+     * @return True if a complete transaction was extracted
+     */
+    public boolean isSuccess() {
+        return errorCode == ErrorCode.NONE;
+    }
+
+    @Override
+    public String toString() {
+        return "ExtractionResult{" + errorCode + ", type=" + messageType
+            + (missingFields.isEmpty() ? "" : ", missing=" + missingFields)
+            + (invalidFields.isEmpty() ? "" : ", invalid=" + invalidFields)
+            + (failure == null ? "" : ", failure=" + failure) + "}";
+    }
+}
@@ -1,8 +1,21 @@
 package lib.gintec_rdl.momo.extraction;
 
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import lib.gintec_rdl.momo.analytics.AgentDirectory;
+import lib.gintec_rdl.momo.extraction.ExtractionMonitor.Outcome;
+import lib.gintec_rdl.momo.extraction.ExtractionResult.ErrorCode;
 
 import lib.gintec_rdl.momo.model.Transaction;
 
@@ -50,26 +63,85 @@ import lib.gintec_rdl.momo.model.Transaction;
  *     Transaction1 transaction1 = svc.extract(serviceProvider1ShortCode, input1, extraOptions1, Transaction1.class);
  *     Transaction2 transaction2 = svc.extract(serviceProvider2ShortCode, input2, extraOptions2, Transaction2.class);
  * </pre>
+ * <p>
+ * The service is safe to share between threads. Lookups do not lock, so
+ * concurrent calls to {@link #extract(java.lang.String, java.lang.String, java.util.Map, java.lang.Class)
+ * } only contend inside the extractors themselves.</p>
+ * <p>
+ * Large inputs can be processed in one call with the batch methods, which
+ * spread the work over an executor and return one result per message in
+ * input order</p>
+ * <pre>
+ *     List&lt;ExtractionResult&gt; results = svc.extractAll(messages, executor);
+ * </pre>
+ * <p>
+ * Without an executor, batch and asynchronous extraction run on
+ * {@link ExtractionExecutors#shared()}, which uses virtual threads on Java 21
+ * and later.</p>
+ * <p>
+ * Senders are matched exactly first. Other spellings of a registered sender,
+ * differing in case or spacing, and aliases registered with
+ * {@link #registerAlias(java.lang.String, java.lang.String)} are routed to
+ * its extractor without allocating.</p>
+ * <p>
+ * Outcomes and latencies can be observed by installing an
+ * {@link ExtractionMonitor}. Without one, extraction is not timed.</p>
+ * <p>
+ * Repeated messages can be served without parsing by installing an
+ * {@link ExtractionCache}. The monitor only sees messages that were
+ * parsed.</p>
+ * <p>
+ * Agents can be shared between transactions by installing an
+ * {@link AgentDirectory}, which replaces the agent of each transaction
+ * parsed without problems with the instance it keeps for the sender and
+ * agent code and counts the transaction towards the agent's totals.</p>
+ * <p>
+ * An extractor can be swapped while the service is in use with
+ * {@link #replaceExtractor(java.lang.String, lib.gintec_rdl.momo.extraction.TransactionExtractor)
+ * }. Calls already running finish on the extractor they started with and
+ * later calls see the replacement; each replacement gets a new version
+ * number.</p>
  *
  * @author CK
  */
 public final class ExtractionService {
 
-    private static ExtractionService mInstance;
-    private final Map<String, TransactionExtractor> mExtractors;
+    /**
+     * Number of chunks each worker of the executor gets, so that uneven
+     * chunks do not leave workers idle at the end of a batch.
+     */
+    private static final int CHUNKS_PER_WORKER = 4;
+
+    private static final List<String> NO_FIELDS = Collections.emptyList();
+
+    /**
+     * Reused for every message extracted on a thread.
+     */
+    private static final ThreadLocal<ExtractionReport> REPORT = ThreadLocal.withInitial(ExtractionReport::new);
+
+    private final ConcurrentMap<String, TransactionExtractor> mExtractors;
+    private final ConcurrentMap<String, Long> mVersions;
+    private final SenderRouter mRouter = new SenderRouter();
+    private volatile ExtractionMonitor mMonitor;
+    private volatile ExtractionCache mCache;
+    private volatile AgentDirectory mAgents;
 
     private ExtractionService() {
-        mExtractors = Collections.synchronizedMap(new LinkedHashMap<String, TransactionExtractor>());
+        mExtractors = new ConcurrentHashMap<>();
+        mVersions = new ConcurrentHashMap<>();
+    }
+
+    private static final class Holder {
+
+        static final ExtractionService INSTANCE = new ExtractionService();
     }
 
     /**
      *
      * @return The singleton instance
      */
-    public synchronized static ExtractionService getInstance() {
-        synchronized (ExtractionService.class) {
-            return mInstance == null ? (mInstance = new ExtractionService()) : mInstance;
-        }
+    public static ExtractionService getInstance() {
+        return Holder.INSTANCE;
     }
 
     /**
@@ -81,14 +153,71 @@ public final class ExtractionService {
      * @return the same instance for chained calls.
      */
     public ExtractionService registerExtractor(String sender, TransactionExtractor extractor) {
-        synchronized (mExtractors) {
-            if (!mExtractors.containsKey(sender)) {
-                mExtractors.put(sender, extractor);
-            }
-        }
+        mVersions.computeIfAbsent(sender, key -> {
+            mExtractors.put(key, extractor);
+            return 1L;
+        });
+        registerSelfAlias(sender);
         return this;
     }
 
+    /**
+     * <p>
+     * Routes messages from another spelling of a sender to the sender's
+     * extractor.</p>
+     * <p>
+     * Every registered sender is already an alias of itself, so other case
+     * and spacing variants of it are routed without registration; phone
+     * numbers and short codes delivered for a provider are registered here.
+     * The extractor receives the sender it was registered under.</p>
+     *
+     * @param alias The sender as delivered by the phone
+     * @param sender The sender the extractor is registered under
+     * @return the same instance for chained calls.
+     * @see SenderRouter
+     */
+    public ExtractionService registerAlias(String alias, String sender) {
+        mRouter.register(alias, sender);
+        return this;
+    }
+
+    /**
+     * <p>
+     * Registers an extractor, replacing the one registered for the sender if
+     * any.</p>
+     * <p>
+     * The replacement is published atomically. Lookups never block on it:
+     * calls that already obtained the previous extractor complete with it
+     * and every later call uses the new one.</p>
+     *
+     * @param sender The service short code.
+     * @param extractor The extractor instance to register
+     * @return The version of the sender's extractor, starting at 1 for the
+     * first registration
+     */
+    public long replaceExtractor(String sender, TransactionExtractor extractor) {
+        if (sender == null || extractor == null) {
+            throw new IllegalArgumentException("sender and extractor are required");
+        }
+        final long[] version = new long[1];
+        mVersions.compute(sender, (key, current) -> {
+            mExtractors.put(key, extractor);
+            return version[0] = current != null ? current + 1L : 1L;
+        });
+        registerSelfAlias(sender);
+        return version[0];
+    }
+
+    /**
+     * @param sender Service short code
+     * @return The version of the sender's extractor or 0 if none is
+     * registered
+     */
+    public long getExtractorVersion(String sender) {
+        final Long version = sender != null ? mVersions.get(sender) : null;
+        return version != null ? version : 0L;
+    }
+
     /**
      * <p>
      * Register an extractor type that will be instantiated my the service.</p>
@@ -116,24 +245,74 @@ public final class ExtractionService {
      * }
      */
     public <T extends TransactionExtractor> T getExtractor(String sender, Class<T> klazz) {
-        synchronized (mExtractors) {
-            final TransactionExtractor te = mExtractors.get(sender);
-            if (te != null) {
-                return klazz.cast(te);
-            }
-        }
-        return null;
+        final TransactionExtractor te = getExtractor(sender);
+        return te != null ? klazz.cast(te) : null;
     }
 
     /**
      * @see #getExtractor(java.lang.String, java.lang.Class)
-     * @param sender Service short code or provider service
+     * @param sender Service short code or provider service, or an alias
      * @return Returns an extractor
      */
     public TransactionExtractor getExtractor(String sender) {
-        synchronized (mExtractors) {
-            return mExtractors.get(sender);
-        }
+        final String routed = route(sender);
+        return routed != null ? mExtractors.get(routed) : null;
+    }
+
+    /**
+     * Installs a monitor that is told about every extracted message.
+     *
+     * @param monitor The monitor or null to stop monitoring
+     * @return the same instance for chained calls.
+     */
+    public ExtractionService setMonitor(ExtractionMonitor monitor) {
+        mMonitor = monitor;
+        return this;
+    }
+
+    /**
+     * @return The installed monitor or null
+     */
+    public ExtractionMonitor getMonitor() {
+        return mMonitor;
+    }
+
+    /**
+     * Installs a cache of extraction results.
+     *
+     * @param cache The cache or null to stop caching
+     * @return the same instance for chained calls.
+     */
+    public ExtractionService setCache(ExtractionCache cache) {
+        mCache = cache;
+        return this;
+    }
+
+    /**
+     * @return The installed cache or null
+     */
+    public ExtractionCache getCache() {
+        return mCache;
+    }
+
+    /**
+     * Installs a directory that interns the agents of extracted transactions
+     * and keeps their totals. Transactions with missing or invalid fields are
+     * left alone.
+     *
+     * @param agents The directory or null to stop interning agents
+     * @return the same instance for chained calls.
+     */
+    public ExtractionService setAgentDirectory(AgentDirectory agents) {
+        mAgents = agents;
+        return this;
+    }
+
+    /**
+     * @return The installed agent directory or null
+     */
+    public AgentDirectory getAgentDirectory() {
+        return mAgents;
     }
 
     /**
@@ -150,18 +329,282 @@ public final class ExtractionService {
      * java.util.Map)
      */
     public <T extends Transaction> T extract(String from, String input, Map<String, String> extras, Class<T> klazz) {
-        final TransactionExtractor te;
-        Transaction transaction = null;
-        synchronized (mExtractors) {
-            te = mExtractors.get(from);
+        final ExtractionMonitor monitor = mMonitor;
+        final ExtractionCache cache = mCache;
+        final AgentDirectory agents = mAgents;
+        if (monitor != null || cache != null || agents != null) {
+            return klazz.cast(extract(new SmsMessage(from, input, extras), monitor, cache, agents).getTransaction());
         }
+        final String sender = route(from);
+        final TransactionExtractor te = sender != null ? mExtractors.get(sender) : null;
+        Transaction transaction = null;
         if (te != null) {
             try {
-                transaction = te.extract(from, input, extras);
+                transaction = te.extract(sender, input, extras);
             } catch (Exception ignored) {
                 // ignored.printStackTrace();
             }
         }
         return klazz.cast(transaction);
     }
+
+    /**
+     * <p>
+     * Extracts a transaction into a holder's reusable instances, for tight
+     * loops that should create as little garbage as possible.</p>
+     * <p>
+     * The returned transaction may belong to the holder and is then only
+     * valid until the next call with the same holder. Extractors that do not
+     * support holders return a new transaction as usual. The cache is not
+     * used; an installed monitor still sees the message.</p>
+     *
+     * @param from Service short code.
+     * @param input The input containing transaction details.
+     * @param extras Extra options to pass to the underlying extractor.
+     * @param holder Provides the transaction to fill
+     * @return A transaction or null if there was an error
+     * @see TransactionHolder
+     */
+    public Transaction extract(String from, String input, Map<String, String> extras, TransactionHolder holder) {
+        if (holder == null) {
+            throw new IllegalArgumentException("holder is required");
+        }
+        final ExtractionMonitor monitor = mMonitor;
+        final String sender = route(from);
+        final TransactionExtractor te = sender != null ? mExtractors.get(sender) : null;
+        if (te == null) {
+            if (monitor != null) {
+                monitor.record(from, null, Outcome.NO_EXTRACTOR, 0L, null);
+            }
+            return null;
+        }
+        final AgentDirectory agents = mAgents;
+        // Only complete transactions count towards the agents
+        final ExtractionReport report = agents != null ? REPORT.get() : ExtractionReport.ignoring();
+        report.reset();
+        final long start = monitor != null ? System.nanoTime() : 0L;
+        Transaction transaction = null;
+        Exception failure = null;
+        try {
+            transaction = te.extract(sender, input, extras, holder, report);
+        } catch (Exception e) {
+            failure = e;
+        }
+        if (agents != null && transaction != null && !report.hasProblems()) {
+            agents.record(sender, transaction);
+        }
+        if (monitor != null) {
+            final long elapsed = System.nanoTime() - start;
+            final Outcome outcome = failure != null ? Outcome.FAILED : transaction != null ? Outcome.EXTRACTED : Outcome.NOT_EXTRACTED;
+            String monitored = te.getMessageType(sender, input);
+            if (monitored == null && transaction != null) {
+                monitored = transaction.getClass().getSimpleName();
+            }
+            monitor.record(sender, monitored, outcome, elapsed, failure);
+        }
+        return transaction;
+    }
+
+    /**
+     * <p>
+     * Extracts a single message and describes the outcome.</p>
+     * <p>
+     * Unlike {@link #extract(java.lang.String, java.lang.String, java.util.Map, java.lang.Class)
+     * }, which returns null on any problem, the result tells whether the
+     * sender or format was unknown, which fields were missing or invalid, or
+     * which exception the extractor threw. The details come from the
+     * extractor's {@link ExtractionReport}, so no exception is created for a
+     * malformed message. Only complete transactions are cached.</p>
+     *
+     * @param message The message to extract
+     * @return The result
+     */
+    public ExtractionResult extract(SmsMessage message) {
+        return extract(message, mMonitor, mCache, mAgents);
+    }
+
+    /**
+     * Extracts a single message on the shared executor.
+     *
+     * @param message The message to extract
+     * @return The result, once extracted
+     * @see ExtractionExecutors#shared()
+     */
+    public CompletableFuture<ExtractionResult> extractAsync(SmsMessage message) {
+        return extractAsync(message, ExtractionExecutors.shared());
+    }
+
+    /**
+     * Extracts a single message on the given executor.
+     *
+     * @param message The message to extract
+     * @param executor The executor to run extraction on
+     * @return The result, once extracted
+     */
+    public CompletableFuture<ExtractionResult> extractAsync(SmsMessage message, Executor executor) {
+        final ExtractionMonitor monitor = mMonitor;
+        final ExtractionCache cache = mCache;
+        final AgentDirectory agents = mAgents;
+        return CompletableFuture.supplyAsync(() -> extract(message, monitor, cache, agents), executor);
+    }
+
+    /**
+     * Extracts a batch of messages on the shared executor: virtual threads on
+     * Java 21 and later, the common fork-join pool before.
+     *
+     * @param messages The messages to extract
+     * @return One result per message, in input order
+     * @see #extractAll(java.util.Collection, java.util.concurrent.Executor)
+     * @see ExtractionExecutors#shared()
+     */
+    public List<ExtractionResult> extractAll(Collection<SmsMessage> messages) {
+        return extractAll(messages, ExtractionExecutors.shared());
+    }
+
+    /**
+     * Extracts a stream of messages. The stream is drained before extraction
+     * starts.
+     *
+     * @param messages The messages to extract
+     * @param executor The executor to run extraction on
+     * @return One result per message, in encounter order
+     * @see #extractAll(java.util.Collection, java.util.concurrent.Executor)
+     */
+    public List<ExtractionResult> extractAll(Stream<SmsMessage> messages, Executor executor) {
+        return extractAll(messages.collect(Collectors.toList()), executor);
+    }
+
+    /**
+     * <p>
+     * Extracts a batch of messages on the given executor.</p>
+     * <p>
+     * The batch is split into contiguous chunks which are extracted in
+     * parallel. A failing message does not affect the others; its exception is
+     * reported through {@link ExtractionResult#getFailure()}. The calling
+     * thread blocks until every chunk has completed.</p>
+     *
+     * @param messages The messages to extract
+     * @param executor The executor to run extraction on
+     * @return One result per message, in input order
+     */
+    public List<ExtractionResult> extractAll(Collection<SmsMessage> messages, Executor executor) {
+        return extractAllAsync(messages, executor).join();
+    }
+
+    /**
+     * Extracts a batch of messages on the given executor without blocking the
+     * calling thread.
+     *
+     * @param messages The messages to extract
+     * @param executor The executor to run extraction on
+     * @return One result per message, in input order, once every message is
+     * extracted
+     * @see #extractAll(java.util.Collection, java.util.concurrent.Executor)
+     */
+    public CompletableFuture<List<ExtractionResult>> extractAllAsync(Collection<SmsMessage> messages, Executor executor) {
+        final SmsMessage[] input = messages.toArray(new SmsMessage[0]);
+        final ExtractionResult[] results = new ExtractionResult[input.length];
+        if (input.length == 0) {
+            return CompletableFuture.completedFuture(Arrays.asList(results));
+        }
+        final int workers = executor instanceof ForkJoinPool
+            ? ((ForkJoinPool) executor).getParallelism()
+            : Runtime.getRuntime().availableProcessors();
+        final int chunk = Math.max(1, (input.length + workers * CHUNKS_PER_WORKER - 1) / (workers * CHUNKS_PER_WORKER));
+        final ExtractionMonitor monitor = mMonitor;
+        final ExtractionCache cache = mCache;
+        final AgentDirectory agents = mAgents;
+        final CompletableFuture<?>[] futures = new CompletableFuture<?>[(input.length + chunk - 1) / chunk];
+        for (int i = 0; i < futures.length; i++) {
+            final int start = i * chunk;
+            final int end = Math.min(start + chunk, input.length);
+            futures[i] = CompletableFuture.runAsync(() -> {
+                for (int j = start; j < end; j++) {
+                    results[j] = extract(input[j], monitor, cache, agents);
+                }
+            }, executor);
+        }
+        return CompletableFuture.allOf(futures).thenApply(done -> Arrays.asList(results));
+    }
+
+    /**
+     * @return The sender registered for the given one, which is the given
+     * one unless it is an alias
+     */
+    private String route(String from) {
+        if (from == null || mExtractors.containsKey(from)) {
+            return from;
+        }
+        final String sender = mRouter.resolve(from);
+        return sender != null ? sender : from;
+    }
+
+    private void registerSelfAlias(String sender) {
+        if (!SenderRouter.normalize(sender).isEmpty()) {
+            mRouter.register(sender, sender);
+        }
+    }
+
+    private ExtractionResult extract(SmsMessage message, ExtractionMonitor monitor, ExtractionCache cache, AgentDirectory agents) {
+        final String from = route(message.getSender());
+        if (cache != null) {
+            final Transaction cached = cache.get(from, message.getBody());
+            if (cached != null) {
+                return new ExtractionResult(message, cached, null, ErrorCode.NONE, null, NO_FIELDS, NO_FIELDS);
+            }
+        }
+        final TransactionExtractor te = from != null ? mExtractors.get(from) : null;
+        if (te == null) {
+            if (monitor != null) {
+                monitor.record(from, null, Outcome.NO_EXTRACTOR, 0L, null);
+            }
+            return new ExtractionResult(message, null, null, ErrorCode.NO_EXTRACTOR, null, NO_FIELDS, NO_FIELDS);
+        }
+        final ExtractionReport report = REPORT.get();
+        report.reset();
+        final long start = monitor != null ? System.nanoTime() : 0L;
+        Transaction transaction = null;
+        Exception failure = null;
+        try {
+            transaction = te.extract(from, message.getBody(), message.getExtras(), report);
+        } catch (Exception e) {
+            failure = e;
+        }
+        String type = report.getMessageType();
+        if (monitor != null) {
+            final long elapsed = System.nanoTime() - start;
+            final Outcome outcome = failure != null ? Outcome.FAILED : transaction != null ? Outcome.EXTRACTED : Outcome.NOT_EXTRACTED;
+            String monitored = type != null ? type : te.getMessageType(from, message.getBody());
+            if (monitored == null && transaction != null) {
+                monitored = transaction.getClass().getSimpleName();
+            }
+            monitor.record(from, monitored, outcome, elapsed, failure);
+        }
+        final ErrorCode code;
+        if (failure != null) {
+            code = ErrorCode.FAILED;
+        } else if (transaction == null) {
+            code = type != null ? ErrorCode.MALFORMED : ErrorCode.UNRECOGNIZED;
+        } else if (!report.getInvalidFields().isEmpty()) {
+            code = ErrorCode.INVALID_FIELDS;
+        } else if (report.hasProblems()) {
+            code = ErrorCode.MISSING_FIELDS;
+        } else {
+            code = ErrorCode.NONE;
+        }
+        if (code == ErrorCode.NONE) {
+            if (cache != null) {
+                final Transaction parsed = transaction;
+                transaction = cache.put(from, message.getBody(), transaction);
+                if (agents != null && transaction == parsed) {
+                    // copies of a cached transaction were counted already
+                    agents.record(from, transaction);
+                }
+            } else if (agents != null) {
+                agents.record(from, transaction);
+            }
+            return new ExtractionResult(message, transaction, null, code, type, NO_FIELDS, NO_FIELDS);
+        }
+        return new ExtractionResult(message, transaction, failure, code, type, report.getMissingFields(), report.getInvalidFields());
+    }
 }
@@ -0,0 +1,187 @@
+package lib.gintec_rdl.momo.extraction;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+import lib.gintec_rdl.momo.model.Transaction;
+
+/**
+ * <p>
+ * Tries an ordered chain of extractors, for senders whose messages come in
+ * several versions of the same format.</p>
+ * <p>
+ * The first candidate that returns a complete transaction wins. A
+ * transaction is complete when the candidate reported no missing or invalid
+ * field for it, which rejects the partially filled transactions an extractor
+ * returns when a message starts like a known format but its body does not
+ * match. Every attempt is judged on a report of its own, even when the
+ * caller ignores reports, and an optional predicate can reject more.</p>
+ * <p>
+ * The chain remembers the winning candidate of each sender and tries it
+ * first for the next message, so traffic that has moved to a new version
+ * costs a single attempt once the first message of that version has been
+ * seen. The remaining candidates keep their order.</p>
+ * <pre>
+ *     svc.registerExtractor("MPAMBA", new FallbackTransactionExtractor(
+ *         new MpambaTransactionExtractor(), revisedTemplates));
+ * </pre>
+ * <p>
+ * If no candidate returns a complete transaction, the first partial
+ * transaction is returned with its report, as a single extractor would have;
+ * failing that, the first exception thrown by a candidate is rethrown.</p>
+ *
+ * @author CK
+ */
+public class FallbackTransactionExtractor extends TransactionExtractor {
+
+    private final TransactionExtractor[] candidates;
+    private final Predicate<Transaction> complete;
+    private final ConcurrentMap<String, Integer> winners = new ConcurrentHashMap<>();
+    private final LongAdder[] wins;
+
+    /**
+     * The report of the current attempt and the one of the first partial
+     * transaction, swapped as attempts are kept.
+     */
+    private final ThreadLocal<ExtractionReport[]> reports = ThreadLocal.withInitial(
+        () -> new ExtractionReport[]{new ExtractionReport(), new ExtractionReport()});
+
+    /**
+     * @param candidates The extractors to try, in order of preference
+     */
+    public FallbackTransactionExtractor(TransactionExtractor... candidates) {
+        this(transaction -> true, candidates);
+    }
+
+    /**
+     * @param complete Decides whether a transaction reported without problems
+     * is complete
+     * @param candidates The extractors to try, in order of preference
+     */
+    public FallbackTransactionExtractor(Predicate<Transaction> complete, TransactionExtractor... candidates) {
+        if (complete == null || candidates == null || candidates.length == 0) {
+            throw new IllegalArgumentException("a predicate and at least one candidate are required");
+        }
+        this.candidates = candidates.clone();
+        this.complete = complete;
+        this.wins = new LongAdder[candidates.length];
+        for (int i = 0; i < candidates.length; i++) {
+            if (candidates[i] == null) {
+                throw new IllegalArgumentException("candidate " + i + " is null");
+            }
+            wins[i] = new LongAdder();
+        }
+    }
+
+    @Override
+    public Transaction extract(String from, String input, Map<String, String> extras) throws Exception {
+        return extract(from, input, extras, ExtractionReport.ignoring());
+    }
+
+    /**
+     * The report describes the returned transaction: the winner's, or the
+     * first partial transaction's if no candidate produced a complete one.
+     */
+    @Override
+    public Transaction extract(String from, String input, Map<String, String> extras, ExtractionReport report) throws Exception {
+        final ExtractionReport[] reports = this.reports.get();
+        ExtractionReport attempt = reports[0], kept = reports[1];
+        final int first = winner(from);
+        Transaction partial = null;
+        Exception failure = null;
+        for (int n = 0; n < candidates.length; n++) {
+            final int i = n == 0 ? first : (n <= first ? n - 1 : n);
+            final Transaction transaction;
+            attempt.reset();
+            try {
+                transaction = candidates[i].extract(from, input, extras, attempt);
+            } catch (Exception e) {
+                if (failure == null) {
+                    failure = e;
+                }
+                continue;
+            }
+            if (transaction == null) {
+                continue;
+            }
+            if (!attempt.hasProblems() && complete.test(transaction)) {
+                wins[i].increment();
+                if (i != first && from != null) {
+                    winners.put(from, i);
+                }
+                attempt.copyTo(report);
+                return transaction;
+            }
+            if (partial == null) {
+                // Keep the partial's report rather than extracting it again
+                partial = transaction;
+                final ExtractionReport swap = kept;
+                kept = attempt;
+                attempt = swap;
+            }
+        }
+        if (partial != null) {
+            kept.copyTo(report);
+            return partial;
+        }
+        report.reset();
+        if (failure != null) {
+            throw failure;
+        }
+        return null;
+    }
+
+    /**
+     * Names the message type as reported by the first candidate that
+     * recognises the message, starting with the sender's last winner.
+     */
+    @Override
+    public String getMessageType(String from, String input) {
+        final int first = winner(from);
+        for (int n = 0; n < candidates.length; n++) {
+            final int i = n == 0 ? first : (n <= first ? n - 1 : n);
+            final String type = candidates[i].getMessageType(from, input);
+            if (type != null) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The candidates in their configured order
+     */
+    public List<TransactionExtractor> getCandidates() {
+        return Collections.unmodifiableList(Arrays.asList(candidates));
+    }
+
+    /**
+     * @param sender Service short code
+     * @return Index of the candidate tried first for the sender
+     */
+    public int getWinner(String sender) {
+        return winner(sender);
+    }
+
+    /**
+     * @return Number of complete transactions returned by each candidate
+     */
+    public long[] getWins() {
+        final long[] counts = new long[wins.length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = wins[i].sum();
+        }
+        return counts;
+    }
+
+    private int winner(String sender) {
+        final Integer winner = sender != null ? winners.get(sender) : null;
+        return winner != null ? winner : 0;
+    }
+}
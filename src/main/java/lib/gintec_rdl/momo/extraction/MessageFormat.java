@@ -0,0 +1,27 @@
+package lib.gintec_rdl.momo.extraction;
+
+import java.util.regex.Matcher;
+
+/**
+ * <p>
+ * A message format read by a {@link PatternTransactionExtractor}, usually
+ * implemented by an enum listing every format of one provider.</p>
+ *
+ * @author CK
+ */
+public interface MessageFormat {
+
+    /**
+     * @return The text every message of this format starts with
+     */
+    String getPrefix();
+
+    /**
+     * Returns a matcher for this format over the input. Implementations
+     * should reuse a precompiled pattern and may reuse matchers per thread.
+     *
+     * @param input The message text
+     * @return A matcher over the input
+     */
+    Matcher matcher(CharSequence input);
+}
@@ -0,0 +1,107 @@
+package lib.gintec_rdl.momo.extraction;
+
+import java.util.function.Function;
+
+/**
+ * <p>
+ * Assigns messages to partitions, so that all messages of one account are
+ * handled by the same lane of a {@link ShardedExtractionWorker} and keep
+ * their order.</p>
+ * <p>
+ * The partitioners made by this interface hash the key with
+ * {@link #partitionOf(java.lang.CharSequence, int)}, which depends only on the
+ * characters of the key, so every JVM assigns a key to the same
+ * partition.</p>
+ * <p>
+ * When a cluster first spreads messages over its nodes with
+ * {@code partitionOf(key, nodes)}, the lanes of a node must not reuse the
+ * same hash modulo the lane count: if both counts share a factor, all keys of
+ * a node end up on some of its lanes only. Nodes use
+ * {@link #byKey(java.util.function.Function, int)} instead, which picks the
+ * lane from the part of the hash the node choice does not use.</p>
+ * <pre>
+ *     // node of a message, e.g. in the producer
+ *     int node = MessagePartitioner.partitionOf(account, nodes);
+ *     // lanes within each node
+ *     MessagePartitioner lanes = MessagePartitioner.byKey(message -&gt; message.getExtras().get("account"), nodes);
+ * </pre>
+ *
+ * @author CK
+ */
+@FunctionalInterface
+public interface MessagePartitioner {
+
+    /**
+     * @param message The message
+     * @param partitions Number of partitions, at least 1
+     * @return The partition of the message, from 0 to partitions - 1
+     */
+    int partition(SmsMessage message, int partitions);
+
+    /**
+     * @return A partitioner keeping the messages of each sender in order
+     */
+    static MessagePartitioner bySender() {
+        return byKey(SmsMessage::getSender);
+    }
+
+    /**
+     * @param key Reads the key of a message, such as the account it was sent
+     * to; messages without a key go to partition 0
+     * @return A partitioner keeping the messages of each key in order
+     */
+    static MessagePartitioner byKey(Function<? super SmsMessage, ? extends CharSequence> key) {
+        if (key == null) {
+            throw new IllegalArgumentException("key is required");
+        }
+        return (message, partitions) -> partitionOf(key.apply(message), partitions);
+    }
+
+    /**
+     * Partitions the messages one node of a cluster takes over the lanes of
+     * that node, where the nodes take the messages that
+     * {@link #partitionOf(java.lang.CharSequence, int)} assigns them. The lane
+     * of a key is its partition among {@code nodes * lanes} divided by the
+     * number of nodes, so keys spread evenly over the lanes of every node
+     * whatever the two counts are.
+     *
+     * @param key Reads the key of a message; messages without a key go to
+     * partition 0
+     * @param nodes Number of nodes in the cluster, at least 1
+     * @return A partitioner keeping the messages of each key in order
+     */
+    static MessagePartitioner byKey(Function<? super SmsMessage, ? extends CharSequence> key, int nodes) {
+        if (key == null) {
+            throw new IllegalArgumentException("key is required");
+        }
+        if (nodes < 1) {
+            throw new IllegalArgumentException("nodes must be positive");
+        }
+        return (message, partitions) -> partitionOf(key.apply(message), nodes * partitions) / nodes;
+    }
+
+    /**
+     * Hashes a key to a partition. The result depends only on the characters
+     * of the key and the number of partitions.
+     *
+     * @param key The key or null
+     * @param partitions Number of partitions, at least 1
+     * @return The partition of the key, 0 for null
+     */
+    static int partitionOf(CharSequence key, int partitions) {
+        if (key == null) {
+            return 0;
+        }
+        int hash = 0;
+        for (int i = 0; i < key.length(); i++) {
+            hash = 31 * hash + key.charAt(i);
+        }
+        // spread nearby keys, such as phone numbers, over all partitions
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return Math.floorMod(hash, partitions);
+    }
+}
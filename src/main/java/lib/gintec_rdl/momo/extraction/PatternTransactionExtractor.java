@@ -0,0 +1,160 @@
+package lib.gintec_rdl.momo.extraction;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.regex.Matcher;
+
+import lib.gintec_rdl.momo.model.Transaction;
+import lib.gintec_rdl.momo.utils.LocaleUtils;
+import lib.gintec_rdl.momo.utils.MoneyUtils;
+
+/**
+ * <p>
+ * Base class for extractors that read a provider's messages with regular
+ * expressions.</p>
+ * <p>
+ * The provider's formats are listed in an enum implementing
+ * {@link MessageFormat}. Incoming messages are classified by prefix with a
+ * {@link PrefixClassifier} and handed to
+ * {@link #extract(java.lang.Enum, java.util.regex.Matcher, java.lang.String, lib.gintec_rdl.momo.extraction.ExtractionReport)}
+ * together with a matcher for the detected format. Subclasses only map
+ * groups to transaction fields; the helpers below read amounts and dates in
+ * place and report fields they cannot read instead of throwing.</p>
+ *
+ * @param <F> The enum of message formats
+ * @author CK
+ */
+public abstract class PatternTransactionExtractor<F extends Enum<F> & MessageFormat> extends TransactionExtractor {
+
+    private final String sender;
+    private final PrefixClassifier<F> classifier = new PrefixClassifier<>();
+
+    /**
+     * @param sender The service short code this extractor accepts messages
+     * from
+     * @param formats The formats to recognise
+     */
+    protected PatternTransactionExtractor(String sender, Class<F> formats) {
+        this.sender = sender;
+        for (F format : formats.getEnumConstants()) {
+            classifier.register(format.getPrefix(), format);
+        }
+    }
+
+    @Override
+    public Transaction extract(String from, String input, Map<String, String> extras) throws Exception {
+        return extract(from, input, extras, ExtractionReport.ignoring());
+    }
+
+    @Override
+    public Transaction extract(String from, String input, Map<String, String> extras, ExtractionReport report) throws Exception {
+        if (!sender.equals(from) || input == null) {
+            return null;
+        }
+        final F format = classifier.classify(input);
+        if (format == null) {
+            return null;
+        }
+        report.setMessageType(format.name());
+        return extract(format, format.matcher(input), input, report);
+    }
+
+    /**
+     * Reads a message of a known format.
+     *
+     * @param format The detected format
+     * @param matcher A matcher for the format over the input, not yet matched
+     * @param input The message text
+     * @param report Receives missing and invalid fields
+     * @return The transaction or null if none could be extracted
+     * @throws Exception If the message could not be read
+     */
+    protected abstract Transaction extract(F format, Matcher matcher, String input, ExtractionReport report) throws Exception;
+
+    @Override
+    public String getMessageType(String from, String input) {
+        final F format = classify(input);
+        return format != null ? format.name() : null;
+    }
+
+    /**
+     * @param input The message text
+     * @return The format of the message or null if it is not recognised
+     */
+    public F classify(CharSequence input) {
+        return classifier.classify(input);
+    }
+
+    /**
+     * @return The service short code this extractor accepts messages from
+     */
+    public String getSender() {
+        return sender;
+    }
+
+    /**
+     * Reads an amount group in place, without copying it out of the input.
+     *
+     * @param input The message text
+     * @param matcher The matcher
+     * @param group The group holding the amount
+     * @param field Property name to report if the amount is missing or
+     * invalid
+     * @param report The report
+     * @return The amount in minor units, or zero if it is missing or invalid
+     */
+    protected static long money(String input, Matcher matcher, int group, String field, ExtractionReport report) {
+        final int start = matcher.start(group);
+        if (start < 0) {
+            report.missing(field);
+            return 0L;
+        }
+        final long value = MoneyUtils.tryParse(input, start, matcher.end(group));
+        if (value == MoneyUtils.INVALID) {
+            report.invalid(field);
+            return 0L;
+        }
+        return value;
+    }
+
+    /**
+     * @param matcher The matcher
+     * @param group The group to read
+     * @param field Property name to report if the group is missing
+     * @param report The report
+     * @return The text of the group or null if it did not participate in the
+     * match
+     */
+    protected static String group(Matcher matcher, int group, String field, ExtractionReport report) {
+        final String text = matcher.group(group);
+        if (text == null) {
+            report.missing(field);
+        }
+        return text;
+    }
+
+    /**
+     * Reads a dd/MM/yyyy HH:mm:ss timestamp group in the system default time
+     * zone.
+     *
+     * @param input The message text
+     * @param matcher The matcher
+     * @param group The group holding the timestamp
+     * @param field Property name to report if the timestamp is missing or
+     * invalid
+     * @param report The report
+     * @return The date or null if it is missing or invalid
+     */
+    protected static Date date(String input, Matcher matcher, int group, String field, ExtractionReport report) {
+        final int start = matcher.start(group);
+        if (start < 0) {
+            report.missing(field);
+            return null;
+        }
+        final Date date = LocaleUtils.tryParseDate(input, start, matcher.end(group));
+        if (date == null) {
+            report.invalid(field);
+        }
+        return date;
+    }
+}
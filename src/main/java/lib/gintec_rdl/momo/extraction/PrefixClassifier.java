@@ -0,0 +1,191 @@
+package lib.gintec_rdl.momo.extraction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * <p>
+ * Classifies messages by their prefix using a compressed trie.</p>
+ * <p>
+ * Extractors register the text each of their message formats starts with and
+ * the value to return for it, typically an enum constant naming the format.
+ * Classification walks the input once, so its cost depends on the length of
+ * the longest prefix and not on how many prefixes are registered. When
+ * several registered prefixes match, the longest one wins.</p>
+ * <pre>
+ *     PrefixClassifier&lt;Format&gt; classifier = new PrefixClassifier&lt;&gt;()
+ *         .register("Cash In from ", Format.CASH_IN)
+ *         .register("Cash Out to ", Format.CASH_OUT);
+ *     Format format = classifier.classify(input);
+ * </pre>
+ * <p>
+ * Lookups are lock-free. Registration rebuilds the trie and publishes it
+ * atomically, so it is safe to register prefixes while other threads
+ * classify.</p>
+ *
+ * @param <T> Type of value associated with each prefix
+ * @author CK
+ */
+public final class PrefixClassifier<T> {
+
+    private final Map<String, T> mPrefixes = new LinkedHashMap<>();
+    private volatile Node<T> mRoot = new Node<>("", null, new char[0], emptyChildren());
+
+    /**
+     * Registers a prefix. A prefix registered earlier is replaced.
+     *
+     * @param prefix The text matching messages start with
+     * @param value The value to return for matching messages
+     * @return the same instance for chained calls.
+     */
+    public synchronized PrefixClassifier<T> register(String prefix, T value) {
+        if (prefix == null || prefix.isEmpty() || value == null) {
+            throw new IllegalArgumentException("prefix and value are required");
+        }
+        mPrefixes.put(prefix, value);
+        mRoot = build(new TreeMap<>(mPrefixes), 0, 0);
+        return this;
+    }
+
+    /**
+     * @return The registered prefixes and their values in registration order
+     */
+    public synchronized Map<String, T> getPrefixes() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(mPrefixes));
+    }
+
+    /**
+     * @param input The message text
+     * @return The value of the longest registered prefix of the input or null
+     * if no prefix matches
+     */
+    public T classify(CharSequence input) {
+        if (input == null) {
+            return null;
+        }
+        Node<T> node = mRoot;
+        if (!node.tailMatches(input, 0)) {
+            return null;
+        }
+        T match = node.value;
+        final int length = input.length();
+        int i = node.tail.length();
+        while (i < length) {
+            node = node.child(input.charAt(i++));
+            if (node == null || !node.tailMatches(input, i)) {
+                break;
+            }
+            i += node.tail.length();
+            if (node.value != null) {
+                match = node.value;
+            }
+        }
+        return match;
+    }
+
+    /**
+     * Builds the subtree for a sorted set of prefixes that share their first
+     * {@code depth} characters. Characters shared by every prefix beyond that
+     * point are folded into the node's tail, so chains of single children
+     * cost one comparison loop instead of one node per character.
+     *
+     * @param from Position of the first character not matched by the parent
+     */
+    private static <T> Node<T> build(TreeMap<String, T> prefixes, int from, int depth) {
+        final String first = prefixes.firstKey(), last = prefixes.lastKey();
+        final int limit = Math.min(first.length(), last.length());
+        while (depth < limit && first.charAt(depth) == last.charAt(depth)) {
+            depth++;
+        }
+        final String tail = first.substring(from, depth);
+        T value = null;
+        final List<Character> keys = new ArrayList<>();
+        final List<TreeMap<String, T>> groups = new ArrayList<>();
+        for (Map.Entry<String, T> entry : prefixes.entrySet()) {
+            final String prefix = entry.getKey();
+            if (prefix.length() == depth) {
+                value = entry.getValue();
+                continue;
+            }
+            final char c = prefix.charAt(depth);
+            if (keys.isEmpty() || keys.get(keys.size() - 1) != c) {
+                keys.add(c);
+                groups.add(new TreeMap<String, T>());
+            }
+            groups.get(groups.size() - 1).put(prefix, entry.getValue());
+        }
+        final char[] labels = new char[keys.size()];
+        final Node<T>[] children = newChildren(keys.size());
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = keys.get(i);
+            children[i] = build(groups.get(i), depth + 1, depth + 1);
+        }
+        return new Node<>(tail, value, labels, children);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Node<T>[] newChildren(int size) {
+        return (Node<T>[]) new Node<?>[size];
+    }
+
+    private static <T> Node<T>[] emptyChildren() {
+        return newChildren(0);
+    }
+
+    private static final class Node<T> {
+
+        private static final int LINEAR_SCAN_LIMIT = 8;
+
+        final String tail;
+        final T value;
+        final char[] labels;
+        final Node<T>[] children;
+
+        Node(String tail, T value, char[] labels, Node<T>[] children) {
+            this.tail = tail;
+            this.value = value;
+            this.labels = labels;
+            this.children = children;
+        }
+
+        boolean tailMatches(CharSequence input, int at) {
+            final String t = tail;
+            final int n = t.length();
+            if (at + n > input.length()) {
+                return false;
+            }
+            for (int i = 0; i < n; i++) {
+                if (input.charAt(at + i) != t.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Labels are sorted. Most nodes of a message trie have one or two
+         * children and are scanned linearly; wide nodes are binary searched.
+         */
+        Node<T> child(char c) {
+            final char[] l = labels;
+            if (l.length > LINEAR_SCAN_LIMIT) {
+                final int i = Arrays.binarySearch(l, c);
+                return i >= 0 ? children[i] : null;
+            }
+            for (int i = 0; i < l.length; i++) {
+                if (l[i] == c) {
+                    return children[i];
+                }
+                if (l[i] > c) {
+                    return null;
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package lib.gintec_rdl.momo.extraction;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p>
+ * Resolves the sender of a message, as delivered by the phone, to the sender
+ * an extractor is registered under.</p>
+ * <p>
+ * Phones deliver the same sender in several spellings: "MPAMBA", "Mpamba",
+ * "+265 888 123 456" or "00265888123456". Aliases are compared in a
+ * normalized form: letters ignore case, spaces, dashes, dots, underscores
+ * and brackets are ignored, and a leading "00" is the same as "+". Other
+ * forms of a number, such as a local one, are registered as aliases of their
+ * own.</p>
+ * <pre>
+ *     SenderRouter router = new SenderRouter()
+ *         .register("MPAMBA", "MPAMBA")
+ *         .register("+265 888 000 111", "MPAMBA");
+ *     String sender = router.resolve("mpamba"); // "MPAMBA"
+ * </pre>
+ * <p>
+ * Aliases are kept in an open addressing table of normalized keys, and
+ * {@link #resolve(java.lang.CharSequence)} normalizes the input as it hashes
+ * and compares it, so resolving allocates nothing. Lookups are lock-free;
+ * registration rebuilds the table and publishes it atomically.</p>
+ *
+ * @author CK
+ */
+public final class SenderRouter {
+
+    private final Map<String, String> mAliases = new LinkedHashMap<>();
+    private volatile Table mTable = new Table(0);
+
+    /**
+     * Registers an alias. An alias with the same normalized form registered
+     * earlier is replaced.
+     *
+     * @param alias The sender as delivered by the phone
+     * @param sender The sender the extractor is registered under
+     * @return the same instance for chained calls.
+     * @throws IllegalArgumentException If the alias is empty once normalized
+     */
+    public synchronized SenderRouter register(String alias, String sender) {
+        if (alias == null || sender == null) {
+            throw new IllegalArgumentException("alias and sender are required");
+        }
+        final String key = normalize(alias);
+        if (key.isEmpty()) {
+            throw new IllegalArgumentException("alias has no letters or digits: " + alias);
+        }
+        mAliases.put(key, sender);
+        final Table table = new Table(mAliases.size());
+        for (Map.Entry<String, String> entry : mAliases.entrySet()) {
+            table.put(entry.getKey(), entry.getValue());
+        }
+        mTable = table;
+        return this;
+    }
+
+    /**
+     * @param from The sender as delivered by the phone
+     * @return The sender registered for it, or null if it is not an alias
+     */
+    public String resolve(CharSequence from) {
+        return from != null ? mTable.get(from) : null;
+    }
+
+    /**
+     * @return The normalized aliases and their senders in registration order
+     */
+    public synchronized Map<String, String> getAliases() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(mAliases));
+    }
+
+    /**
+     * @param alias A sender
+     * @return The form aliases are compared in
+     */
+    public static String normalize(CharSequence alias) {
+        final StringBuilder builder = new StringBuilder(alias.length());
+        int i = start(alias);
+        if (i < 0) {
+            builder.append('+');
+            i = -i;
+        }
+        for (; i < alias.length(); i++) {
+            final int c = fold(alias.charAt(i));
+            if (c >= 0) {
+                builder.append((char) c);
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * @return Index of the first character to fold, negated when a leading
+     * "00" stands for "+"
+     */
+    private static int start(CharSequence alias) {
+        int i = 0;
+        final int length = alias.length();
+        while (i < length && fold(alias.charAt(i)) < 0) {
+            i++;
+        }
+        if (i + 1 < length && alias.charAt(i) == '0' && alias.charAt(i + 1) == '0') {
+            return -(i + 2);
+        }
+        return i;
+    }
+
+    /**
+     * @return The character in normalized form, or -1 if it is ignored
+     */
+    private static int fold(char c) {
+        if (c >= 'a' && c <= 'z') {
+            return c - ('a' - 'A');
+        }
+        if (c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '+') {
+            return c;
+        }
+        switch (c) {
+            case ' ':
+            case '-':
+            case '.':
+            case '_':
+            case '(':
+            case ')':
+            case '\t':
+            case '\u00A0':
+                return -1;
+            default:
+                return c < 0x80 ? c : Character.toUpperCase(c);
+        }
+    }
+
+    /**
+     * Open addressing table of normalized aliases with linear probing, at
+     * most a quarter full so misses end after a probe or two.
+     */
+    private static final class Table {
+
+        private final String[] keys;
+        private final String[] senders;
+        private final int[] hashes;
+        private final int mask;
+
+        Table(int size) {
+            int capacity = 4;
+            while (capacity < size * 4) {
+                capacity <<= 1;
+            }
+            keys = new String[capacity];
+            senders = new String[capacity];
+            hashes = new int[capacity];
+            mask = capacity - 1;
+        }
+
+        void put(String key, String sender) {
+            final int hash = hash(key);
+            int slot = spread(hash) & mask;
+            while (keys[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            senders[slot] = sender;
+            hashes[slot] = hash;
+        }
+
+        String get(CharSequence from) {
+            final int hash = hash(from);
+            for (int slot = spread(hash) & mask; keys[slot] != null; slot = (slot + 1) & mask) {
+                if (hashes[slot] == hash && matches(keys[slot], from)) {
+                    return senders[slot];
+                }
+            }
+            return null;
+        }
+
+        private static int spread(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+
+        /**
+         * Hashes the normalized form of the text without building it.
+         */
+        private static int hash(CharSequence text) {
+            int i = start(text);
+            int hash = 0;
+            if (i < 0) {
+                hash = '+';
+                i = -i;
+            }
+            for (final int length = text.length(); i < length; i++) {
+                final int c = fold(text.charAt(i));
+                if (c >= 0) {
+                    hash = 31 * hash + c;
+                }
+            }
+            return hash;
+        }
+
+        /**
+         * Compares a normalized key with the normalized form of the text
+         * without building it.
+         */
+        private static boolean matches(String key, CharSequence text) {
+            int i = start(text);
+            int k = 0;
+            if (i < 0) {
+                if (key.isEmpty() || key.charAt(0) != '+') {
+                    return false;
+                }
+                k = 1;
+                i = -i;
+            }
+            final int keyLength = key.length();
+            for (final int length = text.length(); i < length; i++) {
+                final int c = fold(text.charAt(i));
+                if (c >= 0 && (k == keyLength || key.charAt(k++) != c)) {
+                    return false;
+                }
+            }
+            return k == keyLength;
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package lib.gintec_rdl.momo.extraction;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * <p>
+ * Extracts a flow of messages over a fixed number of partitions, each served
+ * by one thread of its own, for worker processes that read from a
+ * partitioned message queue.</p>
+ * <p>
+ * A {@link MessagePartitioner} assigns every message to a partition. Each
+ * partition has a bounded queue and a single lane thread that extracts its
+ * messages and hands the results to the consumer in the order the messages
+ * were accepted, so messages with the same key are delivered in order and
+ * never concurrently. A lane keeps working on the same extractors, cache
+ * segments and accounts, which stay warm in its core's cache, and lanes do
+ * not share any state apart from the service itself.</p>
+ * <pre>
+ *     ShardedExtractionWorker worker = new ShardedExtractionWorker(service, 8, 1024,
+ *         MessagePartitioner.byKey(message -&gt; message.getExtras().get("account")),
+ *         result -&gt; reconciler.offer(account(result), result.getTransaction()));
+ *     worker.put(message);
+ * </pre>
+ * <p>
+ * Several processes can share the load of one queue by hashing the key of a
+ * message to a process with
+ * {@link MessagePartitioner#partitionOf(java.lang.CharSequence, int)}: a
+ * process only takes the messages of its own partitions, spreads them over
+ * its lanes with {@link MessagePartitioner#byKey(java.util.function.Function, int)},
+ * and the order per key is then kept across the cluster.
+ * {@link #offer(SmsMessage)} never blocks and returns false when the lane of
+ * the message is full, so a queue consumer can pause instead of buffering;
+ * {@link #put(SmsMessage)} waits instead.</p>
+ * <p>
+ * Exceptions thrown by the consumer are passed to the error handler and do
+ * not stop the lane.</p>
+ *
+ * @author CK
+ */
+public final class ShardedExtractionWorker implements AutoCloseable {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * Wakes a lane waiting for messages once the worker is sealed.
+     */
+    private static final SmsMessage WAKE_UP = new SmsMessage(null, null);
+
+    private final ExtractionService service;
+    private final MessagePartitioner partitioner;
+    private final Consumer<? super ExtractionResult> consumer;
+    private final Lane[] lanes;
+    private final AtomicInteger producers = new AtomicInteger();
+    private final AtomicInteger running;
+    private final LongAdder rejected = new LongAdder();
+    private final CompletableFuture<Void> terminated = new CompletableFuture<>();
+    private volatile Consumer<Exception> errorHandler;
+    private volatile boolean closed;
+
+    /**
+     * Creates a worker with one partition per core, ordered by sender.
+     *
+     * @param service The service to extract with
+     * @param consumer Receives every result
+     */
+    public ShardedExtractionWorker(ExtractionService service, Consumer<? super ExtractionResult> consumer) {
+        this(service, Runtime.getRuntime().availableProcessors(), DEFAULT_CAPACITY, MessagePartitioner.bySender(), consumer);
+    }
+
+    /**
+     * Creates a worker whose lanes run on new daemon threads.
+     *
+     * @param service The service to extract with
+     * @param partitions Number of partitions, and of lane threads
+     * @param capacity Most messages waiting in each partition
+     * @param partitioner Assigns messages to partitions
+     * @param consumer Receives every result, on the lane of the message
+     */
+    public ShardedExtractionWorker(ExtractionService service, int partitions, int capacity, MessagePartitioner partitioner,
+        Consumer<? super ExtractionResult> consumer) {
+        this(service, partitions, capacity, partitioner, consumer, null);
+    }
+
+    /**
+     * @param service The service to extract with
+     * @param partitions Number of partitions, and of lane threads
+     * @param capacity Most messages waiting in each partition
+     * @param partitioner Assigns messages to partitions
+     * @param consumer Receives every result, on the lane of the message
+     * @param threadFactory Creates the lane threads, or null for daemon
+     * threads named after their partition
+     */
+    public ShardedExtractionWorker(ExtractionService service, int partitions, int capacity, MessagePartitioner partitioner,
+        Consumer<? super ExtractionResult> consumer, ThreadFactory threadFactory) {
+        if (service == null || partitioner == null || consumer == null) {
+            throw new IllegalArgumentException("service, partitioner and consumer are required");
+        }
+        if (partitions < 1 || capacity < 1) {
+            throw new IllegalArgumentException("partitions and capacity must be positive");
+        }
+        this.service = service;
+        this.partitioner = partitioner;
+        this.consumer = consumer;
+        this.lanes = new Lane[partitions];
+        this.running = new AtomicInteger(partitions);
+        for (int i = 0; i < partitions; i++) {
+            lanes[i] = new Lane(capacity);
+        }
+        for (int i = 0; i < partitions; i++) {
+            final Thread thread;
+            if (threadFactory != null) {
+                thread = threadFactory.newThread(lanes[i]);
+            } else {
+                thread = new Thread(lanes[i], "extraction-lane-" + i);
+                thread.setDaemon(true);
+            }
+            thread.start();
+        }
+    }
+
+    /**
+     * @param handler Called with exceptions thrown by the consumer, or null
+     * @return the same instance for chained calls.
+     */
+    public ShardedExtractionWorker onError(Consumer<Exception> handler) {
+        this.errorHandler = handler;
+        return this;
+    }
+
+    /**
+     * @return Number of partitions
+     */
+    public int getPartitionCount() {
+        return lanes.length;
+    }
+
+    /**
+     * @param message A message
+     * @return The partition the message is extracted in
+     */
+    public int partitionOf(SmsMessage message) {
+        final int partition = partitioner.partition(message, lanes.length);
+        if (partition < 0 || partition >= lanes.length) {
+            throw new IllegalStateException("partitioner returned " + partition + " for " + lanes.length + " partitions");
+        }
+        return partition;
+    }
+
+    /**
+     * Accepts a message if its partition has room for it.
+     *
+     * @param message The message to extract
+     * @return True if the message was accepted, false if its partition is
+     * full
+     * @throws IllegalStateException If the worker is shut down
+     */
+    public boolean offer(SmsMessage message) {
+        final Lane lane = lane(message);
+        enter();
+        try {
+            if (lane.queue.offer(message)) {
+                return true;
+            }
+        } finally {
+            producers.decrementAndGet();
+        }
+        rejected.increment();
+        return false;
+    }
+
+    /**
+     * Accepts a message, waiting for room if its partition is full.
+     *
+     * @param message The message to extract
+     * @throws InterruptedException If interrupted while waiting
+     * @throws IllegalStateException If the worker is shut down
+     */
+    public void put(SmsMessage message) throws InterruptedException {
+        final Lane lane = lane(message);
+        enter();
+        try {
+            lane.queue.put(message);
+        } finally {
+            producers.decrementAndGet();
+        }
+    }
+
+    /**
+     * Stops accepting messages. Lanes finish the messages already accepted
+     * and then stop.
+     *
+     * @return A future completed once every lane has stopped
+     */
+    public CompletableFuture<Void> shutdown() {
+        if (!closed) {
+            closed = true;
+            // Producers that got past the check finish adding first
+            while (producers.get() != 0) {
+                Thread.yield();
+            }
+            for (Lane lane : lanes) {
+                lane.sealed = true;
+                // A full lane is not waiting and sees the seal once drained
+                lane.queue.offer(WAKE_UP);
+            }
+        }
+        return terminated;
+    }
+
+    /**
+     * Shuts down and waits until every accepted message has been delivered.
+     */
+    @Override
+    public void close() {
+        shutdown().join();
+    }
+
+    /**
+     * @return Number of messages accepted but not yet extracted
+     */
+    public int getPendingCount() {
+        int pending = 0;
+        for (Lane lane : lanes) {
+            pending += lane.queue.size();
+        }
+        return pending;
+    }
+
+    /**
+     * @param partition A partition
+     * @return Number of results the partition has delivered so far
+     */
+    public long getDeliveredCount(int partition) {
+        return lanes[partition].delivered.sum();
+    }
+
+    /**
+     * @return Number of results delivered so far
+     */
+    public long getDeliveredCount() {
+        long delivered = 0;
+        for (Lane lane : lanes) {
+            delivered += lane.delivered.sum();
+        }
+        return delivered;
+    }
+
+    /**
+     * @return Number of messages refused by {@link #offer(SmsMessage)}
+     * because their partition was full
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    private Lane lane(SmsMessage message) {
+        if (message == null) {
+            throw new IllegalArgumentException("message is required");
+        }
+        return lanes[partitionOf(message)];
+    }
+
+    private void enter() {
+        producers.incrementAndGet();
+        if (closed) {
+            producers.decrementAndGet();
+            throw new IllegalStateException("worker is shut down");
+        }
+    }
+
+    private final class Lane implements Runnable {
+
+        final BlockingQueue<SmsMessage> queue;
+        final LongAdder delivered = new LongAdder();
+        volatile boolean sealed;
+
+        Lane(int capacity) {
+            queue = new ArrayBlockingQueue<>(capacity);
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (;;) {
+                    SmsMessage message = queue.poll();
+                    if (message == null) {
+                        if (sealed) {
+                            return;
+                        }
+                        message = queue.take();
+                    }
+                    if (message != WAKE_UP) {
+                        deliver(service.extract(message));
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                if (running.decrementAndGet() == 0) {
+                    terminated.complete(null);
+                }
+            }
+        }
+
+        private void deliver(ExtractionResult result) {
+            try {
+                consumer.accept(result);
+            } catch (Exception e) {
+                final Consumer<Exception> handler = errorHandler;
+                if (handler != null) {
+                    handler.accept(e);
+                }
+            }
+            delivered.increment();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package lib.gintec_rdl.momo.extraction;
+
+import java.util.Map;
+
+/**
+ * <p>
+ * A raw message as received from a service provider, used as input to the
+ * batch methods of {@link ExtractionService}.</p>
+ *
+ * @author CK
+ */
+public final class SmsMessage {
+
+    private final String sender;
+    private final String body;
+    private final Map<String, String> extras;
+
+    public SmsMessage(String sender, String body) {
+        this(sender, body, null);
+    }
+
+    public SmsMessage(String sender, String body, Map<String, String> extras) {
+        this.sender = sender;
+        this.body = body;
+        this.extras = extras;
+    }
+
+    /**
+     * @return The service short code the message came from
+     */
+    public String getSender() {
+        return sender;
+    }
+
+    /**
+     * @return The message text
+     */
+    public String getBody() {
+        return body;
+    }
+
+    /**
+     * @return Extra options for the extractor, may be null
+     */
+    public Map<String, String> getExtras() {
+        return extras;
+    }
+
+    @Override
+    public String toString() {
+        return sender + ": " + body;
+    }
+}
@@ -18,4 +18,64 @@ public abstract class TransactionExtractor {
      * be extracted.
      */
     public abstract Transaction extract(String serviceNumber, String input, Map<String, String> extras) throws Exception;
+
+    /**
+     * <p>
+     * Extracts a transaction and describes problems with the message in the
+     * given report: the recognised format and any missing or invalid fields.
+     * Extractors that override this method should report through it rather
+     * than throw.</p>
+     * <p>
+     * The default implementation calls {@link #extract(java.lang.String, java.lang.String, java.util.Map)
+     * } and reports nothing.</p>
+     *
+     * @param serviceNumber Service number or short code this extractor
+     * supports.
+     * @param input SMS text to extract data from
+     * @param extras Extra parameters to pass to the extractor.
+     * @param report Receives the message type and field problems
+     * @throws Exception If the message could not be read at all
+     * @return Returns a {@link Transaction}, possibly incomplete, or null if
+     * no transaction could be extracted.
+     */
+    public Transaction extract(String serviceNumber, String input, Map<String, String> extras, ExtractionReport report) throws Exception {
+        return extract(serviceNumber, input, extras);
+    }
+
+    /**
+     * <p>
+     * Extracts a transaction into the instances kept by a holder, for callers
+     * that extract in a tight loop and want to avoid garbage. Extractors that
+     * support holders return the holder's transaction of the matching class
+     * and take its date, repeated names and agents from the holder too.</p>
+     * <p>
+     * The default implementation ignores the holder and calls {@link #extract(java.lang.String, java.lang.String, java.util.Map, lib.gintec_rdl.momo.extraction.ExtractionReport)
+     * }.</p>
+     *
+     * @param serviceNumber Service number or short code this extractor
+     * supports.
+     * @param input SMS text to extract data from
+     * @param extras Extra parameters to pass to the extractor.
+     * @param holder Provides the transaction to fill
+     * @param report Receives the message type and field problems
+     * @throws Exception If the message could not be read at all
+     * @return Returns a {@link Transaction}, possibly incomplete and possibly
+     * owned by the holder, or null if no transaction could be extracted.
+     */
+    public Transaction extract(String serviceNumber, String input, Map<String, String> extras, TransactionHolder holder,
+        ExtractionReport report) throws Exception {
+        return extract(serviceNumber, input, extras, report);
+    }
+
+    /**
+     * Names the format of a message, for reporting. The default
+     * implementation does not know any formats.
+     *
+     * @param serviceNumber Service number or short code the message came from
+     * @param input SMS text
+     * @return The name of the message format or null if it is not known
+     */
+    public String getMessageType(String serviceNumber, String input) {
+        return null;
+    }
 }
@@ -0,0 +1,206 @@
+package lib.gintec_rdl.momo.extraction;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import lib.gintec_rdl.momo.model.MobileMoneyAgent;
+import lib.gintec_rdl.momo.model.Transaction;
+
+/**
+ * <p>
+ * Reusable transactions for extracting messages in a tight loop without
+ * creating garbage.</p>
+ * <p>
+ * A holder keeps one transaction of each class it has been asked for, with
+ * its date. Extractors that support holders fill and return that instance
+ * instead of creating one, so the transaction returned by
+ * {@link ExtractionService#extract(java.lang.String, java.lang.String, java.util.Map, lib.gintec_rdl.momo.extraction.TransactionHolder)
+ * } is only valid until the next message is extracted into the same holder.
+ * Values that are kept must be copied out first.</p>
+ * <pre>
+ *     TransactionHolder holder = new TransactionHolder();
+ *     for (String input : inputs) {
+ *         Transaction transaction = service.extract("MPAMBA", input, null, holder);
+ *         if (transaction != null) {
+ *             store.add(transaction);
+ *         }
+ *     }
+ * </pre>
+ * <p>
+ * Names, phone numbers and agents seen recently are shared between
+ * transactions: the holder keeps a bounded table of each and hands out the
+ * instance it already has when the same text comes again. Shared agents must
+ * not be modified. Holders are not thread safe; use one per thread.</p>
+ *
+ * @author CK
+ */
+public final class TransactionHolder {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * Slots probed before an entry of the shared tables is replaced.
+     */
+    private static final int PROBES = 8;
+
+    private Class<?>[] types = new Class<?>[4];
+    private Transaction[] transactions = new Transaction[4];
+    private Date[] dates = new Date[4];
+    private int count, current = -1;
+
+    private final String[] strings;
+    private final MobileMoneyAgent[] agents;
+    private final int mask;
+
+    public TransactionHolder() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity Number of recent strings, and separately of agents, to
+     * share
+     */
+    public TransactionHolder(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        int size = PROBES;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        strings = new String[size];
+        agents = new MobileMoneyAgent[size];
+        mask = size - 1;
+    }
+
+    /**
+     * Returns the held transaction of the given class, cleared, creating it
+     * the first time. Called by extractors.
+     *
+     * @param <T> Type of transaction
+     * @param type Class of transaction, with a public no-argument
+     * constructor
+     * @return The held transaction
+     */
+    public <T extends Transaction> T reuse(Class<T> type) {
+        int slot = 0;
+        while (slot < count && types[slot] != type) {
+            slot++;
+        }
+        if (slot == count) {
+            if (count == types.length) {
+                types = Arrays.copyOf(types, count * 2);
+                transactions = Arrays.copyOf(transactions, count * 2);
+                dates = Arrays.copyOf(dates, count * 2);
+            }
+            try {
+                transactions[slot] = type.getConstructor().newInstance();
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalArgumentException("Cannot create " + type.getName(), e);
+            }
+            types[slot] = type;
+            dates[slot] = new Date(0L);
+            count++;
+        }
+        current = slot;
+        final T transaction = type.cast(transactions[slot]);
+        transaction.reset();
+        return transaction;
+    }
+
+    /**
+     * @param time Milliseconds since the epoch
+     * @return The held date of the transaction last returned by
+     * {@link #reuse(java.lang.Class)}, set to the given time
+     */
+    public Date date(long time) {
+        if (current < 0) {
+            throw new IllegalStateException("no transaction is being filled");
+        }
+        final Date date = dates[current];
+        date.setTime(time);
+        return date;
+    }
+
+    /**
+     * @return The transaction last returned by {@link #reuse(java.lang.Class)}
+     * or null
+     */
+    public Transaction get() {
+        return current >= 0 ? transactions[current] : null;
+    }
+
+    /**
+     * Returns the text between the bounds, sharing the string last returned
+     * for the same text if the holder still has it.
+     *
+     * @param text The message
+     * @param start Start, inclusive
+     * @param end End, exclusive
+     * @return The text between the bounds
+     */
+    public String string(CharSequence text, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + text.charAt(i);
+        }
+        final int home = spread(hash) & mask;
+        int free = -1;
+        for (int probe = 0; probe < PROBES; probe++) {
+            final int slot = (home + probe) & mask;
+            final String candidate = strings[slot];
+            if (candidate == null) {
+                free = free < 0 ? slot : free;
+            } else if (candidate.hashCode() == hash && contentEquals(candidate, text, start, end)) {
+                return candidate;
+            }
+        }
+        final String string = text.subSequence(start, end).toString();
+        strings[free >= 0 ? free : home] = string;
+        return string;
+    }
+
+    /**
+     * @param code Agent code
+     * @param name Agent name
+     * @return The agent last returned for the same code and name if the
+     * holder still has it, or a new one
+     */
+    public MobileMoneyAgent agent(String code, String name) {
+        final int hash = 31 * (code != null ? code.hashCode() : 0) + (name != null ? name.hashCode() : 0);
+        final int home = spread(hash) & mask;
+        int free = -1;
+        for (int probe = 0; probe < PROBES; probe++) {
+            final int slot = (home + probe) & mask;
+            final MobileMoneyAgent candidate = agents[slot];
+            if (candidate == null) {
+                free = free < 0 ? slot : free;
+            } else if (same(candidate.getAgentCode(), code) && same(candidate.getAgentName(), name)) {
+                return candidate;
+            }
+        }
+        final MobileMoneyAgent agent = new MobileMoneyAgent(code, name);
+        agents[free >= 0 ? free : home] = agent;
+        return agent;
+    }
+
+    private static boolean contentEquals(String string, CharSequence text, int start, int end) {
+        if (string.length() != end - start) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (string.charAt(i - start) != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean same(String a, String b) {
+        return a == b || a != null && a.equals(b);
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
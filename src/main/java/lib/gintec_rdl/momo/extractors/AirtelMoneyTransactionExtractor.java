@@ -4,6 +4,16 @@ import java.util.Map;
 import lib.gintec_rdl.momo.extraction.TransactionExtractor;
 import lib.gintec_rdl.momo.model.Transaction;
 
+/**
+ * <p>
+ * Placeholder for Airtel Money messages. No formats are supported until they
+ * can be built from captured messages, so every message fails loudly instead
+ * of being reported as unrecognized. Until then a
+ * {@link lib.gintec_rdl.momo.template.TemplateTransactionExtractor} can map
+ * known layouts onto the {@code AirtelMoney*} transaction classes.</p>
+ *
+ * @author CK
+ */
 public class AirtelMoneyTransactionExtractor extends TransactionExtractor {
 
     @Override
@@ -0,0 +1,110 @@
+package lib.gintec_rdl.momo.extractors;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import lib.gintec_rdl.momo.extraction.MessageFormat;
+import lib.gintec_rdl.momo.extraction.PrefixClassifier;
+
+/**
+ * <p>
+ * The MPAMBA message formats understood by {@link MpambaTransactionExtractor}.</p>
+ * <p>
+ * Each constant carries the prefix used to classify a message and the
+ * precompiled pattern used to read it. Patterns are compiled once when the
+ * class is loaded and are safe to share between threads. Each thread also
+ * keeps one {@link Matcher} per type which is reset for every message.</p>
+ *
+ * @author CK
+ */
+public enum MpambaMessageType implements MessageFormat {
+
+    CREDIT(
+        "Money Sent to ",
+        "^Money Sent to (08[0-9]{8}) (.+)? on ([0-9]{2}/[0-9]{2}/[0-9]{4} [0-9]{2}:[0-9]{2}:[0-9]{2}).\\s*$|^Amount: ([0-9,]+\\.[0-9]{2})MWK\\s*$|Fee: ([0-9,]+\\.[0-9]{2})MWK\\s*$|^Ref: ([A-Z0-9]+)\\s*$|Bal: ([0-9,]+\\.[0-9]{2})MWK$",
+        Pattern.MULTILINE
+    ),
+    DEBIT(
+        "Money Received from ",
+        "^Money Received from ([0-9]{10,12}) (.+)? on ([0-9]{2}/[0-9]{2}/[0-9]{4} [0-9]{2}:[0-9]{2}:[0-9]{2}).\\s*$|^Amount: ([0-9,]+\\.[0-9]{2})MWK\\s*$|^Ref: ([A-Z0-9]+)\\s*$|Bal: ([0-9,]+\\.[0-9]{2})MWK$",
+        Pattern.MULTILINE
+    ),
+    LEGACY_CASH_IN(
+        "Trans ID: ",
+        "^Trans ID: ([A-Z0-9.]+): you have received MK([0-9]+\\.[0-9]{2}) from ([A-Z0-9]+), (.+)\\. your new balance is MK([0-9]+\\.[0-9]{2})",
+        0
+    ),
+    CASH_IN(
+        "Cash In from ",
+        "^Cash In from ([0-9]+)-([0-9A-Z\\s]+) on (([0-9]{2,4}/?){3} ([0-9]{2}:?){3})\\.\\s*$|^Amt: ([0-9,]+\\.[0-9]{2})MWK$|^Fee: ([0-9,]+\\.[0-9]{2})MWK\\s*$|^Ref: ([A-Z0-9]+)$|Bal: ([0-9,]+\\.[0-9]{2})MWK$",
+        Pattern.MULTILINE
+    ),
+    DEPOSIT(
+        "Deposit from ",
+        "^Deposit from (.+) on ([0-9]{2}/[0-9]{2}/[0-9]{4} [0-9]{2}:[0-9]{2}:[0-9]{2})\\. Amount: ([0-9,]+\\.[0-9]{2})MWK Fee: ([0-9,]+\\.[0-9]{2})MWK Ref: ([A-Z0-9]+) Available Balance: ([0-9,]+\\.[0-9]{2})MWK\\.$",
+        0
+    ),
+    CASH_OUT(
+        "Cash Out to",
+        "^Cash Out to (.+) - (.+) on ([0-9]{2}/[0-9]{2}/[0-9]{4} [0-9]{2}:[0-9]{2}:[0-9]{2}).$|^Amt: ([,0-9]+\\.00)MWK.*$|^Fee: ([,0-9]+\\.00)MWK.*$|^Ref: ([A-Z0-9]+)\\s*$|^Bal: ([,0-9]+\\.00)MWK\\s*$",
+        Pattern.MULTILINE
+    );
+
+    private static final PrefixClassifier<MpambaMessageType> CLASSIFIER = new PrefixClassifier<>();
+
+    static {
+        for (MpambaMessageType type : values()) {
+            CLASSIFIER.register(type.prefix, type);
+        }
+    }
+
+    private final String prefix;
+    private final Pattern pattern;
+    private final ThreadLocal<Matcher> matcher;
+
+    MpambaMessageType(String prefix, String regex, int flags) {
+        final Pattern compiled = Pattern.compile(regex, flags);
+        this.prefix = prefix;
+        this.pattern = compiled;
+        this.matcher = ThreadLocal.withInitial(() -> compiled.matcher(""));
+    }
+
+    /**
+     * @return The text every message of this type starts with
+     */
+    @Override
+    public String getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * @return The precompiled pattern for this message type
+     */
+    public Pattern getPattern() {
+        return pattern;
+    }
+
+    /**
+     * Returns the calling thread's matcher for this type, reset to the given
+     * input. The matcher must not be used after the next call on the same
+     * thread.
+     *
+     * @param input The message text
+     * @return A matcher over the input
+     */
+    @Override
+    public Matcher matcher(CharSequence input) {
+        return matcher.get().reset(input);
+    }
+
+    /**
+     * Classifies a message by its prefix.
+     *
+     * @param input The message text
+     * @return The matching message type or null if the message is not
+     * recognized
+     */
+    public static MpambaMessageType of(CharSequence input) {
+        return CLASSIFIER.classify(input);
+    }
+}
@@ -0,0 +1,352 @@
+package lib.gintec_rdl.momo.extractors;
+
+import java.util.Date;
+
+import lib.gintec_rdl.momo.extraction.TransactionHolder;
+import lib.gintec_rdl.momo.utils.LocaleUtils;
+import lib.gintec_rdl.momo.utils.MoneyUtils;
+import lib.gintec_rdl.momo.utils.TimestampCodec;
+
+/**
+ * <p>
+ * Single pass reader for the MPAMBA message formats, used by
+ * {@link MpambaScanningTransactionExtractor}.</p>
+ * <p>
+ * The scanner walks the message one line at a time and reads amounts, dates
+ * and references straight from the input. Only the values that end up as
+ * strings on a transaction (references, names and phone numbers) are copied
+ * out of the input. Instances keep state between calls and are not thread
+ * safe; the extractor keeps one per thread.</p>
+ *
+ * @author CK
+ */
+final class MpambaScanner {
+
+    private static final String ON = " on ";
+
+    /**
+     * Number of characters in a dd/MM/yyyy HH:mm:ss timestamp.
+     */
+    private static final int DATE_LENGTH = 19;
+
+    private CharSequence input;
+    private int length;
+    private int lineStart, lineEnd;
+
+    /*
+     * Values read by the last call to the corresponding method.
+     */
+    long amount;
+    int tokenStart, tokenEnd;
+
+    /*
+     * Fields read from the body lines by readFields().
+     */
+    boolean hasAmount, hasFee, hasBalance, hasReference;
+    long fieldAmount, fieldFee, fieldBalance;
+    String fieldReference;
+
+    /**
+     * Points the scanner at a new message, positioned on its first line.
+     *
+     * @param input The message
+     */
+    void reset(CharSequence input) {
+        this.input = input;
+        this.length = input.length();
+        this.lineStart = 0;
+        this.lineEnd = endOfLine(0);
+        this.hasAmount = this.hasFee = this.hasBalance = this.hasReference = false;
+        this.fieldReference = null;
+    }
+
+    /**
+     * Releases the reference to the last message.
+     */
+    void clear() {
+        this.input = null;
+        this.fieldReference = null;
+    }
+
+    int lineStart() {
+        return lineStart;
+    }
+
+    int lineEnd() {
+        return lineEnd;
+    }
+
+    /**
+     * Moves to the next line.
+     *
+     * @return False if there are no more lines
+     */
+    boolean nextLine() {
+        if (lineEnd >= length) {
+            return false;
+        }
+        lineStart = lineEnd + 1;
+        lineEnd = endOfLine(lineStart);
+        return true;
+    }
+
+    /**
+     * @param at Position to test
+     * @param literal The expected text
+     * @return True if the literal appears at the given position within the
+     * current line
+     */
+    boolean matches(int at, String literal) {
+        final int n = literal.length();
+        if (at < 0 || at + n > lineEnd) {
+            return false;
+        }
+        for (int i = 0; i < n; i++) {
+            if (input.charAt(at + i) != literal.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds the last occurrence of a literal within the current line.
+     *
+     * @param literal The text to find
+     * @param from First position of the search
+     * @param to Position the occurrence must start before
+     * @return The position or -1
+     */
+    int lastIndexOf(String literal, int from, int to) {
+        for (int i = Math.min(to, lineEnd - literal.length()); i >= from; i--) {
+            if (matches(i, literal)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the last " on " in the current line that is followed by a
+     * timestamp.
+     *
+     * @param from First position of the search
+     * @return Position of the " on " or -1
+     */
+    int lastIndexOfOnDate(int from) {
+        int i = lineEnd - ON.length() - DATE_LENGTH;
+        while ((i = lastIndexOf(ON, from, i)) >= 0) {
+            if (isDate(i + ON.length())) {
+                return i;
+            }
+            i--;
+        }
+        return -1;
+    }
+
+    /**
+     * Reads a run of digits.
+     *
+     * @param at Start position
+     * @param min Minimum number of digits
+     * @param max Maximum number of digits
+     * @return The end of the run or -1 if it is shorter than min
+     */
+    int digits(int at, int min, int max) {
+        int i = at;
+        while (i < lineEnd && i - at < max && isDigit(input.charAt(i))) {
+            i++;
+        }
+        return i - at >= min ? i : -1;
+    }
+
+    /**
+     * Reads a run of upper case letters, digits and the given extra
+     * character, recording its bounds in tokenStart and tokenEnd.
+     *
+     * @param at Start position
+     * @param extra Additional allowed character, or 0
+     * @return The end of the token or -1 if it is empty
+     */
+    int token(int at, char extra) {
+        int i = at;
+        while (i < lineEnd) {
+            final char c = input.charAt(i);
+            if (!(isDigit(c) || (c >= 'A' && c <= 'Z') || (extra != 0 && c == extra))) {
+                break;
+            }
+            i++;
+        }
+        tokenStart = at;
+        tokenEnd = i;
+        return i > at ? i : -1;
+    }
+
+    /**
+     * Reads an amount of the form 1,234.56 into {@link #amount} as minor
+     * units. Amounts of more than {@link MoneyUtils#MAX_DIGITS} digits are
+     * refused, as {@link MoneyUtils#tryParse(java.lang.CharSequence, int, int)}
+     * refuses them.
+     *
+     * @param at Start position
+     * @return The end of the amount or -1 if there is no amount at the
+     * position
+     */
+    int money(int at) {
+        long value = 0;
+        int digits = 0;
+        int i = at;
+        while (i < lineEnd) {
+            final char c = input.charAt(i);
+            if (isDigit(c)) {
+                if (++digits > MoneyUtils.MAX_DIGITS - 2) {
+                    return -1;
+                }
+                value = value * 10 + (c - '0');
+            } else if (c != ',') {
+                break;
+            }
+            i++;
+        }
+        if (digits == 0 || i + 3 > lineEnd || input.charAt(i) != '.'
+            || !isDigit(input.charAt(i + 1)) || !isDigit(input.charAt(i + 2))) {
+            return -1;
+        }
+        amount = value * 100 + (input.charAt(i + 1) - '0') * 10 + (input.charAt(i + 2) - '0');
+        return i + 3;
+    }
+
+    /**
+     * @param at Position to test
+     * @return True if a valid dd/MM/yyyy HH:mm:ss timestamp starts at the
+     * position
+     */
+    boolean isDate(int at) {
+        return at + DATE_LENGTH <= lineEnd && TimestampCodec.tryParseLocal(input, at, at + DATE_LENGTH) != TimestampCodec.INVALID;
+    }
+
+    /**
+     * Reads the timestamp at the given position in the provider time zone.
+     * The caller must have checked the position with {@link #isDate(int)}.
+     *
+     * @param at Start position
+     * @return The date
+     */
+    Date date(int at) {
+        return new Date(time(at));
+    }
+
+    /**
+     * Reads the timestamp at the given position, as {@link #date(int)} does,
+     * into the holder's date.
+     *
+     * @param at Start position
+     * @param holder Holder of the transaction being filled, or null
+     * @return The date
+     */
+    Date date(int at, TransactionHolder holder) {
+        return holder != null ? holder.date(time(at)) : date(at);
+    }
+
+    private long time(int at) {
+        return LocaleUtils.getTimestampCodec().tryParse(input, at, at + DATE_LENGTH);
+    }
+
+    /**
+     * @param from Start position
+     * @return True if the rest of the current line is whitespace
+     */
+    boolean blankToEnd(int from) {
+        for (int i = from; i < lineEnd; i++) {
+            if (!Character.isWhitespace(input.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param from Start, inclusive
+     * @param to End, exclusive
+     * @return The text between the bounds
+     */
+    String string(int from, int to) {
+        return input.subSequence(from, to).toString();
+    }
+
+    /**
+     * @param from Start, inclusive
+     * @param to End, exclusive
+     * @param holder Shares repeated text, or null
+     * @return The text between the bounds
+     */
+    String string(int from, int to, TransactionHolder holder) {
+        return holder != null ? holder.string(input, from, to) : string(from, to);
+    }
+
+    /**
+     * @param from Start, inclusive
+     * @param to End, exclusive
+     * @param holder Shares repeated text, or null
+     * @return The trimmed text between the bounds
+     */
+    String text(int from, int to, TransactionHolder holder) {
+        while (from < to && input.charAt(from) <= ' ') {
+            from++;
+        }
+        while (to > from && input.charAt(to - 1) <= ' ') {
+            to--;
+        }
+        return string(from, to, holder);
+    }
+
+    /**
+     * <p>
+     * Reads the labelled lines following the first line of a multi-line
+     * message. Recognised lines are {@code Amount:} or {@code Amt:},
+     * {@code Fee:}, {@code Ref:} and {@code Bal:}; anything else is
+     * ignored.</p>
+     */
+    void readFields() {
+        while (nextLine()) {
+            int i = lineStart;
+            if (matches(i, "Amount: ") || matches(i, "Amt: ")) {
+                i = money(input.charAt(i + 3) == ':' ? i + 5 : i + 8);
+                if (i >= 0 && matches(i, "MWK")) {
+                    hasAmount = true;
+                    fieldAmount = amount;
+                }
+            } else if (matches(i, "Fee: ")) {
+                i = money(i + 5);
+                if (i >= 0 && matches(i, "MWK")) {
+                    hasFee = true;
+                    fieldFee = amount;
+                }
+            } else if (matches(i, "Bal: ")) {
+                i = money(i + 5);
+                if (i >= 0 && matches(i, "MWK")) {
+                    hasBalance = true;
+                    fieldBalance = amount;
+                }
+            } else if (matches(i, "Ref: ")) {
+                i = token(i + 5, (char) 0);
+                if (i >= 0 && blankToEnd(i)) {
+                    hasReference = true;
+                    fieldReference = string(tokenStart, tokenEnd);
+                }
+            }
+        }
+    }
+
+    private int endOfLine(int from) {
+        int i = from;
+        while (i < length && input.charAt(i) != '\n') {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
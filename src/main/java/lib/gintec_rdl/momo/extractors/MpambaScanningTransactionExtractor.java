@@ -0,0 +1,326 @@
+package lib.gintec_rdl.momo.extractors;
+
+import java.util.Map;
+import java.util.function.Supplier;
+
+import lib.gintec_rdl.momo.extraction.ExtractionReport;
+import lib.gintec_rdl.momo.extraction.TransactionExtractor;
+import lib.gintec_rdl.momo.extraction.TransactionHolder;
+import lib.gintec_rdl.momo.model.*;
+
+/**
+ * <p>
+ * Reads the same MPAMBA formats as {@link MpambaTransactionExtractor} with a
+ * hand-written single pass scanner instead of regular expressions.</p>
+ * <p>
+ * Amounts and dates are read directly from the message without creating
+ * intermediate strings. Body lines are recognised by their label, so a
+ * missing line leaves only its own field unset instead of shifting the
+ * following values.</p>
+ * <p>
+ * It supports {@link TransactionHolder}s: with one, a tight loop over
+ * messages creates only the transaction ids, and names or agents that the
+ * holder has not seen recently.</p>
+ *
+ * @author CK
+ */
+public final class MpambaScanningTransactionExtractor extends TransactionExtractor {
+
+    private static final ThreadLocal<MpambaScanner> SCANNER = ThreadLocal.withInitial(MpambaScanner::new);
+
+    @Override
+    public Transaction extract(String from, String input, Map<String, String> properties) throws Exception {
+        return extract(from, input, properties, ExtractionReport.ignoring());
+    }
+
+    @Override
+    public Transaction extract(String from, String input, Map<String, String> properties, ExtractionReport report) throws Exception {
+        return extract(from, input, properties, null, report);
+    }
+
+    /**
+     * Fills the holder's transaction, date, names and agents.
+     */
+    @Override
+    public Transaction extract(String from, String input, Map<String, String> properties, TransactionHolder holder,
+        ExtractionReport report) throws Exception {
+        if (!"MPAMBA".equals(from) || input == null) {
+            return null;
+        }
+
+        final MpambaMessageType type = MpambaMessageType.of(input);
+        if (type == null) {
+            return null;
+        }
+        report.setMessageType(type.name());
+
+        final MpambaScanner scanner = SCANNER.get();
+        scanner.reset(input);
+        try {
+            switch (type) {
+                case CREDIT:
+                    return extractCreditTransaction(scanner, holder, report);
+                case DEBIT:
+                    return extractDebitTransaction(scanner, holder, report);
+                case LEGACY_CASH_IN:
+                    return extractLegacyCashInTransaction(scanner, holder, report);
+                case CASH_IN:
+                    return extractCashInTransaction(scanner, holder, report);
+                case DEPOSIT:
+                    return extractDepositTransaction(scanner, holder, report);
+                case CASH_OUT:
+                    return extractCashOutTransaction(scanner, holder, report);
+                default:
+                    return null;
+            }
+        } finally {
+            scanner.clear();
+        }
+    }
+
+    @Override
+    public String getMessageType(String from, String input) {
+        final MpambaMessageType type = MpambaMessageType.of(input);
+        return type != null ? type.name() : null;
+    }
+
+    private Transaction extractCreditTransaction(MpambaScanner scanner, TransactionHolder holder, ExtractionReport report) {
+        final MpambaCreditTransaction transaction = create(holder, MpambaCreditTransaction.class, MpambaCreditTransaction::new);
+        final int phone = scanner.lineStart() + MpambaMessageType.CREDIT.getPrefix().length();
+        final int name = phone + 11;
+        if (scanner.matches(phone, "08") && scanner.digits(phone, 10, 10) == phone + 10 && scanner.matches(phone + 10, " ")) {
+            final int on = scanner.lastIndexOfOnDate(name);
+            if (on >= name && endsTimestampLine(scanner, on)) {
+                transaction.setRecipientPhone(scanner.string(phone, phone + 10, holder));
+                transaction.setRecipientName(on > name ? scanner.text(name, on, holder) : null);
+                transaction.setDate(scanner.date(on + 4, holder));
+            }
+        }
+        if (transaction.getDate() == null) {
+            missing(transaction, report, "recipientPhone", "date");
+        }
+        scanner.readFields();
+        if (scanner.hasAmount) {
+            transaction.setAmountMinor(scanner.fieldAmount);
+        } else {
+            report.missing("amount");
+        }
+        if (scanner.hasFee) {
+            transaction.setFeeMinor(scanner.fieldFee);
+        } else {
+            report.missing("fee");
+        }
+        if (scanner.hasReference) {
+            transaction.setTransactionId(scanner.fieldReference);
+        } else {
+            report.missing("transactionId");
+        }
+        if (scanner.hasBalance) {
+            transaction.setBalanceMinor(scanner.fieldBalance);
+        } else {
+            report.missing("balance");
+        }
+        return transaction;
+    }
+
+    private Transaction extractDebitTransaction(MpambaScanner scanner, TransactionHolder holder, ExtractionReport report) {
+        final MpambaDebitTransaction transaction = create(holder, MpambaDebitTransaction.class, MpambaDebitTransaction::new);
+        final int phone = scanner.lineStart() + MpambaMessageType.DEBIT.getPrefix().length();
+        final int phoneEnd = scanner.digits(phone, 10, 12);
+        if (phoneEnd > 0 && scanner.matches(phoneEnd, " ")) {
+            final int name = phoneEnd + 1;
+            final int on = scanner.lastIndexOfOnDate(name);
+            if (on >= name && endsTimestampLine(scanner, on)) {
+                transaction.setSenderPhone(scanner.string(phone, phoneEnd, holder));
+                transaction.setSenderName(on > name ? scanner.text(name, on, holder) : null);
+                transaction.setDate(scanner.date(on + 4, holder));
+            }
+        }
+        if (transaction.getDate() == null) {
+            missing(transaction, report, "senderPhone", "date");
+        }
+        scanner.readFields();
+        if (scanner.hasAmount) {
+            transaction.setAmountMinor(scanner.fieldAmount);
+        } else {
+            report.missing("amount");
+        }
+        if (scanner.hasReference) {
+            transaction.setTransactionId(scanner.fieldReference);
+        } else {
+            report.missing("transactionId");
+        }
+        if (scanner.hasBalance) {
+            transaction.setBalanceMinor(scanner.fieldBalance);
+        } else {
+            report.missing("balance");
+        }
+        return transaction;
+    }
+
+    private Transaction extractLegacyCashInTransaction(MpambaScanner scanner, TransactionHolder holder, ExtractionReport report) {
+        final MpambaCashInTransaction transaction = create(holder, MpambaCashInTransaction.class, MpambaCashInTransaction::new);
+        int i = scanner.token(scanner.lineStart() + MpambaMessageType.LEGACY_CASH_IN.getPrefix().length(), '.');
+        if (i < 0 || !scanner.matches(i, ": you have received MK")) {
+            return missing(transaction, report, "transactionId", "amount", "agent", "balance");
+        }
+        final int idStart = scanner.tokenStart, idEnd = scanner.tokenEnd;
+        if ((i = scanner.money(i + 22)) < 0 || !scanner.matches(i, " from ")) {
+            return missing(transaction, report, "transactionId", "amount", "agent", "balance");
+        }
+        final long amount = scanner.amount;
+        if ((i = scanner.token(i + 6, (char) 0)) < 0 || !scanner.matches(i, ", ")) {
+            return missing(transaction, report, "transactionId", "amount", "agent", "balance");
+        }
+        final int codeStart = scanner.tokenStart, codeEnd = scanner.tokenEnd;
+        final int name = i + 2;
+        final int balance = scanner.lastIndexOf(". your new balance is MK", name + 1, scanner.lineEnd());
+        if (balance < 0 || scanner.money(balance + 24) < 0) {
+            return missing(transaction, report, "transactionId", "amount", "agent", "balance");
+        }
+        transaction.setTransactionId(scanner.string(idStart, idEnd));
+        transaction.setAmountMinor(amount);
+        transaction.setAgent(agent(holder, scanner.string(codeStart, codeEnd, holder), scanner.string(name, balance, holder)));
+        transaction.setBalanceMinor(scanner.amount);
+        transaction.setFee(0);
+        transaction.setDate(null);
+        return transaction;
+    }
+
+    private Transaction extractCashInTransaction(MpambaScanner scanner, TransactionHolder holder, ExtractionReport report) {
+        final MpambaCashInTransaction transaction = create(holder, MpambaCashInTransaction.class, MpambaCashInTransaction::new);
+        final int code = scanner.lineStart() + MpambaMessageType.CASH_IN.getPrefix().length();
+        final int codeEnd = scanner.digits(code, 1, Integer.MAX_VALUE);
+        if (codeEnd > 0 && scanner.matches(codeEnd, "-")) {
+            final int name = codeEnd + 1;
+            final int on = scanner.lastIndexOfOnDate(name);
+            if (on > name && isAgentName(scanner, name, on) && endsTimestampLine(scanner, on)) {
+                transaction.setAgent(agent(holder, scanner.string(code, codeEnd, holder), scanner.string(name, on, holder)));
+                transaction.setDate(scanner.date(on + 4, holder));
+            }
+        }
+        if (transaction.getDate() == null) {
+            missing(transaction, report, "agent", "date");
+        }
+        scanner.readFields();
+        if (scanner.hasAmount) {
+            transaction.setAmountMinor(scanner.fieldAmount);
+        } else {
+            report.missing("amount");
+        }
+        if (scanner.hasFee) {
+            transaction.setFeeMinor(scanner.fieldFee);
+        } else {
+            report.missing("fee");
+        }
+        if (scanner.hasReference) {
+            transaction.setTransactionId(scanner.fieldReference);
+        } else {
+            report.missing("transactionId");
+        }
+        if (scanner.hasBalance) {
+            transaction.setBalanceMinor(scanner.fieldBalance);
+        } else {
+            report.missing("balance");
+        }
+        return transaction;
+    }
+
+    private Transaction extractDepositTransaction(MpambaScanner scanner, TransactionHolder holder, ExtractionReport report) {
+        final MpambaDepositTransaction transaction = create(holder, MpambaDepositTransaction.class, MpambaDepositTransaction::new);
+        final int source = scanner.lineStart() + MpambaMessageType.DEPOSIT.getPrefix().length();
+        final int on = scanner.lastIndexOfOnDate(source + 1);
+        if (on < 0) {
+            return missing(transaction, report, "source", "date", "amount", "fee", "transactionId", "balance");
+        }
+        int i = on + 4 + 19;
+        if (!scanner.matches(i, ". Amount: ") || (i = scanner.money(i + 10)) < 0 || !scanner.matches(i, "MWK Fee: ")) {
+            return missing(transaction, report, "source", "date", "amount", "fee", "transactionId", "balance");
+        }
+        final long amount = scanner.amount;
+        if ((i = scanner.money(i + 9)) < 0 || !scanner.matches(i, "MWK Ref: ")) {
+            return missing(transaction, report, "source", "date", "amount", "fee", "transactionId", "balance");
+        }
+        final long fee = scanner.amount;
+        if ((i = scanner.token(i + 9, (char) 0)) < 0 || !scanner.matches(i, " Available Balance: ")) {
+            return missing(transaction, report, "source", "date", "amount", "fee", "transactionId", "balance");
+        }
+        final int refStart = scanner.tokenStart, refEnd = scanner.tokenEnd;
+        if ((i = scanner.money(i + 20)) < 0 || !scanner.matches(i, "MWK.") || !scanner.blankToEnd(i + 4)) {
+            return missing(transaction, report, "source", "date", "amount", "fee", "transactionId", "balance");
+        }
+        transaction.setSource(scanner.string(source, on, holder));
+        transaction.setDate(scanner.date(on + 4, holder));
+        transaction.setAmountMinor(amount);
+        transaction.setFeeMinor(fee);
+        transaction.setTransactionId(scanner.string(refStart, refEnd));
+        transaction.setBalanceMinor(scanner.amount);
+        return transaction;
+    }
+
+    private Transaction extractCashOutTransaction(MpambaScanner scanner, TransactionHolder holder, ExtractionReport report) {
+        final MpambaCashOutTransaction transaction = create(holder, MpambaCashOutTransaction.class, MpambaCashOutTransaction::new);
+        final int name = scanner.lineStart() + MpambaMessageType.CASH_OUT.getPrefix().length() + 1;
+        final int on = scanner.lastIndexOfOnDate(name + 1);
+        if (scanner.matches(name - 1, " ") && on > 0 && endsTimestampLine(scanner, on)) {
+            final int dash = scanner.lastIndexOf(" - ", name + 1, on - 4);
+            if (dash > 0) {
+                transaction.setAgent(agent(holder, scanner.string(dash + 3, on, holder), scanner.string(name, dash, holder)));
+                transaction.setDate(scanner.date(on + 4, holder));
+            }
+        }
+        if (transaction.getDate() == null) {
+            missing(transaction, report, "agent", "date");
+        }
+        scanner.readFields();
+        if (scanner.hasAmount) {
+            transaction.setAmountMinor(scanner.fieldAmount);
+        } else {
+            report.missing("amount");
+        }
+        if (scanner.hasFee) {
+            transaction.setFeeMinor(scanner.fieldFee);
+        } else {
+            report.missing("fee");
+        }
+        if (scanner.hasReference) {
+            transaction.setTransactionId(scanner.fieldReference);
+        } else {
+            report.missing("transactionId");
+        }
+        if (scanner.hasBalance) {
+            transaction.setBalanceMinor(scanner.fieldBalance);
+        } else {
+            report.missing("balance");
+        }
+        return transaction;
+    }
+
+    private static <T extends Transaction> T create(TransactionHolder holder, Class<T> type, Supplier<T> factory) {
+        return holder != null ? holder.reuse(type) : factory.get();
+    }
+
+    private static MobileMoneyAgent agent(TransactionHolder holder, String code, String name) {
+        return holder != null ? holder.agent(code, name) : new MobileMoneyAgent(code, name);
+    }
+
+    private static Transaction missing(Transaction transaction, ExtractionReport report, String... fields) {
+        for (String field : fields) {
+            report.missing(field);
+        }
+        return transaction;
+    }
+
+    /**
+     * The first line of the multi-line formats ends with the timestamp
+     * followed by a single character, usually a full stop.
+     */
+    private static boolean endsTimestampLine(MpambaScanner scanner, int on) {
+        final int end = on + 4 + 19;
+        return end < scanner.lineEnd() && scanner.blankToEnd(end + 1);
+    }
+
+    private static boolean isAgentName(MpambaScanner scanner, int from, int to) {
+        return scanner.token(from, ' ') >= to;
+    }
+}
@@ -1,188 +1,225 @@
 package lib.gintec_rdl.momo.extractors;
 
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Locale;
-import java.util.Map;
 import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
-import lib.gintec_rdl.momo.extraction.TransactionExtractor;
+import lib.gintec_rdl.momo.extraction.ExtractionReport;
+import lib.gintec_rdl.momo.extraction.PatternTransactionExtractor;
 import lib.gintec_rdl.momo.model.*;
 import lib.gintec_rdl.momo.utils.TextUtils;
 
-public final class MpambaTransactionExtractor extends TransactionExtractor {
+public final class MpambaTransactionExtractor extends PatternTransactionExtractor<MpambaMessageType> {
 
-    @Override
-    public Transaction extract(String from, String input, Map<String, String> properties) throws Exception {
-        if (!"MPAMBA".equals(from) || input == null) {
-            return null;
-        }
-
-        if (input.startsWith("Money Sent to ")) {
-            return extractCreditTransaction(input);
-        }
+    /**
+     * First group of each line alternative of the multi-line formats, in
+     * line order.
+     */
+    private static final int[] CREDIT_LINES = {3, 4, 5, 6, 7};
+    private static final int[] DEBIT_LINES = {3, 4, 5, 6};
+    private static final int[] CASH_IN_LINES = {1, 6, 7, 8, 9};
+    private static final int[] CASH_OUT_LINES = {3, 4, 5, 6, 7};
 
-        if (input.startsWith("Money Received from ")) {
-            return extractDebitTransaction(input);
-        }
-
-        if (input.startsWith("Trans ID: ") || input.startsWith("Cash In from ")) {
-            return extractCashInTransaction(input);
-        }
-
-        if (input.startsWith("Deposit from ")) {
-            return extractDepositTransaction(input);
-        }
+    public MpambaTransactionExtractor() {
+        super("MPAMBA", MpambaMessageType.class);
+    }
 
-        if(input.startsWith("Cash Out to")){
-            return extractCashOutTransaction(input);
+    @Override
+    protected Transaction extract(MpambaMessageType type, Matcher matcher, String input, ExtractionReport report) {
+        switch (type) {
+            case CREDIT:
+                return extractCreditTransaction(input, matcher, report);
+            case DEBIT:
+                return extractDebitTransaction(input, matcher, report);
+            case LEGACY_CASH_IN:
+                return extractLegacyCashInTransaction(input, matcher, report);
+            case CASH_IN:
+                return extractCashInTransaction(input, matcher, report);
+            case DEPOSIT:
+                return extractDepositTransaction(input, matcher, report);
+            case CASH_OUT:
+                return extractCashOutTransaction(input, matcher, report);
+            default:
+                return null;
         }
-
-        return null;
     }
 
-    private Transaction extractCashOutTransaction(String input) throws ParseException {
-        final Pattern pattern = Pattern.compile(
-                "^Cash Out to (.+) - (.+) on ([0-9]{2}/[0-9]{2}/[0-9]{4} [0-9]{2}:[0-9]{2}:[0-9]{2}).$|^Amt: ([,0-9]+\\.00)MWK.*$|^Fee: ([,0-9]+\\.00)MWK.*$|^Ref: ([A-Z0-9]+)\\s*$|^Bal: ([,0-9]+\\.00)MWK\\s*$",
-                Pattern.MULTILINE
-        );
-        final DateFormat dateFormat = new SimpleDateFormat("dd/MM/yyyy HH:mm:ss", Locale.US);
+    private Transaction extractCashOutTransaction(String input, Matcher matcher, ExtractionReport report) {
         final MpambaCashOutTransaction transaction = new MpambaCashOutTransaction();
-        final Matcher matcher = pattern.matcher(input);
-        if(matcher.find()){
-            transaction.setAgent(new MobileMoneyAgent(matcher.group(2), matcher.group(1)));
-            transaction.setDate(dateFormat.parse(matcher.group(3)));
-        }
-        if(matcher.find()){
-            transaction.setAmount(TextUtils.currency(matcher.group(4)));
-        }
-        if(matcher.find()){
-            transaction.setFee(TextUtils.currency(matcher.group(5)));
-        }
-        if(matcher.find()){
-            transaction.setTransactionId(matcher.group(6));
-        }
-        if(matcher.find()){
-            transaction.setBalance(TextUtils.currency(matcher.group(7)));
+        int seen = 0, line;
+        while ((line = nextLine(matcher, CASH_OUT_LINES, seen)) >= 0) {
+            seen |= 1 << line;
+            switch (line) {
+                case 0:
+                    transaction.setAgent(new MobileMoneyAgent(matcher.group(2), matcher.group(1)));
+                    transaction.setDate(date(input, matcher, 3, "date", report));
+                    break;
+                case 1:
+                    transaction.setAmountMinor(money(input, matcher, 4, "amount", report));
+                    break;
+                case 2:
+                    transaction.setFeeMinor(money(input, matcher, 5, "fee", report));
+                    break;
+                case 3:
+                    transaction.setTransactionId(matcher.group(6));
+                    break;
+                default:
+                    transaction.setBalanceMinor(money(input, matcher, 7, "balance", report));
+            }
         }
+        missing(report, seen, "agent,date", "amount", "fee", "transactionId", "balance");
         return transaction;
     }
 
-    private Transaction extractDepositTransaction(String input) throws ParseException {
-        final Pattern pattern = Pattern.compile(
-            "^Deposit from (.+) on ([0-9]{2}/[0-9]{2}/[0-9]{4} [0-9]{2}:[0-9]{2}:[0-9]{2})\\. Amount: ([0-9,]+\\.[0-9]{2})MWK Fee: ([0-9,]+\\.[0-9]{2})MWK Ref: ([A-Z0-9]+) Available Balance: ([0-9,]+\\.[0-9]{2})MWK\\.$"
-        );
-        final DateFormat dateFormat = new SimpleDateFormat("dd/MM/yyyy HH:mm:ss", Locale.US);
+    private Transaction extractDepositTransaction(String input, Matcher matcher, ExtractionReport report) {
         final MpambaDepositTransaction transaction = new MpambaDepositTransaction();
-        final Matcher matcher = pattern.matcher(input);
         if (matcher.find()) {
             transaction.setSource(matcher.group(1));
-            transaction.setDate(dateFormat.parse(matcher.group(2)));
-            transaction.setAmount(TextUtils.currency(matcher.group(3)));
-            transaction.setFee(TextUtils.currency(matcher.group(4)));
-            transaction.setTransactionId(matcher.group(5));
-            transaction.setBalance(TextUtils.currency(matcher.group(6)));
+            transaction.setDate(date(input, matcher, 2, "date", report));
+            transaction.setAmountMinor(money(input, matcher, 3, "amount", report));
+            transaction.setFeeMinor(money(input, matcher, 4, "fee", report));
+            transaction.setTransactionId(group(matcher, 5, "transactionId", report));
+            transaction.setBalanceMinor(money(input, matcher, 6, "balance", report));
+        } else {
+            missing(report, "source", "date", "amount", "fee", "transactionId", "balance");
         }
         return transaction;
     }
 
-    private Transaction extractCreditTransaction(String input) throws ParseException {
-        final Pattern pattern = Pattern.compile(
-            "^Money Sent to (08[0-9]{8}) (.+)? on ([0-9]{2}/[0-9]{2}/[0-9]{4} [0-9]{2}:[0-9]{2}:[0-9]{2}).\\s*$|^Amount: ([0-9,]+\\.[0-9]{2})MWK\\s*$|Fee: ([0-9,]+\\.[0-9]{2})MWK\\s*$|^Ref: ([A-Z0-9]+)\\s*$|Bal: ([0-9,]+\\.[0-9]{2})MWK$",
-            Pattern.MULTILINE
-        );
+    private Transaction extractCreditTransaction(String input, Matcher matcher, ExtractionReport report) {
         final MpambaCreditTransaction transaction = new MpambaCreditTransaction();
-        final Matcher matcher = pattern.matcher(input);
-        final DateFormat dateFormat = new SimpleDateFormat("dd/MM/yyyy HH:mm:ss", Locale.US);
-        if (matcher.find()) {
-            transaction.setRecipientPhone(matcher.group(1));
-            transaction.setRecipientName(TextUtils.trimmedOrNull(matcher.group(2)));
-            transaction.setDate(dateFormat.parse(matcher.group(3)));
-        }
-        if (matcher.find()) {
-            transaction.setAmount(TextUtils.currency(matcher.group(4)));
-        }
-        if (matcher.find()) {
-            transaction.setFee(TextUtils.currency(matcher.group(5)));
-        }
-        if (matcher.find()) {
-            transaction.setTransactionId(matcher.group(6));
-        }
-        if (matcher.find()) {
-            transaction.setBalance(TextUtils.currency(matcher.group(7)));
+        int seen = 0, line;
+        while ((line = nextLine(matcher, CREDIT_LINES, seen)) >= 0) {
+            seen |= 1 << line;
+            switch (line) {
+                case 0:
+                    transaction.setRecipientPhone(matcher.group(1));
+                    transaction.setRecipientName(TextUtils.trimmedOrNull(matcher.group(2)));
+                    transaction.setDate(date(input, matcher, 3, "date", report));
+                    break;
+                case 1:
+                    transaction.setAmountMinor(money(input, matcher, 4, "amount", report));
+                    break;
+                case 2:
+                    transaction.setFeeMinor(money(input, matcher, 5, "fee", report));
+                    break;
+                case 3:
+                    transaction.setTransactionId(matcher.group(6));
+                    break;
+                default:
+                    transaction.setBalanceMinor(money(input, matcher, 7, "balance", report));
+            }
         }
+        missing(report, seen, "recipientPhone,date", "amount", "fee", "transactionId", "balance");
         return transaction;
     }
 
-    private Transaction extractDebitTransaction(String input) throws ParseException {
-        final Pattern pattern = Pattern.compile(
-            "^Money Received from ([0-9]{10,12}) (.+)? on ([0-9]{2}/[0-9]{2}/[0-9]{4} [0-9]{2}:[0-9]{2}:[0-9]{2}).\\s*$|^Amount: ([0-9,]+\\.[0-9]{2})MWK\\s*$|^Ref: ([A-Z0-9]+)\\s*$|Bal: ([0-9,]+\\.[0-9]{2})MWK$",
-            Pattern.MULTILINE
-        );
+    private Transaction extractDebitTransaction(String input, Matcher matcher, ExtractionReport report) {
         final MpambaDebitTransaction transaction = new MpambaDebitTransaction();
-        final DateFormat dateFormat = new SimpleDateFormat("dd/MM/yyyy HH:mm:ss", Locale.US);
-        final Matcher matcher = pattern.matcher(input);
-        if (matcher.find()) {
-            transaction.setSenderPhone(matcher.group(1));
-            transaction.setSenderName(TextUtils.trimmedOrNull(matcher.group(2)));
-            transaction.setDate(dateFormat.parse(matcher.group(3)));
-        }
-        if (matcher.find()) {
-            transaction.setAmount(TextUtils.currency((matcher.group(4))));
-        }
-        if (matcher.find()) {
-            transaction.setTransactionId(matcher.group(5));
+        int seen = 0, line;
+        while ((line = nextLine(matcher, DEBIT_LINES, seen)) >= 0) {
+            seen |= 1 << line;
+            switch (line) {
+                case 0:
+                    transaction.setSenderPhone(matcher.group(1));
+                    transaction.setSenderName(TextUtils.trimmedOrNull(matcher.group(2)));
+                    transaction.setDate(date(input, matcher, 3, "date", report));
+                    break;
+                case 1:
+                    transaction.setAmountMinor(money(input, matcher, 4, "amount", report));
+                    break;
+                case 2:
+                    transaction.setTransactionId(matcher.group(5));
+                    break;
+                default:
+                    transaction.setBalanceMinor(money(input, matcher, 6, "balance", report));
+            }
         }
+        missing(report, seen, "senderPhone,date", "amount", "transactionId", "balance");
+        return transaction;
+    }
+
+    private Transaction extractLegacyCashInTransaction(String input, Matcher matcher, ExtractionReport report) {
+        final MpambaCashInTransaction transaction = new MpambaCashInTransaction();
         if (matcher.find()) {
-            transaction.setBalance(TextUtils.currency(matcher.group(6)));
+            transaction.setTransactionId(group(matcher, 1, "transactionId", report));
+            transaction.setAmountMinor(money(input, matcher, 2, "amount", report));
+            transaction.setAgent(new MobileMoneyAgent(matcher.group(3), matcher.group(4)));
+            transaction.setBalanceMinor(money(input, matcher, 5, "balance", report));
+            transaction.setFee(0);
+            transaction.setDate(null);
+        } else {
+            missing(report, "transactionId", "amount", "agent", "balance");
         }
         return transaction;
     }
 
-    private Transaction extractCashInTransaction(String input) throws ParseException {
-        if (input.startsWith("Trans ID: ")) {
-            final Pattern pattern = Pattern.compile(
-                "^Trans ID: ([A-Z0-9.]+): you have received MK([0-9]+\\.[0-9]{2}) from ([A-Z0-9]+), (.+)\\. your new balance is MK([0-9]+\\.[0-9]{2})"
-            );
-            final MpambaCashInTransaction transaction = new MpambaCashInTransaction();
-            final Matcher matcher = pattern.matcher(input);
-            if (matcher.find()) {
-                transaction.setTransactionId(matcher.group(1));
-                transaction.setAmount(TextUtils.currency(matcher.group(2)));
-                transaction.setAgent(new MobileMoneyAgent(matcher.group(3), matcher.group(4)));
-                transaction.setBalance(TextUtils.currency(matcher.group(5)));
-                transaction.setFee(0);
-                transaction.setDate(null);
-            }
-            return transaction;
-        } else if (input.startsWith("Cash In from")) {
-            final Pattern pattern = Pattern.compile(
-                "^Cash In from ([0-9]+)-([0-9A-Z\\s]+) on (([0-9]{2,4}/?){3} ([0-9]{2}:?){3})\\.\\s*$|^Amt: ([0-9,]+\\.[0-9]{2})MWK$|^Fee: ([0-9,]+\\.[0-9]{2})MWK\\s*$|^Ref: ([A-Z0-9]+)$|Bal: ([0-9,]+\\.[0-9]{2})MWK$",
-                Pattern.MULTILINE
-            );
-            final MpambaCashInTransaction transaction = new MpambaCashInTransaction();
-            final DateFormat dateFormat = new SimpleDateFormat("dd/MM/yyyy HH:mm:ss", Locale.US);
-            final Matcher matcher = pattern.matcher(input);
-            if (matcher.find()) {
-                transaction.setAgent(new MobileMoneyAgent(matcher.group(1), matcher.group(2)));
-                transaction.setDate(dateFormat.parse(matcher.group(3)));
+    private Transaction extractCashInTransaction(String input, Matcher matcher, ExtractionReport report) {
+        final MpambaCashInTransaction transaction = new MpambaCashInTransaction();
+        int seen = 0, line;
+        while ((line = nextLine(matcher, CASH_IN_LINES, seen)) >= 0) {
+            seen |= 1 << line;
+            switch (line) {
+                case 0:
+                    transaction.setAgent(new MobileMoneyAgent(matcher.group(1), matcher.group(2)));
+                    transaction.setDate(date(input, matcher, 3, "date", report));
+                    break;
+                case 1:
+                    transaction.setAmountMinor(money(input, matcher, 6, "amount", report));
+                    break;
+                case 2:
+                    transaction.setFeeMinor(money(input, matcher, 7, "fee", report));
+                    break;
+                case 3:
+                    transaction.setTransactionId(matcher.group(8));
+                    break;
+                default:
+                    transaction.setBalanceMinor(money(input, matcher, 9, "balance", report));
             }
-            if (matcher.find()) {
-                transaction.setAmount(TextUtils.currency(matcher.group(6)));
-            }
-            if (matcher.find()) {
-                transaction.setFee(TextUtils.currency(matcher.group(7)));
-            }
-            if (matcher.find()) {
-                transaction.setTransactionId(matcher.group(8));
+        }
+        missing(report, seen, "agent,date", "amount", "fee", "transactionId", "balance");
+        return transaction;
+    }
+
+    /**
+     * Finds the next body line of a multi-line format that has not been read
+     * yet. Lines are told apart by the alternative of the pattern they
+     * matched, not by their position, so a missing line does not shift the
+     * ones after it.
+     *
+     * @param matcher The matcher of the format
+     * @param lines The first group of each alternative, in line order
+     * @param seen Bits of the lines read so far; repeated lines are skipped
+     * @return Index of the line in {@code lines} or -1 if there are no more
+     */
+    private static int nextLine(Matcher matcher, int[] lines, int seen) {
+        while (matcher.find()) {
+            for (int i = 0; i < lines.length; i++) {
+                if (matcher.start(lines[i]) >= 0) {
+                    if ((seen & 1 << i) == 0) {
+                        return i;
+                    }
+                    break;
+                }
             }
-            if (matcher.find()) {
-                transaction.setBalance(TextUtils.currency(matcher.group(9)));
+        }
+        return -1;
+    }
+
+    /**
+     * Reports the fields of the lines that were not found, in line order.
+     *
+     * @param fields The fields of each line, comma separated
+     */
+    private static void missing(ExtractionReport report, int seen, String... fields) {
+        for (int i = 0; i < fields.length; i++) {
+            if ((seen & 1 << i) == 0) {
+                missing(report, fields[i].split(","));
             }
-            return transaction;
         }
-        return null;
+    }
+
+    private static void missing(ExtractionReport report, String... fields) {
+        for (String field : fields) {
+            report.missing(field);
+        }
     }
 }
@@ -0,0 +1,225 @@
+package lib.gintec_rdl.momo.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+import lib.gintec_rdl.momo.extraction.ExtractionService;
+import lib.gintec_rdl.momo.extraction.SmsMessage;
+import lib.gintec_rdl.momo.model.Transaction;
+
+/**
+ * <p>
+ * Streams messages out of a UTF-8 SMS export without loading the file into
+ * memory.</p>
+ * <p>
+ * The file is read through a {@link FileChannel} into a fixed size buffer.
+ * Messages are separated by blank lines or by a line that starts a new
+ * message. Lines starting with one of the continuation prefixes
+ * ({@code Amt:}, {@code Amount:}, {@code Fee:}, {@code Ref:} and
+ * {@code Bal:}) are appended to the current message, so the multi-line MPAMBA
+ * formats are kept together. Only one message is held at a time; messages
+ * longer than the configured limit are skipped.</p>
+ * <pre>
+ *     try (SmsExportReader reader = new SmsExportReader(path, "MPAMBA")) {
+ *         reader.extract(ExtractionService.getInstance(), transactions::add);
+ *     }
+ * </pre>
+ *
+ * @author CK
+ */
+public final class SmsExportReader implements Closeable {
+
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    public static final int DEFAULT_MAX_MESSAGE_LENGTH = 8 * 1024;
+
+    private static final String[] CONTINUATION_PREFIXES = {"Amt:", "Amount:", "Fee:", "Ref:", "Bal:"};
+
+    private final FileChannel channel;
+    private final String sender;
+    private final int bufferSize;
+    private final int maxMessageLength;
+    private final StringBuilder line = new StringBuilder();
+    private final StringBuilder message = new StringBuilder();
+    private boolean overflow;
+    private long skipped;
+
+    public SmsExportReader(Path file, String sender) throws IOException {
+        this(file, sender, DEFAULT_BUFFER_SIZE, DEFAULT_MAX_MESSAGE_LENGTH);
+    }
+
+    /**
+     * @param file The export to read
+     * @param sender The service short code every message in the file came from
+     * @param bufferSize Size in bytes of the read buffer
+     * @param maxMessageLength Longest message, in characters, that is kept
+     * @throws IOException If the file cannot be opened
+     */
+    public SmsExportReader(Path file, String sender, int bufferSize, int maxMessageLength) throws IOException {
+        if (bufferSize < 16 || maxMessageLength < 1) {
+            throw new IllegalArgumentException("bufferSize must be at least 16 and maxMessageLength at least 1");
+        }
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.sender = sender;
+        this.bufferSize = bufferSize;
+        this.maxMessageLength = maxMessageLength;
+    }
+
+    /**
+     * Reads the remainder of the file and passes every message to the
+     * consumer.
+     *
+     * @param consumer Receives each message in file order
+     * @return The number of messages read
+     * @throws IOException If the file cannot be read
+     */
+    public long forEachMessage(Consumer<? super SmsMessage> consumer) throws IOException {
+        final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        final ByteBuffer bytes = ByteBuffer.allocateDirect(bufferSize);
+        final CharBuffer chars = CharBuffer.allocate(bufferSize);
+        long count = 0;
+        boolean eof = false;
+        while (!eof) {
+            eof = channel.read(bytes) < 0;
+            bytes.flip();
+            decoder.decode(bytes, chars, eof);
+            if (eof) {
+                decoder.flush(chars);
+            }
+            bytes.compact();
+            chars.flip();
+            while (chars.hasRemaining()) {
+                final char c = chars.get();
+                if (c == '\n') {
+                    count += endLine(consumer);
+                } else if (c != '\r' && line.length() <= maxMessageLength) {
+                    line.append(c);
+                }
+            }
+            chars.clear();
+        }
+        count += endLine(consumer);
+        count += endMessage(consumer);
+        return count;
+    }
+
+    /**
+     * Reads the remainder of the file and extracts a transaction from every
+     * message. Messages that do not yield a transaction are dropped.
+     *
+     * @param service The service holding the extractor for this file's sender
+     * @param consumer Receives each transaction in file order
+     * @return The number of transactions extracted
+     * @throws IOException If the file cannot be read
+     */
+    public long extract(ExtractionService service, Consumer<? super Transaction> consumer) throws IOException {
+        final long[] count = {0};
+        forEachMessage(sms -> {
+            final Transaction transaction = service.extract(sms.getSender(), sms.getBody(), sms.getExtras(), Transaction.class);
+            if (transaction != null) {
+                consumer.accept(transaction);
+                count[0]++;
+            }
+        });
+        return count[0];
+    }
+
+    /**
+     * @return The number of messages skipped because they were too long
+     */
+    public long getSkipped() {
+        return skipped;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private int endLine(Consumer<? super SmsMessage> consumer) {
+        int emitted = 0;
+        if (line.length() == 0 || isBlank(line)) {
+            emitted = endMessage(consumer);
+        } else if ((message.length() > 0 || overflow) && isContinuation(line)) {
+            // the continuations of a skipped message are skipped with it
+            append(line);
+        } else {
+            emitted = endMessage(consumer);
+            append(line);
+        }
+        line.setLength(0);
+        return emitted;
+    }
+
+    private int endMessage(Consumer<? super SmsMessage> consumer) {
+        if (message.length() == 0 && !overflow) {
+            return 0;
+        }
+        final boolean skip = overflow;
+        final String body = message.toString();
+        message.setLength(0);
+        overflow = false;
+        if (skip) {
+            skipped++;
+            return 0;
+        }
+        consumer.accept(new SmsMessage(sender, body));
+        return 1;
+    }
+
+    private void append(CharSequence text) {
+        if (overflow) {
+            return;
+        }
+        final int length = message.length() + (message.length() > 0 ? 1 : 0) + text.length();
+        if (length > maxMessageLength) {
+            overflow = true;
+            message.setLength(0);
+            return;
+        }
+        if (message.length() > 0) {
+            message.append('\n');
+        }
+        message.append(text);
+    }
+
+    private static boolean isContinuation(CharSequence text) {
+        for (String prefix : CONTINUATION_PREFIXES) {
+            if (startsWith(text, prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean startsWith(CharSequence text, String prefix) {
+        if (text.length() < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (text.charAt(i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isBlank(CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (!Character.isWhitespace(text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,197 @@
+package lib.gintec_rdl.momo.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import lib.gintec_rdl.momo.extraction.ExtractionMonitor;
+
+/**
+ * <p>
+ * Counts outcomes and records latencies of extraction per sender and message
+ * type.</p>
+ * <pre>
+ *     ExtractionMetrics metrics = new ExtractionMetrics();
+ *     metrics.registerMBean("default");
+ *     ExtractionService.getInstance().setMonitor(metrics);
+ *     ...
+ *     MetricsSnapshot snapshot = metrics.snapshot();
+ * </pre>
+ * <p>
+ * All counters are {@link LongAdder}s, so recording from many threads does
+ * not contend on a shared counter. Messages from senders without a
+ * registered extractor are counted under {@link #UNREGISTERED_SENDER} so that
+ * arbitrary sender names cannot grow the table.</p>
+ *
+ * @author CK
+ */
+public final class ExtractionMetrics implements ExtractionMonitor, ExtractionMetricsMBean {
+
+    public static final String UNREGISTERED_SENDER = "(unregistered)";
+    public static final String UNKNOWN_TYPE = "(unknown)";
+
+    private static final Outcome[] OUTCOMES = Outcome.values();
+
+    private final ConcurrentMap<String, ConcurrentMap<String, Counters>> mSeries = new ConcurrentHashMap<>();
+    private final Counters mTotal = new Counters();
+    private ObjectName mObjectName;
+
+    @Override
+    public void record(String sender, String messageType, Outcome outcome, long elapsedNanos, Exception failure) {
+        final String s = outcome == Outcome.NO_EXTRACTOR || sender == null ? UNREGISTERED_SENDER : sender;
+        final String t = messageType != null ? messageType : UNKNOWN_TYPE;
+        ConcurrentMap<String, Counters> types = mSeries.get(s);
+        if (types == null) {
+            types = mSeries.computeIfAbsent(s, k -> new ConcurrentHashMap<>());
+        }
+        Counters counters = types.get(t);
+        if (counters == null) {
+            counters = types.computeIfAbsent(t, k -> new Counters());
+        }
+        counters.record(outcome, elapsedNanos);
+        mTotal.record(outcome, elapsedNanos);
+    }
+
+    /**
+     * @return A copy of the current counters
+     */
+    public MetricsSnapshot snapshot() {
+        final List<MetricsSnapshot.Series> series = new ArrayList<>();
+        for (Map.Entry<String, ConcurrentMap<String, Counters>> sender : mSeries.entrySet()) {
+            for (Map.Entry<String, Counters> type : sender.getValue().entrySet()) {
+                series.add(type.getValue().snapshot(sender.getKey(), type.getKey()));
+            }
+        }
+        return new MetricsSnapshot(mTotal.snapshot(null, null), series);
+    }
+
+    @Override
+    public void reset() {
+        mSeries.clear();
+        mTotal.reset();
+    }
+
+    /**
+     * Registers this instance with the platform MBean server under
+     * {@code lib.gintec_rdl.momo:type=ExtractionMetrics,name=<name>}.
+     *
+     * @param name Distinguishes this instance from others in the same JVM
+     * @return The name the MBean was registered under
+     * @throws JMException If the MBean could not be registered
+     */
+    public synchronized ObjectName registerMBean(String name) throws JMException {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName objectName = new ObjectName("lib.gintec_rdl.momo:type=ExtractionMetrics,name=" + ObjectName.quote(name));
+        server.registerMBean(this, objectName);
+        mObjectName = objectName;
+        return objectName;
+    }
+
+    /**
+     * Removes this instance from the platform MBean server if it was
+     * registered.
+     *
+     * @throws JMException If the MBean could not be unregistered
+     */
+    public synchronized void unregisterMBean() throws JMException {
+        if (mObjectName != null) {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(mObjectName);
+            mObjectName = null;
+        }
+    }
+
+    @Override
+    public long getExtracted() {
+        return mTotal.count(Outcome.EXTRACTED);
+    }
+
+    @Override
+    public long getNotExtracted() {
+        return mTotal.count(Outcome.NOT_EXTRACTED);
+    }
+
+    @Override
+    public long getFailed() {
+        return mTotal.count(Outcome.FAILED);
+    }
+
+    @Override
+    public long getUnregistered() {
+        return mTotal.count(Outcome.NO_EXTRACTOR);
+    }
+
+    @Override
+    public long getMeanLatencyNanos() {
+        final long count = mTotal.latency.getCount();
+        return count > 0 ? mTotal.latency.getTotalNanos() / count : 0L;
+    }
+
+    @Override
+    public long getP50LatencyNanos() {
+        return mTotal.latency.getPercentileNanos(50);
+    }
+
+    @Override
+    public long getP99LatencyNanos() {
+        return mTotal.latency.getPercentileNanos(99);
+    }
+
+    @Override
+    public long getMaxLatencyNanos() {
+        return mTotal.latency.getMaxNanos();
+    }
+
+    @Override
+    public String[] getSeries() {
+        final List<MetricsSnapshot.Series> series = snapshot().getSeries();
+        final String[] lines = new String[series.size()];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = series.get(i).toString();
+        }
+        return lines;
+    }
+
+    private static final class Counters {
+
+        final LongAdder[] outcomes = new LongAdder[OUTCOMES.length];
+        final LatencyHistogram latency = new LatencyHistogram();
+
+        Counters() {
+            for (int i = 0; i < outcomes.length; i++) {
+                outcomes[i] = new LongAdder();
+            }
+        }
+
+        void record(Outcome outcome, long elapsedNanos) {
+            outcomes[outcome.ordinal()].increment();
+            if (outcome != Outcome.NO_EXTRACTOR) {
+                latency.record(elapsedNanos);
+            }
+        }
+
+        long count(Outcome outcome) {
+            return outcomes[outcome.ordinal()].sum();
+        }
+
+        MetricsSnapshot.Series snapshot(String sender, String messageType) {
+            return new MetricsSnapshot.Series(sender, messageType,
+                count(Outcome.EXTRACTED), count(Outcome.NOT_EXTRACTED), count(Outcome.FAILED), count(Outcome.NO_EXTRACTOR),
+                latency);
+        }
+
+        void reset() {
+            for (LongAdder outcome : outcomes) {
+                outcome.reset();
+            }
+            latency.reset();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package lib.gintec_rdl.momo.metrics;
+
+/**
+ * JMX view of {@link ExtractionMetrics}.
+ *
+ * @author CK
+ */
+public interface ExtractionMetricsMBean {
+
+    long getExtracted();
+
+    long getNotExtracted();
+
+    long getFailed();
+
+    long getUnregistered();
+
+    long getMeanLatencyNanos();
+
+    long getP50LatencyNanos();
+
+    long getP99LatencyNanos();
+
+    long getMaxLatencyNanos();
+
+    /**
+     * @return One line per sender and message type
+     */
+    String[] getSeries();
+
+    void reset();
+}
@@ -0,0 +1,102 @@
+package lib.gintec_rdl.momo.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ * A concurrent latency histogram with power-of-two buckets.</p>
+ * <p>
+ * Each bucket is a {@link LongAdder}, so concurrent writers update striped
+ * cells instead of contending on one counter. Percentiles are reported as the
+ * upper bound of the bucket they fall in, which is within a factor of two of
+ * the true value.</p>
+ *
+ * @author CK
+ */
+public final class LatencyHistogram {
+
+    private static final int BUCKETS = 64;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0L);
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * @param nanos A latency in nanoseconds
+     */
+    public void record(long nanos) {
+        final long value = Math.max(nanos, 0L);
+        buckets[63 - Long.numberOfLeadingZeros(value | 1L)].increment();
+        total.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * @return The number of recorded values
+     */
+    public long getCount() {
+        long count = 0;
+        for (LongAdder bucket : buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    /**
+     * @return The sum of all recorded values in nanoseconds
+     */
+    public long getTotalNanos() {
+        return total.sum();
+    }
+
+    /**
+     * @return The largest recorded value in nanoseconds
+     */
+    public long getMaxNanos() {
+        return max.get();
+    }
+
+    /**
+     * @param percentile A percentile between 0 and 100
+     * @return Upper bound, in nanoseconds, of the bucket holding the
+     * percentile, or 0 if nothing was recorded
+     */
+    public long getPercentileNanos(double percentile) {
+        final long[] counts = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+            count += counts[i];
+        }
+        if (count == 0) {
+            return 0L;
+        }
+        final long rank = (long) Math.ceil(count * Math.min(Math.max(percentile, 0D), 100D) / 100D);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank && counts[i] > 0) {
+                return i == BUCKETS - 1 ? Long.MAX_VALUE : Math.min((1L << (i + 1)) - 1, max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Clears all buckets. Values recorded concurrently may be lost.
+     */
+    public void reset() {
+        for (LongAdder bucket : buckets) {
+            bucket.reset();
+        }
+        total.reset();
+        max.reset();
+    }
+}
@@ -0,0 +1,163 @@
+package lib.gintec_rdl.momo.metrics;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>
+ * A point in time copy of {@link ExtractionMetrics}. Counters are read one
+ * after the other while extraction continues, so a snapshot taken under load
+ * is approximate.</p>
+ *
+ * @author CK
+ */
+public final class MetricsSnapshot {
+
+    private final Series total;
+    private final List<Series> series;
+
+    MetricsSnapshot(Series total, List<Series> series) {
+        this.total = total;
+        this.series = Collections.unmodifiableList(series);
+    }
+
+    /**
+     * @return Counters and latencies over all senders and message types
+     */
+    public Series getTotal() {
+        return total;
+    }
+
+    /**
+     * @return Counters and latencies per sender and message type
+     */
+    public List<Series> getSeries() {
+        return series;
+    }
+
+    /**
+     * @param sender The service short code
+     * @param messageType The message type
+     * @return The matching series or null
+     */
+    public Series getSeries(String sender, String messageType) {
+        for (Series s : series) {
+            if (s.sender.equals(sender) && s.messageType.equals(messageType)) {
+                return s;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder(total.toString());
+        for (Series s : series) {
+            sb.append('\n').append(s);
+        }
+        return sb.toString();
+    }
+
+    public static final class Series {
+
+        private final String sender, messageType;
+        private final long extracted, notExtracted, failed, unregistered;
+        private final long meanNanos, p50Nanos, p90Nanos, p99Nanos, maxNanos;
+
+        Series(String sender, String messageType, long extracted, long notExtracted, long failed, long unregistered,
+            LatencyHistogram latency) {
+            this.sender = sender;
+            this.messageType = messageType;
+            this.extracted = extracted;
+            this.notExtracted = notExtracted;
+            this.failed = failed;
+            this.unregistered = unregistered;
+            final long count = latency.getCount();
+            this.meanNanos = count > 0 ? latency.getTotalNanos() / count : 0L;
+            this.p50Nanos = latency.getPercentileNanos(50);
+            this.p90Nanos = latency.getPercentileNanos(90);
+            this.p99Nanos = latency.getPercentileNanos(99);
+            this.maxNanos = latency.getMaxNanos();
+        }
+
+        /**
+         * @return The sender, or null for the total
+         */
+        public String getSender() {
+            return sender;
+        }
+
+        /**
+         * @return The message type, or null for the total
+         */
+        public String getMessageType() {
+            return messageType;
+        }
+
+        public long getExtracted() {
+            return extracted;
+        }
+
+        public long getNotExtracted() {
+            return notExtracted;
+        }
+
+        public long getFailed() {
+            return failed;
+        }
+
+        public long getUnregistered() {
+            return unregistered;
+        }
+
+        /**
+         * @return All messages counted in this series
+         */
+        public long getCount() {
+            return extracted + notExtracted + failed + unregistered;
+        }
+
+        /**
+         * @return The share of messages that yielded a transaction, between 0
+         * and 1
+         */
+        public double getSuccessRate() {
+            final long count = getCount();
+            return count > 0 ? extracted / (double) count : 0D;
+        }
+
+        public long getMeanNanos() {
+            return meanNanos;
+        }
+
+        public long getP50Nanos() {
+            return p50Nanos;
+        }
+
+        public long getP90Nanos() {
+            return p90Nanos;
+        }
+
+        public long getP99Nanos() {
+            return p99Nanos;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        @Override
+        public String toString() {
+            return (sender != null ? sender + "/" + messageType : "total")
+                + " extracted=" + extracted
+                + " notExtracted=" + notExtracted
+                + " failed=" + failed
+                + " unregistered=" + unregistered
+                + " meanNs=" + meanNanos
+                + " p50Ns=" + p50Nanos
+                + " p90Ns=" + p90Nanos
+                + " p99Ns=" + p99Nanos
+                + " maxNs=" + maxNanos;
+        }
+    }
+}
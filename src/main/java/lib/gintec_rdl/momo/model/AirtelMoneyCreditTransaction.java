@@ -0,0 +1,90 @@
+package lib.gintec_rdl.momo.model;
+
+import lib.gintec_rdl.momo.utils.MoneyUtils;
+
+public final class AirtelMoneyCreditTransaction extends Transaction {
+
+    private static final long serialVersionUID = 1L;
+    private long amount, fee, balance;
+    private String recipientPhone, recipientName;
+
+    public double getAmount() {
+        return MoneyUtils.toMajor(amount);
+    }
+
+    public void setAmount(double amount) {
+        this.amount = MoneyUtils.fromMajor(amount);
+    }
+
+    /**
+     * @return The amount in tambala
+     */
+    public long getAmountMinor() {
+        return amount;
+    }
+
+    public void setAmountMinor(long amount) {
+        this.amount = amount;
+    }
+
+    public double getFee() {
+        return MoneyUtils.toMajor(fee);
+    }
+
+    public void setFee(double fee) {
+        this.fee = MoneyUtils.fromMajor(fee);
+    }
+
+    /**
+     * @return The fee in tambala
+     */
+    public long getFeeMinor() {
+        return fee;
+    }
+
+    public void setFeeMinor(long fee) {
+        this.fee = fee;
+    }
+
+    public double getBalance() {
+        return MoneyUtils.toMajor(balance);
+    }
+
+    public void setBalance(double balance) {
+        this.balance = MoneyUtils.fromMajor(balance);
+    }
+
+    /**
+     * @return The balance in tambala
+     */
+    public long getBalanceMinor() {
+        return balance;
+    }
+
+    public void setBalanceMinor(long balance) {
+        this.balance = balance;
+    }
+
+    public String getRecipientPhone() {
+        return recipientPhone;
+    }
+
+    public void setRecipientPhone(String recipientPhone) {
+        this.recipientPhone = recipientPhone;
+    }
+
+    public String getRecipientName() {
+        return recipientName;
+    }
+
+    public void setRecipientName(String recipientName) {
+        this.recipientName = recipientName;
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        amount = fee = balance = 0;
+        recipientPhone = recipientName = null;
+    }
+}
@@ -0,0 +1,73 @@
+package lib.gintec_rdl.momo.model;
+
+import lib.gintec_rdl.momo.utils.MoneyUtils;
+
+public final class AirtelMoneyDebitTransaction extends Transaction {
+
+    private static final long serialVersionUID = 1L;
+    private long amount;
+    private long balance;
+    private String senderPhone;
+    private String senderName;
+
+    public String getSenderPhone() {
+        return senderPhone;
+    }
+
+    public void setSenderPhone(String senderPhone) {
+        this.senderPhone = senderPhone;
+    }
+
+    public String getSenderName() {
+        return senderName;
+    }
+
+    public void setSenderName(String senderName) {
+        this.senderName = senderName;
+    }
+
+    public double getAmount() {
+        return MoneyUtils.toMajor(amount);
+    }
+
+    public void setAmount(double amount) {
+        this.amount = MoneyUtils.fromMajor(amount);
+    }
+
+    /**
+     * @return The amount in tambala
+     */
+    public long getAmountMinor() {
+        return amount;
+    }
+
+    public void setAmountMinor(long amount) {
+        this.amount = amount;
+    }
+
+    public double getBalance() {
+        return MoneyUtils.toMajor(balance);
+    }
+
+    public void setBalance(double balance) {
+        this.balance = MoneyUtils.fromMajor(balance);
+    }
+
+    /**
+     * @return The balance in tambala
+     */
+    public long getBalanceMinor() {
+        return balance;
+    }
+
+    public void setBalanceMinor(long balance) {
+        this.balance = balance;
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        amount = balance = 0;
+        senderPhone = senderName = null;
+    }
+}
@@ -1,7 +1,10 @@
 package lib.gintec_rdl.momo.model;
 
-public final class MobileMoneyAgent {
+import java.io.Serializable;
 
+public final class MobileMoneyAgent implements Serializable {
+
+    private static final long serialVersionUID = 1L;
     private String agentCode;
     private String agentName;
 
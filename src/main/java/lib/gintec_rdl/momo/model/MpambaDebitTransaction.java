@@ -1,9 +1,12 @@
 package lib.gintec_rdl.momo.model;
 
+import lib.gintec_rdl.momo.utils.MoneyUtils;
+
 public final class MpambaDebitTransaction extends Transaction {
 
-    private double amount;
-    private double balance;
+    private static final long serialVersionUID = 1L;
+    private long amount;
+    private long balance;
     private String senderPhone;
     private String senderName;
 
@@ -24,18 +27,47 @@ public final class MpambaDebitTransaction extends Transaction {
     }
 
     public double getAmount() {
-        return amount;
+        return MoneyUtils.toMajor(amount);
     }
 
     public void setAmount(double amount) {
+        this.amount = MoneyUtils.fromMajor(amount);
+    }
+
+    /**
+     * @return The amount in tambala
+     */
+    public long getAmountMinor() {
+        return amount;
+    }
+
+    public void setAmountMinor(long amount) {
         this.amount = amount;
     }
 
     public double getBalance() {
-        return balance;
+        return MoneyUtils.toMajor(balance);
     }
 
     public void setBalance(double balance) {
+        this.balance = MoneyUtils.fromMajor(balance);
+    }
+
+    /**
+     * @return The balance in tambala
+     */
+    public long getBalanceMinor() {
+        return balance;
+    }
+
+    public void setBalanceMinor(long balance) {
         this.balance = balance;
     }
+
+    @Override
+    public void reset() {
+        super.reset();
+        amount = balance = 0;
+        senderPhone = senderName = null;
+    }
 }
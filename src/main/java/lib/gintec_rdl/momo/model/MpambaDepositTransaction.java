@@ -1,9 +1,12 @@
 package lib.gintec_rdl.momo.model;
 
+import lib.gintec_rdl.momo.utils.MoneyUtils;
+
 public final class MpambaDepositTransaction extends Transaction {
 
+    private static final long serialVersionUID = 1L;
     private String source;
-    private double amount, fee, balance;
+    private long amount, fee, balance;
 
     public String getSource() {
         return source;
@@ -14,26 +17,66 @@ public final class MpambaDepositTransaction extends Transaction {
     }
 
     public double getAmount() {
-        return amount;
+        return MoneyUtils.toMajor(amount);
     }
 
     public void setAmount(double amount) {
+        this.amount = MoneyUtils.fromMajor(amount);
+    }
+
+    /**
+     * @return The amount in tambala
+     */
+    public long getAmountMinor() {
+        return amount;
+    }
+
+    public void setAmountMinor(long amount) {
         this.amount = amount;
     }
 
     public double getFee() {
-        return fee;
+        return MoneyUtils.toMajor(fee);
     }
 
     public void setFee(double fee) {
+        this.fee = MoneyUtils.fromMajor(fee);
+    }
+
+    /**
+     * @return The fee in tambala
+     */
+    public long getFeeMinor() {
+        return fee;
+    }
+
+    public void setFeeMinor(long fee) {
         this.fee = fee;
     }
 
     public double getBalance() {
-        return balance;
+        return MoneyUtils.toMajor(balance);
     }
 
     public void setBalance(double balance) {
+        this.balance = MoneyUtils.fromMajor(balance);
+    }
+
+    /**
+     * @return The balance in tambala
+     */
+    public long getBalanceMinor() {
+        return balance;
+    }
+
+    public void setBalanceMinor(long balance) {
         this.balance = balance;
     }
+
+    @Override
+    public void reset() {
+        super.reset();
+        source = null;
+        amount = fee = balance = 0;
+    }
 }
@@ -1,8 +1,9 @@
 package lib.gintec_rdl.momo.model;
 
 import java.io.Serializable;
+import java.time.Instant;
+import java.time.LocalDateTime;
 import java.util.Date;
-import java.util.Objects;
 import lib.gintec_rdl.momo.utils.LocaleUtils;
 
 /**
@@ -19,6 +20,7 @@ import lib.gintec_rdl.momo.utils.LocaleUtils;
  */
 public class Transaction implements Serializable {
 
+    private static final long serialVersionUID = 1L;
     private String transactionId;
     private Date date;
 
@@ -38,6 +40,22 @@ public class Transaction implements Serializable {
         return date;
     }
 
+    /**
+     * @return The date as an instant or null if the date is not available
+     */
+    public Instant getInstant() {
+        return date != null ? date.toInstant() : null;
+    }
+
+    /**
+     * @return The date in the provider time zone, as written in the message,
+     * or null if the date is not available
+     * @see LocaleUtils#setZone(java.time.ZoneId)
+     */
+    public LocalDateTime getLocalDateTime() {
+        return date != null ? LocaleUtils.getTimestampCodec().toLocalDateTime(date.getTime()) : null;
+    }
+
     /**
      * @return Returns the uniquely identifying string for this transaction
      */
@@ -45,21 +63,41 @@ public class Transaction implements Serializable {
         return transactionId;
     }
 
+    /**
+     * Transactions are equal when their transaction ids are equal, ignoring
+     * case.
+     */
     @Override
     public boolean equals(Object o) {
-        return o != null && (o instanceof Transaction)
+        return o == this || (o != null && (o instanceof Transaction)
             ? (transactionId != null ? transactionId.equalsIgnoreCase(((Transaction) o).transactionId) : false)
-            : false;
+            : false);
     }
 
+    /**
+     * Hashes the transaction id without regard to case, consistent with
+     * {@link #equals(java.lang.Object)}.
+     */
     @Override
     public int hashCode() {
         int hash = 3;
-        hash = 11 * hash + Objects.hashCode(this.transactionId);
-        hash = 11 * hash + Objects.hashCode(this.date);
+        if (transactionId != null) {
+            for (int i = 0; i < transactionId.length(); i++) {
+                hash = 31 * hash + Character.toLowerCase(Character.toUpperCase(transactionId.charAt(i)));
+            }
+        }
         return hash;
     }
 
+    /**
+     * Clears every field, so that a reused instance can be filled with
+     * another transaction. Subclasses clear their own fields as well.
+     */
+    public void reset() {
+        transactionId = null;
+        date = null;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -0,0 +1,435 @@
+package lib.gintec_rdl.momo.template;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import lib.gintec_rdl.momo.extraction.ExtractionReport;
+import lib.gintec_rdl.momo.model.Transaction;
+import lib.gintec_rdl.momo.utils.LocaleUtils;
+import lib.gintec_rdl.momo.utils.MoneyUtils;
+import lib.gintec_rdl.momo.utils.TextUtils;
+
+/**
+ * <p>
+ * A message format declared as text with named fields, compiled into a
+ * regular expression and a list of pre-resolved setters.</p>
+ * <p>
+ * Fields are written in braces and name a property of the transaction type.
+ * Nested properties are separated by dots and are created on demand through
+ * their no-argument constructor.</p>
+ * <pre>
+ *     MessageTemplate&lt;MpambaCashOutTransaction&gt; template = MessageTemplate.compile("CASH_OUT",
+ *         MpambaCashOutTransaction.class,
+ *         "Cash Out to {agent.agentName} - {agent.agentCode} on {date}.\n"
+ *         + "Amt: {amount}MWK\nFee: {fee}MWK.\nRef: {transactionId}\nBal: {balance}MWK");
+ * </pre>
+ * <p>
+ * How a field is read depends on the setter it resolves to:</p>
+ * <ul>
+ * <li>{@code set<Name>Minor(long)} or {@code set<Name>(double)}: an amount
+ * such as 1,234.56, parsed in place</li>
+ * <li>{@code set<Name>(Date)}: a dd/MM/yyyy HH:mm:ss timestamp</li>
+ * <li>{@code set<Name>(String)}: any text on one line, trimmed</li>
+ * </ul>
+ * <p>
+ * A field may override its expression with {@code {name:regex}}, where the
+ * expression must not contain capturing groups, and may be made optional
+ * with {@code {name?}}. Whitespace in the template matches any run of
+ * whitespace and the message may end with trailing whitespace; all other
+ * text must match literally.</p>
+ * <p>
+ * Templates are immutable and thread safe. Setters are looked up once, when
+ * the template is compiled, so extracting a message involves no reflection.
+ * Unknown fields are reported at that point with an
+ * {@link IllegalArgumentException}.</p>
+ *
+ * @param <T> Type of transaction produced by the template
+ * @author CK
+ */
+public final class MessageTemplate<T extends Transaction> {
+
+    private static final String DATE_REGEX = "[0-9]{2}/[0-9]{2}/[0-9]{4} [0-9]{2}:[0-9]{2}:[0-9]{2}";
+    private static final String MONEY_REGEX = "[0-9][0-9,]*(?:\\.[0-9]{1,2})?";
+    private static final String TEXT_REGEX = ".+?";
+
+    private static final MethodHandle GET_OR_CREATE;
+    private static final MethodHandle TO_MAJOR;
+
+    static {
+        final MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            GET_OR_CREATE = lookup.findStatic(MessageTemplate.class, "getOrCreate", MethodType.methodType(
+                Object.class, MethodHandle.class, MethodHandle.class, MethodHandle.class, Object.class));
+            TO_MAJOR = lookup.findStatic(MoneyUtils.class, "toMajor", MethodType.methodType(double.class, long.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final String name;
+    private final Class<T> type;
+    private final String template;
+    private final String prefix;
+    private final Pattern pattern;
+    private final MethodHandle constructor;
+    private final Binding[] bindings;
+    private final List<String> fields;
+    private final ThreadLocal<Matcher> matcher;
+
+    private MessageTemplate(String name, Class<T> type, String template, String prefix, Pattern pattern,
+        MethodHandle constructor, Binding[] bindings) {
+        this.name = name;
+        this.type = type;
+        this.template = template;
+        this.prefix = prefix;
+        this.pattern = pattern;
+        this.constructor = constructor;
+        this.bindings = bindings;
+        final List<String> names = new ArrayList<>(bindings.length);
+        for (Binding binding : bindings) {
+            names.add(binding.path);
+        }
+        this.fields = Collections.unmodifiableList(names);
+        this.matcher = ThreadLocal.withInitial(() -> pattern.matcher(""));
+    }
+
+    /**
+     * Compiles a template.
+     *
+     * @param <T> Type of transaction produced by the template
+     * @param name Name of the message format, reported as its message type
+     * @param type Transaction class to create; it must have a public
+     * no-argument constructor
+     * @param template The template text
+     * @return The compiled template
+     * @throws IllegalArgumentException If the template is malformed or names
+     * a field the transaction type does not have
+     */
+    public static <T extends Transaction> MessageTemplate<T> compile(String name, Class<T> type, String template) {
+        if (name == null || type == null || template == null) {
+            throw new IllegalArgumentException("name, type and template are required");
+        }
+        final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        final MethodHandle constructor;
+        try {
+            constructor = lookup.findConstructor(type, MethodType.methodType(void.class))
+                .asType(MethodType.methodType(Transaction.class));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException(type.getName() + " has no public no-argument constructor", e);
+        }
+
+        final StringBuilder regex = new StringBuilder();
+        final StringBuilder prefix = new StringBuilder();
+        final List<Binding> bindings = new ArrayList<>();
+        boolean leading = true;
+        int i = 0;
+        while (i < template.length()) {
+            final char c = template.charAt(i);
+            if (c == '{') {
+                final int end = closingBrace(template, i);
+                final Binding binding = field(lookup, type, template.substring(i + 1, end), regex);
+                bindings.add(binding);
+                leading = false;
+                i = end + 1;
+            } else if (Character.isWhitespace(c)) {
+                while (i < template.length() && Character.isWhitespace(template.charAt(i))) {
+                    i++;
+                }
+                regex.append("\\s+");
+                if (leading) {
+                    prefix.append(' ');
+                }
+            } else {
+                final int start = i;
+                while (i < template.length() && template.charAt(i) != '{' && !Character.isWhitespace(template.charAt(i))) {
+                    i++;
+                }
+                final String literal = template.substring(start, i);
+                regex.append(Pattern.quote(literal));
+                if (leading) {
+                    prefix.append(literal);
+                }
+            }
+        }
+        regex.append("\\s*");
+
+        final Pattern pattern;
+        try {
+            pattern = Pattern.compile(regex.toString());
+        } catch (PatternSyntaxException e) {
+            throw new IllegalArgumentException("Invalid template " + name + ": " + e.getDescription(), e);
+        }
+        return new MessageTemplate<>(name, type, template, prefix.toString(), pattern, constructor,
+            bindings.toArray(new Binding[bindings.size()]));
+    }
+
+    /**
+     * Reads a message. The whole message must match the template.
+     *
+     * @param input The message text
+     * @return The transaction or null if the message does not match
+     */
+    public T extract(String input) {
+        return extract(input, ExtractionReport.ignoring());
+    }
+
+    /**
+     * Reads a message. The whole message must match the template; amounts
+     * and timestamps that match their expression but cannot be read are
+     * reported as invalid and left unset.
+     *
+     * @param input The message text
+     * @param report Receives invalid fields
+     * @return The transaction or null if the message does not match
+     */
+    public T extract(String input, ExtractionReport report) {
+        if (input == null) {
+            return null;
+        }
+        final Matcher m = matcher.get().reset(input);
+        try {
+            if (!m.matches()) {
+                return null;
+            }
+            final Transaction transaction = (Transaction) constructor.invokeExact();
+            for (int g = 0; g < bindings.length; g++) {
+                final Binding binding = bindings[g];
+                final int start = m.start(g + 1);
+                if (start < 0) {
+                    continue;
+                }
+                final int end = m.end(g + 1);
+                switch (binding.kind) {
+                    case MONEY:
+                        final long amount = MoneyUtils.tryParse(input, start, end);
+                        if (amount == MoneyUtils.INVALID) {
+                            report.invalid(binding.path);
+                        } else {
+                            binding.setter.invokeExact(transaction, amount);
+                        }
+                        break;
+                    case DATE:
+                        final Date date = LocaleUtils.tryParseDate(input, start, end);
+                        if (date == null) {
+                            report.invalid(binding.path);
+                        } else {
+                            binding.setter.invokeExact(transaction, date);
+                        }
+                        break;
+                    default:
+                        binding.setter.invokeExact(transaction, TextUtils.trimmedOrNull(input.substring(start, end)));
+                        break;
+                }
+            }
+            return type.cast(transaction);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Failed to apply template " + name, e);
+        }
+    }
+
+    /**
+     * @return Name of the message format
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The transaction class created by this template
+     */
+    public Class<T> getType() {
+        return type;
+    }
+
+    /**
+     * @return The template text
+     */
+    public String getTemplate() {
+        return template;
+    }
+
+    /**
+     * @return The literal text every matching message starts with, possibly
+     * empty
+     */
+    public String getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * @return The compiled expression, with one group per field
+     */
+    public Pattern getPattern() {
+        return pattern;
+    }
+
+    /**
+     * @return The field paths in the order they appear
+     */
+    public List<String> getFields() {
+        return fields;
+    }
+
+    @Override
+    public String toString() {
+        return name + "(" + type.getSimpleName() + ")";
+    }
+
+    private static int closingBrace(String template, int open) {
+        int depth = 0;
+        for (int i = open; i < template.length(); i++) {
+            final char c = template.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '{') {
+                depth++;
+            } else if (c == '}' && --depth == 0) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unclosed field at " + open + " in " + template);
+    }
+
+    /**
+     * Resolves one field declaration and appends its group to the expression.
+     */
+    private static Binding field(MethodHandles.Lookup lookup, Class<?> type, String declaration, StringBuilder regex) {
+        final int colon = declaration.indexOf(':');
+        String path = colon < 0 ? declaration : declaration.substring(0, colon);
+        final boolean optional = path.endsWith("?");
+        if (optional) {
+            path = path.substring(0, path.length() - 1);
+        }
+        if (path.isEmpty()) {
+            throw new IllegalArgumentException("Empty field name in {" + declaration + "}");
+        }
+
+        MethodHandle owner = MethodHandles.identity(Object.class);
+        Class<?> ownerType = type;
+        final String[] segments = path.split("\\.");
+        for (int s = 0; s < segments.length - 1; s++) {
+            final Method getter = method(ownerType, "get" + capitalize(segments[s]), null);
+            if (getter == null) {
+                throw unknown(type, path);
+            }
+            final Class<?> child = getter.getReturnType();
+            final Method setter = method(ownerType, "set" + capitalize(segments[s]), child);
+            if (setter == null) {
+                throw unknown(type, path);
+            }
+            try {
+                final MethodHandle get = lookup.unreflect(getter).asType(MethodType.methodType(Object.class, Object.class));
+                final MethodHandle set = lookup.unreflect(setter).asType(MethodType.methodType(void.class, Object.class, Object.class));
+                final MethodHandle create = lookup.findConstructor(child, MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(Object.class));
+                owner = MethodHandles.filterReturnValue(owner, MethodHandles.insertArguments(GET_OR_CREATE, 0, get, set, create));
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalArgumentException("Cannot create " + child.getName() + " for field " + path, e);
+            }
+            ownerType = child;
+        }
+
+        final String property = capitalize(segments[segments.length - 1]);
+        final Binding binding;
+        try {
+            Method setter;
+            if ((setter = method(ownerType, "set" + property + "Minor", long.class)) != null) {
+                binding = new Binding(path, Kind.MONEY, lookup.unreflect(setter), owner, long.class);
+            } else if ((setter = method(ownerType, "set" + property, double.class)) != null) {
+                binding = new Binding(path, Kind.MONEY, MethodHandles.filterArguments(lookup.unreflect(setter), 1, TO_MAJOR), owner, long.class);
+            } else if ((setter = method(ownerType, "set" + property, Date.class)) != null) {
+                binding = new Binding(path, Kind.DATE, lookup.unreflect(setter), owner, Date.class);
+            } else if ((setter = method(ownerType, "set" + property, String.class)) != null) {
+                binding = new Binding(path, Kind.TEXT, lookup.unreflect(setter), owner, String.class);
+            } else {
+                throw unknown(type, path);
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("Cannot access the setter of field " + path, e);
+        }
+
+        final String expression = colon < 0 ? binding.kind.regex : declaration.substring(colon + 1);
+        try {
+            if (Pattern.compile(expression).matcher("").groupCount() != 0) {
+                throw new IllegalArgumentException("Field " + path + " must use non-capturing groups");
+            }
+        } catch (PatternSyntaxException e) {
+            throw new IllegalArgumentException("Invalid expression for field " + path + ": " + e.getDescription(), e);
+        }
+        regex.append('(').append(expression).append(optional ? ")?" : ")");
+        return binding;
+    }
+
+    private static Method method(Class<?> type, String name, Class<?> parameter) {
+        for (Method method : type.getMethods()) {
+            if (method.getName().equals(name) && !Modifier.isStatic(method.getModifiers())
+                && method.getParameterCount() == (parameter == null ? 0 : 1)
+                && (parameter == null || method.getParameterTypes()[0] == parameter)) {
+                return method;
+            }
+        }
+        return null;
+    }
+
+    private static String capitalize(String name) {
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    private static IllegalArgumentException unknown(Class<?> type, String path) {
+        return new IllegalArgumentException("Unknown field " + path + " on " + type.getName());
+    }
+
+    /**
+     * Returns the nested object held by a property, creating and storing it
+     * if it is not set yet.
+     */
+    private static Object getOrCreate(MethodHandle getter, MethodHandle setter, MethodHandle constructor, Object owner) throws Throwable {
+        Object value = (Object) getter.invokeExact(owner);
+        if (value == null) {
+            value = (Object) constructor.invokeExact();
+            setter.invokeExact(owner, value);
+        }
+        return value;
+    }
+
+    private enum Kind {
+        MONEY(MONEY_REGEX), DATE(DATE_REGEX), TEXT(TEXT_REGEX);
+
+        final String regex;
+
+        Kind(String regex) {
+            this.regex = regex;
+        }
+    }
+
+    /**
+     * A field and the setter it resolved to, adapted to take the transaction
+     * and the parsed value.
+     */
+    private static final class Binding {
+
+        final String path;
+        final Kind kind;
+        final MethodHandle setter;
+
+        Binding(String path, Kind kind, MethodHandle setter, MethodHandle owner, Class<?> value) {
+            this.path = path;
+            this.kind = kind;
+            this.setter = MethodHandles.filterArguments(
+                setter.asType(MethodType.methodType(void.class, Object.class, value)), 0, owner
+            ).asType(MethodType.methodType(void.class, Transaction.class, value));
+        }
+    }
+}
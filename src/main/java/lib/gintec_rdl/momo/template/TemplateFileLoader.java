@@ -0,0 +1,287 @@
+package lib.gintec_rdl.momo.template;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import lib.gintec_rdl.momo.extraction.ExtractionService;
+import lib.gintec_rdl.momo.model.Transaction;
+
+/**
+ * <p>
+ * Loads template definitions from a file into an {@link ExtractionService}
+ * and, optionally, reloads them whenever the file changes.</p>
+ * <p>
+ * The file is split into sections by sender. Each section lists templates
+ * separated by blank lines; the first line of a template names the message
+ * format and the transaction class, the following lines are the template
+ * text. Lines starting with {@code #} are comments. Class names without a
+ * package refer to {@code lib.gintec_rdl.momo.model}.</p>
+ * <pre>
+ *     [MPAMBA]
+ *     DEPOSIT MpambaDepositTransaction
+ *     Deposit from {source} on {date}. Amount: {amount}MWK Fee: {fee}MWK Ref: {transactionId} Available Balance: {balance}MWK.
+ *
+ *     CASH_OUT MpambaCashOutTransaction
+ *     Cash Out to {agent.agentName} - {agent.agentCode} on {date}.
+ *     Amt: {amount}MWK
+ *     Fee: {fee}MWK.
+ *     Ref: {transactionId}
+ *     Bal: {balance}MWK
+ * </pre>
+ * <p>
+ * Every load compiles the whole file before anything is published. If any
+ * template fails to compile, the extractors already registered stay in
+ * place; otherwise each sender in the file gets a new
+ * {@link TemplateTransactionExtractor} through
+ * {@link ExtractionService#replaceExtractor(java.lang.String, lib.gintec_rdl.momo.extraction.TransactionExtractor)
+ * }. Senders removed from the file keep their last extractor.</p>
+ * <pre>
+ *     TemplateFileLoader loader = new TemplateFileLoader(ExtractionService.getInstance(), path)
+ *         .onError(Throwable::printStackTrace)
+ *         .watch();
+ * </pre>
+ *
+ * @author CK
+ */
+public final class TemplateFileLoader implements Closeable {
+
+    private static final String MODEL_PACKAGE = "lib.gintec_rdl.momo.model.";
+
+    private final ExtractionService service;
+    private final Path file;
+    private final AtomicLong reloads = new AtomicLong();
+    private volatile Consumer<Exception> errorHandler;
+    private volatile Exception lastError;
+    private String loaded;
+    private WatchService watcher;
+
+    /**
+     * @param service The service to register extractors with
+     * @param file The definition file
+     */
+    public TemplateFileLoader(ExtractionService service, Path file) {
+        if (service == null || file == null) {
+            throw new IllegalArgumentException("service and file are required");
+        }
+        this.service = service;
+        this.file = file.toAbsolutePath();
+    }
+
+    /**
+     * @param handler Called with every failed reload while watching, or null
+     * @return the same instance for chained calls.
+     */
+    public TemplateFileLoader onError(Consumer<Exception> handler) {
+        this.errorHandler = handler;
+        return this;
+    }
+
+    /**
+     * Loads the file and replaces the extractors of the senders it lists.
+     * Nothing is replaced if the content did not change since the last
+     * load.
+     *
+     * @return The new extractor version of each sender, empty if the file is
+     * unchanged
+     * @throws IOException If the file cannot be read
+     * @throws IllegalArgumentException If a definition is invalid
+     */
+    public synchronized Map<String, Long> load() throws IOException {
+        final String content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        if (content.equals(loaded)) {
+            return new LinkedHashMap<>();
+        }
+        final Map<String, TemplateTransactionExtractor> extractors = parse(new StringReader(content));
+        final Map<String, Long> versions = new LinkedHashMap<>();
+        for (Map.Entry<String, TemplateTransactionExtractor> entry : extractors.entrySet()) {
+            versions.put(entry.getKey(), service.replaceExtractor(entry.getKey(), entry.getValue()));
+        }
+        loaded = content;
+        reloads.incrementAndGet();
+        lastError = null;
+        return versions;
+    }
+
+    /**
+     * Loads the file, then keeps reloading it from a daemon thread whenever
+     * it is created or modified.
+     *
+     * @return the same instance for chained calls.
+     * @throws IOException If the file cannot be read or watched
+     */
+    public synchronized TemplateFileLoader watch() throws IOException {
+        if (watcher != null) {
+            return this;
+        }
+        load();
+        final Path directory = file.getParent();
+        watcher = directory.getFileSystem().newWatchService();
+        directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        final WatchService service = watcher;
+        final Thread thread = new Thread(() -> poll(service), "momo-template-watcher");
+        thread.setDaemon(true);
+        thread.start();
+        return this;
+    }
+
+    /**
+     * @return Number of loads that published new extractors
+     */
+    public long getReloadCount() {
+        return reloads.get();
+    }
+
+    /**
+     * @return The error of the last failed reload, cleared by the next
+     * successful one
+     */
+    public Exception getLastError() {
+        return lastError;
+    }
+
+    /**
+     * Stops watching the file. Registered extractors stay in place.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (watcher != null) {
+            watcher.close();
+            watcher = null;
+        }
+    }
+
+    /**
+     * Parses template definitions.
+     *
+     * @param reader The definitions
+     * @return One extractor per sender, in the order they appear
+     * @throws IOException If the definitions cannot be read
+     * @throws IllegalArgumentException If a definition is invalid
+     */
+    public static Map<String, TemplateTransactionExtractor> parse(Reader reader) throws IOException {
+        final Map<String, TemplateTransactionExtractor> extractors = new LinkedHashMap<>();
+        final BufferedReader lines = new BufferedReader(reader);
+        final List<String> block = new ArrayList<>();
+        TemplateTransactionExtractor current = null;
+        String line;
+        int number = 0, blockStart = 0;
+        while ((line = lines.readLine()) != null) {
+            number++;
+            if (line.startsWith("#")) {
+                continue;
+            }
+            if (line.trim().isEmpty()) {
+                current = flush(current, block, blockStart);
+                continue;
+            }
+            if (line.startsWith("[") && line.trim().endsWith("]") && block.isEmpty()) {
+                final String sender = line.trim().substring(1, line.trim().length() - 1).trim();
+                if (sender.isEmpty()) {
+                    throw new IllegalArgumentException("Empty sender at line " + number);
+                }
+                current = extractors.get(sender);
+                if (current == null) {
+                    extractors.put(sender, current = new TemplateTransactionExtractor(sender));
+                }
+                continue;
+            }
+            if (current == null) {
+                throw new IllegalArgumentException("Template outside of a [sender] section at line " + number);
+            }
+            if (block.isEmpty()) {
+                blockStart = number;
+            }
+            block.add(line);
+        }
+        flush(current, block, blockStart);
+        return extractors;
+    }
+
+    private static TemplateTransactionExtractor flush(TemplateTransactionExtractor extractor, List<String> block, int line) {
+        if (block.isEmpty()) {
+            return extractor;
+        }
+        final String[] header = block.get(0).trim().split("\\s+");
+        if (header.length != 2 || block.size() < 2) {
+            throw new IllegalArgumentException("Expected \"NAME TransactionClass\" followed by the template at line " + line);
+        }
+        final StringBuilder template = new StringBuilder();
+        for (int i = 1; i < block.size(); i++) {
+            if (i > 1) {
+                template.append('\n');
+            }
+            template.append(block.get(i));
+        }
+        try {
+            extractor.register(header[0], transactionClass(header[1]), template.toString());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(e.getMessage() + " at line " + line, e);
+        }
+        block.clear();
+        return extractor;
+    }
+
+    private static Class<? extends Transaction> transactionClass(String name) {
+        final String qualified = name.indexOf('.') < 0 ? MODEL_PACKAGE + name : name;
+        try {
+            return Class.forName(qualified).asSubclass(Transaction.class);
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IllegalArgumentException("Unknown transaction class " + name, e);
+        }
+    }
+
+    private void poll(WatchService service) {
+        try {
+            for (;;) {
+                final WatchKey key = service.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    final Object context = event.context();
+                    changed |= event.kind() == StandardWatchEventKinds.OVERFLOW
+                        || (context instanceof Path && file.getFileName().equals(context));
+                }
+                if (changed) {
+                    reload();
+                }
+                if (!key.reset()) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // closed by close()
+        }
+    }
+
+    private void reload() {
+        try {
+            if (Files.exists(file)) {
+                load();
+            }
+        } catch (IOException | RuntimeException e) {
+            lastError = e;
+            final Consumer<Exception> handler = errorHandler;
+            if (handler != null) {
+                handler.accept(e);
+            }
+        }
+    }
+}
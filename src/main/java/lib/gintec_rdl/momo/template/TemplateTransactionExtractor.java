@@ -0,0 +1,148 @@
+package lib.gintec_rdl.momo.template;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import lib.gintec_rdl.momo.extraction.ExtractionReport;
+import lib.gintec_rdl.momo.extraction.PrefixClassifier;
+import lib.gintec_rdl.momo.extraction.TransactionExtractor;
+import lib.gintec_rdl.momo.model.Transaction;
+
+/**
+ * <p>
+ * An extractor defined entirely by {@link MessageTemplate}s.</p>
+ * <p>
+ * Templates are grouped by their literal prefix and classified with a
+ * {@link PrefixClassifier}, so only the templates sharing the longest
+ * matching prefix are tried, in registration order. Templates without a
+ * literal prefix are tried last for every message.</p>
+ * <pre>
+ *     TransactionExtractor extractor = new TemplateTransactionExtractor("MPAMBA")
+ *         .register("DEPOSIT", MpambaDepositTransaction.class,
+ *             "Deposit from {source} on {date}. Amount: {amount}MWK Fee: {fee}MWK "
+ *             + "Ref: {transactionId} Available Balance: {balance}MWK.");
+ *     ExtractionService.getInstance().registerExtractor("MPAMBA", extractor);
+ * </pre>
+ * <p>
+ * Templates may be registered while other threads extract.</p>
+ *
+ * @author CK
+ */
+public class TemplateTransactionExtractor extends TransactionExtractor {
+
+    private static final MessageTemplate<?>[] NONE = new MessageTemplate<?>[0];
+
+    private final String sender;
+    private final PrefixClassifier<MessageTemplate<?>[]> classifier = new PrefixClassifier<>();
+    private final List<MessageTemplate<?>> templates = new ArrayList<>();
+    private volatile MessageTemplate<?>[] unprefixed = NONE;
+
+    /**
+     * @param sender The service short code this extractor accepts messages
+     * from
+     */
+    public TemplateTransactionExtractor(String sender) {
+        if (sender == null) {
+            throw new IllegalArgumentException("sender is required");
+        }
+        this.sender = sender;
+    }
+
+    /**
+     * Compiles and registers a template.
+     *
+     * @param <T> Type of transaction produced by the template
+     * @param name Name of the message format
+     * @param type Transaction class to create
+     * @param template The template text
+     * @return the same instance for chained calls.
+     * @throws IllegalArgumentException If the template cannot be compiled
+     * @see MessageTemplate#compile(java.lang.String, java.lang.Class,
+     * java.lang.String)
+     */
+    public <T extends Transaction> TemplateTransactionExtractor register(String name, Class<T> type, String template) {
+        return register(MessageTemplate.compile(name, type, template));
+    }
+
+    /**
+     * Registers a compiled template.
+     *
+     * @param template The template
+     * @return the same instance for chained calls.
+     */
+    public synchronized TemplateTransactionExtractor register(MessageTemplate<?> template) {
+        templates.add(template);
+        final String prefix = template.getPrefix();
+        if (prefix.isEmpty()) {
+            final MessageTemplate<?>[] current = unprefixed;
+            final MessageTemplate<?>[] next = Arrays.copyOf(current, current.length + 1);
+            next[current.length] = template;
+            unprefixed = next;
+        } else {
+            final MessageTemplate<?>[] current = classifier.getPrefixes().get(prefix);
+            final MessageTemplate<?>[] next = current == null ? new MessageTemplate<?>[1] : Arrays.copyOf(current, current.length + 1);
+            next[next.length - 1] = template;
+            classifier.register(prefix, next);
+        }
+        return this;
+    }
+
+    /**
+     * @return The registered templates in registration order
+     */
+    public synchronized List<MessageTemplate<?>> getTemplates() {
+        return Collections.unmodifiableList(new ArrayList<>(templates));
+    }
+
+    @Override
+    public Transaction extract(String from, String input, Map<String, String> extras) throws Exception {
+        return extract(from, input, extras, ExtractionReport.ignoring());
+    }
+
+    /**
+     * Reports the name of the first template sharing the message's prefix as
+     * the message type, or of the template that matched.
+     */
+    @Override
+    public Transaction extract(String from, String input, Map<String, String> extras, ExtractionReport report) throws Exception {
+        if (!sender.equals(from) || input == null) {
+            return null;
+        }
+        final MessageTemplate<?>[] candidates = classifier.classify(input);
+        if (candidates != null) {
+            report.setMessageType(candidates[0].getName());
+            for (MessageTemplate<?> template : candidates) {
+                final Transaction transaction = template.extract(input, report);
+                if (transaction != null) {
+                    report.setMessageType(template.getName());
+                    return transaction;
+                }
+            }
+        }
+        for (MessageTemplate<?> template : unprefixed) {
+            final Transaction transaction = template.extract(input, report);
+            if (transaction != null) {
+                report.setMessageType(template.getName());
+                return transaction;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Names the first template whose prefix matches. The message is not
+     * matched against the template itself.
+     */
+    @Override
+    public String getMessageType(String from, String input) {
+        final MessageTemplate<?>[] candidates = classifier.classify(input);
+        if (candidates != null) {
+            return candidates[0].getName();
+        }
+        final MessageTemplate<?>[] fallback = unprefixed;
+        return fallback.length == 1 ? fallback[0].getName() : null;
+    }
+}
@@ -1,12 +1,86 @@
 package lib.gintec_rdl.momo.utils;
 
-import java.text.SimpleDateFormat;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.Date;
 import java.util.Locale;
 
 public final class LocaleUtils {
 
+    /**
+     * Layout of the timestamps found in transaction messages. The formatter is
+     * immutable and may be shared between threads.
+     */
+    public static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss", Locale.US);
+
+    /**
+     * Time zone of the Malawian providers, Central Africa Time.
+     */
+    public static final ZoneId MALAWI = ZoneId.of("Africa/Blantyre");
+
+    private static volatile TimestampCodec sTimestamps = new TimestampCodec(ZoneId.systemDefault());
+
+    /**
+     * Sets the time zone message timestamps are read and written in. Until it
+     * is set, the system default time zone at startup is used; later changes
+     * to the default are not followed.
+     *
+     * @param zone The provider time zone, e.g. {@link #MALAWI}, or null for
+     * the current system default
+     */
+    public static void setZone(ZoneId zone) {
+        sTimestamps = new TimestampCodec(zone != null ? zone : ZoneId.systemDefault());
+    }
+
+    /**
+     * @return The time zone message timestamps are read and written in
+     */
+    public static ZoneId getZone() {
+        return sTimestamps.getZone();
+    }
+
+    /**
+     * @return The codec for message timestamps in the provider time zone
+     * @see #setZone(java.time.ZoneId)
+     */
+    public static TimestampCodec getTimestampCodec() {
+        return sTimestamps;
+    }
+
+    /**
+     * Formats a date as a message timestamp in the provider time zone.
+     *
+     * @param date The date
+     * @return The timestamp in the form dd/MM/yyyy HH:mm:ss
+     */
     public static String formatDate(Date date) {
-        return new SimpleDateFormat("dd/MM/yyyy HH:mm:ss", Locale.US).format(date);
+        return sTimestamps.format(date.getTime());
+    }
+
+    /**
+     * Parses a message timestamp in the provider time zone.
+     *
+     * @param text Timestamp in the form dd/MM/yyyy HH:mm:ss
+     * @return The parsed date
+     * @throws java.time.format.DateTimeParseException If the text does not
+     * match the layout
+     */
+    public static Date parseDate(String text) {
+        return new Date(sTimestamps.parse(text, 0, text.length()));
+    }
+
+    /**
+     * Parses a message timestamp in the provider time zone without throwing,
+     * for callers that expect bad input often.
+     *
+     * @param text Text containing the timestamp
+     * @param start Index of the first character, inclusive
+     * @param end Index of the last character, exclusive
+     * @return The parsed date or null if the range is not a valid
+     * dd/MM/yyyy HH:mm:ss timestamp
+     */
+    public static Date tryParseDate(CharSequence text, int start, int end) {
+        final long time = sTimestamps.tryParse(text, start, end);
+        return time != TimestampCodec.INVALID ? new Date(time) : null;
     }
 }
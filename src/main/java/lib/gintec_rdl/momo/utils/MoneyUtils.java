@@ -0,0 +1,143 @@
+package lib.gintec_rdl.momo.utils;
+
+/**
+ * <p>
+ * Fixed point money arithmetic. Amounts are held in a primitive {@code long}
+ * as minor units (tambala for MWK, 1/100 of the major unit), so sums are
+ * exact and no objects are created.</p>
+ *
+ * @author CK
+ */
+public final class MoneyUtils {
+
+    /**
+     * Number of minor units in one major unit.
+     */
+    public static final int MINOR_UNITS = 100;
+
+    /**
+     * Returned by {@link #tryParse(java.lang.CharSequence, int, int)} for text
+     * that is not a valid amount.
+     */
+    public static final long INVALID = Long.MIN_VALUE;
+
+    /**
+     * Most digits of an amount in minor units, that is with two decimals; a
+     * long may overflow beyond.
+     */
+    public static final int MAX_DIGITS = 17;
+
+    /**
+     * @see #parse(java.lang.CharSequence, int, int)
+     * @param text An amount such as 1,234.56
+     * @return The amount in minor units
+     */
+    public static long parse(CharSequence text) {
+        return parse(text, 0, text.length());
+    }
+
+    /**
+     * Parses an amount written with optional thousands separators and at most
+     * two decimals, e.g. {@code 1,234.56}, {@code 200} or {@code 0.5}.
+     * Separators must split the whole part into groups of three digits, and
+     * the whole part may have at most {@link #MAX_DIGITS} - 2 digits so the
+     * amount in minor units fits in a long. Nothing is allocated unless the
+     * text is invalid.
+     *
+     * @param text Text containing the amount
+     * @param start Index of the first character, inclusive
+     * @param end Index of the last character, exclusive
+     * @return The amount in minor units
+     * @throws NumberFormatException If the range does not hold a valid amount
+     */
+    public static long parse(CharSequence text, int start, int end) {
+        final long value = tryParse(text, start, end);
+        if (value == INVALID) {
+            throw invalid(text, start, end);
+        }
+        return value;
+    }
+
+    /**
+     * Same as {@link #parse(java.lang.CharSequence, int, int)} but reports
+     * invalid text with a sentinel instead of an exception, for callers that
+     * expect bad input often.
+     *
+     * @param text Text containing the amount
+     * @param start Index of the first character, inclusive
+     * @param end Index of the last character, exclusive
+     * @return The amount in minor units or {@link #INVALID}
+     */
+    public static long tryParse(CharSequence text, int start, int end) {
+        long value = 0;
+        // group counts the digits since the last separator
+        int digits = 0, group = 0, decimals = -1;
+        boolean grouped = false;
+        for (int i = start; i < end; i++) {
+            final char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (decimals >= 0) {
+                    if (++decimals > 2) {
+                        return INVALID;
+                    }
+                } else if (++digits > MAX_DIGITS - 2) {
+                    // the two decimals added below must still fit
+                    return INVALID;
+                } else {
+                    group++;
+                }
+                value = value * 10 + (c - '0');
+            } else if (c == ',' && decimals < 0) {
+                if (group == 0 || (grouped ? group != 3 : group > 3)) {
+                    return INVALID;
+                }
+                grouped = true;
+                group = 0;
+            } else if (c == '.' && decimals < 0) {
+                decimals = 0;
+                if (grouped && group != 3) {
+                    return INVALID;
+                }
+            } else {
+                return INVALID;
+            }
+        }
+        if (digits == 0 && decimals <= 0 || decimals < 0 && grouped && group != 3) {
+            return INVALID;
+        }
+        for (int i = Math.max(decimals, 0); i < 2; i++) {
+            value *= 10;
+        }
+        return value;
+    }
+
+    /**
+     * @param minor Amount in minor units
+     * @return The amount in major units
+     */
+    public static double toMajor(long minor) {
+        return minor / (double) MINOR_UNITS;
+    }
+
+    /**
+     * @param major Amount in major units
+     * @return The amount rounded to the nearest minor unit
+     */
+    public static long fromMajor(double major) {
+        return Math.round(major * MINOR_UNITS);
+    }
+
+    /**
+     * @param minor Amount in minor units
+     * @return The amount in major units with two decimals, e.g. 1234.56
+     */
+    public static String format(long minor) {
+        final long abs = Math.abs(minor);
+        final long fraction = abs % MINOR_UNITS;
+        return (minor < 0 ? "-" : "") + (abs / MINOR_UNITS) + (fraction < 10 ? ".0" : ".") + fraction;
+    }
+
+    private static NumberFormatException invalid(CharSequence text, int start, int end) {
+        return new NumberFormatException("Invalid amount: " + text.subSequence(start, end));
+    }
+}
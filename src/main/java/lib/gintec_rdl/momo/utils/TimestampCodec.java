@@ -0,0 +1,327 @@
+package lib.gintec_rdl.momo.utils;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+
+/**
+ * <p>
+ * Reads and writes the {@code dd/MM/yyyy HH:mm:ss} timestamps of transaction
+ * messages in a fixed time zone, without the formatter machinery of
+ * {@link java.time.format.DateTimeFormatter} or
+ * {@link java.text.SimpleDateFormat}.</p>
+ * <p>
+ * Timestamps are parsed straight from the message into milliseconds since
+ * the epoch, and formatted into a {@link StringBuilder}, with no objects
+ * created on the way. The offset of the zone is cached for the span between
+ * the transitions around the last timestamp, so it is only looked up again
+ * when timestamps cross a daylight saving change; zones without transitions,
+ * such as Central Africa Time, never look it up again.</p>
+ * <pre>
+ *     TimestampCodec codec = new TimestampCodec(LocaleUtils.MALAWI);
+ *     long time = codec.parse("06/05/2019 14:00:50", 0, 19);
+ *     String text = codec.format(time);
+ * </pre>
+ * <p>
+ * Local times skipped by a transition are moved forward by the length of the
+ * gap, and repeated ones take the earlier offset, as
+ * {@link LocalDateTime#atZone(java.time.ZoneId)} does. Codecs are immutable
+ * apart from the cache and may be shared between threads.</p>
+ *
+ * @author CK
+ */
+public final class TimestampCodec {
+
+    /**
+     * Number of characters in a timestamp.
+     */
+    public static final int LENGTH = 19;
+
+    /**
+     * Returned by the {@code tryParse} methods for text that is not a valid
+     * timestamp.
+     */
+    public static final long INVALID = Long.MIN_VALUE;
+
+    private static final int SECONDS_PER_DAY = 86400;
+
+    private final ZoneId zone;
+    private final ZoneRules rules;
+    private volatile Span span;
+
+    /**
+     * @param zone Time zone the timestamps are written in
+     */
+    public TimestampCodec(ZoneId zone) {
+        if (zone == null) {
+            throw new IllegalArgumentException("zone is required");
+        }
+        this.zone = zone;
+        this.rules = zone.getRules();
+        this.span = span(0L);
+    }
+
+    /**
+     * @return The time zone of the timestamps
+     */
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    /**
+     * Parses a timestamp.
+     *
+     * @param text Text containing the timestamp
+     * @param start Index of the first character, inclusive
+     * @param end Index of the last character, exclusive
+     * @return Milliseconds since the epoch
+     * @throws DateTimeParseException If the range is not a valid timestamp
+     */
+    public long parse(CharSequence text, int start, int end) {
+        final long time = tryParse(text, start, end);
+        if (time == INVALID) {
+            throw new DateTimeParseException("Invalid timestamp", text.subSequence(start, end), 0);
+        }
+        return time;
+    }
+
+    /**
+     * Same as {@link #parse(java.lang.CharSequence, int, int)} but reports
+     * invalid text with a sentinel instead of an exception, for callers that
+     * expect bad input often.
+     *
+     * @param text Text containing the timestamp
+     * @param start Index of the first character, inclusive
+     * @param end Index of the last character, exclusive
+     * @return Milliseconds since the epoch or {@link #INVALID}
+     */
+    public long tryParse(CharSequence text, int start, int end) {
+        final long local = tryParseLocal(text, start, end);
+        return local != INVALID ? toEpochSecond(local) * 1000L : INVALID;
+    }
+
+    /**
+     * @param text Text containing the timestamp
+     * @param start Index of the first character, inclusive
+     * @param end Index of the last character, exclusive
+     * @return The timestamp as an instant
+     * @throws DateTimeParseException If the range is not a valid timestamp
+     */
+    public Instant parseInstant(CharSequence text, int start, int end) {
+        return Instant.ofEpochMilli(parse(text, start, end));
+    }
+
+    /**
+     * Parses a timestamp without regard to the zone.
+     *
+     * @param text Text containing the timestamp
+     * @param start Index of the first character, inclusive
+     * @param end Index of the last character, exclusive
+     * @return The timestamp as a local date and time
+     * @throws DateTimeParseException If the range is not a valid timestamp
+     */
+    public static LocalDateTime parseLocalDateTime(CharSequence text, int start, int end) {
+        final long local = tryParseLocal(text, start, end);
+        if (local == INVALID) {
+            throw new DateTimeParseException("Invalid timestamp", text.subSequence(start, end), 0);
+        }
+        return LocalDateTime.ofEpochSecond(local, 0, ZoneOffset.UTC);
+    }
+
+    /**
+     * Reads a timestamp as seconds since 1970-01-01 00:00:00 local time, that
+     * is without regard to the zone.
+     *
+     * @param text Text containing the timestamp
+     * @param start Index of the first character, inclusive
+     * @param end Index of the last character, exclusive
+     * @return Local seconds or {@link #INVALID}
+     */
+    public static long tryParseLocal(CharSequence text, int start, int end) {
+        if (end - start != LENGTH) {
+            return INVALID;
+        }
+        for (int i = 0; i < LENGTH; i++) {
+            final char c = text.charAt(start + i);
+            final char expected = i == 2 || i == 5 ? '/' : i == 10 ? ' ' : i == 13 || i == 16 ? ':' : '0';
+            if (expected == '0' ? c < '0' || c > '9' : c != expected) {
+                return INVALID;
+            }
+        }
+        final int day = number(text, start, 2), month = number(text, start + 3, 2), year = number(text, start + 6, 4);
+        final int hour = number(text, start + 11, 2), minute = number(text, start + 14, 2), second = number(text, start + 17, 2);
+        if (month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)
+            || hour > 23 || minute > 59 || second > 59) {
+            return INVALID;
+        }
+        return epochDay(year, month, day) * SECONDS_PER_DAY + hour * 3600 + minute * 60 + second;
+    }
+
+    /**
+     * @param time Milliseconds since the epoch
+     * @return The timestamp of the given time
+     */
+    public String format(long time) {
+        return format(time, new StringBuilder(LENGTH)).toString();
+    }
+
+    /**
+     * Appends the timestamp of the given time. Nothing is allocated if the
+     * builder has room.
+     *
+     * @param time Milliseconds since the epoch
+     * @param out Receives the timestamp
+     * @return The builder
+     */
+    public StringBuilder format(long time, StringBuilder out) {
+        final long second = Math.floorDiv(time, 1000L);
+        return formatLocal(second + offset(second), out);
+    }
+
+    /**
+     * @param time Milliseconds since the epoch
+     * @return The local date and time of the given time in the zone
+     */
+    public LocalDateTime toLocalDateTime(long time) {
+        final long second = Math.floorDiv(time, 1000L);
+        return LocalDateTime.ofEpochSecond(second + offset(second), (int) Math.floorMod(time, 1000L) * 1_000_000, ZoneOffset.UTC);
+    }
+
+    /**
+     * @param local Local date and time
+     * @return Milliseconds since the epoch of the local date and time in the
+     * zone
+     */
+    public long toEpochMilli(LocalDateTime local) {
+        return toEpochSecond(local.toEpochSecond(ZoneOffset.UTC)) * 1000L + local.getNano() / 1_000_000;
+    }
+
+    private long toEpochSecond(long local) {
+        final Span span = this.span;
+        if (local >= span.localFrom && local < span.localUntil) {
+            return local - span.offset;
+        }
+        final long second = LocalDateTime.ofEpochSecond(local, 0, ZoneOffset.UTC).atZone(zone).toEpochSecond();
+        final Span found = span(second);
+        if (local >= found.localFrom && local < found.localUntil) {
+            this.span = found;
+        }
+        return second;
+    }
+
+    private int offset(long second) {
+        Span span = this.span;
+        if (second < span.from || second >= span.until) {
+            this.span = span = span(second);
+        }
+        return span.offset;
+    }
+
+    /**
+     * Finds the offset in force at the given instant and the span of instants
+     * and of local times over which it does not change.
+     */
+    private Span span(long second) {
+        final Instant instant = Instant.ofEpochSecond(second);
+        // previousTransition excludes a transition at the instant itself
+        final ZoneOffsetTransition previous = rules.previousTransition(instant.plusSeconds(1));
+        final ZoneOffsetTransition next = rules.nextTransition(instant);
+        return new Span(rules.getOffset(instant).getTotalSeconds(),
+            previous == null ? Long.MIN_VALUE : previous.toEpochSecond(),
+            next == null ? Long.MAX_VALUE : next.toEpochSecond(),
+            // local times in a gap or overlap are left out
+            previous == null ? Long.MIN_VALUE : Math.max(local(previous.getDateTimeBefore()), local(previous.getDateTimeAfter())),
+            next == null ? Long.MAX_VALUE : Math.min(local(next.getDateTimeBefore()), local(next.getDateTimeAfter())));
+    }
+
+    private static StringBuilder formatLocal(long local, StringBuilder out) {
+        final long day = Math.floorDiv(local, SECONDS_PER_DAY);
+        final int seconds = (int) Math.floorMod(local, SECONDS_PER_DAY);
+        // civil date of an epoch day, the inverse of epochDay
+        final long shifted = day + 719468L;
+        final long era = Math.floorDiv(shifted, 146097L);
+        final int dayOfEra = (int) (shifted - era * 146097L);
+        final int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        final int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        final int monthIndex = (5 * dayOfYear + 2) / 153;
+        final int dayOfMonth = dayOfYear - (153 * monthIndex + 2) / 5 + 1;
+        final int month = monthIndex < 10 ? monthIndex + 3 : monthIndex - 9;
+        final long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        if (year < 0 || year > 9999) {
+            return out.append(LocaleUtils.DATE_FORMATTER.format(LocalDateTime.ofEpochSecond(local, 0, ZoneOffset.UTC)));
+        }
+        two(out, dayOfMonth).append('/');
+        two(out, month).append('/');
+        two(out, (int) year / 100);
+        two(out, (int) year % 100).append(' ');
+        two(out, seconds / 3600).append(':');
+        two(out, seconds / 60 % 60).append(':');
+        return two(out, seconds % 60);
+    }
+
+    private static StringBuilder two(StringBuilder out, int value) {
+        return out.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+    }
+
+    private static long local(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    /**
+     * Days since 1970-01-01 of a valid proleptic Gregorian date, as
+     * {@link java.time.LocalDate#toEpochDay()}.
+     */
+    private static long epochDay(int year, int month, int day) {
+        final int y = month <= 2 ? year - 1 : year;
+        final int era = Math.floorDiv(y, 400);
+        final int yearOfEra = y - era * 400;
+        final int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        final int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468L;
+    }
+
+    private static int number(CharSequence text, int at, int digits) {
+        int value = 0;
+        for (int i = 0; i < digits; i++) {
+            value = value * 10 + (text.charAt(at + i) - '0');
+        }
+        return value;
+    }
+
+    /**
+     * An offset with the instants, in [from, until), and the local times, in
+     * [localFrom, localUntil), that have it. Immutable, so a reader sees
+     * either the old span or the new one whole.
+     */
+    private static final class Span {
+
+        final int offset;
+        final long from, until, localFrom, localUntil;
+
+        Span(int offset, long from, long until, long localFrom, long localUntil) {
+            this.offset = offset;
+            this.from = from;
+            this.until = until;
+            this.localFrom = localFrom;
+            this.localUntil = localUntil;
+        }
+    }
+}
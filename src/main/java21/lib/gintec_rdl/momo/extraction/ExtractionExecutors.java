@@ -0,0 +1,55 @@
+package lib.gintec_rdl.momo.extraction;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * <p>
+ * Executors for extracting messages off the caller's thread, used by the
+ * batch and asynchronous methods of {@link ExtractionService} by
+ * default.</p>
+ * <p>
+ * This is the Java 21 version of the class: every task runs on its own
+ * virtual thread, so extractors that block do not tie up a platform thread
+ * each. Thread locals used by the extractors live as long as the task, so
+ * batches are still split into chunks of messages rather than one task per
+ * message.</p>
+ *
+ * @author CK
+ */
+public final class ExtractionExecutors {
+
+    private static final class Holder {
+
+        static final ExecutorService SHARED = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("extraction-", 0).factory());
+    }
+
+    /**
+     * @return True if the executors of this class run tasks on virtual
+     * threads
+     */
+    public static boolean isVirtual() {
+        return true;
+    }
+
+    /**
+     * @return The executor shared by default by {@link ExtractionService}: a
+     * virtual thread per task. It must not be shut down.
+     */
+    public static Executor shared() {
+        return Holder.SHARED;
+    }
+
+    /**
+     * @return A new executor with a virtual thread per task, to be shut down
+     * by the caller
+     */
+    public static ExecutorService newExecutor() {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("extraction-", 0).factory());
+    }
+
+    private ExtractionExecutors() {
+    }
+}
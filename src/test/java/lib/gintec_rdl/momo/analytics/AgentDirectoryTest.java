@@ -0,0 +1,120 @@
+package lib.gintec_rdl.momo.analytics;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import lib.gintec_rdl.momo.model.*;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class AgentDirectoryTest {
+
+    @Test
+    public void testRecord() {
+        final AgentDirectory agents = new AgentDirectory();
+        final MpambaCashOutTransaction first = cashOut("A1", "111", "JOHN DOE", 1000, 500);
+        final MpambaCashOutTransaction second = cashOut("A2", "111", "JOHN DOE", 3000, 200);
+        final MobileMoneyAgent agent = first.getAgent();
+
+        assertSame(agent, agents.record("MPAMBA", first));
+        assertSame(agent, agents.record("MPAMBA", second));
+        assertSame(agent, second.getAgent());
+        assertSame(agent, agents.get("MPAMBA", "111"));
+        assertSame(agent, agents.intern("MPAMBA", "111", "JOHN DOE"));
+        assertSame(agent, agents.intern("MPAMBA", new MobileMoneyAgent("111", "JOHN DOE")));
+        assertNull(agents.get("MPAMBA", "222"));
+
+        final AgentDirectory.Stats stats = agents.getStats("MPAMBA", "111");
+        assertSame(agent, stats.getAgent());
+        assertEquals(2, stats.getCount());
+        assertEquals(700, stats.getVolumeMinor());
+        assertEquals(3000, stats.getLastSeen());
+        assertNull(agents.getStats("MPAMBA", "222"));
+
+        final MpambaCashOutTransaction renamed = cashOut("A3", "111", "JOHN DOE OUTLET", 2000, 100);
+        final MobileMoneyAgent outlet = agents.record("MPAMBA", renamed);
+        assertNotSame(agent, outlet);
+        assertEquals("JOHN DOE OUTLET", outlet.getAgentName());
+        assertSame(outlet, agents.get("MPAMBA", "111"));
+        assertEquals(3, agents.getStats("MPAMBA", "111").getCount());
+        assertEquals(1, agents.size());
+
+        final MpambaCreditTransaction credit = new MpambaCreditTransaction();
+        credit.setAmountMinor(100);
+        assertNull(agents.record("MPAMBA", credit));
+        assertEquals(1, agents.getStats().size());
+    }
+
+    @Test
+    public void testSenders() {
+        final AgentDirectory agents = new AgentDirectory();
+        final MpambaCashOutTransaction mpamba = cashOut("A1", "111", "JOHN DOE", 1000, 500);
+        final MpambaCashOutTransaction airtel = cashOut("B1", "111", "JANE DOE", 2000, 300);
+
+        // Providers number their agents independently
+        assertSame(mpamba.getAgent(), agents.record("MPAMBA", mpamba));
+        assertSame(airtel.getAgent(), agents.record("AirtelMoney", airtel));
+        assertEquals(2, agents.size());
+        assertEquals("JOHN DOE", agents.get("MPAMBA", "111").getAgentName());
+        assertEquals("JANE DOE", agents.get("AirtelMoney", "111").getAgentName());
+        assertEquals(500, agents.getStats("MPAMBA", "111").getVolumeMinor());
+        assertEquals(300, agents.getStats("AirtelMoney", "111").getVolumeMinor());
+        assertEquals("AirtelMoney", agents.getStats("AirtelMoney", "111").getSender());
+        assertEquals(1, agents.getStats("MPAMBA", "111").getCount());
+        assertNull(agents.get("OTHER", "111"));
+    }
+
+    @Test
+    public void testEviction() {
+        final AgentDirectory agents = new AgentDirectory(16);
+        final MobileMoneyAgent kept = agents.intern("MPAMBA", "0", "AGENT 0");
+        for (int i = 1; i < 100; i++) {
+            agents.intern("MPAMBA", Integer.toString(i), "AGENT " + i);
+            assertSame(kept, agents.intern("MPAMBA", "0", "AGENT 0"));
+        }
+        assertTrue(agents.size() <= 16);
+        assertEquals(100 - agents.size(), agents.getEvictions());
+        assertSame(kept, agents.get("MPAMBA", "0"));
+        assertNotNull(agents.get("MPAMBA", "99"));
+        assertNull(agents.get("MPAMBA", "1"));
+    }
+
+    @Test
+    public void testConcurrentRecord() throws Exception {
+        final AgentDirectory agents = new AgentDirectory();
+        final List<Thread> threads = new ArrayList<>();
+        final List<MpambaCashOutTransaction> recorded = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            final List<MpambaCashOutTransaction> transactions = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                transactions.add(cashOut("T" + t + "-" + i, Integer.toString(i % 10), "AGENT " + (i % 10), i, 1));
+            }
+            recorded.addAll(transactions);
+            threads.add(new Thread(() -> transactions.forEach(transaction -> agents.record("MPAMBA", transaction))));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(10, agents.size());
+        for (MpambaCashOutTransaction transaction : recorded) {
+            assertSame(agents.get("MPAMBA", transaction.getAgent().getAgentCode()), transaction.getAgent());
+        }
+        for (AgentDirectory.Stats stats : agents.getStats()) {
+            assertEquals(400, stats.getCount());
+            assertEquals(400, stats.getVolumeMinor());
+            assertTrue(stats.getLastSeen() >= 990);
+        }
+    }
+
+    private static MpambaCashOutTransaction cashOut(String id, String agentCode, String agentName, long date, long amount) {
+        final MpambaCashOutTransaction transaction = new MpambaCashOutTransaction();
+        transaction.setTransactionId(id);
+        transaction.setDate(new Date(date));
+        transaction.setAgent(new MobileMoneyAgent(agentCode, agentName));
+        transaction.setAmountMinor(amount);
+        return transaction;
+    }
+}
@@ -0,0 +1,142 @@
+package lib.gintec_rdl.momo.analytics;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import lib.gintec_rdl.momo.analytics.BalanceReconciler.Finding;
+import lib.gintec_rdl.momo.analytics.BalanceReconciler.Kind;
+import lib.gintec_rdl.momo.model.*;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class BalanceReconcilerTest {
+
+    private static final long MINUTE = 60_000L;
+
+    private final List<Finding> findings = new ArrayList<>();
+    private final BalanceReconciler reconciler = new BalanceReconciler(10 * MINUTE, findings::add);
+
+    @Test
+    public void testReconcile() {
+        final Transaction received = debit("T1", 0, 10000, 110000);
+        final Transaction cashOut = cashOut("T2", 1, 20000, 1000, 89000);
+        final Transaction sent = credit("T3", 3, 5000, 500, 83500);
+
+        reconciler.offer("A", received);
+        reconciler.offer("A", sent);
+        reconciler.offer("A", cashOut);
+        reconciler.offer("A", sent);
+        assertEquals(2, findings.size());
+        assertEquals(Kind.OUT_OF_ORDER, findings.get(0).getKind());
+        assertSame(cashOut, findings.get(0).getTransaction());
+        assertEquals(Kind.DUPLICATE, findings.get(1).getKind());
+        assertNull(reconciler.getBalance("A"));
+
+        // Releases T1 to T3, which are consistent
+        reconciler.offer("A", deposit("T4", 14, 10000, 0, 100000));
+        assertEquals(2, findings.size());
+        assertEquals(83500L, (long) reconciler.getBalance("A"));
+
+        // Releases T4, after a missing message
+        reconciler.offer("A", debit("T5", 40, 1000, 101000));
+        assertEquals(Kind.GAP, findings.get(2).getKind());
+        assertEquals(93500, findings.get(2).getExpectedBalance());
+        assertEquals(6500, findings.get(2).getDifference());
+        assertEquals(100000L, (long) reconciler.getBalance("A"));
+        reconciler.offer("A", debit("T6", 5, 1000, 84500));
+        assertEquals(Kind.LATE, findings.get(3).getKind());
+
+        // Other accounts are reconciled independently
+        reconciler.offer("B", debit("T1", 0, 100, 100));
+        reconciler.flush();
+        assertEquals(101000L, (long) reconciler.getBalance("A"));
+        assertEquals(100L, (long) reconciler.getBalance("B"));
+        assertEquals(4, findings.size());
+        assertEquals(1, reconciler.getCount(Kind.GAP));
+        assertEquals(1, reconciler.getCount(Kind.LATE));
+        assertEquals(6, reconciler.getReconciledCount());
+    }
+
+    @Test
+    public void testBoundedBuffer() {
+        final BalanceReconciler small = new BalanceReconciler(Long.MAX_VALUE / 2, 4, findings::add);
+        long balance = 0;
+        for (int i = 0; i < 100; i++) {
+            balance += 100;
+            small.offer("A", debit("T" + i, i, 100, balance));
+        }
+        assertEquals(96, small.getReconciledCount());
+        assertEquals(9600L, (long) small.getBalance("A"));
+        small.offer("A", debit("T0", 0, 100, 100));
+        assertEquals(Kind.LATE, findings.get(0).getKind());
+        small.remove("A");
+        assertNull(small.getBalance("A"));
+        assertEquals(100, small.getReconciledCount());
+        assertEquals(1, findings.size());
+    }
+
+    @Test
+    public void testUndated() {
+        final Transaction first = debit("T1", 0, 100, 100);
+        first.setDate(null);
+        final Transaction second = debit("T2", 0, 100, 200);
+        second.setDate(null);
+        reconciler.offer("A", first);
+        reconciler.offer("A", second);
+        reconciler.offer("A", first);
+        assertEquals(1, findings.size());
+        assertEquals(Kind.DUPLICATE, findings.get(0).getKind());
+        assertSame(first, findings.get(0).getTransaction());
+
+        reconciler.offer("A", second);
+        assertEquals(2, findings.size());
+        assertEquals(Kind.DUPLICATE, findings.get(1).getKind());
+
+        reconciler.offer("A", debit("T3", 0, 100, 300));
+        reconciler.flush();
+        assertEquals(2, findings.size());
+        assertEquals(300L, (long) reconciler.getBalance("A"));
+        assertEquals(3, reconciler.getReconciledCount());
+        assertEquals(0, reconciler.getCount(Kind.GAP));
+    }
+
+    private static MpambaDebitTransaction debit(String id, int minute, long amount, long balance) {
+        final MpambaDebitTransaction transaction = new MpambaDebitTransaction();
+        init(transaction, id, minute);
+        transaction.setAmountMinor(amount);
+        transaction.setBalanceMinor(balance);
+        return transaction;
+    }
+
+    private static MpambaCashOutTransaction cashOut(String id, int minute, long amount, long fee, long balance) {
+        final MpambaCashOutTransaction transaction = new MpambaCashOutTransaction();
+        init(transaction, id, minute);
+        transaction.setAmountMinor(amount);
+        transaction.setFeeMinor(fee);
+        transaction.setBalanceMinor(balance);
+        return transaction;
+    }
+
+    private static MpambaCreditTransaction credit(String id, int minute, long amount, long fee, long balance) {
+        final MpambaCreditTransaction transaction = new MpambaCreditTransaction();
+        init(transaction, id, minute);
+        transaction.setAmountMinor(amount);
+        transaction.setFeeMinor(fee);
+        transaction.setBalanceMinor(balance);
+        return transaction;
+    }
+
+    private static MpambaDepositTransaction deposit(String id, int minute, long amount, long fee, long balance) {
+        final MpambaDepositTransaction transaction = new MpambaDepositTransaction();
+        init(transaction, id, minute);
+        transaction.setAmountMinor(amount);
+        transaction.setFeeMinor(fee);
+        transaction.setBalanceMinor(balance);
+        return transaction;
+    }
+
+    private static void init(Transaction transaction, String id, int minute) {
+        transaction.setTransactionId(id);
+        transaction.setDate(new Date(1_557_000_000_000L + minute * MINUTE));
+    }
+}
@@ -0,0 +1,108 @@
+package lib.gintec_rdl.momo.analytics;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.Map;
+import java.util.SortedMap;
+import lib.gintec_rdl.momo.analytics.TransactionStore.Column;
+import lib.gintec_rdl.momo.model.*;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TransactionStoreTest {
+
+    private static final long DAY = 86_400_000L;
+
+    @Test
+    public void testAggregations() {
+        final TransactionStore store = new TransactionStore(2);
+        store.add(cashOut("A1", "111", DAY + 10, 1000, 50));
+        store.add(cashOut("A2", "222", DAY + 20, 2000, 80));
+        store.add(cashOut("A3", "111", 3 * DAY, 500, 20));
+        final MpambaCreditTransaction credit = new MpambaCreditTransaction();
+        credit.setTransactionId("C1");
+        credit.setRecipientPhone("0881555555");
+        credit.setAmountMinor(700);
+        credit.setFeeMinor(10);
+        store.add(credit);
+        final MpambaDepositTransaction deposit = new MpambaDepositTransaction();
+        deposit.setTransactionId("D1");
+        deposit.setDate(new Date(3 * DAY + 5));
+        deposit.setSource("National Bank");
+        deposit.setAmountMinor(300);
+        store.add(deposit);
+
+        assertEquals(5, store.size());
+        assertEquals(4500, store.sum(Column.AMOUNT));
+        assertEquals(160, store.sum(Column.FEE));
+        assertEquals(3000, store.sum(Column.AMOUNT, DAY, 2 * DAY));
+        assertEquals(3500, store.sum(Column.AMOUNT, MpambaCashOutTransaction.class));
+        assertEquals(0, store.sum(Column.AMOUNT, AirtelMoneyCashInTransaction.class));
+
+        final Map<String, Long> byAgent = store.sumByAgent(Column.AMOUNT);
+        assertEquals(2, byAgent.size());
+        assertEquals(1500L, (long) byAgent.get("111"));
+        assertEquals(2000L, (long) byAgent.get("222"));
+        assertEquals(2, store.countByAgent("111"));
+        assertEquals(0, store.countByAgent("999"));
+
+        final Map<String, Long> byCounterparty = store.sumByCounterparty(Column.AMOUNT);
+        assertEquals(700L, (long) byCounterparty.get("0881555555"));
+        assertEquals(300L, (long) byCounterparty.get("National Bank"));
+
+        final Map<Class<? extends Transaction>, Long> byType = store.sumByType(Column.FEE);
+        assertEquals(150L, (long) byType.get(MpambaCashOutTransaction.class));
+        assertEquals(10L, (long) byType.get(MpambaCreditTransaction.class));
+        assertEquals(0L, (long) byType.get(MpambaDepositTransaction.class));
+
+        final SortedMap<LocalDate, Long> byDay = store.sumByDay(Column.AMOUNT);
+        assertEquals(2, byDay.size());
+        assertEquals(3000L, (long) byDay.get(LocalDate.ofEpochDay(1)));
+        assertEquals(800L, (long) byDay.get(LocalDate.ofEpochDay(3)));
+        assertEquals(byDay, store.sumByDay(Column.AMOUNT, ZoneId.of("Africa/Blantyre")));
+        assertEquals(3000L, (long) store.sumByDay(Column.AMOUNT, ZoneOffset.ofHours(-1)).get(LocalDate.ofEpochDay(0)));
+        assertEquals(3000L, (long) store.sumByDay(Column.AMOUNT, ZoneId.of("Europe/London")).get(LocalDate.ofEpochDay(1)));
+    }
+
+    @Test
+    public void testRows() {
+        final TransactionStore store = new TransactionStore(1);
+        for (int i = 0; i < 100; i++) {
+            store.add(cashOut("T" + i, i % 2 == 0 ? "111" : null, i * DAY, i, 0));
+        }
+        store.add(new Transaction());
+        store.trimToSize();
+        assertEquals(101, store.size());
+        assertEquals("T42", store.getTransactionId(42));
+        assertEquals("T0", store.getTransactionId(0));
+        assertNull(store.getTransactionId(100));
+        assertEquals(42 * DAY, store.getDate(42));
+        assertEquals(42, store.get(42, Column.AMOUNT));
+        assertEquals("111", store.getAgent(42));
+        assertNull(store.getAgent(43));
+        assertNull(store.getCounterparty(42));
+        assertEquals(TransactionStore.NO_DATE, store.getDate(100));
+        assertEquals(Transaction.class, store.getType(100));
+        assertEquals(2, store.getTypes().size());
+        assertEquals(100, store.sumByDay(Column.AMOUNT).size());
+        try {
+            store.getDate(101);
+            fail("Rows past the end must be rejected");
+        } catch (IndexOutOfBoundsException expected) {
+        }
+    }
+
+    private static MpambaCashOutTransaction cashOut(String id, String agentCode, long date, long amount, long fee) {
+        final MpambaCashOutTransaction transaction = new MpambaCashOutTransaction();
+        transaction.setTransactionId(id);
+        transaction.setDate(new Date(date));
+        if (agentCode != null) {
+            transaction.setAgent(new MobileMoneyAgent(agentCode, "AGENT " + agentCode));
+        }
+        transaction.setAmountMinor(amount);
+        transaction.setFeeMinor(fee);
+        return transaction;
+    }
+}
@@ -0,0 +1,217 @@
+package lib.gintec_rdl.momo.codec;
+
+import java.beans.BeanInfo;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import lib.gintec_rdl.momo.extractors.MpambaTransactionExtractor;
+import lib.gintec_rdl.momo.model.*;
+import lib.gintec_rdl.momo.utils.LocaleUtils;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TransactionCodecTest {
+
+    private static final String[] MPAMBA = {
+        "Cash In from 123456-JOHN DOE INVESTMENT OUTLET on 06/05/2019 14:00:50.\nAmt: 2,000.00MWK\nFee: 0.00MWK\n"
+            + "Ref: 1A2B8C4D7E\nBal: 2,000.00MWK",
+        "Money Received from 265888555555   on 10/05/2019 23:06:26. \nAmount: 100.00MWK \nRef: E5D4C3B2A1 \nBal: 290.00MWK",
+        "Money Sent to 0881555555   on 02/04/2019 17:09:19. \nAmount: 10,000.00MWK \nFee: 100.00MWK \n"
+            + "Ref: 1A2B3C4D5E \nBal: 204.00MWK",
+        "Deposit from National Bank on 11/05/2019 04:55:07. Amount: 201.00MWK Fee: 0.00MWK Ref: 1B1B1B1BJZ "
+            + "Available Balance: 491.00MWK.",
+        "Cash Out to AGENT SMITH - 1234567 on 12/05/2019 12:12:07.\nAmt: 7,200.00MWK \nFee: 380.00MWK. \n"
+            + "Ref: 8GHABCGDTF \nBal: 1,581.00MWK"
+    };
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        final List<Transaction> transactions = transactions();
+        final Transaction bare = new Transaction();
+        bare.setTransactionId("Caf\u00e9 \u20ac \ud83d\ude00");
+        transactions.add(bare);
+        transactions.add(new MpambaCashOutTransaction());
+
+        for (ByteBuffer buffer : new ByteBuffer[]{ByteBuffer.allocate(4096), ByteBuffer.allocateDirect(4096)}) {
+            final TransactionEncoder encoder = new TransactionEncoder();
+            for (Transaction transaction : transactions) {
+                assertTrue(encoder.encode(transaction, buffer));
+            }
+            buffer.flip();
+            final TransactionDecoder decoder = new TransactionDecoder();
+            for (Transaction transaction : transactions) {
+                assertSameProperties(transaction.toString(), transaction, decoder.decode(buffer));
+            }
+            assertNull(decoder.decode(buffer));
+            assertEquals(TransactionEncoder.VERSION, decoder.getVersion());
+        }
+    }
+
+    @Test
+    public void testDictionary() throws Exception {
+        final List<Transaction> transactions = transactions();
+        final ByteBuffer buffer = ByteBuffer.allocate(8192);
+        final TransactionEncoder encoder = new TransactionEncoder();
+        for (Transaction transaction : transactions) {
+            encoder.encode(transaction, buffer);
+        }
+        final int first = buffer.position();
+        final int words = encoder.getDictionarySize();
+        for (Transaction transaction : transactions) {
+            encoder.encode(transaction, buffer);
+        }
+        assertEquals(words, encoder.getDictionarySize());
+        assertTrue(buffer.position() - first < first);
+
+        buffer.flip();
+        final TransactionDecoder decoder = new TransactionDecoder();
+        final AirtelMoneyCashOutTransaction a = (AirtelMoneyCashOutTransaction) skip(decoder, buffer, transactions.size());
+        final AirtelMoneyCashOutTransaction b = (AirtelMoneyCashOutTransaction) skip(decoder, buffer, transactions.size());
+        assertNotSame(a.getAgent(), b.getAgent());
+        assertSame(a.getAgent().getAgentName(), b.getAgent().getAgentName());
+
+        final TransactionEncoder literal = new TransactionEncoder(0);
+        buffer.clear();
+        for (Transaction transaction : transactions) {
+            literal.encode(transaction, buffer);
+        }
+        assertEquals(0, literal.getDictionarySize());
+        buffer.flip();
+        decoder.reset();
+        for (Transaction transaction : transactions) {
+            assertSameProperties(transaction.toString(), transaction, decoder.decode(buffer));
+        }
+    }
+
+    @Test
+    public void testPartialBuffers() throws Exception {
+        final List<Transaction> transactions = transactions();
+        final TransactionEncoder encoder = new TransactionEncoder();
+        final ByteBuffer stream = ByteBuffer.allocate(8192);
+        final ByteBuffer small = ByteBuffer.allocate(40);
+        for (Transaction transaction : transactions) {
+            small.clear();
+            final int words = encoder.getDictionarySize();
+            assertFalse(encoder.encode(transaction, small));
+            assertEquals(0, small.position());
+            assertEquals(words, encoder.getDictionarySize());
+            assertTrue(encoder.encode(transaction, stream));
+        }
+        stream.flip();
+
+        // Feed the stream a few bytes at a time
+        final TransactionDecoder decoder = new TransactionDecoder();
+        final ByteBuffer window = ByteBuffer.allocate(256);
+        final List<Transaction> decoded = new ArrayList<>();
+        while (stream.hasRemaining()) {
+            window.put(stream.get());
+            window.flip();
+            Transaction transaction;
+            while ((transaction = decoder.decode(window)) != null) {
+                decoded.add(transaction);
+            }
+            window.compact();
+        }
+        assertEquals(transactions.size(), decoded.size());
+        for (int i = 0; i < decoded.size(); i++) {
+            assertSameProperties(transactions.get(i).toString(), transactions.get(i), decoded.get(i));
+        }
+
+        try {
+            new TransactionDecoder().decode(ByteBuffer.wrap(new byte[]{1, 2, 3, 4, 5, 6}));
+            fail("Streams without the magic number must be rejected");
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            encoder.encode(new Transaction() {
+            }, stream);
+            fail("Classes without a layout must be rejected");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void testJavaSerialization() throws Exception {
+        for (Transaction transaction : transactions()) {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(transaction);
+            }
+            try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+                assertSameProperties(transaction.toString(), transaction, in.readObject());
+            }
+        }
+    }
+
+    private static Transaction skip(TransactionDecoder decoder, ByteBuffer buffer, int count) {
+        Transaction transaction = null;
+        while (count-- > 0) {
+            transaction = decoder.decode(buffer);
+        }
+        return transaction;
+    }
+
+    private static List<Transaction> transactions() throws Exception {
+        final List<Transaction> transactions = new ArrayList<>();
+        final MpambaTransactionExtractor mpamba = new MpambaTransactionExtractor();
+        for (String message : MPAMBA) {
+            transactions.add(mpamba.extract("MPAMBA", message, null));
+        }
+        // No Airtel Money extractor yet, so its models are filled in directly
+        final AirtelMoneyCreditTransaction credit = new AirtelMoneyCreditTransaction();
+        credit.setRecipientPhone("0991234567");
+        credit.setRecipientName("JOHN BANDA");
+        credit.setAmountMinor(200000);
+        credit.setFeeMinor(5000);
+        credit.setBalanceMinor(1045000);
+        transactions.add(airtelMoney(credit, "12/05/2021 14:31:05", "PP210512.1431.B12345"));
+        final AirtelMoneyDebitTransaction debit = new AirtelMoneyDebitTransaction();
+        debit.setSenderPhone("0887654321");
+        debit.setSenderName("MARY PHIRI");
+        debit.setAmountMinor(500000);
+        debit.setBalanceMinor(1250000);
+        transactions.add(airtelMoney(debit, "12/05/2021 14:30:00", "PP210512.1430.A12345"));
+        final AirtelMoneyCashInTransaction cashIn = new AirtelMoneyCashInTransaction();
+        cashIn.setAgent(new MobileMoneyAgent("123456", "CHIPIKU STORES"));
+        cashIn.setAmountMinor(1000000);
+        cashIn.setBalanceMinor(2045000);
+        transactions.add(airtelMoney(cashIn, "12/05/2021 14:32:10", "CI210512.1432.C12345"));
+        final AirtelMoneyCashOutTransaction cashOut = new AirtelMoneyCashOutTransaction();
+        cashOut.setAgent(new MobileMoneyAgent("654321", "MZUZU TRADERS"));
+        cashOut.setAmountMinor(300000);
+        cashOut.setFeeMinor(15000);
+        cashOut.setBalanceMinor(1730000);
+        transactions.add(airtelMoney(cashOut, "12/05/2021 14:33:45", "CO210512.1433.D12345"));
+        return transactions;
+    }
+
+    private static Transaction airtelMoney(Transaction transaction, String date, String transactionId) {
+        transaction.setDate(LocaleUtils.parseDate(date));
+        transaction.setTransactionId(transactionId);
+        return transaction;
+    }
+
+    private static void assertSameProperties(String message, Object expected, Object actual) throws Exception {
+        if (expected == null || actual == null) {
+            assertSame(message, expected, actual);
+            return;
+        }
+        assertEquals(message, expected.getClass(), actual.getClass());
+        final BeanInfo info = Introspector.getBeanInfo(expected.getClass(), Object.class);
+        for (PropertyDescriptor property : info.getPropertyDescriptors()) {
+            final Object a = property.getReadMethod().invoke(expected);
+            final Object b = property.getReadMethod().invoke(actual);
+            if (a instanceof MobileMoneyAgent) {
+                assertSameProperties(message, a, b);
+            } else {
+                assertEquals(message + " / " + property.getName(), a, b);
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package lib.gintec_rdl.momo.extraction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import lib.gintec_rdl.momo.model.Transaction;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ExtractionPipelineTest {
+
+    private final ExtractionService service = ExtractionService.getInstance();
+
+    public ExtractionPipelineTest() {
+        for (String sender : new String[]{"PIPELINE-A", "PIPELINE-B", "PIPELINE-C"}) {
+            service.registerExtractor(sender, new TransactionExtractor() {
+                @Override
+                public Transaction extract(String serviceNumber, String input, Map<String, String> extras) throws Exception {
+                    // Finish out of order
+                    Thread.sleep(ThreadLocalRandom.current().nextInt(3));
+                    final Transaction transaction = new Transaction();
+                    transaction.setTransactionId(input);
+                    return transaction;
+                }
+            });
+        }
+    }
+
+    @Test
+    public void testOrderedPerSender() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        final Map<String, List<Integer>> received = new ConcurrentHashMap<>();
+        final ExtractionPipeline pipeline = new ExtractionPipeline(service, executor, 4, 16, SmsMessage::getSender,
+            result -> received.computeIfAbsent(result.getMessage().getSender(), sender -> Collections.synchronizedList(new ArrayList<>()))
+                .add(Integer.valueOf(result.getTransaction().getTransactionId())));
+        try {
+            for (int i = 0; i < 300; i++) {
+                pipeline.put(new SmsMessage("PIPELINE-" + "ABC".charAt(i % 3), String.valueOf(i)));
+                assertTrue(pipeline.getPendingCount() <= 16);
+            }
+            pipeline.shutdown().get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(300, pipeline.getDeliveredCount());
+        assertEquals(3, received.size());
+        for (List<Integer> numbers : received.values()) {
+            assertEquals(100, numbers.size());
+            for (int i = 1; i < numbers.size(); i++) {
+                assertEquals(numbers.get(i - 1) + 3, (int) numbers.get(i));
+            }
+        }
+        try {
+            pipeline.offer(new SmsMessage("PIPELINE-A", "1"));
+            fail("A shut down pipeline must refuse messages");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void testBackpressure() throws Exception {
+        final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        final List<Exception> errors = new ArrayList<>();
+        final List<ExtractionResult> results = new ArrayList<>();
+        final ExtractionPipeline pipeline = new ExtractionPipeline(service, tasks::add, 2, 3, null, result -> {
+            results.add(result);
+            if (result.getMessage().getBody().equals("1")) {
+                throw new IllegalStateException("consumer failed");
+            }
+        }).onError(errors::add);
+
+        assertTrue(pipeline.offer(new SmsMessage("PIPELINE-A", "1")));
+        assertTrue(pipeline.offer(new SmsMessage("NOBODY", "2")));
+        assertTrue(pipeline.offer(new SmsMessage("PIPELINE-A", "3")));
+        assertFalse(pipeline.offer(new SmsMessage("PIPELINE-A", "4")));
+        assertEquals(1, pipeline.getRejectedCount());
+        assertEquals(2, tasks.size());
+
+        final CompletableFuture<Void> writable = pipeline.whenWritable();
+        assertFalse(writable.isDone());
+        tasks.poll().run();
+        assertTrue(writable.isDone());
+        assertTrue(pipeline.offer(new SmsMessage("PIPELINE-A", "4")));
+        final CompletableFuture<Void> terminated = pipeline.shutdown();
+        assertFalse(terminated.isDone());
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            task.run();
+        }
+        assertTrue(terminated.isDone());
+        assertEquals(4, results.size());
+        assertEquals(ExtractionResult.ErrorCode.NO_EXTRACTOR, results.get(1).getErrorCode());
+        assertEquals(1, errors.size());
+        assertEquals(0, pipeline.getPendingCount());
+    }
+
+    @Test
+    public void testNullOrderingKey() throws Exception {
+        final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        final List<ExtractionResult> results = new ArrayList<>();
+        final ExtractionPipeline pipeline = new ExtractionPipeline(service, tasks::add, 1, 4, SmsMessage::getSender, results::add);
+
+        // Messages without a sender are ordered among themselves
+        assertTrue(pipeline.offer(new SmsMessage(null, "1")));
+        assertTrue(pipeline.offer(new SmsMessage(null, "2")));
+        assertEquals(2, pipeline.getPendingCount());
+
+        // A failing key function does not take a slot
+        final ExtractionPipeline failing = new ExtractionPipeline(service, tasks::add, 1, 4, message -> {
+            throw new IllegalStateException("no key");
+        }, results::add);
+        try {
+            failing.offer(new SmsMessage("PIPELINE-A", "1"));
+            fail("The key function failed");
+        } catch (IllegalStateException expected) {
+        }
+        assertEquals(0, failing.getPendingCount());
+        assertTrue(failing.shutdown().isDone());
+
+        final CompletableFuture<Void> terminated = pipeline.shutdown();
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            task.run();
+        }
+        assertTrue(terminated.isDone());
+        assertEquals(0, pipeline.getPendingCount());
+        assertEquals(2, results.size());
+        assertEquals("1", results.get(0).getMessage().getBody());
+        assertEquals("2", results.get(1).getMessage().getBody());
+    }
+}
@@ -1,7 +1,22 @@
 package lib.gintec_rdl.momo.extraction;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.lang.management.ManagementFactory;
+import javax.management.ObjectName;
+import lib.gintec_rdl.momo.analytics.AgentDirectory;
+import lib.gintec_rdl.momo.extractors.AirtelMoneyTransactionExtractor;
 import lib.gintec_rdl.momo.extractors.MpambaTransactionExtractor;
+import lib.gintec_rdl.momo.metrics.ExtractionMetrics;
+import lib.gintec_rdl.momo.metrics.MetricsSnapshot;
 import lib.gintec_rdl.momo.model.*;
+import lib.gintec_rdl.momo.template.TemplateTransactionExtractor;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -15,6 +30,14 @@ public class ExtractionServiceTest {
         ExtractionService.getInstance().registerExtractor(
             "MPAMBA",
             MpambaTransactionExtractor.class
+        ).registerExtractor(
+            "FAILING",
+            new TransactionExtractor() {
+                @Override
+                public Transaction extract(String serviceNumber, String input, Map<String, String> extras) throws Exception {
+                    throw new IllegalStateException(input);
+                }
+            }
         );
     }
 
@@ -130,5 +153,390 @@ public class ExtractionServiceTest {
         assertEquals(7200, transaction.getAmount(), delta);
         assertEquals(380, transaction.getFee(), delta);
         assertEquals(1581, transaction.getBalance(), delta);
+        assertEquals(720000L, transaction.getAmountMinor());
+        assertEquals(38000L, transaction.getFeeMinor());
+        assertEquals(158100L, transaction.getBalanceMinor());
+    }
+
+    @Test
+    public void testExtractAll() {
+        final List<SmsMessage> messages = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            switch (i % 3) {
+                case 0:
+                    messages.add(new SmsMessage("MPAMBA", "Deposit from National Bank on 11/05/2019 04:55:07. Amount: " + i
+                        + ".00MWK Fee: 0.00MWK Ref: REF" + i + " Available Balance: 491.00MWK."));
+                    break;
+                case 1:
+                    messages.add(new SmsMessage("FAILING", "message " + i));
+                    break;
+                default:
+                    messages.add(new SmsMessage("UNKNOWN", "message " + i));
+                    break;
+            }
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        final List<ExtractionResult> results;
+        try {
+            results = ExtractionService.getInstance().extractAll(messages, executor);
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(messages.size(), results.size());
+        for (int i = 0; i < results.size(); i++) {
+            final ExtractionResult result = results.get(i);
+            assertSame(messages.get(i), result.getMessage());
+            switch (i % 3) {
+                case 0:
+                    assertTrue(result.isSuccess());
+                    assertEquals("REF" + i, result.getTransaction().getTransactionId());
+                    assertEquals(i, result.getTransaction(MpambaDepositTransaction.class).getAmount(), 0.0D);
+                    break;
+                case 1:
+                    assertFalse(result.isSuccess());
+                    assertEquals("message " + i, result.getFailure().getMessage());
+                    break;
+                default:
+                    assertFalse(result.isSuccess());
+                    assertNull(result.getFailure());
+                    break;
+            }
+        }
+    }
+
+    @Test
+    public void testExtractAsync() throws Exception {
+        final List<Thread> threads = Collections.synchronizedList(new ArrayList<>());
+        ExtractionService.getInstance().registerExtractor("ASYNC", new TransactionExtractor() {
+            @Override
+            public Transaction extract(String serviceNumber, String input, Map<String, String> extras) {
+                threads.add(Thread.currentThread());
+                final Transaction transaction = new Transaction();
+                transaction.setTransactionId(input);
+                return transaction;
+            }
+        });
+        final List<SmsMessage> messages = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            messages.add(new SmsMessage("ASYNC", "ID" + i));
+        }
+        final ExtractionResult single = ExtractionService.getInstance().extractAsync(messages.get(0)).get(10, TimeUnit.SECONDS);
+        assertEquals("ID0", single.getTransaction().getTransactionId());
+        final List<ExtractionResult> results = ExtractionService.getInstance()
+            .extractAllAsync(messages, ExtractionExecutors.shared()).get(10, TimeUnit.SECONDS);
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals("ID" + i, results.get(i).getTransaction().getTransactionId());
+        }
+        assertEquals(101, threads.size());
+        for (Thread thread : threads) {
+            assertNotSame(Thread.currentThread(), thread);
+            if (ExtractionExecutors.isVirtual()) {
+                // Only on Java 21, from the multi-release jar
+                assertEquals(Boolean.TRUE, Thread.class.getMethod("isVirtual").invoke(thread));
+            }
+        }
+
+        final ExecutorService executor = ExtractionExecutors.newExecutor();
+        try {
+            assertTrue(ExtractionService.getInstance().extractAsync(messages.get(1), executor).get(10, TimeUnit.SECONDS).isSuccess());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testAliases() {
+        final ExtractionService service = ExtractionService.getInstance().registerAlias("+265 999 000 123", "MPAMBA");
+        final String message = "Deposit from National Bank on 11/05/2019 04:55:07. Amount: 10.00MWK Fee: 0.00MWK Ref: ALIAS1 Available Balance: 491.00MWK.";
+        for (String sender : new String[]{"MPAMBA", "Mpamba", "mpamba ", "00265999000123"}) {
+            final ExtractionResult result = service.extract(new SmsMessage(sender, message));
+            assertTrue(sender, result.isSuccess());
+            assertEquals(sender, result.getMessage().getSender());
+            assertNotNull(service.extract(sender, message, null, MpambaDepositTransaction.class));
+        }
+        assertSame(service.getExtractor("MPAMBA"), service.getExtractor("m-pamba"));
+        assertEquals(ExtractionResult.ErrorCode.NO_EXTRACTOR, service.extract(new SmsMessage("+265999000124", message)).getErrorCode());
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        final ExtractionService svc = ExtractionService.getInstance();
+        final ExtractionMetrics metrics = new ExtractionMetrics();
+        final ObjectName name = metrics.registerMBean("test");
+        svc.setMonitor(metrics);
+        try {
+            svc.extract("MPAMBA", "Deposit from National Bank on 11/05/2019 04:55:07. Amount: 201.00MWK Fee: 0.00MWK "
+                + "Ref: 1B1B1B1BJZ Available Balance: 491.00MWK.", null, Transaction.class);
+            svc.extract("MPAMBA", "Hello", null, Transaction.class);
+            svc.extract("FAILING", "Hello", null, Transaction.class);
+            svc.extract("UNKNOWN", "Hello", null, Transaction.class);
+        } finally {
+            svc.setMonitor(null);
+        }
+
+        final MetricsSnapshot snapshot = metrics.snapshot();
+        assertEquals(1, snapshot.getTotal().getExtracted());
+        assertEquals(1, snapshot.getTotal().getNotExtracted());
+        assertEquals(1, snapshot.getTotal().getFailed());
+        assertEquals(1, snapshot.getTotal().getUnregistered());
+        assertEquals(1, snapshot.getSeries("MPAMBA", "DEPOSIT").getExtracted());
+        assertEquals(1, snapshot.getSeries("MPAMBA", ExtractionMetrics.UNKNOWN_TYPE).getNotExtracted());
+        assertEquals(1, snapshot.getSeries("FAILING", ExtractionMetrics.UNKNOWN_TYPE).getFailed());
+        assertEquals(1, snapshot.getSeries(ExtractionMetrics.UNREGISTERED_SENDER, ExtractionMetrics.UNKNOWN_TYPE).getUnregistered());
+        assertTrue(snapshot.getTotal().getMaxNanos() > 0);
+        assertEquals(1L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Extracted"));
+        metrics.unregisterMBean();
+    }
+
+    @Test
+    public void testCache() {
+        final ExtractionService svc = ExtractionService.getInstance();
+        final ExtractionCache cache = new ExtractionCache(100);
+        final String input = "Money Sent to 0881555555   on 02/04/2019 17:09:19. \n"
+            + "Amount: 10,000.00MWK \n"
+            + "Fee: 100.00MWK \n"
+            + "Ref: 1A2B3C4D5E \n"
+            + "Bal: 204.00MWK";
+        svc.setCache(cache);
+        try {
+            final Transaction first = svc.extract("MPAMBA", input, null, Transaction.class);
+            assertSame(first, svc.extract("MPAMBA", input, null, Transaction.class));
+            assertSame(first, svc.extract("MPAMBA", input.replace(" \n", "\n"), null, Transaction.class));
+            assertNull(svc.extract("MPAMBA", "Hello", null, Transaction.class));
+        } finally {
+            svc.setCache(null);
+        }
+        assertEquals(1, cache.getHits());
+        assertEquals(3, cache.getMisses());
+        assertEquals(1, cache.getDuplicates());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testCacheSenders() {
+        final ExtractionCache cache = new ExtractionCache(100);
+        final Transaction mpamba = new Transaction();
+        mpamba.setTransactionId("1A2B3C4D5E");
+        final Transaction airtel = new Transaction();
+        airtel.setTransactionId("1a2b3c4d5e");
+        final Transaction copy = new Transaction();
+        copy.setTransactionId("1A2B3C4D5E");
+
+        // Providers number their transactions independently
+        assertSame(mpamba, cache.put("MPAMBA", "Ref: 1A2B3C4D5E", mpamba));
+        assertSame(airtel, cache.put("AirtelMoney", "Trans ID: 1a2b3c4d5e", airtel));
+        assertEquals(0, cache.getDuplicates());
+        assertSame(mpamba, cache.put("MPAMBA", "Ref: 1A2B3C4D5E ", copy));
+        assertEquals(1, cache.getDuplicates());
+        assertSame(airtel, cache.get("AirtelMoney", "Trans ID: 1a2b3c4d5e"));
+    }
+
+    @Test
+    public void testAgentDirectory() {
+        final ExtractionService svc = ExtractionService.getInstance();
+        final AgentDirectory agents = new AgentDirectory();
+        final String input = "Cash In from 123456-JOHN DOE INVESTMENT OUTLET on 06/05/2019 14:00:50.\n"
+            + "Amt: 2,000.00MWK\n"
+            + "Fee: 0.00MWK\n"
+            + "Ref: %s\n"
+            + "Bal: 2,000.00MWK";
+        svc.setAgentDirectory(agents);
+        try {
+            final MpambaCashInTransaction first = svc.extract("MPAMBA", String.format(input, "1A2B8C4D7E"), null, MpambaCashInTransaction.class);
+            final ExtractionResult second = svc.extract(new SmsMessage("MPAMBA", String.format(input, "1A2B8C4D7F"), null));
+            assertSame(first.getAgent(), ((MpambaCashInTransaction) second.getTransaction()).getAgent());
+            assertSame(first.getAgent(), agents.get("MPAMBA", "123456"));
+
+            // Results with problems do not count, whichever path they take
+            final String incomplete = String.format(input, "1A2B8C4D80").replace("Fee: 0.00MWK\n", "");
+            assertEquals(ExtractionResult.ErrorCode.MISSING_FIELDS, svc.extract(new SmsMessage("MPAMBA", incomplete)).getErrorCode());
+            assertNotNull(svc.extract("MPAMBA", incomplete, null, new TransactionHolder()));
+        } finally {
+            svc.setAgentDirectory(null);
+        }
+        assertEquals(2, agents.getStats("MPAMBA", "123456").getCount());
+        assertEquals(400000, agents.getStats("MPAMBA", "123456").getVolumeMinor());
+    }
+
+    @Test
+    public void testReplaceExtractor() throws Exception {
+        final ExtractionService svc = ExtractionService.getInstance();
+        assertEquals(0, svc.getExtractorVersion("REPLACED"));
+        final TransactionExtractor first = new MpambaTransactionExtractor();
+        final TransactionExtractor second = new MpambaTransactionExtractor();
+        svc.registerExtractor("REPLACED", first);
+        assertEquals(1, svc.getExtractorVersion("REPLACED"));
+        svc.registerExtractor("REPLACED", second);
+        assertSame(first, svc.getExtractor("REPLACED"));
+        assertEquals(2, svc.replaceExtractor("REPLACED", second));
+        assertSame(second, svc.getExtractor("REPLACED"));
+        assertEquals(2, svc.getExtractorVersion("REPLACED"));
+    }
+
+    @Test
+    public void testFallbackChain() throws Exception {
+        final String legacy = "Cash Out to AGENT SMITH - 1234567 on 12/05/2019 12:12:07.\n"
+            + "Amt: 7,200.00MWK \n"
+            + "Fee: 380.00MWK. \n"
+            + "Ref: 8GHABCGDTF \n"
+            + "Bal: 1,581.00MWK";
+        final String revised = "Cash Out to AGENT SMITH - 1234567 on 12/05/2019 12:12:07.\n"
+            + "Amount: 7,200.00MWK Charge: 380.00MWK\n"
+            + "TxnID: 8GHABCGDTF Balance: 1,581.00MWK";
+        final FallbackTransactionExtractor chain = new FallbackTransactionExtractor(
+            new MpambaTransactionExtractor(),
+            new TemplateTransactionExtractor("MPAMBA").register("CASH_OUT", MpambaCashOutTransaction.class,
+                "Cash Out to {agent.agentName} - {agent.agentCode} on {date}.\n"
+                + "Amount: {amount}MWK Charge: {fee}MWK\nTxnID: {transactionId} Balance: {balance}MWK")
+        );
+
+        // The legacy extractor only fills the first line of the revised format
+        assertNull(new MpambaTransactionExtractor().extract("MPAMBA", revised, null).getTransactionId());
+
+        MpambaCashOutTransaction transaction = (MpambaCashOutTransaction) chain.extract("MPAMBA", revised, null);
+        assertEquals("8GHABCGDTF", transaction.getTransactionId());
+        assertEquals(38000, transaction.getFeeMinor());
+        assertEquals(1, chain.getWinner("MPAMBA"));
+
+        transaction = (MpambaCashOutTransaction) chain.extract("MPAMBA", legacy, null);
+        assertEquals(158100, transaction.getBalanceMinor());
+        assertEquals(0, chain.getWinner("MPAMBA"));
+        assertArrayEquals(new long[]{1, 1}, chain.getWins());
+
+        assertEquals("CASH_OUT", chain.getMessageType("MPAMBA", revised));
+        assertNull(chain.extract("MPAMBA", "Hello world", null));
+    }
+
+    @Test
+    public void testFallbackPartial() throws Exception {
+        final int[] partialCalls = new int[1];
+        final TransactionExtractor failing = new TransactionExtractor() {
+            @Override
+            public Transaction extract(String serviceNumber, String input, Map<String, String> extras) throws Exception {
+                throw new IllegalArgumentException("unreadable");
+            }
+        };
+        final TransactionExtractor partial = new TransactionExtractor() {
+            @Override
+            public Transaction extract(String serviceNumber, String input, Map<String, String> extras) throws Exception {
+                return extract(serviceNumber, input, extras, new ExtractionReport());
+            }
+
+            @Override
+            public Transaction extract(String serviceNumber, String input, Map<String, String> extras, ExtractionReport report) {
+                partialCalls[0]++;
+                // Has an id but not everything the format promises
+                final Transaction transaction = new Transaction();
+                transaction.setTransactionId(input);
+                report.setMessageType("PARTIAL");
+                report.missing("amount");
+                return transaction;
+            }
+        };
+        final TransactionExtractor complete = new TransactionExtractor() {
+            @Override
+            public Transaction extract(String serviceNumber, String input, Map<String, String> extras) throws Exception {
+                if (!input.startsWith("FULL")) {
+                    return null;
+                }
+                final Transaction transaction = new Transaction();
+                transaction.setTransactionId(input);
+                return transaction;
+            }
+        };
+
+        // A transaction with reported problems is not complete, even when the
+        // caller ignores the report
+        final FallbackTransactionExtractor chain = new FallbackTransactionExtractor(partial, failing, complete);
+        assertEquals("FULL1", chain.extract("FALLBACK", "FULL1", null).getTransactionId());
+        assertEquals(2, chain.getWinner("FALLBACK"));
+        assertArrayEquals(new long[]{0, 0, 1}, chain.getWins());
+
+        // A partial beats an exception and keeps its report without being
+        // extracted again
+        partialCalls[0] = 0;
+        final ExtractionReport report = new ExtractionReport();
+        assertEquals("ID1", chain.extract("FALLBACK", "ID1", null, report).getTransactionId());
+        assertEquals(1, partialCalls[0]);
+        assertEquals("PARTIAL", report.getMessageType());
+        assertEquals(Collections.singletonList("amount"), report.getMissingFields());
+        assertEquals(2, chain.getWinner("FALLBACK"));
+
+        try {
+            new FallbackTransactionExtractor(failing, complete).extract("FALLBACK", "ID1", null);
+            fail("Without a transaction the failure must be rethrown");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void testStructuredResult() {
+        final ExtractionService svc = ExtractionService.getInstance();
+        final String cashOut = "Cash Out to AGENT SMITH - 1234567 on 12/05/2019 12:12:07.\n"
+            + "Amt: 7,200.00MWK \n"
+            + "Fee: 380.00MWK. \n"
+            + "Ref: 8GHABCGDTF \n"
+            + "Bal: 1,581.00MWK";
+
+        ExtractionResult result = svc.extract(new SmsMessage("MPAMBA", cashOut, null));
+        assertTrue(result.isSuccess());
+        assertEquals(ExtractionResult.ErrorCode.NONE, result.getErrorCode());
+        assertEquals("CASH_OUT", result.getMessageType());
+
+        result = svc.extract(new SmsMessage("MPAMBA", cashOut.replace("Ref: 8GHABCGDTF \n", ""), null));
+        assertEquals(ExtractionResult.ErrorCode.MISSING_FIELDS, result.getErrorCode());
+        assertEquals(Collections.singletonList("transactionId"), result.getMissingFields());
+        assertEquals(158100, ((MpambaCashOutTransaction) result.getTransaction()).getBalanceMinor());
+        assertNull(result.getFailure());
+
+        // A missing line does not shift the lines after it
+        final String credit = "Money Sent to 0881555555 JOHN DOE on 02/04/2019 17:09:19.\n"
+            + "Amount: 10,000.00MWK\n"
+            + "Ref: 1A2B3C4D5E\n"
+            + "Bal: 204.00MWK";
+        result = svc.extract(new SmsMessage("MPAMBA", credit, null));
+        assertEquals(ExtractionResult.ErrorCode.MISSING_FIELDS, result.getErrorCode());
+        assertEquals(Collections.singletonList("fee"), result.getMissingFields());
+        assertEquals("1A2B3C4D5E", result.getTransaction().getTransactionId());
+        assertEquals(20400, ((MpambaCreditTransaction) result.getTransaction()).getBalanceMinor());
+
+        result = svc.extract(new SmsMessage("MPAMBA", cashOut.replace("Amt: 7,200.00MWK \n", "").replace("Bal: 1,581.00MWK", ""), null));
+        assertEquals(Arrays.asList("amount", "balance"), result.getMissingFields());
+        assertEquals("8GHABCGDTF", result.getTransaction().getTransactionId());
+        assertEquals(38000, ((MpambaCashOutTransaction) result.getTransaction()).getFeeMinor());
+
+        result = svc.extract(new SmsMessage("MPAMBA", cashOut.replace("12/05/2019", "12/13/2019"), null));
+        assertEquals(ExtractionResult.ErrorCode.INVALID_FIELDS, result.getErrorCode());
+        assertEquals(Collections.singletonList("date"), result.getInvalidFields());
+        assertNull(result.getFailure());
+
+        svc.registerExtractor("TEMPLATE", new TemplateTransactionExtractor("TEMPLATE").register("CASH_OUT",
+            MpambaCashOutTransaction.class, "Cash Out to {agent.agentName} - {agent.agentCode} on {date}."));
+        result = svc.extract(new SmsMessage("TEMPLATE", "Cash Out to AGENT SMITH - 1234567", null));
+        assertEquals(ExtractionResult.ErrorCode.MALFORMED, result.getErrorCode());
+        assertEquals("CASH_OUT", result.getMessageType());
+
+        // Airtel Money formats are not known yet, which must not pass for an unrecognized message
+        svc.registerExtractor("AirtelMoney", AirtelMoneyTransactionExtractor.class);
+        result = svc.extract(new SmsMessage("AirtelMoney", "Cash Out to agent 654321 MZUZU TRADERS", null));
+        assertEquals(ExtractionResult.ErrorCode.FAILED, result.getErrorCode());
+        assertTrue(result.getFailure() instanceof UnsupportedOperationException);
+
+        assertEquals(ExtractionResult.ErrorCode.UNRECOGNIZED, svc.extract(new SmsMessage("MPAMBA", "Hello", null)).getErrorCode());
+        assertEquals(ExtractionResult.ErrorCode.NO_EXTRACTOR, svc.extract(new SmsMessage("NOBODY", "Hello", null)).getErrorCode());
+        assertEquals(ExtractionResult.ErrorCode.FAILED, svc.extract(new SmsMessage("FAILING", "Hello", null)).getErrorCode());
+    }
+
+    @Test
+    public void testTransactionEqualsHashCode() {
+        final Transaction a = new Transaction(), b = new Transaction();
+        a.setTransactionId("1a2b3c4d5e");
+        a.setDate(new java.util.Date(0));
+        b.setTransactionId("1A2B3C4D5E");
+        b.setDate(new java.util.Date());
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
     }
 }
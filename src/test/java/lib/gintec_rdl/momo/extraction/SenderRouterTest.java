@@ -0,0 +1,57 @@
+package lib.gintec_rdl.momo.extraction;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class SenderRouterTest {
+
+    @Test
+    public void testResolve() {
+        final SenderRouter router = new SenderRouter()
+            .register("MPAMBA", "MPAMBA")
+            .register("AirtelMoney", "AirtelMoney")
+            .register("+265 888 000 111", "MPAMBA")
+            .register("0888-000-111", "MPAMBA");
+
+        assertEquals("MPAMBA", router.resolve("MPAMBA"));
+        assertEquals("MPAMBA", router.resolve("Mpamba"));
+        assertEquals("MPAMBA", router.resolve(" mpamba "));
+        assertEquals("MPAMBA", router.resolve("M-Pamba"));
+        assertEquals("AirtelMoney", router.resolve("AIRTEL MONEY"));
+        assertEquals("AirtelMoney", router.resolve(new StringBuilder("airtel_money")));
+        assertEquals("MPAMBA", router.resolve("+265888000111"));
+        assertEquals("MPAMBA", router.resolve("00265 888 000 111"));
+        assertEquals("MPAMBA", router.resolve("(0888) 000 111"));
+        assertEquals("MPAMBA", router.resolve("\u00A0Mpamba"));
+
+        assertNull(router.resolve("MPAMB"));
+        assertNull(router.resolve("MPAMBAS"));
+        assertNull(router.resolve("265888000111"));
+        assertNull(router.resolve("+265888000112"));
+        assertNull(router.resolve(""));
+        assertNull(router.resolve(null));
+
+        assertEquals("+265888000111", SenderRouter.normalize("00265 888-000-111"));
+        assertEquals("MPAMBA", router.getAliases().get("MPAMBA"));
+        assertEquals(4, router.getAliases().size());
+    }
+
+    @Test
+    public void testReplaceAndGrow() {
+        final SenderRouter router = new SenderRouter();
+        for (int i = 0; i < 1000; i++) {
+            router.register("SENDER " + i, "S" + i);
+        }
+        router.register("sender-0", "REPLACED");
+        assertEquals(1000, router.getAliases().size());
+        assertEquals("REPLACED", router.resolve("Sender 0"));
+        for (int i = 1; i < 1000; i++) {
+            assertEquals("S" + i, router.resolve("sender" + i));
+        }
+        try {
+            router.register(" - ", "S");
+            fail("An alias without letters or digits must be refused");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
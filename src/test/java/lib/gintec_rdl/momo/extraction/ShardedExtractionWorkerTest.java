@@ -0,0 +1,144 @@
+package lib.gintec_rdl.momo.extraction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import lib.gintec_rdl.momo.model.Transaction;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ShardedExtractionWorkerTest {
+
+    private final ExtractionService service = ExtractionService.getInstance();
+
+    public ShardedExtractionWorkerTest() {
+        service.registerExtractor("SHARDED", new TransactionExtractor() {
+            @Override
+            public Transaction extract(String serviceNumber, String input, Map<String, String> extras) throws Exception {
+                final Transaction transaction = new Transaction();
+                transaction.setTransactionId(input);
+                return transaction;
+            }
+        });
+    }
+
+    @Test
+    public void testOrderedPerAccount() throws Exception {
+        final Map<String, List<Integer>> received = new ConcurrentHashMap<>();
+        final Map<String, Thread> lanes = new ConcurrentHashMap<>();
+        final List<Exception> errors = Collections.synchronizedList(new ArrayList<>());
+        final ShardedExtractionWorker worker = new ShardedExtractionWorker(service, 4, 8,
+            MessagePartitioner.byKey(message -> message.getExtras().get("account")), result -> {
+                final String account = result.getMessage().getExtras().get("account");
+                assertSame(lanes.computeIfAbsent(account, key -> Thread.currentThread()), Thread.currentThread());
+                received.computeIfAbsent(account, key -> Collections.synchronizedList(new ArrayList<>()))
+                    .add(Integer.valueOf(result.getTransaction().getTransactionId()));
+            }).onError(errors::add);
+        final Thread[] producers = new Thread[3];
+        for (int p = 0; p < producers.length; p++) {
+            final String account = "088100000" + p;
+            producers[p] = new Thread(() -> {
+                try {
+                    for (int i = 0; i < 500; i++) {
+                        worker.put(new SmsMessage("SHARDED", String.valueOf(i), Collections.singletonMap("account", account)));
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            producers[p].start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        worker.shutdown().get(10, TimeUnit.SECONDS);
+
+        assertTrue(errors.isEmpty());
+        assertEquals(1500, worker.getDeliveredCount());
+        assertEquals(0, worker.getPendingCount());
+        assertEquals(3, received.size());
+        for (List<Integer> numbers : received.values()) {
+            assertEquals(500, numbers.size());
+            for (int i = 0; i < numbers.size(); i++) {
+                assertEquals(i, (int) numbers.get(i));
+            }
+        }
+        try {
+            worker.offer(new SmsMessage("SHARDED", "1", Collections.singletonMap("account", "0881000000")));
+            fail("A shut down worker must refuse messages");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void testPartitioner() {
+        // Same partition in every JVM
+        assertEquals(MessagePartitioner.partitionOf("0881000000", 16), MessagePartitioner.partitionOf(new StringBuilder("0881000000"), 16));
+        assertEquals(0, MessagePartitioner.partitionOf(null, 16));
+        final int[] counts = new int[8];
+        for (int i = 0; i < 8000; i++) {
+            counts[MessagePartitioner.partitionOf("0881" + (100000 + i), counts.length)]++;
+        }
+        for (int count : counts) {
+            assertTrue(count > 800 && count < 1200);
+        }
+        final SmsMessage message = new SmsMessage("SHARDED", "1");
+        assertEquals(MessagePartitioner.partitionOf("SHARDED", 5), MessagePartitioner.bySender().partition(message, 5));
+    }
+
+    @Test
+    public void testLanesWithinNode() {
+        // Node and lane counts sharing a factor must not leave lanes idle
+        final int[][] clusters = {{2, 2}, {4, 2}, {2, 4}, {3, 3}, {4, 8}};
+        for (int[] cluster : clusters) {
+            final int nodes = cluster[0], lanes = cluster[1];
+            final MessagePartitioner partitioner = MessagePartitioner.byKey(message -> message.getExtras().get("account"), nodes);
+            for (int node = 0; node < nodes; node++) {
+                final int[] counts = new int[lanes];
+                int total = 0;
+                for (int i = 0; i < 16000; i++) {
+                    final String account = "0881" + (100000 + i);
+                    if (MessagePartitioner.partitionOf(account, nodes) == node) {
+                        counts[partitioner.partition(new SmsMessage("SHARDED", "1", Collections.singletonMap("account", account)), lanes)]++;
+                        total++;
+                    }
+                }
+                for (int count : counts) {
+                    assertTrue(nodes + "x" + lanes + " node " + node + ": " + Arrays.toString(counts),
+                        count > total / lanes * 8 / 10 && count < total / lanes * 12 / 10);
+                }
+            }
+        }
+        assertEquals(MessagePartitioner.partitionOf("0881000000", 5),
+            MessagePartitioner.byKey(SmsMessage::getSender, 1).partition(new SmsMessage("0881000000", "1"), 5));
+    }
+
+    @Test
+    public void testBackpressure() throws Exception {
+        final Object gate = new Object();
+        final List<Exception> errors = new ArrayList<>();
+        final ShardedExtractionWorker worker = new ShardedExtractionWorker(service, 1, 2, MessagePartitioner.bySender(), result -> {
+            synchronized (gate) {
+                if (result.getMessage().getBody().equals("1")) {
+                    throw new IllegalStateException("consumer failed");
+                }
+            }
+        }).onError(errors::add);
+        synchronized (gate) {
+            // The lane blocks on the first message and holds at most two more
+            int accepted = 0;
+            while (worker.offer(new SmsMessage("SHARDED", String.valueOf(accepted)))) {
+                accepted++;
+            }
+            assertTrue(accepted >= 2 && accepted <= 3);
+            assertEquals(1, worker.getRejectedCount());
+        }
+        worker.close();
+        assertEquals(1, errors.size());
+        assertEquals(worker.getDeliveredCount(0), worker.getDeliveredCount());
+    }
+}
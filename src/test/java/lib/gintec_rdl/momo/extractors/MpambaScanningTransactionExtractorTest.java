@@ -0,0 +1,124 @@
+package lib.gintec_rdl.momo.extractors;
+
+import java.beans.BeanInfo;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import lib.gintec_rdl.momo.extraction.ExtractionReport;
+import lib.gintec_rdl.momo.extraction.TransactionHolder;
+import lib.gintec_rdl.momo.model.*;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class MpambaScanningTransactionExtractorTest {
+
+    private static final String[] MESSAGES = {
+        "Cash In from 123456-JOHN DOE INVESTMENT OUTLET on 06/05/2019 14:00:50.\n"
+            + "Amt: 2,000.00MWK\n"
+            + "Fee: 0.00MWK\n"
+            + "Ref: 1A2B8C4D7E\n"
+            + "Bal: 2,000.00MWK",
+        "Trans ID: CI190506.1400.A12345: you have received MK2000.00 from 123456, JOHN DOE OUTLET. your new balance is MK2500.50",
+        "Money Received from 265888555555   on 10/05/2019 23:06:26. \n"
+            + "Amount: 100.00MWK \n"
+            + "Ref: E5D4C3B2A1 \n"
+            + "Bal: 290.00MWK",
+        "Money Received from 0999123456 JANE DOE on 10/05/2019 23:06:26.\n"
+            + "Amount: 1,234,567.89MWK\n"
+            + "Ref: E5D4C3B2A1\n"
+            + "Bal: 1,234,857.89MWK",
+        "Money Sent to 0881555555   on 02/04/2019 17:09:19. \n"
+            + "Amount: 10,000.00MWK \n"
+            + "Fee: 100.00MWK \n"
+            + "Ref: 1A2B3C4D5E \n"
+            + "Bal: 204.00MWK",
+        "Money Sent to 0881555555 JOHN DOE on 02/04/2019 17:09:19.\n"
+            + "Amount: 0.01MWK\n"
+            + "Fee: 0.00MWK\n"
+            + "Ref: 1A2B3C4D5E\n"
+            + "Bal: 0.33MWK",
+        "Deposit from National Bank on 11/05/2019 04:55:07. Amount: 201.00MWK Fee: 0.00MWK Ref: 1B1B1B1BJZ Available Balance: 491.00MWK.",
+        "Deposit from Bank on Wheels on 31/12/2019 23:59:59. Amount: 1,201.10MWK Fee: 10.00MWK Ref: 1B1B1B1BJZ Available Balance: 9,491.70MWK.",
+        "Cash Out to AGENT SMITH - 1234567 on 12/05/2019 12:12:07.\n"
+            + "Amt: 7,200.00MWK \n"
+            + "Fee: 380.00MWK. \n"
+            + "Ref: 8GHABCGDTF \n"
+            + "Bal: 1,581.00MWK",
+        "Cash Out to SMITH - SONS - 1234567 on 12/05/2019 12:12:07.\n"
+            + "Amt: 100.00MWK\n"
+            + "Fee: 30.00MWK\n"
+            + "Ref: 8GHABCGDTF\n"
+            + "Bal: 81.00MWK",
+        // More digits than a long holds in minor units
+        "Money Received from 0999123456 JANE DOE on 10/05/2019 23:06:26.\n"
+            + "Amount: 123,456,789,012,345,678,901.00MWK\n"
+            + "Ref: E5D4C3B2A1\n"
+            + "Bal: 999,999,999,999,999.99MWK",
+        "Money Sent to 0881555555 JOHN DOE on 02/04/2019 17:09:19.\n"
+            + "Amount: 999,999,999,999,999.99MWK\n"
+            + "Fee: 0.00MWK\n"
+            + "Ref: 1A2B3C4D5E\n"
+            + "Bal: 1,000,000,000,000,000.00MWK",
+        "Deposit from nowhere",
+        "Hello world"
+    };
+
+    private final MpambaTransactionExtractor regex = new MpambaTransactionExtractor();
+    private final MpambaScanningTransactionExtractor scanner = new MpambaScanningTransactionExtractor();
+
+    @Test
+    public void testMatchesRegexExtractor() throws Exception {
+        for (String message : MESSAGES) {
+            final Transaction expected = regex.extract("MPAMBA", message, null);
+            final Transaction actual = scanner.extract("MPAMBA", message, null);
+            assertSameProperties(message, expected, actual);
+        }
+    }
+
+    @Test
+    public void testHolder() throws Exception {
+        final TransactionHolder holder = new TransactionHolder();
+        for (int pass = 0; pass < 2; pass++) {
+            for (String message : MESSAGES) {
+                final Transaction expected = regex.extract("MPAMBA", message, null);
+                final Transaction actual = scanner.extract("MPAMBA", message, null, holder, ExtractionReport.ignoring());
+                assertSameProperties(message, expected, actual);
+                if (actual != null) {
+                    assertSame(actual, holder.get());
+                    assertSame(actual, holder.reuse(actual.getClass()));
+                    assertNull(actual.getTransactionId());
+                }
+            }
+        }
+        final MpambaCashOutTransaction first = (MpambaCashOutTransaction) scanner.extract("MPAMBA", MESSAGES[8], null, holder, ExtractionReport.ignoring());
+        final MobileMoneyAgent agent = first.getAgent();
+        final MpambaCashOutTransaction second = (MpambaCashOutTransaction) scanner.extract("MPAMBA", MESSAGES[8], null, holder, ExtractionReport.ignoring());
+        assertSame(first, second);
+        assertSame(agent, second.getAgent());
+        assertSame(first.getDate(), holder.date(first.getDate().getTime()));
+        assertEquals("AGENT SMITH", second.getAgent().getAgentName());
+    }
+
+    @Test
+    public void testIgnoresOtherSenders() throws Exception {
+        assertNull(scanner.extract("AIRTEL", MESSAGES[0], null));
+        assertNull(scanner.extract("MPAMBA", null, null));
+    }
+
+    private static void assertSameProperties(String message, Object expected, Object actual) throws Exception {
+        if (expected == null || actual == null) {
+            assertSame(message, expected, actual);
+            return;
+        }
+        assertEquals(message, expected.getClass(), actual.getClass());
+        final BeanInfo info = Introspector.getBeanInfo(expected.getClass(), Object.class);
+        for (PropertyDescriptor property : info.getPropertyDescriptors()) {
+            final Object a = property.getReadMethod().invoke(expected);
+            final Object b = property.getReadMethod().invoke(actual);
+            if (a instanceof MobileMoneyAgent) {
+                assertSameProperties(message, a, b);
+            } else {
+                assertEquals(message + " / " + property.getName(), a, b);
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package lib.gintec_rdl.momo.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import lib.gintec_rdl.momo.extraction.ExtractionService;
+import lib.gintec_rdl.momo.extraction.SmsMessage;
+import lib.gintec_rdl.momo.extractors.MpambaTransactionExtractor;
+import lib.gintec_rdl.momo.model.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+public class SmsExportReaderTest {
+
+    private static final String CASH_IN = "Cash In from 123456-JOHN DOE INVESTMENT OUTLET on 06/05/2019 14:00:50.\n"
+        + "Amt: 2,000.00MWK\n"
+        + "Fee: 0.00MWK\n"
+        + "Ref: 1A2B8C4D7E\n"
+        + "Bal: 2,000.00MWK";
+
+    private static final String DEPOSIT = "Deposit from National Bank on 11/05/2019 04:55:07. Amount: 201.00MWK "
+        + "Fee: 0.00MWK Ref: 1B1B1B1BJZ Available Balance: 491.00MWK.";
+
+    private static final String CASH_OUT = "Cash Out to AGENT SMITH - 1234567 on 12/05/2019 12:12:07.\n"
+        + "Amt: 7,200.00MWK \n"
+        + "Fee: 380.00MWK. \n"
+        + "Ref: 8GHABCGDTF \n"
+        + "Bal: 1,581.00MWK";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    public SmsExportReaderTest() {
+        ExtractionService.getInstance().registerExtractor("MPAMBA", MpambaTransactionExtractor.class);
+    }
+
+    @Test
+    public void testSplitsMessages() throws IOException {
+        final File file = write(CASH_IN.replace("\n", "\r\n") + "\r\n"
+            + DEPOSIT + "\n"
+            + "\n\n"
+            + "Habari ya lero \u2014 moni\n"
+            + CASH_OUT);
+
+        final List<SmsMessage> messages = new ArrayList<>();
+        try (SmsExportReader reader = new SmsExportReader(file.toPath(), "MPAMBA", 16, 1024)) {
+            assertEquals(4, reader.forEachMessage(messages::add));
+        }
+
+        assertEquals(CASH_IN, messages.get(0).getBody());
+        assertEquals(DEPOSIT, messages.get(1).getBody());
+        assertEquals("Habari ya lero \u2014 moni", messages.get(2).getBody());
+        assertEquals(CASH_OUT, messages.get(3).getBody());
+        assertEquals("MPAMBA", messages.get(3).getSender());
+    }
+
+    @Test
+    public void testSkipsLongMessages() throws IOException {
+        final StringBuilder longLine = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            longLine.append("0123456789");
+        }
+        final File file = write(CASH_IN + "\n\n" + longLine + "\n" + DEPOSIT);
+
+        final List<SmsMessage> messages = new ArrayList<>();
+        try (SmsExportReader reader = new SmsExportReader(file.toPath(), "MPAMBA", 64, 512)) {
+            assertEquals(2, reader.forEachMessage(messages::add));
+            assertEquals(1, reader.getSkipped());
+        }
+        assertEquals(CASH_IN, messages.get(0).getBody());
+        assertEquals(DEPOSIT, messages.get(1).getBody());
+    }
+
+    @Test
+    public void testSkipsContinuationsOfLongMessages() throws IOException {
+        final StringBuilder name = new StringBuilder();
+        for (int i = 0; i < 60; i++) {
+            name.append("OUTLET ");
+        }
+        final String tooLong = CASH_IN.replace("JOHN DOE INVESTMENT OUTLET", name.toString().trim());
+        final File file = write(CASH_IN + "\n" + tooLong + "\n" + DEPOSIT + "\n" + tooLong + "\n" + CASH_OUT);
+
+        final List<SmsMessage> messages = new ArrayList<>();
+        try (SmsExportReader reader = new SmsExportReader(file.toPath(), "MPAMBA", 64, 256)) {
+            assertEquals(3, reader.forEachMessage(messages::add));
+            assertEquals(2, reader.getSkipped());
+        }
+        assertEquals(CASH_IN, messages.get(0).getBody());
+        assertEquals(DEPOSIT, messages.get(1).getBody());
+        assertEquals(CASH_OUT, messages.get(2).getBody());
+    }
+
+    @Test
+    public void testExtract() throws IOException {
+        final File file = write(CASH_IN + "\n" + DEPOSIT + "\nnot a transaction\n" + CASH_OUT + "\n");
+
+        final List<Transaction> transactions = new ArrayList<>();
+        try (SmsExportReader reader = new SmsExportReader(file.toPath(), "MPAMBA")) {
+            assertEquals(3, reader.extract(ExtractionService.getInstance(), transactions::add));
+        }
+
+        assertEquals("1A2B8C4D7E", transactions.get(0).getTransactionId());
+        assertTrue(transactions.get(1) instanceof MpambaDepositTransaction);
+        assertEquals(1581.00D, ((MpambaCashOutTransaction) transactions.get(2)).getBalance(), 0.0D);
+    }
+
+    private File write(String content) throws IOException {
+        final File file = folder.newFile();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
@@ -0,0 +1,79 @@
+package lib.gintec_rdl.momo.template;
+
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import lib.gintec_rdl.momo.extraction.ExtractionService;
+import lib.gintec_rdl.momo.model.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+public class TemplateFileLoaderTest {
+
+    private static final String SENDER = "TEMPLATES";
+
+    private static final String MESSAGE = "Cash Out to agent 654321 MZUZU TRADERS on 12/05/2021 14:33:45. "
+        + "Amount: MK3,000.00 Fee: MK150.00 Balance: MK17,300.00 Trans ID: CO210512.1433.D12345";
+
+    private static final String DEFINITIONS = "# Cash out\n"
+        + "[" + SENDER + "]\n"
+        + "CASH_OUT AirtelMoneyCashOutTransaction\n"
+        + "Cash Out to agent {agent.agentCode} {agent.agentName} on {date}.\n"
+        + "Amount: MK{amount} Fee: MK{fee} Balance: MK{balance} Trans ID: {transactionId}\n";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testParse() throws Exception {
+        final Map<String, TemplateTransactionExtractor> extractors = TemplateFileLoader.parse(new StringReader(DEFINITIONS
+            + "\n[OTHER]\nDEPOSIT lib.gintec_rdl.momo.model.MpambaDepositTransaction\nDeposit from {source}\n"));
+        assertEquals(2, extractors.size());
+        final AirtelMoneyCashOutTransaction transaction = (AirtelMoneyCashOutTransaction) extractors.get(SENDER).extract(SENDER, MESSAGE, null);
+        assertEquals("MZUZU TRADERS", transaction.getAgent().getAgentName());
+        assertEquals(15000, transaction.getFeeMinor());
+        assertEquals("DEPOSIT", extractors.get("OTHER").getTemplates().get(0).getName());
+        try {
+            TemplateFileLoader.parse(new StringReader("[X]\nDEPOSIT NoSuchTransaction\nDeposit from {source}\n"));
+            fail("Unknown classes must be rejected");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void testReload() throws Exception {
+        final ExtractionService svc = ExtractionService.getInstance();
+        final Path file = folder.newFile("templates.txt").toPath();
+        Files.write(file, DEFINITIONS.getBytes(StandardCharsets.UTF_8));
+        try (TemplateFileLoader loader = new TemplateFileLoader(svc, file).watch()) {
+            final long version = svc.getExtractorVersion(SENDER);
+            assertTrue(version > 0);
+            assertNotNull(svc.extract(SENDER, MESSAGE, null, AirtelMoneyCashOutTransaction.class));
+
+            // Wording changed by the provider
+            Files.write(file, DEFINITIONS.replace("Cash Out to agent", "Withdrawal at agent").getBytes(StandardCharsets.UTF_8));
+            final long deadline = System.currentTimeMillis() + 10000;
+            while (svc.getExtractorVersion(SENDER) == version && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(version + 1, svc.getExtractorVersion(SENDER));
+            assertNull(svc.extract(SENDER, MESSAGE, null, AirtelMoneyCashOutTransaction.class));
+            assertNotNull(svc.extract(SENDER, MESSAGE.replace("Cash Out to agent", "Withdrawal at agent"), null,
+                AirtelMoneyCashOutTransaction.class));
+
+            // A broken file leaves the last good version in place
+            Files.write(file, ("[" + SENDER + "]\nCASH_OUT AirtelMoneyCashOutTransaction\n{nowhere}\n").getBytes(StandardCharsets.UTF_8));
+            assertEquals(version + 1, svc.getExtractorVersion(SENDER));
+            try {
+                loader.load();
+                fail("Invalid definitions must be rejected");
+            } catch (IllegalArgumentException expected) {
+            }
+            assertEquals(version + 1, svc.getExtractorVersion(SENDER));
+        }
+    }
+}
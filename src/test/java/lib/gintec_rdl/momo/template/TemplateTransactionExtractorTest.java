@@ -0,0 +1,98 @@
+package lib.gintec_rdl.momo.template;
+
+import java.beans.BeanInfo;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import lib.gintec_rdl.momo.extractors.MpambaTransactionExtractor;
+import lib.gintec_rdl.momo.model.*;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TemplateTransactionExtractorTest {
+
+    private static final String[] MPAMBA = {
+        "Deposit from National Bank on 11/05/2019 04:55:07. Amount: 201.00MWK Fee: 0.00MWK Ref: 1B1B1B1BJZ Available Balance: 491.00MWK.",
+        "Cash Out to AGENT SMITH - 1234567 on 12/05/2019 12:12:07.\n"
+            + "Amt: 7,200.00MWK \n"
+            + "Fee: 380.00MWK. \n"
+            + "Ref: 8GHABCGDTF \n"
+            + "Bal: 1,581.00MWK",
+        "Money Sent to 0881555555 JOHN DOE on 02/04/2019 17:09:19. \n"
+            + "Amount: 10,000.00MWK \n"
+            + "Fee: 100.00MWK \n"
+            + "Ref: 1A2B3C4D5E \n"
+            + "Bal: 204.00MWK",
+        "Hello world"
+    };
+
+    private final TemplateTransactionExtractor mpamba = new TemplateTransactionExtractor("MPAMBA")
+        .register("DEPOSIT", MpambaDepositTransaction.class,
+            "Deposit from {source} on {date}. Amount: {amount}MWK Fee: {fee}MWK Ref: {transactionId} "
+            + "Available Balance: {balance}MWK.")
+        .register("CASH_OUT", MpambaCashOutTransaction.class,
+            "Cash Out to {agent.agentName} - {agent.agentCode} on {date}.\n"
+            + "Amt: {amount}MWK\nFee: {fee}MWK.\nRef: {transactionId}\nBal: {balance}MWK")
+        .register("CREDIT", MpambaCreditTransaction.class,
+            "Money Sent to {recipientPhone:08[0-9]{8}} {recipientName?} on {date}.\n"
+            + "Amount: {amount}MWK\nFee: {fee}MWK\nRef: {transactionId}\nBal: {balance}MWK");
+
+    @Test
+    public void testMatchesHandWrittenExtractors() throws Exception {
+        final MpambaTransactionExtractor mpambaExtractor = new MpambaTransactionExtractor();
+        for (String message : MPAMBA) {
+            assertSameProperties(message, mpambaExtractor.extract("MPAMBA", message, null),
+                mpamba.extract("MPAMBA", message, null));
+        }
+        assertEquals("CASH_OUT", mpamba.getMessageType("MPAMBA", MPAMBA[1]));
+        assertNull(mpamba.extract("AirtelMoney", MPAMBA[1], null));
+
+        final MpambaCreditTransaction anonymous = (MpambaCreditTransaction) mpamba.extract("MPAMBA",
+            "Money Sent to 0881555555   on 02/04/2019 17:09:19.\nAmount: 1.00MWK\nFee: 0.00MWK\nRef: 1A2B\nBal: 2.00MWK", null);
+        assertEquals("0881555555", anonymous.getRecipientPhone());
+        assertNull(anonymous.getRecipientName());
+        assertEquals(200, anonymous.getBalanceMinor());
+    }
+
+    @Test
+    public void testCompile() {
+        final MessageTemplate<MpambaDepositTransaction> template = MessageTemplate.compile("DEPOSIT",
+            MpambaDepositTransaction.class, "Deposit from {source} on {date}. Amount: {amount}MWK");
+        assertEquals("Deposit from ", template.getPrefix());
+        assertEquals(3, template.getFields().size());
+        assertEquals("amount", template.getFields().get(2));
+        assertNull(template.extract("Deposit from X"));
+        try {
+            MessageTemplate.compile("X", MpambaDepositTransaction.class, "Deposit from {nowhere}");
+            fail("Unknown fields must be rejected");
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            MessageTemplate.compile("X", MpambaDepositTransaction.class, "Deposit from {source:(.+)}");
+            fail("Capturing groups must be rejected");
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            MessageTemplate.compile("X", MpambaDepositTransaction.class, "Deposit from {source");
+            fail("Unclosed fields must be rejected");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    private static void assertSameProperties(String message, Object expected, Object actual) throws Exception {
+        if (expected == null || actual == null) {
+            assertSame(message, expected, actual);
+            return;
+        }
+        assertEquals(message, expected.getClass(), actual.getClass());
+        final BeanInfo info = Introspector.getBeanInfo(expected.getClass(), Object.class);
+        for (PropertyDescriptor property : info.getPropertyDescriptors()) {
+            final Object a = property.getReadMethod().invoke(expected);
+            final Object b = property.getReadMethod().invoke(actual);
+            if (a instanceof MobileMoneyAgent) {
+                assertSameProperties(message, a, b);
+            } else {
+                assertEquals(message + " / " + property.getName(), a, b);
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package lib.gintec_rdl.momo.utils;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class MoneyUtilsTest {
+
+    @Test
+    public void testParse() {
+        assertEquals(123456, MoneyUtils.parse("1,234.56"));
+        assertEquals(20000, MoneyUtils.parse("200"));
+        assertEquals(50, MoneyUtils.parse("0.5"));
+        assertEquals(50, MoneyUtils.parse(".5"));
+        assertEquals(100, MoneyUtils.parse("1."));
+        assertEquals(123456789000L, MoneyUtils.parse("1,234,567,890.00"));
+        assertEquals(720000, MoneyUtils.parse("Amt: 7,200.00MWK", 5, 13));
+    }
+
+    @Test
+    public void testDigitLimit() {
+        // The largest whole part whose minor units still fit in a long
+        assertEquals(99999999999999999L, MoneyUtils.parse("999999999999999.99"));
+        assertEquals(99999999999999900L, MoneyUtils.parse("999,999,999,999,999"));
+        assertEquals(MoneyUtils.INVALID, MoneyUtils.tryParse("1000000000000000", 0, 16));
+        assertEquals(MoneyUtils.INVALID, MoneyUtils.tryParse("99999999999999999", 0, 17));
+        assertEquals(MoneyUtils.INVALID, MoneyUtils.tryParse("1,000,000,000,000,000.00", 0, 24));
+    }
+
+    @Test
+    public void testGrouping() {
+        final String[] invalid = {",,1.", ",100.00", "1,,000.00", "1,00.00", "1,0000.00", "1000,000.00", "1,000,00", "1,000,", "1,000.0,0"};
+        for (String text : invalid) {
+            assertEquals(text, MoneyUtils.INVALID, MoneyUtils.tryParse(text, 0, text.length()));
+        }
+        assertEquals(100000, MoneyUtils.parse("1,000"));
+        assertEquals(99900, MoneyUtils.parse("999."));
+    }
+
+    @Test
+    public void testInvalid() {
+        final String[] invalid = {"", ".", "1.234", "1.2.3", "-1.00", "1 000.00", "MK100", "1e3"};
+        for (String text : invalid) {
+            assertEquals(text, MoneyUtils.INVALID, MoneyUtils.tryParse(text, 0, text.length()));
+        }
+        try {
+            MoneyUtils.parse("12,34.00");
+            fail("Bad grouping must not parse");
+        } catch (NumberFormatException expected) {
+        }
+    }
+
+    @Test
+    public void testRounding() {
+        assertEquals(30, MoneyUtils.fromMajor(0.1 + 0.2));
+        assertEquals(1999, MoneyUtils.fromMajor(19.99));
+        assertEquals(1, MoneyUtils.fromMajor(0.005));
+        assertEquals(-1999, MoneyUtils.fromMajor(-19.99));
+        assertEquals(19.99, MoneyUtils.toMajor(1999), 0.0);
+        assertEquals("1234.05", MoneyUtils.format(123405));
+        assertEquals("-0.50", MoneyUtils.format(-50));
+        assertEquals(MoneyUtils.fromMajor(1234.56), MoneyUtils.parse("1,234.56"));
+    }
+}
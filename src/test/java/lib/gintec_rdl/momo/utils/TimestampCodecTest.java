@@ -0,0 +1,90 @@
+package lib.gintec_rdl.momo.utils;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+import java.util.Random;
+import lib.gintec_rdl.momo.model.MpambaCashInTransaction;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TimestampCodecTest {
+
+    @Test
+    public void testMalawi() {
+        final TimestampCodec codec = new TimestampCodec(LocaleUtils.MALAWI);
+        final long time = codec.parse("06/05/2019 14:00:50", 0, 19);
+        assertEquals(LocalDateTime.of(2019, 5, 6, 12, 0, 50).toEpochSecond(ZoneOffset.UTC) * 1000L, time);
+        assertEquals("06/05/2019 14:00:50", codec.format(time));
+        assertEquals("x 06/05/2019 14:00:50", codec.format(time, new StringBuilder("x ")).toString());
+        assertEquals(LocalDateTime.of(2019, 5, 6, 14, 0, 50, 250_000_000), codec.toLocalDateTime(time + 250));
+        assertEquals(time, codec.parseInstant("on 06/05/2019 14:00:50.", 3, 22).toEpochMilli());
+        assertEquals(LocalDateTime.of(2019, 5, 6, 14, 0, 50), TimestampCodec.parseLocalDateTime("06/05/2019 14:00:50", 0, 19));
+    }
+
+    @Test
+    public void testInvalid() {
+        final TimestampCodec codec = new TimestampCodec(LocaleUtils.MALAWI);
+        final String[] invalid = {"12/13/2019 12:12:07", "29/02/2019 12:12:07", "00/01/2019 12:12:07",
+            "01/01/2019 24:00:00", "01/01/2019 12:60:00", "01-01-2019 12:12:07", "1/01/2019 12:12:07", "01/01/2019 12:12:0x"};
+        for (String text : invalid) {
+            assertEquals(text, TimestampCodec.INVALID, codec.tryParse(text, 0, text.length()));
+            try {
+                codec.parse(text, 0, text.length());
+                fail(text);
+            } catch (DateTimeParseException expected) {
+            }
+        }
+        assertNotEquals(TimestampCodec.INVALID, codec.tryParse("29/02/2000 12:12:07", 0, 19));
+    }
+
+    @Test
+    public void testTransitions() {
+        final ZoneId london = ZoneId.of("Europe/London");
+        final TimestampCodec codec = new TimestampCodec(london);
+        final String[] texts = {"31/03/2019 00:59:59", "31/03/2019 01:30:00", "31/03/2019 02:00:00",
+            "27/10/2019 00:59:59", "27/10/2019 01:30:00", "27/10/2019 02:00:00", "01/07/2019 12:00:00", "01/01/2019 12:00:00"};
+        for (String text : texts) {
+            final LocalDateTime local = LocalDateTime.parse(text, LocaleUtils.DATE_FORMATTER);
+            final long expected = local.atZone(london).toInstant().toEpochMilli();
+            assertEquals(text, expected, codec.tryParse(text, 0, 19));
+            assertEquals(text, LocaleUtils.DATE_FORMATTER.format(local.atZone(london)), codec.format(expected));
+        }
+    }
+
+    @Test
+    public void testAgainstJavaTime() {
+        final Random random = new Random(42);
+        for (String id : new String[]{"Africa/Blantyre", "Europe/London", "America/Sao_Paulo", "Australia/Lord_Howe", "UTC"}) {
+            final ZoneId zone = ZoneId.of(id);
+            final TimestampCodec codec = new TimestampCodec(zone);
+            for (int i = 0; i < 10_000; i++) {
+                final long time = (long) (random.nextDouble() * 4_000_000_000_000L) - 1_000_000_000_000L;
+                final LocalDateTime local = LocalDateTime.ofInstant(new Date(time).toInstant(), zone);
+                final String text = LocaleUtils.DATE_FORMATTER.format(local);
+                assertEquals(text, codec.format(time));
+                assertEquals(local, codec.toLocalDateTime(time));
+                assertEquals(text, local.withNano(0).atZone(zone).toInstant().toEpochMilli(), codec.parse(text, 0, 19));
+            }
+        }
+    }
+
+    @Test
+    public void testTransactionDate() {
+        final ZoneId zone = LocaleUtils.getZone();
+        LocaleUtils.setZone(LocaleUtils.MALAWI);
+        try {
+            final MpambaCashInTransaction transaction = new MpambaCashInTransaction();
+            assertNull(transaction.getInstant());
+            assertNull(transaction.getLocalDateTime());
+            transaction.setDate(LocaleUtils.parseDate("06/05/2019 14:00:50"));
+            assertEquals(transaction.getDate().toInstant(), transaction.getInstant());
+            assertEquals(LocalDateTime.of(2019, 5, 6, 14, 0, 50), transaction.getLocalDateTime());
+            assertEquals("06/05/2019 14:00:50", LocaleUtils.formatDate(transaction.getDate()));
+        } finally {
+            LocaleUtils.setZone(zone);
+        }
+    }
+}